@@ -20,12 +20,16 @@ import com.baidu.openrasp.config.Config;
 import com.baidu.openrasp.exception.SecurityException;
 import com.baidu.openrasp.hook.XXEHook;
 import com.baidu.openrasp.plugin.checker.CheckParameter;
+import com.baidu.openrasp.plugin.checker.DataRequirement;
 import com.baidu.openrasp.plugin.checker.CheckerManager;
 import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.baidu.openrasp.plugin.js.engine.JSContextFactory;
+import com.baidu.openrasp.plugin.rule.BodyInspector;
 import com.baidu.openrasp.request.AbstractRequest;
 import com.baidu.openrasp.request.HttpServletRequest;
 import com.baidu.openrasp.response.HttpServletResponse;
 import org.apache.log4j.Logger;
+import org.mozilla.javascript.Scriptable;
 
 import java.util.Arrays;
 import java.util.HashMap;
@@ -150,6 +154,11 @@ public class HookHandler {
      */
     public static void onServiceExit() {
         enableCurrThreadHook.set(false);
+        AbstractRequest request = requestCache.get();
+        if (request != null) {
+            request.clearVerdictMemo();
+            request.releaseBodyBuffer();
+        }
         requestCache.set(null);
     }
 
@@ -171,21 +180,19 @@ public class HookHandler {
                 request.setInputStream(inputStream);
             }
             if (request.getInputStream() == inputStream) {
-                request.appendBody(ret);
+                if (DataRequirement.isBodyRequired()) {
+                    request.appendBody(ret);
+                }
+                BodyInspector inspector = BodyInspector.getOrCreate(request);
+                if (inspector != null && !inspector.isDone()) {
+                    checkBody(inspector, inspector.inspect(ret));
+                }
             }
         }
     }
 
     public static void onInputStreamRead(int ret, Object inputStream, byte[] bytes) {
-        if (ret != -1 && requestCache.get() != null) {
-            AbstractRequest request = requestCache.get();
-            if (request.getInputStream() == null) {
-                request.setInputStream(inputStream);
-            }
-            if (request.getInputStream() == inputStream) {
-                request.appendBody(bytes, 0, ret);
-            }
-        }
+        onInputStreamRead(ret, inputStream, bytes, 0, ret);
     }
 
     public static void onInputStreamRead(int ret, Object inputStream, byte[] bytes, int offset, int len) {
@@ -195,11 +202,33 @@ public class HookHandler {
                 request.setInputStream(inputStream);
             }
             if (request.getInputStream() == inputStream) {
-                request.appendBody(bytes, offset, ret);
+                if (DataRequirement.isBodyRequired()) {
+                    request.appendBody(bytes, offset, ret);
+                }
+                BodyInspector inspector = BodyInspector.getOrCreate(request);
+                if (inspector != null && !inspector.isDone()) {
+                    checkBody(inspector, inspector.inspect(bytes, offset, ret));
+                }
             }
         }
     }
 
+    /**
+     * 请求体分段检测匹配到新的关键字时执行 requestBody 类型的规则
+     *
+     * @param inspector 分段检测状态
+     * @param keyword   本次新匹配的关键字，为 null 时不检测
+     */
+    private static void checkBody(BodyInspector inspector, String keyword) {
+        if (keyword != null) {
+            Scriptable params = JSContextFactory.createObject();
+            params.put("keyword", params, keyword);
+            params.put("window", params, inspector.getWindow(keyword));
+            params.put("offset", params, inspector.getOffset());
+            doCheck(CheckParameter.Type.REQUEST_BODY, params);
+        }
+    }
+
     public static void onParseParameters() {
         AbstractRequest request = requestCache.get();
         if (request != null) {
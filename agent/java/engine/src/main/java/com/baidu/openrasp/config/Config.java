@@ -17,6 +17,7 @@
 package com.baidu.openrasp.config;
 
 import com.baidu.openrasp.exception.ConfigLoadException;
+import com.baidu.openrasp.plugin.info.EventInfo;
 import com.baidu.openrasp.tool.FileUtil;
 import com.baidu.openrasp.tool.filemonitor.FileScanListener;
 import com.baidu.openrasp.tool.filemonitor.FileScanMonitor;
@@ -30,6 +31,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 
@@ -42,17 +45,32 @@ public class Config extends FileScanListener {
 
     public enum Item {
         PLUGIN_TIMEOUT_MILLIS("plugin.timeout.millis", "100"),
+        PLUGIN_CONTEXT_POOL_SIZE("plugin.context_pool.size", "0"),
+        PLUGIN_TIMEOUT_ACTION("plugin.timeout.action", "ignore"),
+        PLUGIN_CIRCUIT_BREAKER_LATENCY("plugin.circuit_breaker.latency_ms", "0"),
+        PLUGIN_CIRCUIT_BREAKER_ERROR_RATE("plugin.circuit_breaker.error_rate", "0"),
+        PLUGIN_CIRCUIT_BREAKER_COOLDOWN("plugin.circuit_breaker.cooldown_ms", "60000"),
+        PLUGIN_PROFILER_REPORT_INTERVAL("plugin.profiler.report_interval", "0"),
+        PLUGIN_CACHE_MAX_SIZE("plugin.cache.maxsize", "1000"),
+        PLUGIN_CACHE_TTL_MILLIS("plugin.cache.ttl.millis", "600000"),
+        PLUGIN_REGEX_ENGINE("plugin.regex.engine", "linear"),
         HOOKS_IGNORE("hooks.ignore", ""),
         BLOCK_URL("block.url", "https://rasp.baidu.com/blocked"),
         READ_FILE_EXTENSION_REGEX("readfile.extension.regex", "^(gz|7z|xz|tar|rar|zip|sql|db)$"),
         INJECT_URL_PREFIX("inject.urlprefix", ""),
         REQUEST_PARAM_ENCODING("request.param_encoding", ""),
         BODY_MAX_BYTES("body.maxbytes", "4096"),
+        BODY_CONTENT_TYPES("body.content_types", "application/x-www-form-urlencoded,application/json,application/xml,text/"),
         LOG_MAX_STACK("log.maxstack", "20"),
         REFLECTION_MAX_STACK("plugin.maxstack", "100"),
         SECURITY_ENFORCE_POLICY("security.enforce_policy", "false"),
         OGNL_EXPRESSION_MIN_LENGTH("ognl.expression.minlength", "30"),
         SQL_SLOW_QUERY_MIN_ROWS("sql.slowquery.min_rows", "500"),
+        ALLOWLIST_MODE("allowlist.mode", "off"),
+        ALLOWLIST_MAX_SIZE("allowlist.maxsize", "100000"),
+        ALARM_ASYNC("alarm.async", "true"),
+        ALARM_QUEUE_SIZE("alarm.queue.size", "4096"),
+        ALARM_QUEUE_OVERFLOW("alarm.queue.overflow", "sync"),
         BLOCK_STATUS_CODE("block.status_code", "302"),
         DEBUG("debug.level", "0"),
         ALGORITHM_CONFIG("algorithm.config", "{}", false);
@@ -88,8 +106,24 @@ public class Config extends FileScanListener {
     private String configFileDir;
     private int pluginMaxStack;
     private long pluginTimeout;
+    private int pluginContextPoolSize;
+    private String pluginTimeoutAction;
+    private Map<String, String> pluginTimeoutActions;
+    private long pluginCircuitBreakerLatency;
+    private int pluginCircuitBreakerErrorRate;
+    private long pluginCircuitBreakerCooldown;
+    private long pluginProfilerReportInterval;
+    private int pluginCacheMaxSize;
+    private long pluginCacheTtl;
+    private String pluginRegexEngine;
     private int bodyMaxBytes;
+    private String[] bodyContentTypes;
     private int sqlSlowQueryMinCount;
+    private String allowlistMode;
+    private int allowlistMaxSize;
+    private boolean alarmAsync;
+    private int alarmQueueSize;
+    private String alarmQueueOverflow;
     private String[] ignoreHooks;
     private boolean enforcePolicy;
     private String[] reflectionMonitorMethod;
@@ -232,6 +266,24 @@ public class Config extends FileScanListener {
         return baseDirectory + "/plugins";
     }
 
+    /**
+     * 获取js脚本编译缓存所在目录
+     *
+     * @return js脚本编译缓存目录
+     */
+    public String getScriptCacheDirectory() {
+        return baseDirectory + "/cache/plugins";
+    }
+
+    /**
+     * 获取白名单指纹文件所在目录
+     *
+     * @return 白名单目录
+     */
+    public String getAllowlistDirectory() {
+        return baseDirectory + "/allowlist";
+    }
+
     /**
      * 获取自定义插入 html 页面的 js 脚本
      *
@@ -301,6 +353,224 @@ public class Config extends FileScanListener {
         }
     }
 
+    /**
+     * 获取插件 Context 池大小
+     * 0 代表每个线程绑定一个 Context
+     *
+     * @return Context 池大小
+     */
+    public synchronized int getPluginContextPoolSize() {
+        return pluginContextPoolSize;
+    }
+
+    /**
+     * 配置插件 Context 池大小
+     * 小于 0 时使用 CPU 核数
+     *
+     * @param pluginContextPoolSize Context 池大小
+     */
+    public synchronized void setPluginContextPoolSize(String pluginContextPoolSize) {
+        this.pluginContextPoolSize = Integer.parseInt(pluginContextPoolSize);
+        if (this.pluginContextPoolSize < 0) {
+            this.pluginContextPoolSize = Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+    /**
+     * 获取插件执行超时后的处理方式
+     *
+     * @param type 检测类型
+     * @return ignore、log 或 block
+     */
+    public synchronized String getPluginTimeoutAction(String type) {
+        String action = pluginTimeoutActions.get(type);
+        return action != null ? action : pluginTimeoutAction;
+    }
+
+    /**
+     * 配置插件执行超时后的处理方式
+     * 格式为逗号分隔的列表，不带检测类型的项为默认值，如 log,command:block,sql:ignore
+     *
+     * @param pluginTimeoutAction 超时处理方式
+     */
+    public synchronized void setPluginTimeoutAction(String pluginTimeoutAction) {
+        String defaultAction = EventInfo.CHECK_ACTION_IGNORE;
+        Map<String, String> actions = new HashMap<String, String>();
+        for (String item : pluginTimeoutAction.split(",")) {
+            item = item.trim();
+            if (item.isEmpty()) {
+                continue;
+            }
+            int index = item.indexOf(':');
+            String action = index < 0 ? item : item.substring(index + 1).trim();
+            if (!EventInfo.CHECK_ACTION_IGNORE.equals(action) && !EventInfo.CHECK_ACTION_INFO.equals(action)
+                    && !EventInfo.CHECK_ACTION_BLOCK.equals(action)) {
+                throw new IllegalArgumentException("unknown timeout action: " + action);
+            }
+            if (index < 0) {
+                defaultAction = action;
+            } else {
+                actions.put(item.substring(0, index).trim(), action);
+            }
+        }
+        this.pluginTimeoutAction = defaultAction;
+        this.pluginTimeoutActions = actions;
+    }
+
+    /**
+     * 获取插件熔断的平均耗时阈值
+     *
+     * @return 平均耗时阈值（毫秒），0 代表不按耗时熔断
+     */
+    public synchronized long getPluginCircuitBreakerLatency() {
+        return pluginCircuitBreakerLatency;
+    }
+
+    /**
+     * 配置插件熔断的平均耗时阈值
+     * 插件检测函数在统计窗口内的平均耗时超过该值时暂停执行
+     *
+     * @param pluginCircuitBreakerLatency 平均耗时阈值（毫秒）
+     */
+    public synchronized void setPluginCircuitBreakerLatency(String pluginCircuitBreakerLatency) {
+        this.pluginCircuitBreakerLatency = Long.parseLong(pluginCircuitBreakerLatency);
+        if (this.pluginCircuitBreakerLatency < 0) {
+            this.pluginCircuitBreakerLatency = 0;
+        }
+    }
+
+    /**
+     * 获取插件熔断的错误率阈值
+     *
+     * @return 错误率阈值（百分比），0 代表不按错误率熔断
+     */
+    public synchronized int getPluginCircuitBreakerErrorRate() {
+        return pluginCircuitBreakerErrorRate;
+    }
+
+    /**
+     * 配置插件熔断的错误率阈值
+     * 插件检测函数在统计窗口内抛出异常或超时的比例超过该值时暂停执行
+     *
+     * @param pluginCircuitBreakerErrorRate 错误率阈值（百分比）
+     */
+    public synchronized void setPluginCircuitBreakerErrorRate(String pluginCircuitBreakerErrorRate) {
+        this.pluginCircuitBreakerErrorRate = Integer.parseInt(pluginCircuitBreakerErrorRate);
+        if (this.pluginCircuitBreakerErrorRate < 0) {
+            this.pluginCircuitBreakerErrorRate = 0;
+        } else if (this.pluginCircuitBreakerErrorRate > 100) {
+            this.pluginCircuitBreakerErrorRate = 100;
+        }
+    }
+
+    /**
+     * 获取插件熔断后暂停执行的时间
+     *
+     * @return 暂停时间（毫秒）
+     */
+    public synchronized long getPluginCircuitBreakerCooldown() {
+        return pluginCircuitBreakerCooldown;
+    }
+
+    /**
+     * 配置插件熔断后暂停执行的时间
+     *
+     * @param pluginCircuitBreakerCooldown 暂停时间（毫秒）
+     */
+    public synchronized void setPluginCircuitBreakerCooldown(String pluginCircuitBreakerCooldown) {
+        this.pluginCircuitBreakerCooldown = Long.parseLong(pluginCircuitBreakerCooldown);
+        if (this.pluginCircuitBreakerCooldown < 0) {
+            this.pluginCircuitBreakerCooldown = 0;
+        }
+    }
+
+    /**
+     * 获取插件执行统计的输出间隔
+     *
+     * @return 输出间隔（秒），0 代表不输出
+     */
+    public synchronized long getPluginProfilerReportInterval() {
+        return pluginProfilerReportInterval;
+    }
+
+    /**
+     * 配置插件执行统计的输出间隔
+     *
+     * @param pluginProfilerReportInterval 输出间隔（秒）
+     */
+    public synchronized void setPluginProfilerReportInterval(String pluginProfilerReportInterval) {
+        this.pluginProfilerReportInterval = Long.parseLong(pluginProfilerReportInterval);
+        if (this.pluginProfilerReportInterval < 0) {
+            this.pluginProfilerReportInterval = 0;
+        }
+    }
+
+    /**
+     * 获取每个插件缓存的最大条目数
+     * 0 代表关闭插件缓存
+     *
+     * @return 最大条目数
+     */
+    public synchronized int getPluginCacheMaxSize() {
+        return pluginCacheMaxSize;
+    }
+
+    /**
+     * 配置每个插件缓存的最大条目数
+     *
+     * @param pluginCacheMaxSize 最大条目数
+     */
+    public synchronized void setPluginCacheMaxSize(String pluginCacheMaxSize) {
+        this.pluginCacheMaxSize = Integer.parseInt(pluginCacheMaxSize);
+        if (this.pluginCacheMaxSize < 0) {
+            this.pluginCacheMaxSize = 0;
+        }
+    }
+
+    /**
+     * 获取插件缓存的默认过期时间
+     *
+     * @return 过期时间（毫秒）
+     */
+    public synchronized long getPluginCacheTtl() {
+        return pluginCacheTtl;
+    }
+
+    /**
+     * 配置插件缓存的默认过期时间
+     *
+     * @param pluginCacheTtl 过期时间（毫秒）
+     */
+    public synchronized void setPluginCacheTtl(String pluginCacheTtl) {
+        this.pluginCacheTtl = Long.parseLong(pluginCacheTtl);
+        if (this.pluginCacheTtl < 0) {
+            this.pluginCacheTtl = 0;
+        }
+    }
+
+    /**
+     * 获取 RASP.regex_test/regex_match 使用的正则引擎
+     *
+     * @return linear 或 java
+     */
+    public synchronized String getPluginRegexEngine() {
+        return pluginRegexEngine;
+    }
+
+    /**
+     * 配置 RASP.regex_test/regex_match 使用的正则引擎
+     * linear 为线性时间引擎，不支持反向引用和零宽断言；java 为 java.util.regex，语法完整但存在回溯
+     *
+     * @param pluginRegexEngine 正则引擎
+     */
+    public synchronized void setPluginRegexEngine(String pluginRegexEngine) {
+        pluginRegexEngine = pluginRegexEngine.trim();
+        if (!"linear".equals(pluginRegexEngine) && !"java".equals(pluginRegexEngine)) {
+            throw new IllegalArgumentException("unknown regex engine: " + pluginRegexEngine);
+        }
+        this.pluginRegexEngine = pluginRegexEngine;
+    }
+
     /**
      * 设置需要插入自定义html的页面path前缀
      *
@@ -344,6 +614,24 @@ public class Config extends FileScanListener {
         }
     }
 
+    /**
+     * 需要保存HTTP请求体的 Content-Type 前缀
+     *
+     * @return Content-Type 前缀列表，包含 * 时保存所有请求体
+     */
+    public synchronized String[] getBodyContentTypes() {
+        return bodyContentTypes;
+    }
+
+    /**
+     * 配置需要保存HTTP请求体的 Content-Type 前缀，多个前缀用逗号分隔
+     *
+     * @param bodyContentTypes Content-Type 前缀
+     */
+    public synchronized void setBodyContentTypes(String bodyContentTypes) {
+        this.bodyContentTypes = bodyContentTypes.replace(" ", "").toLowerCase().split(",");
+    }
+
     public synchronized int getSqlSlowQueryMinCount() {
         return sqlSlowQueryMinCount;
     }
@@ -355,6 +643,113 @@ public class Config extends FileScanListener {
         }
     }
 
+    /**
+     * 获取白名单学习模式
+     *
+     * @return off、learn 或 enforce
+     */
+    public synchronized String getAllowlistMode() {
+        return allowlistMode;
+    }
+
+    /**
+     * 配置白名单学习模式
+     * learn 记录检测通过的参数指纹，enforce 对已记录的参数跳过检测，off 关闭
+     *
+     * @param allowlistMode 白名单模式
+     */
+    public synchronized void setAllowlistMode(String allowlistMode) {
+        allowlistMode = allowlistMode.trim();
+        if (!"off".equals(allowlistMode) && !"learn".equals(allowlistMode) && !"enforce".equals(allowlistMode)) {
+            throw new IllegalArgumentException("unknown allowlist mode: " + allowlistMode);
+        }
+        this.allowlistMode = allowlistMode;
+    }
+
+    /**
+     * 获取每个检测类型最多记录的白名单指纹数
+     *
+     * @return 最大指纹数
+     */
+    public synchronized int getAllowlistMaxSize() {
+        return allowlistMaxSize;
+    }
+
+    /**
+     * 配置每个检测类型最多记录的白名单指纹数
+     *
+     * @param allowlistMaxSize 最大指纹数
+     */
+    public synchronized void setAllowlistMaxSize(String allowlistMaxSize) {
+        this.allowlistMaxSize = Integer.parseInt(allowlistMaxSize);
+        if (this.allowlistMaxSize < 0) {
+            this.allowlistMaxSize = 0;
+        }
+    }
+
+    /**
+     * 获取是否在后台线程输出报警
+     *
+     * @return true 表示后台输出
+     */
+    public synchronized boolean getAlarmAsync() {
+        return alarmAsync;
+    }
+
+    /**
+     * 配置是否在后台线程输出报警，关闭时在请求线程中同步输出
+     *
+     * @param alarmAsync 是否后台输出
+     */
+    public synchronized void setAlarmAsync(String alarmAsync) {
+        this.alarmAsync = Boolean.parseBoolean(alarmAsync);
+    }
+
+    /**
+     * 获取等待输出的报警队列长度
+     *
+     * @return 队列长度
+     */
+    public synchronized int getAlarmQueueSize() {
+        return alarmQueueSize;
+    }
+
+    /**
+     * 配置等待输出的报警队列长度
+     *
+     * @param alarmQueueSize 队列长度
+     */
+    public synchronized void setAlarmQueueSize(String alarmQueueSize) {
+        this.alarmQueueSize = Integer.parseInt(alarmQueueSize);
+        if (this.alarmQueueSize < 1) {
+            this.alarmQueueSize = 1;
+        }
+    }
+
+    /**
+     * 获取报警队列已满时的处理方式
+     *
+     * @return 处理方式
+     */
+    public synchronized String getAlarmQueueOverflow() {
+        return alarmQueueOverflow;
+    }
+
+    /**
+     * 配置报警队列已满时的处理方式：
+     * sync 在请求线程中同步输出，drop 丢弃新报警，drop_oldest 丢弃队列中最早的报警
+     *
+     * @param alarmQueueOverflow 处理方式
+     */
+    public synchronized void setAlarmQueueOverflow(String alarmQueueOverflow) {
+        alarmQueueOverflow = alarmQueueOverflow.trim();
+        if (!"sync".equals(alarmQueueOverflow) && !"drop".equals(alarmQueueOverflow)
+                && !"drop_oldest".equals(alarmQueueOverflow)) {
+            throw new IllegalArgumentException("unknown alarm queue overflow policy: " + alarmQueueOverflow);
+        }
+        this.alarmQueueOverflow = alarmQueueOverflow;
+    }
+
     /**
      * 需要忽略的挂钩点
      *
@@ -621,6 +1016,8 @@ public class Config extends FileScanListener {
                 setBlockUrl(value);
             } else if (Item.BODY_MAX_BYTES.key.equals(key)) {
                 setBodyMaxBytes(value);
+            } else if (Item.BODY_CONTENT_TYPES.key.equals(key)) {
+                setBodyContentTypes(value);
             } else if (Item.HOOKS_IGNORE.key.equals(key)) {
                 setIgnoreHooks(value);
             } else if (Item.INJECT_URL_PREFIX.key.equals(key)) {
@@ -631,6 +1028,24 @@ public class Config extends FileScanListener {
                 setOgnlMinLength(value);
             } else if (Item.PLUGIN_TIMEOUT_MILLIS.key.equals(key)) {
                 setPluginTimeout(value);
+            } else if (Item.PLUGIN_CONTEXT_POOL_SIZE.key.equals(key)) {
+                setPluginContextPoolSize(value);
+            } else if (Item.PLUGIN_TIMEOUT_ACTION.key.equals(key)) {
+                setPluginTimeoutAction(value);
+            } else if (Item.PLUGIN_CIRCUIT_BREAKER_LATENCY.key.equals(key)) {
+                setPluginCircuitBreakerLatency(value);
+            } else if (Item.PLUGIN_CIRCUIT_BREAKER_ERROR_RATE.key.equals(key)) {
+                setPluginCircuitBreakerErrorRate(value);
+            } else if (Item.PLUGIN_CIRCUIT_BREAKER_COOLDOWN.key.equals(key)) {
+                setPluginCircuitBreakerCooldown(value);
+            } else if (Item.PLUGIN_PROFILER_REPORT_INTERVAL.key.equals(key)) {
+                setPluginProfilerReportInterval(value);
+            } else if (Item.PLUGIN_CACHE_MAX_SIZE.key.equals(key)) {
+                setPluginCacheMaxSize(value);
+            } else if (Item.PLUGIN_CACHE_TTL_MILLIS.key.equals(key)) {
+                setPluginCacheTtl(value);
+            } else if (Item.PLUGIN_REGEX_ENGINE.key.equals(key)) {
+                setPluginRegexEngine(value);
             } else if (Item.READ_FILE_EXTENSION_REGEX.key.equals(key)) {
                 setReadFileExtensionRegex(value);
             } else if (Item.REFLECTION_MAX_STACK.key.equals(key)) {
@@ -639,6 +1054,16 @@ public class Config extends FileScanListener {
                 setEnforcePolicy(value);
             } else if (Item.SQL_SLOW_QUERY_MIN_ROWS.key.equals(key)) {
                 setSqlSlowQueryMinCount(value);
+            } else if (Item.ALLOWLIST_MODE.key.equals(key)) {
+                setAllowlistMode(value);
+            } else if (Item.ALLOWLIST_MAX_SIZE.key.equals(key)) {
+                setAllowlistMaxSize(value);
+            } else if (Item.ALARM_ASYNC.key.equals(key)) {
+                setAlarmAsync(value);
+            } else if (Item.ALARM_QUEUE_SIZE.key.equals(key)) {
+                setAlarmQueueSize(value);
+            } else if (Item.ALARM_QUEUE_OVERFLOW.key.equals(key)) {
+                setAlarmQueueOverflow(value);
             } else if (Item.BLOCK_STATUS_CODE.key.equals(key)) {
                 setBlockStatusCode(value);
             } else if (Item.DEBUG.key.equals(key)) {
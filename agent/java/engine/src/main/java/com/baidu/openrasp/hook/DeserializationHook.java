@@ -18,7 +18,7 @@ package com.baidu.openrasp.hook;
 
 import com.baidu.openrasp.HookHandler;
 import com.baidu.openrasp.plugin.checker.CheckParameter;
-import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.baidu.openrasp.plugin.checker.local.DeserializationChecker;
 import com.baidu.openrasp.plugin.js.engine.JSContextFactory;
 import javassist.CannotCompileException;
 import javassist.CtClass;
@@ -73,9 +73,9 @@ public class DeserializationHook extends AbstractClassHook {
     public static void checkDeserializationClass(ObjectStreamClass objectStreamClass) {
         if (objectStreamClass != null) {
             String clazz = objectStreamClass.getName();
-            if (clazz != null) {
-                JSContext cx = JSContextFactory.enterAndInitContext();
-                Scriptable params = cx.newObject(cx.getScope());
+            // 已经检测过的安全类直接放行，不再进入插件
+            if (clazz != null && !DeserializationChecker.isKnownClean(clazz)) {
+                Scriptable params = JSContextFactory.createObject();
                 params.put("clazz", params, clazz);
                 HookHandler.doCheck(CheckParameter.Type.DESERIALIZATION, params);
             }
@@ -18,7 +18,6 @@ package com.baidu.openrasp.hook;
 
 import com.baidu.openrasp.HookHandler;
 import com.baidu.openrasp.plugin.checker.CheckParameter;
-import com.baidu.openrasp.plugin.js.engine.JSContext;
 import com.baidu.openrasp.plugin.js.engine.JSContextFactory;
 import javassist.CannotCompileException;
 import javassist.CtClass;
@@ -71,8 +70,7 @@ public class JstlImportHook extends AbstractClassHook {
      */
     public static void checkJstlImport(String url) {
         if (url != null && !url.startsWith("/") && url.contains("://")) {
-            JSContext cx = JSContextFactory.enterAndInitContext();
-            Scriptable params = cx.newObject(cx.getScope());
+            Scriptable params = JSContextFactory.createObject();
             params.put("url", params, url);
             params.put("function", params, "jstl_import");
             HookHandler.doCheck(CheckParameter.Type.INCLUDE, params);
@@ -19,7 +19,7 @@ package com.baidu.openrasp.hook;
 import com.baidu.openrasp.HookHandler;
 import com.baidu.openrasp.config.Config;
 import com.baidu.openrasp.plugin.checker.CheckParameter;
-import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.baidu.openrasp.plugin.checker.local.OgnlChecker;
 import com.baidu.openrasp.plugin.js.engine.JSContextFactory;
 import javassist.CannotCompileException;
 import javassist.CtClass;
@@ -71,9 +71,10 @@ public class OgnlHook extends AbstractClassHook {
      */
     public static void checkOgnlExpression(String expression) {
         if (expression != null) {
-            if (expression.length() >= Config.getConfig().getOgnlMinLength()) {
-                JSContext cx = JSContextFactory.enterAndInitContext();
-                Scriptable params = cx.newObject(cx.getScope());
+            // 已经检测过的安全表达式直接放行，不再进入插件
+            if (expression.length() >= Config.getConfig().getOgnlMinLength()
+                    && !OgnlChecker.isKnownClean(expression)) {
+                Scriptable params = JSContextFactory.createObject();
                 params.put("expression", params, expression);
                 HookHandler.doCheck(CheckParameter.Type.OGNL, params);
             }
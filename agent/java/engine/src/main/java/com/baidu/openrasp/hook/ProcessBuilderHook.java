@@ -19,9 +19,11 @@ package com.baidu.openrasp.hook;
 import com.baidu.openrasp.HookHandler;
 import com.baidu.openrasp.config.Config;
 import com.baidu.openrasp.plugin.checker.CheckParameter;
-import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.baidu.openrasp.plugin.checker.DataRequirement;
 import com.baidu.openrasp.plugin.js.engine.JSContextFactory;
+import com.baidu.openrasp.plugin.js.engine.JSStackArray;
 import com.baidu.openrasp.tool.OSUtil;
+import com.baidu.openrasp.tool.StackFrames;
 import com.baidu.openrasp.tool.StackTrace;
 import javassist.CannotCompileException;
 import javassist.CtClass;
@@ -29,10 +31,6 @@ import javassist.NotFoundException;
 import org.mozilla.javascript.Scriptable;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
 
 /**
  * Created by zhuming01 on 5/17/17.
@@ -84,15 +82,25 @@ public class ProcessBuilderHook extends AbstractClassHook {
     }
 
     public static void checkCommand(byte[] command, byte[] args) {
-        LinkedList<String> commands = new LinkedList<String>();
+        // command 和 args 均以 \0 结尾，先统计参数个数，直接按偏移构造字符串
+        int count = command != null && command.length > 0 ? 1 : 0;
+        if (args != null) {
+            for (byte b : args) {
+                if (b == 0) {
+                    count++;
+                }
+            }
+        }
+        String[] commands = new String[count];
+        int index = 0;
         if (command != null && command.length > 0) {
-            commands.add(new String(command, 0, command.length - 1));
+            commands[index++] = new String(command, 0, command.length - 1);
         }
-        if (args != null && args.length > 0) {
+        if (args != null) {
             int position = 0;
             for (int i = 0; i < args.length; i++) {
                 if (args[i] == 0) {
-                    commands.add(new String(Arrays.copyOfRange(args, position, i)));
+                    commands[index++] = new String(args, position, i - position);
                     position = i + 1;
                 }
             }
@@ -100,29 +108,23 @@ public class ProcessBuilderHook extends AbstractClassHook {
         checkCommand(commands);
     }
 
-    public static void checkCommand(String[] commnad) {
-        LinkedList<String> commands = new LinkedList<String>();
-        Collections.addAll(commands, commnad);
-        checkCommand(commands);
-    }
-
     /**
      * 命令执行hook点
      *
      * @param command 命令列表
      */
-    public static void checkCommand(List<String> command) {
-        if (command != null && !command.isEmpty()) {
+    public static void checkCommand(String[] command) {
+        if (command != null && command.length > 0) {
             Scriptable params = null;
             try {
-                JSContext cx = JSContextFactory.enterAndInitContext();
-                params = cx.newObject(cx.getScope());
-                Scriptable commandArray = cx.newArray(cx.getScope(), command.toArray());
+                params = JSContextFactory.createObject();
+                Scriptable commandArray = JSContextFactory.createArray(command);
                 params.put("command", params, commandArray);
-                List<String> stackInfo = StackTrace.getStackTraceArray(Config.REFLECTION_STACK_START_INDEX,
-                        Config.getConfig().getPluginMaxStack());
-                Scriptable stackArray = cx.newArray(cx.getScope(), stackInfo.toArray());
-                params.put("stack", params, stackArray);
+                if (DataRequirement.isRequired(CheckParameter.Type.COMMAND, DataRequirement.Field.STACK)) {
+                    StackFrames stackFrames = StackTrace.getStackFrames(Config.REFLECTION_STACK_START_INDEX,
+                            Config.getConfig().getPluginMaxStack());
+                    JSStackArray.put(params, "stack", stackFrames);
+                }
             } catch (Throwable t) {
                 HookHandler.LOGGER.warn(t.getMessage());
             }
@@ -19,9 +19,10 @@ package com.baidu.openrasp.hook;
 
 import com.baidu.openrasp.HookHandler;
 import com.baidu.openrasp.config.Config;
-import com.baidu.openrasp.plugin.js.engine.JSContext;
 import com.baidu.openrasp.plugin.js.engine.JSContextFactory;
+import com.baidu.openrasp.plugin.js.engine.JSStackArray;
 import com.baidu.openrasp.tool.Reflection;
+import com.baidu.openrasp.tool.StackFrames;
 import com.baidu.openrasp.tool.StackTrace;
 import javassist.CannotCompileException;
 import javassist.CtClass;
@@ -29,7 +30,6 @@ import javassist.NotFoundException;
 import org.mozilla.javascript.Scriptable;
 
 import java.io.IOException;
-import java.util.List;
 
 
 /**
@@ -87,14 +87,12 @@ public class ReflectionHook extends AbstractClassHook {
                 String[] reflectMonitorMethod = Config.getConfig().getReflectionMonitorMethod();
                 for (String monitorMethod : reflectMonitorMethod) {
                     if (monitorMethod.equals(absoluteMethodName)) {
-                        JSContext cx = JSContextFactory.enterAndInitContext();
-                        params = cx.newObject(cx.getScope());
-                        List<String> stackInfo = StackTrace.getStackTraceArray(Config.REFLECTION_STACK_START_INDEX,
+                        params = JSContextFactory.createObject();
+                        StackFrames stackFrames = StackTrace.getStackFrames(Config.REFLECTION_STACK_START_INDEX,
                                 Config.getConfig().getPluginMaxStack());
-                        Scriptable array = cx.newArray(cx.getScope(), stackInfo.toArray());
                         params.put("clazz", params, reflectClassName);
                         params.put("method", params, reflectMethodName);
-                        params.put("stack", params, array);
+                        JSStackArray.put(params, "stack", stackFrames);
                         break;
                     }
                 }
@@ -19,7 +19,6 @@ package com.baidu.openrasp.hook;
 
 import com.baidu.openrasp.HookHandler;
 import com.baidu.openrasp.plugin.checker.CheckParameter;
-import com.baidu.openrasp.plugin.js.engine.JSContext;
 import com.baidu.openrasp.plugin.js.engine.JSContextFactory;
 import javassist.CannotCompileException;
 import javassist.CtClass;
@@ -77,8 +76,7 @@ public class SocketHook extends AbstractClassHook {
         try {
             if (address != null && address instanceof InetSocketAddress) {
                 String hostName = ((InetSocketAddress) address).getHostName();
-                JSContext cx = JSContextFactory.enterAndInitContext();
-                Scriptable params = cx.newObject(cx.getScope());
+                Scriptable params = JSContextFactory.createObject();
                 params.put("hostname", params, hostName);
                 HookHandler.doCheck(CheckParameter.Type.SSRF, params);
             }
@@ -18,7 +18,6 @@ package com.baidu.openrasp.hook;
 
 import com.baidu.openrasp.HookHandler;
 import com.baidu.openrasp.plugin.checker.CheckParameter;
-import com.baidu.openrasp.plugin.js.engine.JSContext;
 import com.baidu.openrasp.plugin.js.engine.JSContextFactory;
 import com.baidu.openrasp.tool.Reflection;
 import javassist.CannotCompileException;
@@ -84,8 +83,7 @@ public class WebDAVCopyResourceHook extends AbstractClassHook {
                 e.printStackTrace();
             }
             if (realPath != null) {
-                JSContext cx = JSContextFactory.enterAndInitContext();
-                Scriptable params = cx.newObject(cx.getScope());
+                Scriptable params = JSContextFactory.createObject();
                 params.put("source", params, realPath + source);
                 params.put("dest", params, realPath + dest);
                 HookHandler.doCheck(CheckParameter.Type.WEBDAV, params);
@@ -18,7 +18,6 @@ package com.baidu.openrasp.hook;
 
 import com.baidu.openrasp.HookHandler;
 import com.baidu.openrasp.plugin.checker.CheckParameter;
-import com.baidu.openrasp.plugin.js.engine.JSContext;
 import com.baidu.openrasp.plugin.js.engine.JSContextFactory;
 import javassist.CannotCompileException;
 import javassist.CtClass;
@@ -96,8 +95,7 @@ public class XXEHook extends AbstractClassHook {
     public static void checkXXE(String expandedSystemId) {
         if (expandedSystemId != null && !XXEHook.getLocalExpandedSystemIds().contains(expandedSystemId)) {
             XXEHook.getLocalExpandedSystemIds().add(expandedSystemId);
-            JSContext cx = JSContextFactory.enterAndInitContext();
-            Scriptable params = cx.newObject(cx.getScope());
+            Scriptable params = JSContextFactory.createObject();
             params.put("entity", params, expandedSystemId);
             HookHandler.doCheck(CheckParameter.Type.XXE, params);
         }
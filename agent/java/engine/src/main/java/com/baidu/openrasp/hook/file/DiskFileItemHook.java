@@ -19,7 +19,6 @@ package com.baidu.openrasp.hook.file;
 import com.baidu.openrasp.HookHandler;
 import com.baidu.openrasp.hook.AbstractClassHook;
 import com.baidu.openrasp.plugin.checker.CheckParameter;
-import com.baidu.openrasp.plugin.js.engine.JSContext;
 import com.baidu.openrasp.plugin.js.engine.JSContextFactory;
 import javassist.CannotCompileException;
 import javassist.CtClass;
@@ -71,8 +70,7 @@ public class DiskFileItemHook extends AbstractClassHook {
      */
     public static void checkFileUpload(String name, byte[] content) {
         if (name != null && content != null) {
-            JSContext cx = JSContextFactory.enterAndInitContext();
-            Scriptable params = cx.newObject(cx.getScope());
+            Scriptable params = JSContextFactory.createObject();
             params.put("filename", params, name);
             try {
                 if (content.length > 4 * 1024) {
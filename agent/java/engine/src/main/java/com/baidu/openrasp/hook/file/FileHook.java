@@ -20,8 +20,11 @@ import com.baidu.openrasp.HookHandler;
 import com.baidu.openrasp.config.Config;
 import com.baidu.openrasp.hook.AbstractClassHook;
 import com.baidu.openrasp.plugin.checker.CheckParameter;
-import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.baidu.openrasp.plugin.checker.DataRequirement;
 import com.baidu.openrasp.plugin.js.engine.JSContextFactory;
+import com.baidu.openrasp.plugin.js.engine.JSStackArray;
+import com.baidu.openrasp.tool.FileUtil;
+import com.baidu.openrasp.tool.StackFrames;
 import com.baidu.openrasp.tool.StackTrace;
 import javassist.CannotCompileException;
 import javassist.CtClass;
@@ -30,7 +33,6 @@ import org.mozilla.javascript.Scriptable;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
 
 /**
  * Created by zhuming01 on 5/16/17.
@@ -77,17 +79,15 @@ public class FileHook extends AbstractClassHook {
         if (file != null) {
             Scriptable params = null;
             try {
-                JSContext cx = JSContextFactory.enterAndInitContext();
-                params = cx.newObject(cx.getScope());
+                params = JSContextFactory.createObject();
                 params.put("path", params, file.getPath());
-                List<String> stackInfo = StackTrace.getStackTraceArray(Config.REFLECTION_STACK_START_INDEX,
-                        Config.getConfig().getPluginMaxStack());
-                Scriptable stackArray = cx.newArray(cx.getScope(), stackInfo.toArray());
-                params.put("stack", params, stackArray);
-                try {
-                    params.put("realpath", params, file.getCanonicalPath());
-                } catch (IOException e) {
-                    params.put("realpath", params, file.getAbsolutePath());
+                if (DataRequirement.isRequired(CheckParameter.Type.DIRECTORY, DataRequirement.Field.STACK)) {
+                    StackFrames stackFrames = StackTrace.getStackFrames(Config.REFLECTION_STACK_START_INDEX,
+                            Config.getConfig().getPluginMaxStack());
+                    JSStackArray.put(params, "stack", stackFrames);
+                }
+                if (DataRequirement.isRequired(CheckParameter.Type.DIRECTORY, DataRequirement.Field.REALPATH)) {
+                    params.put("realpath", params, FileUtil.getRealPath(file));
                 }
             } catch (Throwable t) {
                 HookHandler.LOGGER.warn(t.getMessage());
@@ -19,7 +19,7 @@ package com.baidu.openrasp.hook.file;
 import com.baidu.openrasp.HookHandler;
 import com.baidu.openrasp.hook.AbstractClassHook;
 import com.baidu.openrasp.plugin.checker.CheckParameter;
-import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.baidu.openrasp.plugin.checker.DataRequirement;
 import com.baidu.openrasp.plugin.js.engine.JSContextFactory;
 import com.baidu.openrasp.tool.FileUtil;
 import javassist.CannotCompileException;
@@ -73,17 +73,15 @@ public class FileInputStreamHook extends AbstractClassHook {
      */
     public static void checkReadFile(File file) {
         if (file != null) {
-            JSContext cx = JSContextFactory.enterAndInitContext();
-            Scriptable params = cx.newObject(cx.getScope());
+            // 构造函数已经成功打开文件，文件一定存在，不需要再调用 exists
+            String realPath = FileUtil.getRealPath(file);
+            if (realPath.endsWith(".class")) {
+                return;
+            }
+            Scriptable params = JSContextFactory.createObject();
             params.put("path", params, file.getPath());
-            try {
-                String path = file.getCanonicalPath();
-                if (path.endsWith(".class") || !file.exists()) {
-                    return;
-                }
-                params.put("realpath", params, FileUtil.getRealPath(file));
-            } catch (IOException e) {
-                e.printStackTrace();
+            if (DataRequirement.isRequired(CheckParameter.Type.READFILE, DataRequirement.Field.REALPATH)) {
+                params.put("realpath", params, realPath);
             }
 
             HookHandler.doCheck(CheckParameter.Type.READFILE, params);
@@ -19,7 +19,7 @@ package com.baidu.openrasp.hook.file;
 import com.baidu.openrasp.HookHandler;
 import com.baidu.openrasp.hook.AbstractClassHook;
 import com.baidu.openrasp.plugin.checker.CheckParameter;
-import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.baidu.openrasp.plugin.checker.DataRequirement;
 import com.baidu.openrasp.plugin.js.engine.JSContextFactory;
 import com.baidu.openrasp.tool.FileUtil;
 import javassist.CannotCompileException;
@@ -75,10 +75,11 @@ public class FileOutputStreamHook extends AbstractClassHook {
      */
     public static void checkWriteFile(File file) {
         if (file != null) {
-            JSContext cx = JSContextFactory.enterAndInitContext();
-            Scriptable params = cx.newObject(cx.getScope());
+            Scriptable params = JSContextFactory.createObject();
             params.put("name", params, file.getName());
-            params.put("realpath", params, FileUtil.getRealPath(file));
+            if (DataRequirement.isRequired(CheckParameter.Type.WRITEFILE, DataRequirement.Field.REALPATH)) {
+                params.put("realpath", params, FileUtil.getRealPath(file));
+            }
             params.put("content", params, "");
             HookHandler.doCheck(CheckParameter.Type.WRITEFILE, params);
         }
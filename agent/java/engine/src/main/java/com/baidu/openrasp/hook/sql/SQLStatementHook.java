@@ -18,7 +18,7 @@ package com.baidu.openrasp.hook.sql;
 
 import com.baidu.openrasp.HookHandler;
 import com.baidu.openrasp.plugin.checker.CheckParameter;
-import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.baidu.openrasp.plugin.checker.DataRequirement;
 import com.baidu.openrasp.plugin.js.engine.JSContextFactory;
 import com.baidu.openrasp.tool.Reflection;
 import javassist.CannotCompileException;
@@ -159,11 +159,12 @@ public class SQLStatementHook extends AbstractSqlHook {
      */
     public static void checkSQL(String server, Object statement, String stmt) {
         if (stmt != null && !stmt.isEmpty()) {
-            JSContext cx = JSContextFactory.enterAndInitContext();
-            Scriptable params = cx.newObject(cx.getScope());
-            String connectionId = getSqlConnectionId(server, statement);
-            if (connectionId != null) {
-                params.put(server + "_connection_id", params, connectionId);
+            Scriptable params = JSContextFactory.createObject();
+            if (DataRequirement.isRequired(CheckParameter.Type.SQL, DataRequirement.Field.CONNECTION_ID)) {
+                String connectionId = getSqlConnectionId(server, statement);
+                if (connectionId != null) {
+                    params.put(server + "_connection_id", params, connectionId);
+                }
             }
             params.put("server", params, server);
             params.put("query", params, stmt);
@@ -19,7 +19,6 @@ package com.baidu.openrasp.hook.ssrf;
 import com.baidu.openrasp.HookHandler;
 import com.baidu.openrasp.hook.AbstractClassHook;
 import com.baidu.openrasp.plugin.checker.CheckParameter;
-import com.baidu.openrasp.plugin.js.engine.JSContext;
 import com.baidu.openrasp.plugin.js.engine.JSContextFactory;
 import org.mozilla.javascript.Scriptable;
 
@@ -52,8 +51,7 @@ public abstract class AbstractSSRFHook extends AbstractClassHook {
      * @param function http 请求的方式
      */
     protected static void checkHttpUrl(String url, String hostName, String function) {
-        JSContext cx = JSContextFactory.enterAndInitContext();
-        Scriptable params = cx.newObject(cx.getScope());
+        Scriptable params = JSContextFactory.createObject();
         params.put("url", params, url);
         params.put("hostname", params, hostName);
         params.put("function", params, function);
@@ -68,7 +66,7 @@ public abstract class AbstractSSRFHook extends AbstractClassHook {
         } catch (Throwable t) {
             // ignore
         }
-        Scriptable array = cx.newArray(cx.getScope(), ip.toArray());
+        Scriptable array = JSContextFactory.createArray(ip.toArray());
         params.put("ip", params, array);
         HookHandler.doCheck(CheckParameter.Type.SSRF, params);
     }
@@ -100,7 +100,7 @@ public class AlarmHttpAppender extends AppenderSkeleton {
 
     protected synchronized void sendEventsAsync() {
         if (!eventCache.isEmpty()) {
-            String attackInfos = eventCache.getJsonBody();
+            byte[] attackInfos = eventCache.getJsonBody();
             eventCache.clear();
             httpClient.request(url, attackInfos, connectionTimeout, readTimeout);
         }
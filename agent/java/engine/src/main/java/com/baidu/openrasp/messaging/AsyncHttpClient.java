@@ -36,11 +36,11 @@ public class AsyncHttpClient extends HttpClient {
     }
 
     @Override
-    public void request(final String requestUrl, final String attackInfoJson, final int connectionTimeout, final int readTimeout) {
+    public void request(final String requestUrl, final byte[] content, final int connectionTimeout, final int readTimeout) {
         threadPool.execute(new Runnable() {
             @Override
             public void run() {
-                AsyncHttpClient.super.request(requestUrl, attackInfoJson, connectionTimeout, readTimeout);
+                AsyncHttpClient.super.request(requestUrl, content, connectionTimeout, readTimeout);
             }
         });
     }
@@ -16,9 +16,10 @@
 
 package com.baidu.openrasp.messaging;
 
+import com.baidu.openrasp.plugin.info.EventInfo;
 import org.apache.log4j.spi.LoggingEvent;
 
-import java.util.Iterator;
+import java.io.UnsupportedEncodingException;
 import java.util.LinkedList;
 
 /**
@@ -27,7 +28,8 @@ import java.util.LinkedList;
 public class EventCache {
 
     static int DEFAULT_MAX_SIZE = 256;
-    private static int DEFAULT_SIZE_PER_EVENT = 512;
+    private static final byte[] DATA_PREFIX = "{\"data\":[".getBytes();
+    private static final byte[] DATA_SUFFIX = "]}".getBytes();
 
     private int size;
     private LinkedList<LoggingEvent> list = null;
@@ -47,19 +49,48 @@ public class EventCache {
         }
     }
 
-    public String getJsonBody() {
+    /**
+     * 拼接缓存的报警，报警直接使用序列化好的 UTF-8 数据，不再转换为字符串
+     *
+     * @return UTF-8 编码的请求体
+     */
+    public byte[] getJsonBody() {
         synchronized (list) {
-            StringBuilder sb = new StringBuilder(list.size() * DEFAULT_SIZE_PER_EVENT);
-            sb.append("{\"data\":[");
-            Iterator<LoggingEvent> iterator = list.iterator();
-            while (iterator.hasNext()) {
-                sb.append(iterator.next().getMessage().toString());
-                sb.append(",");
+            byte[][] events = new byte[list.size()][];
+            int length = DATA_PREFIX.length + DATA_SUFFIX.length + Math.max(events.length - 1, 0);
+            int index = 0;
+            for (LoggingEvent event : list) {
+                events[index] = toJsonBytes(event.getMessage());
+                length += events[index].length;
+                index++;
             }
-            sb.deleteCharAt(sb.length() - 1);
-            sb.append("]}");
-            return sb.toString();
+            byte[] body = new byte[length];
+            int offset = append(body, 0, DATA_PREFIX);
+            for (int i = 0; i < events.length; i++) {
+                if (i > 0) {
+                    body[offset++] = ',';
+                }
+                offset = append(body, offset, events[i]);
+            }
+            append(body, offset, DATA_SUFFIX);
+            return body;
+        }
+    }
+
+    private static byte[] toJsonBytes(Object message) {
+        if (message instanceof EventInfo) {
+            return ((EventInfo) message).toJsonBytes();
         }
+        try {
+            return String.valueOf(message).getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int append(byte[] target, int offset, byte[] bytes) {
+        System.arraycopy(bytes, 0, target, offset, bytes.length);
+        return offset + bytes.length;
     }
 
     public boolean isEmpty() {
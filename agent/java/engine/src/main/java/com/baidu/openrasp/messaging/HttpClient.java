@@ -40,7 +40,7 @@ public class HttpClient {
      */
     public HttpClient() {}
 
-    protected void request(String requestUrl, String attackInfoJson, int connectionTimeout, int readTimeout) {
+    protected void request(String requestUrl, byte[] content, int connectionTimeout, int readTimeout) {
         HttpURLConnection httpURLConnection = null;
         try {
             URL url = new URL(requestUrl);
@@ -51,7 +51,6 @@ public class HttpClient {
             httpURLConnection.setRequestMethod(REQUEST_METHOD);
             httpURLConnection.setDoInput(true);
             httpURLConnection.setDoOutput(true);
-            byte[] content = attackInfoJson.getBytes();
             httpURLConnection.setRequestProperty(CONTENT_TYPE, MEDIA_TYPE);
             httpURLConnection.setRequestProperty(CONNECTION, KEEP_ALIVE);
             httpURLConnection.setRequestProperty(CONTENT_LENGTH, Long.toString(content.length));
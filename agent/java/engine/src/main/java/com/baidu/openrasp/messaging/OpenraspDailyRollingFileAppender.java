@@ -17,15 +17,20 @@
 
 package com.baidu.openrasp.messaging;
 
+import com.baidu.openrasp.plugin.info.EventInfo;
 import org.apache.log4j.FileAppender;
 import org.apache.log4j.Layout;
+import org.apache.log4j.PatternLayout;
 import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.ErrorCode;
 import org.apache.log4j.spi.LoggingEvent;
 
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -86,6 +91,13 @@ public class OpenraspDailyRollingFileAppender extends FileAppender {
     // The gmtTimeZone is used only in computeCheckPeriod() method.
     static final TimeZone gmtTimeZone = TimeZone.getTimeZone("GMT");
 
+    static final byte[] LINE_SEPARATOR = Layout.LINE_SEP.getBytes();
+
+    /**
+     * 日志文件的字节流，报警直接以 UTF-8 字节写入，不经过 layout 和 Writer
+     */
+    private OutputStream outputStream;
+
 
     /**
      The default constructor does nothing. */
@@ -307,7 +319,48 @@ public class OpenraspDailyRollingFileAppender extends FileAppender {
                 LogLog.error("rollOver() failed.", ioe);
             }
         }
-        super.subAppend(event);
+        if (!appendJsonBytes(event)) {
+            super.subAppend(event);
+        }
+    }
+
+    @Override
+    protected OutputStreamWriter createWriter(OutputStream os) {
+        outputStream = os;
+        return super.createWriter(os);
+    }
+
+    @Override
+    protected void reset() {
+        super.reset();
+        outputStream = null;
+    }
+
+    /**
+     * 报警已经序列化为 UTF-8 字节，layout 只输出消息且文件编码为 UTF-8 时直接写入文件
+     *
+     * @return 是否已经写入
+     */
+    private boolean appendJsonBytes(LoggingEvent event) {
+        Object message = event.getMessage();
+        if (!(message instanceof EventInfo) || outputStream == null || bufferedIO
+                || !(layout instanceof PatternLayout)
+                || !"%m%n".equals(((PatternLayout) layout).getConversionPattern())
+                || !("UTF-8".equalsIgnoreCase(encoding) || "UTF8".equalsIgnoreCase(encoding))) {
+            return false;
+        }
+        try {
+            // 先输出 Writer 中缓存的字符，保证日志顺序
+            qw.flush();
+            outputStream.write(((EventInfo) message).toJsonBytes());
+            outputStream.write(LINE_SEPARATOR);
+            if (shouldFlush(event)) {
+                outputStream.flush();
+            }
+        } catch (IOException e) {
+            errorHandler.error("Failed to write alarm to [" + name + "].", e, ErrorCode.WRITE_FAILURE);
+        }
+        return true;
     }
 }
 
@@ -19,6 +19,7 @@ package com.baidu.openrasp.plugin.checker;
 import com.baidu.openrasp.plugin.event.CheckEventDispatcher;
 import com.baidu.openrasp.plugin.event.CheckEventListener;
 import com.baidu.openrasp.plugin.info.EventInfo;
+import com.baidu.openrasp.request.AbstractRequest;
 
 import java.util.List;
 
@@ -42,7 +43,22 @@ public abstract class AbstractChecker implements Checker {
 
     @Override
     public boolean check(CheckParameter checkParameter) {
+        AbstractRequest request = checkParameter.getRequest();
+        String verdictKey = request != null ? Fingerprint.computeMemoKey(checkParameter) : null;
+        if (verdictKey != null) {
+            Boolean verdict = request.getVerdictMemo().get(verdictKey);
+            if (verdict != null) {
+                return verdict;
+            }
+        }
+        long fingerprint = Allowlist.fingerprint(checkParameter);
+        if (fingerprint != 0 && Allowlist.isKnownGood(checkParameter.getType(), fingerprint)) {
+            return false;
+        }
         List<EventInfo> eventInfos = checkParam(checkParameter);
+        if (fingerprint != 0) {
+            Allowlist.learn(checkParameter, fingerprint, eventInfos);
+        }
         boolean isBlock = false;
         if (eventInfos != null) {
             for (EventInfo info : eventInfos) {
@@ -53,6 +69,9 @@ public abstract class AbstractChecker implements Checker {
             }
         }
         isBlock = isBlock && canBlock;
+        if (verdictKey != null && !checkParameter.isJsCheckIncomplete()) {
+            request.getVerdictMemo().put(verdictKey, isBlock);
+        }
         return isBlock;
     }
 
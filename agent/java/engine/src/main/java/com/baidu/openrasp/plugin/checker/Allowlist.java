@@ -0,0 +1,323 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.checker;
+
+import com.baidu.openrasp.config.Config;
+import com.baidu.openrasp.plugin.info.EventInfo;
+import com.baidu.openrasp.tool.LongHashSet;
+import com.baidu.openrasp.tool.StripedCounter;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 白名单学习
+ * <p>
+ * allowlist.mode 为 learn 时，把检测通过的参数归一化后计算 64 位指纹，按检测类型记录并定期保存到
+ * allowlist 目录下的 local.dat；为 enforce 时，指纹已知的参数直接放行，只有新出现的参数才执行完整检测。
+ * 启动和切换到 enforce 时加载 allowlist 目录下的所有 .dat 文件，把其他节点的 local.dat 复制到该目录即可导入
+ */
+public class Allowlist {
+    public static final String MODE_OFF = "off";
+    public static final String MODE_LEARN = "learn";
+    public static final String MODE_ENFORCE = "enforce";
+
+    private static final Logger LOGGER = Logger.getLogger(Allowlist.class.getName());
+    private static final String FILE_SUFFIX = ".dat";
+    private static final String LOCAL_FILE_NAME = "local" + FILE_SUFFIX;
+    private static final int FILE_MAGIC = 0x5241534c;
+    private static final int FILE_VERSION = 1;
+    private static final long SAVE_INTERVAL_MILLIS = 60 * 1000;
+    private static final int TYPE_COUNT = CheckParameter.Type.values().length;
+
+    private static final StripedCounter[] hits = new StripedCounter[TYPE_COUNT];
+    private static final StripedCounter[] misses = new StripedCounter[TYPE_COUNT];
+    private static final List<ConcurrentHashMap<Long, Boolean>> learned =
+            new ArrayList<ConcurrentHashMap<Long, Boolean>>(TYPE_COUNT);
+
+    static {
+        for (int i = 0; i < TYPE_COUNT; i++) {
+            hits[i] = new StripedCounter();
+            misses[i] = new StripedCounter();
+            learned.add(new ConcurrentHashMap<Long, Boolean>());
+        }
+    }
+
+    private static volatile LongHashSet[] knownSets = emptySets();
+    private static volatile String currentMode = MODE_OFF;
+    private static volatile boolean dirty = false;
+    private static Timer timer = null;
+
+    /**
+     * 加载已有的白名单并启动定期保存
+     */
+    public static synchronized void init() {
+        knownSets = load();
+        if (timer == null) {
+            timer = new Timer("openrasp-allowlist", true);
+            timer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    if (dirty) {
+                        save();
+                    }
+                }
+            }, SAVE_INTERVAL_MILLIS, SAVE_INTERVAL_MILLIS);
+        }
+    }
+
+    /**
+     * 停止定期保存，并保存尚未写入文件的学习结果
+     */
+    public static synchronized void release() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+        if (dirty) {
+            save();
+        }
+    }
+
+    /**
+     * 计算检测参数的指纹
+     *
+     * @param parameter 检测参数
+     * @return 指纹，白名单关闭或检测类型不支持时返回 0
+     * @see Fingerprint#compute(CheckParameter, boolean)
+     */
+    public static long fingerprint(CheckParameter parameter) {
+        String mode = Config.getConfig().getAllowlistMode();
+        if (!mode.equals(currentMode)) {
+            onModeChange(mode);
+        }
+        if (MODE_OFF.equals(mode)) {
+            return 0;
+        }
+        return Fingerprint.compute(parameter, true);
+    }
+
+    /**
+     * enforce 模式下指纹是否已知
+     *
+     * @param type        检测类型
+     * @param fingerprint {@link #fingerprint(CheckParameter)} 的结果
+     * @return 已知时返回 true，可以跳过检测
+     */
+    public static boolean isKnownGood(CheckParameter.Type type, long fingerprint) {
+        if (!MODE_ENFORCE.equals(currentMode)) {
+            return false;
+        }
+        if (knownSets[type.ordinal()].contains(fingerprint)) {
+            hits[type.ordinal()].increment();
+            return true;
+        }
+        misses[type.ordinal()].increment();
+        return false;
+    }
+
+    /**
+     * learn 模式下记录检测结果，只记录没有报警且 js 插件全部执行完成的参数
+     *
+     * @param parameter   检测参数
+     * @param fingerprint {@link #fingerprint(CheckParameter)} 的结果
+     * @param result      检测结果
+     */
+    public static void learn(CheckParameter parameter, long fingerprint, List<EventInfo> result) {
+        if (!MODE_LEARN.equals(currentMode) || (result != null && !result.isEmpty())
+                || parameter.isJsCheckIncomplete()) {
+            return;
+        }
+        int index = parameter.getType().ordinal();
+        ConcurrentHashMap<Long, Boolean> typeLearned = learned.get(index);
+        if (knownSets[index].contains(fingerprint) || typeLearned.containsKey(fingerprint)) {
+            return;
+        }
+        if (knownSets[index].size() + typeLearned.size() >= Config.getConfig().getAllowlistMaxSize()) {
+            return;
+        }
+        if (typeLearned.put(fingerprint, Boolean.TRUE) == null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * 输出白名单大小和命中率
+     *
+     * @return 统计信息，白名单关闭时返回空字符串
+     */
+    public static String report() {
+        if (MODE_OFF.equals(currentMode)) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder("\nallowlist: mode=").append(currentMode);
+        LongHashSet[] sets = knownSets;
+        for (CheckParameter.Type type : Fingerprint.getSupportedTypes()) {
+            int index = type.ordinal();
+            long hit = hits[index].sum();
+            long miss = misses[index].sum();
+            long total = hit + miss;
+            builder.append("\n").append(type.getName()).append(": known=").append(sets[index].size())
+                    .append(" learned=").append(learned.get(index).size())
+                    .append(" hit=").append(hit).append(" miss=").append(miss)
+                    .append(" hit_rate=").append(total > 0 ? hit * 100 / total : 0).append("%");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 切换到 enforce 时重新加载白名单文件，并合并本进程学习到的指纹
+     */
+    private static synchronized void onModeChange(String mode) {
+        if (mode.equals(currentMode)) {
+            return;
+        }
+        if (MODE_ENFORCE.equals(mode)) {
+            if (dirty) {
+                save();
+            }
+            knownSets = load();
+        }
+        currentMode = mode;
+        LOGGER.info("allowlist mode changed to " + mode);
+    }
+
+    private static LongHashSet[] emptySets() {
+        LongHashSet[] sets = new LongHashSet[TYPE_COUNT];
+        for (int i = 0; i < TYPE_COUNT; i++) {
+            sets[i] = new LongHashSet();
+        }
+        return sets;
+    }
+
+    /**
+     * 加载白名单目录下的所有指纹文件，并合并本进程学习到的指纹
+     */
+    private static LongHashSet[] load() {
+        LongHashSet[] sets = emptySets();
+        File[] files = new File(Config.getConfig().getAllowlistDirectory()).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile() && file.getName().endsWith(FILE_SUFFIX)) {
+                    try {
+                        readFile(file, sets);
+                    } catch (IOException e) {
+                        LOGGER.warn("load allowlist file " + file.getAbsolutePath() + " failed: " + e.getMessage());
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < TYPE_COUNT; i++) {
+            for (Long fingerprint : learned.get(i).keySet()) {
+                sets[i].add(fingerprint);
+            }
+        }
+        return sets;
+    }
+
+    /**
+     * 把已知指纹和学习到的指纹写入 local.dat，先写临时文件再重命名，避免其他节点读到不完整的文件
+     */
+    private static synchronized void save() {
+        dirty = false;
+        File directory = new File(Config.getConfig().getAllowlistDirectory());
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            LOGGER.warn("create allowlist directory " + directory.getAbsolutePath() + " failed");
+            return;
+        }
+        File tmp = new File(directory, LOCAL_FILE_NAME + ".tmp");
+        File target = new File(directory, LOCAL_FILE_NAME);
+        LongHashSet[] sets = knownSets;
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeInt(Fingerprint.getSupportedTypes().size());
+            for (CheckParameter.Type type : Fingerprint.getSupportedTypes()) {
+                LongHashSet merged = new LongHashSet(sets[type.ordinal()].size());
+                for (long fingerprint : sets[type.ordinal()].toArray()) {
+                    merged.add(fingerprint);
+                }
+                for (Long fingerprint : learned.get(type.ordinal()).keySet()) {
+                    merged.add(fingerprint);
+                }
+                out.writeUTF(type.getName());
+                out.writeInt(merged.size());
+                for (long fingerprint : merged.toArray()) {
+                    out.writeLong(fingerprint);
+                }
+            }
+            out.close();
+            out = null;
+            if (!tmp.renameTo(target) && !(target.delete() && tmp.renameTo(target))) {
+                throw new IOException("rename " + tmp.getAbsolutePath() + " failed");
+            }
+        } catch (IOException e) {
+            dirty = true;
+            LOGGER.warn("save allowlist file " + target.getAbsolutePath() + " failed: " + e.getMessage());
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private static void readFile(File file, LongHashSet[] sets) throws IOException {
+        Map<String, CheckParameter.Type> types = new HashMap<String, CheckParameter.Type>();
+        for (CheckParameter.Type type : Fingerprint.getSupportedTypes()) {
+            types.put(type.getName(), type);
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                throw new IOException("unknown file format");
+            }
+            int typeCount = in.readInt();
+            for (int i = 0; i < typeCount; i++) {
+                CheckParameter.Type type = types.get(in.readUTF());
+                int count = in.readInt();
+                for (int j = 0; j < count; j++) {
+                    long fingerprint = in.readLong();
+                    if (type != null && fingerprint != 0) {
+                        sets[type.ordinal()].add(fingerprint);
+                    }
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
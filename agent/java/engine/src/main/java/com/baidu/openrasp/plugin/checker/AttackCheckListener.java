@@ -16,6 +16,7 @@
 
 package com.baidu.openrasp.plugin.checker;
 
+import com.baidu.openrasp.plugin.event.AlarmPipeline;
 import com.baidu.openrasp.plugin.event.CheckEventListener;
 import com.baidu.openrasp.plugin.info.AttackInfo;
 import com.baidu.openrasp.plugin.info.EventInfo;
@@ -29,7 +30,7 @@ public class AttackCheckListener implements CheckEventListener {
     @Override
     public void onCheckUpdate(EventInfo info) {
         if (info instanceof AttackInfo) {
-            Checker.ATTACK_ALARM_LOGGER.info(info);
+            AlarmPipeline.submit(Checker.ATTACK_ALARM_LOGGER, info);
         }
     }
 
@@ -18,9 +18,18 @@ package com.baidu.openrasp.plugin.checker;
 
 import com.baidu.openrasp.HookHandler;
 import com.baidu.openrasp.plugin.checker.js.JsChecker;
+import com.baidu.openrasp.plugin.checker.local.CommandChecker;
+import com.baidu.openrasp.plugin.checker.local.DeserializationChecker;
+import com.baidu.openrasp.plugin.checker.local.DirectoryChecker;
+import com.baidu.openrasp.plugin.checker.local.IncludeChecker;
+import com.baidu.openrasp.plugin.checker.local.OgnlChecker;
+import com.baidu.openrasp.plugin.checker.local.ReadFileChecker;
 import com.baidu.openrasp.plugin.checker.local.SSRFChecker;
 import com.baidu.openrasp.plugin.checker.local.SqlResultChecker;
 import com.baidu.openrasp.plugin.checker.local.SqlStatementChecker;
+import com.baidu.openrasp.plugin.checker.local.WebDAVChecker;
+import com.baidu.openrasp.plugin.checker.local.WriteFileChecker;
+import com.baidu.openrasp.plugin.checker.local.XXEChecker;
 import com.baidu.openrasp.plugin.checker.policy.SqlConnectionChecker;
 import com.baidu.openrasp.plugin.checker.policy.TomcatSecurityChecker;
 import com.baidu.openrasp.request.AbstractRequest;
@@ -40,19 +49,20 @@ public class CheckParameter {
     public enum Type {
         // js插件检测
         SQL("sql", new SqlStatementChecker()),
-        COMMAND("command", new JsChecker()),
-        DIRECTORY("directory", new JsChecker()),
+        COMMAND("command", new CommandChecker()),
+        DIRECTORY("directory", new DirectoryChecker()),
         REQUEST("request", new JsChecker()),
-        READFILE("readFile", new JsChecker()),
-        WRITEFILE("writeFile", new JsChecker()),
+        READFILE("readFile", new ReadFileChecker()),
+        WRITEFILE("writeFile", new WriteFileChecker()),
         FILEUPLOAD("fileUpload", new JsChecker()),
-        XXE("xxe", new JsChecker()),
-        OGNL("ognl", new JsChecker()),
-        DESERIALIZATION("deserialization", new JsChecker()),
+        XXE("xxe", new XXEChecker()),
+        OGNL("ognl", new OgnlChecker()),
+        DESERIALIZATION("deserialization", new DeserializationChecker()),
 //        REFLECTION("reflection", new JsChecker()),
-        WEBDAV("webdav", new JsChecker()),
-        INCLUDE("include", new JsChecker()),
+        WEBDAV("webdav", new WebDAVChecker()),
+        INCLUDE("include", new IncludeChecker()),
         SSRF("ssrf", new SSRFChecker()),
+        REQUEST_BODY("requestBody", new JsChecker()),
 
         // java本地检测
         SQL_SLOW_QUERY("sqlSlowQuery", new SqlResultChecker(false)),
@@ -87,7 +97,7 @@ public class CheckParameter {
     private final Object params;
     private final AbstractRequest request;
     private final long createTime;
-
+    private volatile boolean jsCheckIncomplete = false;
 
     public CheckParameter(Type type, Object params) {
         this.type = type;
@@ -116,6 +126,17 @@ public class CheckParameter {
         return createTime;
     }
 
+    /**
+     * js 插件是否有被跳过、超时或者抛出异常的情况，此时检测结果不能被缓存
+     */
+    public boolean isJsCheckIncomplete() {
+        return jsCheckIncomplete;
+    }
+
+    public void setJsCheckIncomplete(boolean jsCheckIncomplete) {
+        this.jsCheckIncomplete = jsCheckIncomplete;
+    }
+
     @Override
     public String toString() {
         Map<String, Object> obj = new HashMap<String, Object>();
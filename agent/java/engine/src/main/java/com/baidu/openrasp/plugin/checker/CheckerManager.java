@@ -17,6 +17,7 @@
 package com.baidu.openrasp.plugin.checker;
 
 import com.baidu.openrasp.plugin.checker.CheckParameter.Type;
+import com.baidu.openrasp.plugin.event.AlarmPipeline;
 
 import java.util.EnumMap;
 
@@ -33,9 +34,13 @@ public class CheckerManager {
         for (Type type : Type.values()) {
             checkers.put(type, type.checker);
         }
+        Allowlist.init();
+        AlarmPipeline.init();
     }
 
     public synchronized static void release() {
+        AlarmPipeline.release();
+        Allowlist.release();
         checkers = null;
     }
 
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.checker;
+
+/**
+ * 检测点数据需求清单
+ * <p>
+ * 调用栈、realpath、数据库连接 ID 和请求 body 的采集开销较大，hook 点只在有检测逻辑需要时才采集；
+ * 需求来自三方面：java 检测逻辑（固定）、js 插件（plugin.register 的 needs 选项）和规则文件（条件引用的字段），
+ * 插件或规则重新加载后重新计算。js 插件注册检测函数时没有声明 needs 的，认为需要全部字段
+ */
+public class DataRequirement {
+
+    /**
+     * 可以按需采集的字段
+     */
+    public enum Field {
+        STACK("stack"),
+        REALPATH("realpath"),
+        CONNECTION_ID("connection_id"),
+        BODY("body");
+
+        private final String name;
+        private final int mask;
+
+        Field(String name) {
+            this.name = name;
+            this.mask = 1 << ordinal();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMask() {
+            return mask;
+        }
+
+        /**
+         * 根据检测参数名查找字段，数据库连接 ID 的参数名带有数据库类型前缀，如 mysql_connection_id
+         *
+         * @param name 字段名或检测参数名
+         * @return 字段，不是可按需采集的字段时返回 null
+         */
+        public static Field fromName(String name) {
+            if (name == null) {
+                return null;
+            }
+            for (Field field : values()) {
+                if (field.name.equals(name)) {
+                    return field;
+                }
+            }
+            return name.endsWith("_" + CONNECTION_ID.name) ? CONNECTION_ID : null;
+        }
+    }
+
+    public static final int ALL = (1 << Field.values().length) - 1;
+
+    private static final int[] NATIVE_MASKS = new int[CheckParameter.Type.values().length];
+
+    static {
+        // java 检测逻辑使用的字段
+        NATIVE_MASKS[CheckParameter.Type.SQL.ordinal()] = Field.BODY.mask;
+        NATIVE_MASKS[CheckParameter.Type.COMMAND.ordinal()] = Field.STACK.mask;
+        NATIVE_MASKS[CheckParameter.Type.DIRECTORY.ordinal()] = Field.REALPATH.mask;
+        NATIVE_MASKS[CheckParameter.Type.READFILE.ordinal()] = Field.REALPATH.mask;
+        NATIVE_MASKS[CheckParameter.Type.WRITEFILE.ordinal()] = Field.REALPATH.mask;
+        NATIVE_MASKS[CheckParameter.Type.INCLUDE.ordinal()] = Field.REALPATH.mask;
+        NATIVE_MASKS[CheckParameter.Type.SSRF.ordinal()] = Field.BODY.mask;
+    }
+
+    private static int[] pluginMasks = null;
+    private static int[] ruleMasks = null;
+    private static volatile int[] masks = merge(null, null);
+    private static volatile boolean bodyRequired = true;
+
+    /**
+     * 检测点是否需要采集该字段
+     *
+     * @param type  检测类型
+     * @param field 字段
+     * @return 需要采集时返回 true
+     */
+    public static boolean isRequired(CheckParameter.Type type, Field field) {
+        return (masks[type.ordinal()] & field.mask) != 0;
+    }
+
+    /**
+     * 是否需要缓存请求 body，任意检测点需要时都要缓存
+     *
+     * @return 需要缓存时返回 true
+     */
+    public static boolean isBodyRequired() {
+        return bodyRequired;
+    }
+
+    /**
+     * 更新 js 插件的数据需求，插件加载完成后调用
+     *
+     * @param masks 按检测类型下标排列的字段掩码，为 null 时表示需要全部字段
+     */
+    public static synchronized void setPluginRequirements(int[] masks) {
+        pluginMasks = masks;
+        update();
+    }
+
+    /**
+     * 更新规则文件的数据需求，规则加载完成后调用
+     *
+     * @param masks 按检测类型下标排列的字段掩码
+     */
+    public static synchronized void setRuleRequirements(int[] masks) {
+        ruleMasks = masks;
+        update();
+    }
+
+    private static void update() {
+        int[] result = merge(pluginMasks, ruleMasks);
+        boolean body = false;
+        for (int mask : result) {
+            body |= (mask & Field.BODY.mask) != 0;
+        }
+        masks = result;
+        bodyRequired = body;
+    }
+
+    private static int[] merge(int[] plugin, int[] rule) {
+        int[] result = new int[NATIVE_MASKS.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = NATIVE_MASKS[i] | (plugin != null ? plugin[i] : ALL) | (rule != null ? rule[i] : 0);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.checker;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 检测参数指纹，由检测类型和决定检测结果的参数计算出的 64 位哈希
+ * <p>
+ * 白名单指纹会保存到文件并在节点之间共享，使用 SHA-256 的前 8 字节；
+ * 请求内的检测结果记录使用拼接后的完整参数作为 key，命中时比较完整内容，不依赖哈希
+ */
+public class Fingerprint {
+
+    /**
+     * 参与指纹计算的检测参数，必须包含检测结果依赖的所有参数，没有列出的检测类型不支持指纹。
+     * SSRF 的 ssrf_userinput 算法依赖 url 是否来自用户输入，命令执行的 command_reflect 算法依赖调用栈，
+     * 只用主机名或命令计算指纹时，正常业务学习到的指纹会使来自用户输入或反射调用的相同主机名、命令跳过检测
+     */
+    private static final EnumMap<CheckParameter.Type, String[]> KEYS =
+            new EnumMap<CheckParameter.Type, String[]>(CheckParameter.Type.class);
+
+    static {
+        KEYS.put(CheckParameter.Type.SQL, new String[]{"server", "query"});
+        KEYS.put(CheckParameter.Type.COMMAND, new String[]{"command", "stack"});
+        KEYS.put(CheckParameter.Type.DIRECTORY, new String[]{"path", "realpath"});
+        KEYS.put(CheckParameter.Type.READFILE, new String[]{"path", "realpath"});
+        KEYS.put(CheckParameter.Type.WRITEFILE, new String[]{"name", "realpath"});
+        KEYS.put(CheckParameter.Type.INCLUDE, new String[]{"url", "realpath"});
+        KEYS.put(CheckParameter.Type.SSRF, new String[]{"hostname", "ip", "url"});
+    }
+
+    /**
+     * 请求内检测结果记录的 key 的最大长度，参数更长时不记录
+     */
+    private static final int MAX_MEMO_KEY_LENGTH = 8192;
+
+    private static final ThreadLocal<MessageDigest> digests = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    /**
+     * @return 支持指纹的检测类型
+     */
+    public static Set<CheckParameter.Type> getSupportedTypes() {
+        return KEYS.keySet();
+    }
+
+    /**
+     * 计算检测参数的指纹
+     *
+     * @param parameter    检测参数
+     * @param normalizeSql 是否把 SQL 语句中的常量替换为 ?，使只有常量不同的语句得到相同的指纹
+     * @return 指纹，检测类型不支持时返回 0
+     */
+    public static long compute(CheckParameter parameter, boolean normalizeSql) {
+        StringBuilder builder = buildKey(parameter, normalizeSql);
+        return builder != null ? hash(builder) : 0;
+    }
+
+    /**
+     * 构造请求内检测结果记录使用的 key，参与计算的参数与 {@link #compute(CheckParameter, boolean)} 相同，
+     * 不归一化 SQL 语句。记录命中时直接跳过检测，参数来自用户输入，可以构造哈希碰撞，
+     * 因此使用完整的参数作为 key，而不是指纹
+     *
+     * @param parameter 检测参数
+     * @return key，检测类型不支持或参数过长时返回 null
+     */
+    public static String computeMemoKey(CheckParameter parameter) {
+        StringBuilder builder = buildKey(parameter, false);
+        return builder != null && builder.length() <= MAX_MEMO_KEY_LENGTH ? builder.toString() : null;
+    }
+
+    private static StringBuilder buildKey(CheckParameter parameter, boolean normalizeSql) {
+        String[] keys = KEYS.get(parameter.getType());
+        if (keys == null) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder(parameter.getType().getName());
+        for (String key : keys) {
+            builder.append('\0');
+            Object value = parameter.getParam(key);
+            if (value instanceof List) {
+                for (Object item : (List) value) {
+                    builder.append(item).append('\1');
+                }
+            } else if (value != null) {
+                if (normalizeSql && parameter.getType() == CheckParameter.Type.SQL && "query".equals(key)) {
+                    normalizeSql(value.toString(), builder);
+                } else {
+                    builder.append(value);
+                }
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * SQL 语句归一化，字符串和十进制数字常量替换为 ?，连续空白合并为一个空格，首尾空白去掉，
+     * 十六进制常量、注释（包括 MySQL 的 /*! 版本注释）和其他内容保持不变
+     */
+    static void normalizeSql(String query, StringBuilder out) {
+        int length = query.length();
+        int i = 0;
+        boolean started = false;
+        boolean space = false;
+        while (i < length) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = started;
+                i++;
+                continue;
+            }
+            if (space) {
+                out.append(' ');
+                space = false;
+            }
+            started = true;
+            if (c == '/' && i + 1 < length && query.charAt(i + 1) == '*') {
+                int end = query.indexOf("*/", i + 2);
+                end = end < 0 ? length : end + 2;
+                out.append(query, i, end);
+                i = end;
+            } else if (c == '#' || (c == '-' && i + 1 < length && query.charAt(i + 1) == '-')) {
+                int end = i;
+                while (end < length && query.charAt(end) != '\n' && query.charAt(end) != '\r') {
+                    end++;
+                }
+                out.append(query, i, end);
+                i = end;
+            } else if (c == '\'' || c == '"') {
+                i++;
+                while (i < length) {
+                    char q = query.charAt(i++);
+                    if (q == '\\' && i < length) {
+                        i++;
+                    } else if (q == c) {
+                        if (i < length && query.charAt(i) == c) {
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                }
+                out.append('?');
+            } else if (c >= '0' && c <= '9' && (i == 0 || !isIdentifierChar(query.charAt(i - 1)))) {
+                int start = i;
+                while (i < length && (isIdentifierChar(query.charAt(i)) || query.charAt(i) == '.')) {
+                    i++;
+                }
+                if (c == '0' && start + 1 < i && (query.charAt(start + 1) == 'x' || query.charAt(start + 1) == 'X')) {
+                    out.append(query, start, i);
+                } else {
+                    out.append('?');
+                }
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static long hash(CharSequence input) {
+        MessageDigest digest = digests.get();
+        byte[] bytes;
+        try {
+            bytes = digest.digest(input.toString().getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        long result = 0;
+        for (int i = 0; i < 8; i++) {
+            result = (result << 8) | (bytes[i] & 0xff);
+        }
+        return result != 0 ? result : 1;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.checker;
+
+import com.baidu.openrasp.request.ParameterIndex;
+
+import java.util.HashMap;
+
+/**
+ * 请求内的检测结果记录
+ * <p>
+ * 用户输入不变时，参数相同的检测结果也相同，重复的检测直接返回上次的结果，不再重复报警；
+ * 记录与生成它们时的用户输入索引绑定，请求体继续读取等原因使索引重建后清空。
+ * 只在请求线程中使用，请求结束时清空
+ */
+public class VerdictMemo {
+
+    /**
+     * 每个请求最多记录的结果个数，超过后不再记录
+     */
+    public static final int MAX_SIZE = 256;
+
+    private ParameterIndex parameterIndex = null;
+    private HashMap<String, Boolean> verdicts = null;
+
+    /**
+     * 查找之前的检测结果
+     *
+     * @param key 由 {@link Fingerprint#computeMemoKey(CheckParameter)} 构造的 key
+     * @return 之前拦截时返回 TRUE，放行时返回 FALSE，没有检测过时返回 null
+     */
+    public Boolean get(String key) {
+        return verdicts != null ? verdicts.get(key) : null;
+    }
+
+    /**
+     * 记录检测结果
+     *
+     * @param key     由 {@link Fingerprint#computeMemoKey(CheckParameter)} 构造的 key
+     * @param isBlock 是否拦截
+     */
+    public void put(String key, boolean isBlock) {
+        if (verdicts == null) {
+            verdicts = new HashMap<String, Boolean>();
+        } else if (verdicts.size() >= MAX_SIZE && !verdicts.containsKey(key)) {
+            return;
+        }
+        verdicts.put(key, isBlock);
+    }
+
+    /**
+     * 绑定当前的用户输入索引，索引与之前不同时清空已有的记录
+     *
+     * @param index 当前的用户输入索引
+     */
+    public void bind(ParameterIndex index) {
+        if (index != parameterIndex) {
+            clear();
+            parameterIndex = index;
+        }
+    }
+
+    public void clear() {
+        parameterIndex = null;
+        verdicts = null;
+    }
+}
@@ -21,6 +21,7 @@ import com.baidu.openrasp.plugin.checker.CheckParameter;
 import com.baidu.openrasp.plugin.info.EventInfo;
 import com.baidu.openrasp.plugin.js.engine.JSContext;
 import com.baidu.openrasp.plugin.js.engine.JSContextFactory;
+import com.baidu.openrasp.plugin.rule.RuleEngine;
 
 import java.util.List;
 
@@ -41,14 +42,37 @@ public class JsChecker extends AttackChecker {
 
     /**
      * 执行js插件进行安全检测
+     * 先执行声明式规则，没有插件注册该类型的检测函数时不进入 js 引擎，
+     * 等待 Context 池超时时跳过 js 检测并标记检测不完整
      *
      * @param checkParameter 检测参数 {@link CheckParameter}
      * @return 检测结果
      */
     @Override
     public List<EventInfo> checkParam(CheckParameter checkParameter) {
+        List<EventInfo> ruleResults = RuleEngine.check(checkParameter);
+        if (!JSContextFactory.hasCheckPoint(checkParameter.getType())) {
+            return ruleResults;
+        }
+        List<EventInfo> jsResults;
         JSContext cx = JSContextFactory.enterAndInitContext();
-        return cx.check(checkParameter);
+        if (cx == null) {
+            // 等待 Context 池超时，跳过 js 检测
+            checkParameter.setJsCheckIncomplete(true);
+            return ruleResults;
+        }
+        try {
+            jsResults = cx.check(checkParameter);
+        } finally {
+            JSContextFactory.exitContext(cx);
+        }
+        if (ruleResults == null) {
+            return jsResults;
+        }
+        if (jsResults != null) {
+            ruleResults.addAll(jsResults);
+        }
+        return ruleResults;
     }
 
 }
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.checker.local;
+
+import com.baidu.openrasp.request.AbstractRequest;
+import com.baidu.openrasp.request.HttpServletRequest;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 文件类检测（readFile、directory、include、writeFile 等）的 java 版本公共逻辑
+ * <p>
+ * 敏感文件、目录列表来自插件 algorithmConfig 中的 forcefulBrowsing 配置，脚本扩展名来自 scriptFileExtensions，
+ * 解析结果按配置对象缓存，配置不变时不重复解析
+ */
+public abstract class AbstractFileChecker extends ConfigurableChecker {
+
+    protected static final String CONFIG_KEY_FORCEFUL_BROWSING = "forcefulBrowsing";
+    protected static final String CONFIG_KEY_SCRIPT_FILE_EXTENSIONS = "scriptFileExtensions";
+    protected static final boolean IS_WINDOWS = "Windows".equals(HttpServletRequest.getOs(System.getProperty("os.name")));
+
+    private static volatile ForcefulBrowsing forcefulBrowsing = null;
+
+    /**
+     * 获取解析后的 forcefulBrowsing 配置
+     *
+     * @param config 插件 algorithmConfig
+     * @return 解析后的配置
+     */
+    protected ForcefulBrowsing getForcefulBrowsing(JsonObject config) {
+        ForcefulBrowsing result = forcefulBrowsing;
+        if (result == null || result.config != config) {
+            result = new ForcefulBrowsing(config);
+            forcefulBrowsing = result;
+        }
+        return result;
+    }
+
+    /**
+     * 当出现两个 /../ 或者两个 \..\ 时判定为路径遍历
+     * e.g /./././././home/../../../../etc/passwd
+     */
+    protected static boolean hasTraversal(String path) {
+        int left = path.indexOf("/../");
+        if (left != -1 && left != path.lastIndexOf("/../")) {
+            return true;
+        }
+        left = path.indexOf("\\..\\");
+        return left != -1 && left != path.lastIndexOf("\\..\\");
+    }
+
+    protected static String basename(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    protected static boolean isAbsolutePath(String path) {
+        if (IS_WINDOWS && path.length() > 1 && path.charAt(1) == ':') {
+            char drive = Character.toLowerCase(path.charAt(0));
+            if (drive >= 'a' && drive <= 'z') {
+                return true;
+            }
+        }
+        return path.startsWith("/");
+    }
+
+    /**
+     * 是否为脚本文件，等同于插件中的 /\.(aspx?|jspx?|php[345]?|phtml)\.?$/i
+     * 文件名末尾的一个 . 会被忽略，windows 下 a.jsp. 与 a.jsp 是同一个文件
+     */
+    protected boolean isScriptFile(JsonObject config, String path) {
+        if (path == null) {
+            return false;
+        }
+        int end = path.endsWith(".") ? path.length() - 1 : path.length();
+        int dot = path.lastIndexOf('.', end - 1);
+        if (dot < 0) {
+            return false;
+        }
+        return getForcefulBrowsing(config).scriptFileExtensions.contains(path.substring(dot + 1, end).toLowerCase());
+    }
+
+    /**
+     * 是否为 NTFS 流文件，等同于插件中的 /::\$(DATA|INDEX)$/i
+     */
+    protected static boolean isNtfsStream(String path) {
+        if (path == null) {
+            return false;
+        }
+        int length = path.length();
+        return path.regionMatches(true, length - 7, "::$DATA", 0, 7)
+                || path.regionMatches(true, length - 8, "::$INDEX", 0, 8);
+    }
+
+    /**
+     * 真实路径不在应用目录下，并且使用了路径遍历
+     */
+    protected static boolean isOutsideWebroot(String appBasePath, String realpath, String path) {
+        return appBasePath != null && !realpath.contains(appBasePath) && hasTraversal(path);
+    }
+
+    /**
+     * 参数是否与某个请求参数完全相同（只比较每个参数的第一个值）
+     */
+    protected static boolean isFromUserInput(AbstractRequest request, String target) {
+        Map<String, String[]> parameterMap = request != null ? request.getParameterMap() : null;
+        if (parameterMap == null) {
+            return false;
+        }
+        for (String[] values : parameterMap.values()) {
+            if (values != null && values.length > 0 && target.equals(values[0])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析后的 forcefulBrowsing 配置
+     */
+    protected class ForcefulBrowsing {
+        final JsonObject config;
+        final Pattern dotFiles;
+        final Set<String> unwantedFilenames;
+        final Set<String> unwantedDirectory;
+        final Set<String> absolutePaths;
+        final Set<String> scriptFileExtensions;
+
+        ForcefulBrowsing(JsonObject config) {
+            this.config = config;
+            String dotFilesRegex = getStringElement(config, CONFIG_KEY_FORCEFUL_BROWSING, "dotFiles");
+            this.dotFiles = dotFilesRegex != null ? Pattern.compile(dotFilesRegex) : null;
+            this.unwantedFilenames = getStringSet(config, "unwantedFilenames");
+            this.unwantedDirectory = getStringSet(config, "unwantedDirectory");
+            this.absolutePaths = getStringSet(config, "absolutePaths");
+            this.scriptFileExtensions = new HashSet<String>();
+            JsonElement extensions = config != null ? config.get(CONFIG_KEY_SCRIPT_FILE_EXTENSIONS) : null;
+            if (extensions != null && extensions.isJsonArray()) {
+                addAll(scriptFileExtensions, extensions.getAsJsonArray(), true);
+            }
+        }
+
+        private Set<String> getStringSet(JsonObject config, String subKey) {
+            Set<String> result = new HashSet<String>();
+            addAll(result, getJsonObjectAsArray(config, CONFIG_KEY_FORCEFUL_BROWSING, subKey), false);
+            return result;
+        }
+
+        private void addAll(Set<String> result, JsonArray array, boolean toLowerCase) {
+            if (array != null) {
+                for (JsonElement element : array) {
+                    String value = element.getAsString();
+                    result.add(toLowerCase ? value.toLowerCase() : value);
+                }
+            }
+        }
+    }
+}
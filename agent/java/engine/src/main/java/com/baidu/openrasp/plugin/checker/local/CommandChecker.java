@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.checker.local;
+
+import com.baidu.openrasp.config.Config;
+import com.baidu.openrasp.plugin.checker.CheckParameter;
+import com.baidu.openrasp.plugin.info.AttackInfo;
+import com.baidu.openrasp.plugin.info.EventInfo;
+import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.baidu.openrasp.request.AbstractRequest;
+import com.google.gson.JsonObject;
+import org.mozilla.javascript.NativeArray;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * 命令执行检测 java 版本
+ */
+public class CommandChecker extends ConfigurableChecker {
+
+    private static final String CONFIG_KEY_COMMAND_REFLECT = "command_reflect";
+    private static final String CONFIG_KEY_COMMAND_OTHER = "command_other";
+
+    /**
+     * 已知的命令执行利用方式，key 为调用栈中的 类名.方法名
+     */
+    private static final HashMap<String, String> KNOWN_STACK_METHODS = new HashMap<String, String>();
+
+    static {
+        KNOWN_STACK_METHODS.put("java.lang.reflect.Method.invoke", "尝试通过反射执行命令");
+        KNOWN_STACK_METHODS.put("ognl.OgnlRuntime.invokeMethod", "尝试通过 OGNL 代码执行命令");
+        KNOWN_STACK_METHODS.put("com.thoughtworks.xstream.XStream.unmarshal", "尝试通过 xstream 反序列化执行命令");
+        KNOWN_STACK_METHODS.put("org.apache.commons.collections4.functors.InvokerTransformer.transform",
+                "尝试通过 transformer 反序列化执行命令");
+        KNOWN_STACK_METHODS.put("org.jolokia.jsr160.Jsr160RequestDispatcher.dispatchRequest",
+                "尝试通过 JNDI 注入方式执行命令");
+        KNOWN_STACK_METHODS.put("com.alibaba.fastjson.parser.deserializer.JavaBeanDeserializer.deserialze",
+                "尝试通过 fastjson 反序列化方式执行命令");
+        KNOWN_STACK_METHODS.put("org.springframework.expression.spel.support.ReflectiveMethodExecutor.execute",
+                "尝试通过 Spring SpEL 表达式执行命令");
+        KNOWN_STACK_METHODS.put("freemarker.template.utility.Execute.exec", "尝试通过 FreeMarker 模板执行命令");
+        KNOWN_STACK_METHODS.put("org.codehaus.groovy.runtime.ProcessGroovyMethods.execute", "尝试通过 Groovy 脚本执行命令");
+    }
+
+    @Override
+    public List<EventInfo> checkParam(CheckParameter checkParameter) {
+        List<EventInfo> result = new LinkedList<EventInfo>();
+        try {
+            EventInfo info = checkCommand(checkParameter);
+            if (info != null) {
+                result.add(info);
+            }
+        } catch (Exception e) {
+            JSContext.LOGGER.warn("An exception occurred while executing command plugin, was:" + e.getMessage());
+        }
+
+        checkJs(checkParameter, result);
+        return result;
+    }
+
+    private EventInfo checkCommand(CheckParameter checkParameter) {
+        JsonObject config = Config.getConfig().getAlgorithmConfig();
+
+        // 算法1: 根据堆栈，检查是否为反序列化攻击
+        if (!isModuleIgnore(config, CONFIG_KEY_COMMAND_REFLECT)) {
+            Object stack = checkParameter.getParam("stack");
+            String message = stack instanceof NativeArray ? checkStack((NativeArray) stack) : null;
+            if (message != null) {
+                return AttackInfo.createLocalAttackInfo(checkParameter,
+                        getActionElement(config, CONFIG_KEY_COMMAND_REFLECT), message, 100);
+            }
+        }
+
+        // 算法2: 默认禁止命令执行，非 HTTP 请求中的命令执行不拦截
+        AbstractRequest request = checkParameter.getRequest();
+        if (request != null && request.getRequestURL() != null
+                && !isModuleIgnore(config, CONFIG_KEY_COMMAND_OTHER)) {
+            return AttackInfo.createLocalAttackInfo(checkParameter,
+                    getActionElement(config, CONFIG_KEY_COMMAND_OTHER), "尝试执行命令", 90);
+        }
+        return null;
+    }
+
+    /**
+     * 逐个栈帧查找已知的利用方式
+     * 仅当命令本身来自反射调用才拦截，如果反射调用和命令执行之间包含用户代码，则不认为是反射调用
+     *
+     * @param stack 调用栈，每一项为 类名.方法名
+     * @return 报警信息，未发现时返回 null
+     */
+    private String checkStack(NativeArray stack) {
+        String message = null;
+        boolean userCode = false;
+        long length = stack.getLength();
+        for (int i = 2; i < length; i++) {
+            Object frame = stack.get(i);
+            if (!(frame instanceof String)) {
+                continue;
+            }
+            String method = (String) frame;
+            if (method.startsWith("ysoserial.Pwner")) {
+                return "YsoSerial 漏洞利用工具 - 反序列化攻击";
+            }
+            if (!method.startsWith("java.") && !method.startsWith("sun.") && !method.startsWith("com.sun.")) {
+                userCode = true;
+            }
+            String known = KNOWN_STACK_METHODS.get(method);
+            if (known != null) {
+                if ("org.codehaus.groovy.runtime.ProcessGroovyMethods.execute".equals(method)) {
+                    return known;
+                }
+                if (userCode && "java.lang.reflect.Method.invoke".equals(method)) {
+                    continue;
+                }
+                message = known;
+            }
+        }
+        return message;
+    }
+}
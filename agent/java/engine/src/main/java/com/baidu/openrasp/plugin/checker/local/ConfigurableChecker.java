@@ -18,6 +18,9 @@ package com.baidu.openrasp.plugin.checker.local;
 
 import com.baidu.openrasp.config.Config;
 import com.baidu.openrasp.plugin.checker.AttackChecker;
+import com.baidu.openrasp.plugin.checker.CheckParameter;
+import com.baidu.openrasp.plugin.checker.js.JsChecker;
+import com.baidu.openrasp.plugin.info.EventInfo;
 import com.baidu.openrasp.plugin.js.engine.JSContext;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
@@ -26,6 +29,7 @@ import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
 
 import java.util.HashMap;
+import java.util.List;
 
 /**
  * Created by tyy on 17-12-21.
@@ -38,6 +42,21 @@ public abstract class ConfigurableChecker extends AttackChecker {
         return getStringElement(config, key, "action");
     }
 
+    protected boolean isModuleIgnore(JsonObject config, String configKey) {
+        String action = getActionElement(config, configKey);
+        return EventInfo.CHECK_ACTION_IGNORE.equals(action) || action == null;
+    }
+
+    /**
+     * 执行声明式规则和 js 插件中同类型的检测，用于支持自定义插件
+     */
+    protected void checkJs(CheckParameter checkParameter, List<EventInfo> result) {
+        List<EventInfo> jsResults = new JsChecker().checkParam(checkParameter);
+        if (jsResults != null && jsResults.size() > 0) {
+            result.addAll(jsResults);
+        }
+    }
+
     protected JsonArray getJsonObjectAsArray(JsonObject config, String key, String subKey){
         JsonArray result = null;
         try {
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.checker.local;
+
+import com.baidu.openrasp.config.Config;
+import com.baidu.openrasp.plugin.checker.CheckParameter;
+import com.baidu.openrasp.plugin.info.AttackInfo;
+import com.baidu.openrasp.plugin.info.EventInfo;
+import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * 反序列化检测 java 版本
+ * <p>
+ * 类名黑名单来自插件 algorithmConfig 中的 transformer_deser.clazz，以 . 结尾的项表示整个包，
+ * 编译为按包名分段的前缀树；没有报警的类名会被缓存，同一个类重复反序列化时只需要一次哈希查找，
+ * 只有没有见过的类才会执行 js 插件
+ */
+public class DeserializationChecker extends ConfigurableChecker {
+
+    private static final String CONFIG_KEY_TRANSFORMER_DESER = "transformer_deser";
+
+    private static final VerdictCache verdictCache = new VerdictCache(10000);
+    private static volatile ClassTrie classTrie = null;
+
+    /**
+     * 类名是否已经检测过且没有发现攻击，hook 点据此跳过参数构造和插件检测
+     *
+     * @param clazz 反序列化的类名
+     * @return 已知安全时返回 true
+     */
+    public static boolean isKnownClean(String clazz) {
+        return verdictCache.isClean(clazz);
+    }
+
+    @Override
+    public List<EventInfo> checkParam(CheckParameter checkParameter) {
+        List<EventInfo> result = new LinkedList<EventInfo>();
+        String clazz = (String) checkParameter.getParam("clazz");
+        if (clazz == null) {
+            return result;
+        }
+        try {
+            JsonObject config = Config.getConfig().getAlgorithmConfig();
+            if (!isModuleIgnore(config, CONFIG_KEY_TRANSFORMER_DESER) && getClassTrie(config).matches(clazz)) {
+                result.add(AttackInfo.createLocalAttackInfo(checkParameter,
+                        getActionElement(config, CONFIG_KEY_TRANSFORMER_DESER), "尝试反序列化攻击", 100));
+            }
+        } catch (Exception e) {
+            JSContext.LOGGER.warn("An exception occurred while executing deserialization plugin, was:"
+                    + e.getMessage());
+        }
+
+        checkJs(checkParameter, result);
+        verdictCache.record(clazz, checkParameter, result);
+        return result;
+    }
+
+    private ClassTrie getClassTrie(JsonObject config) {
+        ClassTrie trie = classTrie;
+        if (trie == null || trie.config != config) {
+            trie = new ClassTrie(config, getJsonObjectAsArray(config, CONFIG_KEY_TRANSFORMER_DESER, "clazz"));
+            classTrie = trie;
+        }
+        return trie;
+    }
+
+    /**
+     * 按 . 分段的类名前缀树，叶子节点区分完整类名和整个包
+     */
+    private static class ClassTrie {
+        private final JsonObject config;
+        private final Node root = new Node();
+
+        ClassTrie(JsonObject config, JsonArray classes) {
+            this.config = config;
+            if (classes != null) {
+                for (JsonElement element : classes) {
+                    add(element.getAsString());
+                }
+            }
+        }
+
+        private void add(String name) {
+            boolean isPackage = name.endsWith(".");
+            Node node = root;
+            int start = 0;
+            int end = isPackage ? name.length() - 1 : name.length();
+            while (start <= end) {
+                int dot = name.indexOf('.', start);
+                if (dot < 0 || dot > end) {
+                    dot = end;
+                }
+                String segment = name.substring(start, dot);
+                Node child = node.children.get(segment);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(segment, child);
+                }
+                node = child;
+                start = dot + 1;
+            }
+            if (isPackage) {
+                node.isPackage = true;
+            } else {
+                node.isClass = true;
+            }
+        }
+
+        boolean matches(String clazz) {
+            Node node = root;
+            int start = 0;
+            int length = clazz.length();
+            while (start <= length) {
+                int dot = clazz.indexOf('.', start);
+                if (dot < 0) {
+                    dot = length;
+                }
+                node = node.children.get(clazz.substring(start, dot));
+                if (node == null) {
+                    return false;
+                }
+                if (node.isPackage && dot < length) {
+                    return true;
+                }
+                if (dot == length) {
+                    return node.isClass;
+                }
+                start = dot + 1;
+            }
+            return false;
+        }
+    }
+
+    private static class Node {
+        final HashMap<String, Node> children = new HashMap<String, Node>(4);
+        boolean isClass = false;
+        boolean isPackage = false;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.checker.local;
+
+import com.baidu.openrasp.config.Config;
+import com.baidu.openrasp.plugin.checker.CheckParameter;
+import com.baidu.openrasp.plugin.info.AttackInfo;
+import com.baidu.openrasp.plugin.info.EventInfo;
+import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.baidu.openrasp.request.AbstractRequest;
+import com.google.gson.JsonObject;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * 列目录检测 java 版本，主要用于识别 webshell 里的文件管理器
+ */
+public class DirectoryChecker extends AbstractFileChecker {
+
+    private static final String CONFIG_KEY_DIRECTORY_UNWANTED = "directory_unwanted";
+    private static final String CONFIG_KEY_DIRECTORY_OUTSIDE_WEBROOT = "directory_outsideWebroot";
+
+    @Override
+    public List<EventInfo> checkParam(CheckParameter checkParameter) {
+        List<EventInfo> result = new LinkedList<EventInfo>();
+        String path = (String) checkParameter.getParam("path");
+        String realpath = (String) checkParameter.getParam("realpath");
+        AbstractRequest request = checkParameter.getRequest();
+        try {
+            JsonObject config = Config.getConfig().getAlgorithmConfig();
+            if (path != null && realpath != null) {
+                // 算法1 - 读取敏感目录
+                if (!isModuleIgnore(config, CONFIG_KEY_DIRECTORY_UNWANTED)
+                        && getForcefulBrowsing(config).unwantedDirectory.contains(realpath)) {
+                    result.add(AttackInfo.createLocalAttackInfo(checkParameter,
+                            getActionElement(config, CONFIG_KEY_DIRECTORY_UNWANTED),
+                            "WebShell文件管理器 - 读取敏感目录", 100));
+                }
+                // 算法2 - 使用至少2个/../，且跳出web目录
+                else if (!isModuleIgnore(config, CONFIG_KEY_DIRECTORY_OUTSIDE_WEBROOT) && request != null
+                        && isOutsideWebroot(request.getAppBasePath(), realpath, path)) {
+                    result.add(AttackInfo.createLocalAttackInfo(checkParameter,
+                            getActionElement(config, CONFIG_KEY_DIRECTORY_OUTSIDE_WEBROOT),
+                            "尝试列出Web目录以外的目录", 90));
+                }
+            }
+        } catch (Exception e) {
+            JSContext.LOGGER.warn("An exception occurred while executing directory plugin, was:" + e.getMessage());
+        }
+
+        checkJs(checkParameter, result);
+        return result;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.checker.local;
+
+import com.baidu.openrasp.config.Config;
+import com.baidu.openrasp.plugin.checker.CheckParameter;
+import com.baidu.openrasp.plugin.info.AttackInfo;
+import com.baidu.openrasp.plugin.info.EventInfo;
+import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.baidu.openrasp.request.AbstractRequest;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 文件包含检测 java 版本
+ */
+public class IncludeChecker extends AbstractFileChecker {
+
+    private static final String CONFIG_KEY_INCLUDE_HTTP = "include_http";
+    private static final String CONFIG_KEY_INCLUDE_DIR = "include_dir";
+    private static final String CONFIG_KEY_INCLUDE_UNWANTED = "include_unwanted";
+    private static final String CONFIG_KEY_INCLUDE_OUTSIDE_WEBROOT = "include_outsideWebroot";
+
+    private static volatile ProtocolSet httpProtocols = null;
+
+    @Override
+    public List<EventInfo> checkParam(CheckParameter checkParameter) {
+        List<EventInfo> result = new LinkedList<EventInfo>();
+        String url = (String) checkParameter.getParam("url");
+        try {
+            if (url != null) {
+                EventInfo info = checkInclude(checkParameter, url);
+                if (info != null) {
+                    result.add(info);
+                }
+            }
+        } catch (Exception e) {
+            JSContext.LOGGER.warn("An exception occurred while executing include plugin, was:" + e.getMessage());
+        }
+
+        checkJs(checkParameter, result);
+        return result;
+    }
+
+    private EventInfo checkInclude(CheckParameter checkParameter, String url) {
+        JsonObject config = Config.getConfig().getAlgorithmConfig();
+        String function = (String) checkParameter.getParam("function");
+        int index = url.indexOf("://");
+
+        // 如果没有协议 ?file=../../../../../var/log/httpd/error.log
+        if (index < 0) {
+            String realpath = (String) checkParameter.getParam("realpath");
+            AbstractRequest request = checkParameter.getRequest();
+            // 是否跳出 web 目录
+            if (realpath != null && request != null && !isModuleIgnore(config, CONFIG_KEY_INCLUDE_OUTSIDE_WEBROOT)) {
+                String appBasePath = request.getAppBasePath();
+                if (isOutsideWebroot(appBasePath, realpath, url)) {
+                    return AttackInfo.createLocalAttackInfo(checkParameter,
+                            getActionElement(config, CONFIG_KEY_INCLUDE_OUTSIDE_WEBROOT),
+                            "任意文件包含攻击，包含web目录范围之外的文件 (" + appBasePath + ")", 100);
+                }
+            }
+            return null;
+        }
+
+        // http 方式 SSRF/RFI
+        String protocol = url.substring(0, index).toLowerCase();
+        if (getHttpProtocols(config).protocols.contains(protocol)) {
+            if (!isModuleIgnore(config, CONFIG_KEY_INCLUDE_HTTP)) {
+                return AttackInfo.createLocalAttackInfo(checkParameter, getActionElement(config, CONFIG_KEY_INCLUDE_HTTP),
+                        "SSRF漏洞: " + function + " 方式", 70);
+            }
+        } else if ("file".equals(protocol)) {
+            String path = url.substring(index + 3);
+            // 部分应用，如果直接包含目录，会把这个目录内容列出来
+            if (path.endsWith("/") && !isModuleIgnore(config, CONFIG_KEY_INCLUDE_DIR)) {
+                return AttackInfo.createLocalAttackInfo(checkParameter, getActionElement(config, CONFIG_KEY_INCLUDE_DIR),
+                        "敏感目录访问: " + function + " 方式", 100);
+            }
+            // 是否为敏感文件
+            if (!isModuleIgnore(config, CONFIG_KEY_INCLUDE_UNWANTED)
+                    && getForcefulBrowsing(config).unwantedFilenames.contains(basename(path))) {
+                return AttackInfo.createLocalAttackInfo(checkParameter,
+                        getActionElement(config, CONFIG_KEY_INCLUDE_UNWANTED),
+                        "敏感文件下载: " + function + " 方式", 100);
+            }
+        }
+        return null;
+    }
+
+    private ProtocolSet getHttpProtocols(JsonObject config) {
+        ProtocolSet result = httpProtocols;
+        if (result == null || result.config != config) {
+            result = new ProtocolSet(config, getJsonObjectAsArray(config, CONFIG_KEY_INCLUDE_HTTP, "protocols"));
+            httpProtocols = result;
+        }
+        return result;
+    }
+
+    private static class ProtocolSet {
+        final JsonObject config;
+        final Set<String> protocols = new HashSet<String>();
+
+        ProtocolSet(JsonObject config, JsonArray protocols) {
+            this.config = config;
+            if (protocols != null) {
+                for (JsonElement protocol : protocols) {
+                    this.protocols.add(protocol.getAsString().toLowerCase());
+                }
+            } else {
+                this.protocols.add("http");
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.checker.local;
+
+import com.baidu.openrasp.config.Config;
+import com.baidu.openrasp.plugin.checker.CheckParameter;
+import com.baidu.openrasp.plugin.info.AttackInfo;
+import com.baidu.openrasp.plugin.info.EventInfo;
+import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.baidu.openrasp.tool.KeywordMatcher;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * OGNL 表达式检测 java 版本
+ * <p>
+ * 常见 struts payload 特征来自插件 algorithmConfig 中的 ognl_exec.payloads，编译为多关键字自动机，
+ * 一次扫描完成所有特征的匹配；struts 每次调用 action 都会解析同样的表达式，
+ * 没有报警的表达式会被缓存，再次出现时直接放行
+ */
+public class OgnlChecker extends ConfigurableChecker {
+
+    private static final String CONFIG_KEY_OGNL_EXEC = "ognl_exec";
+
+    private static final VerdictCache verdictCache = new VerdictCache(10000);
+    private static volatile PayloadMatcher payloadMatcher = null;
+
+    /**
+     * 表达式是否已经检测过且没有发现攻击，hook 点据此跳过参数构造和插件检测
+     *
+     * @param expression ognl 表达式
+     * @return 已知安全时返回 true
+     */
+    public static boolean isKnownClean(String expression) {
+        return verdictCache.isClean(expression);
+    }
+
+    @Override
+    public List<EventInfo> checkParam(CheckParameter checkParameter) {
+        List<EventInfo> result = new LinkedList<EventInfo>();
+        String expression = (String) checkParameter.getParam("expression");
+        if (expression == null) {
+            return result;
+        }
+        try {
+            JsonObject config = Config.getConfig().getAlgorithmConfig();
+            if (!isModuleIgnore(config, CONFIG_KEY_OGNL_EXEC)
+                    && getPayloadMatcher(config).matcher.find(expression) != null) {
+                result.add(AttackInfo.createLocalAttackInfo(checkParameter,
+                        getActionElement(config, CONFIG_KEY_OGNL_EXEC), "尝试ognl远程命令执行", 100));
+            }
+        } catch (Exception e) {
+            JSContext.LOGGER.warn("An exception occurred while executing ognl plugin, was:" + e.getMessage());
+        }
+
+        checkJs(checkParameter, result);
+        verdictCache.record(expression, checkParameter, result);
+        return result;
+    }
+
+    private PayloadMatcher getPayloadMatcher(JsonObject config) {
+        PayloadMatcher result = payloadMatcher;
+        if (result == null || result.config != config) {
+            result = new PayloadMatcher(config, getJsonObjectAsArray(config, CONFIG_KEY_OGNL_EXEC, "payloads"));
+            payloadMatcher = result;
+        }
+        return result;
+    }
+
+    private static class PayloadMatcher {
+        final JsonObject config;
+        final KeywordMatcher matcher;
+
+        PayloadMatcher(JsonObject config, JsonArray payloads) {
+            this.config = config;
+            List<String> keywords = new LinkedList<String>();
+            if (payloads != null) {
+                for (JsonElement payload : payloads) {
+                    keywords.add(payload.getAsString());
+                }
+            }
+            this.matcher = new KeywordMatcher(keywords);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.checker.local;
+
+import com.baidu.openrasp.config.Config;
+import com.baidu.openrasp.plugin.checker.CheckParameter;
+import com.baidu.openrasp.plugin.info.AttackInfo;
+import com.baidu.openrasp.plugin.info.EventInfo;
+import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.baidu.openrasp.request.AbstractRequest;
+import com.google.gson.JsonObject;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * 文件读取检测 java 版本
+ */
+public class ReadFileChecker extends AbstractFileChecker {
+
+    private static final String CONFIG_KEY_READ_FILE_USER_INPUT = "readFile_userinput";
+    private static final String CONFIG_KEY_READ_FILE_USER_INPUT_HTTP = "readFile_userinput_http";
+    private static final String CONFIG_KEY_READ_FILE_USER_INPUT_FILE = "readFile_userinput_file";
+    private static final String CONFIG_KEY_READ_FILE_TRAVERSAL = "readFile_traversal";
+    private static final String CONFIG_KEY_READ_FILE_UNWANTED = "readFile_unwanted";
+
+    @Override
+    public List<EventInfo> checkParam(CheckParameter checkParameter) {
+        List<EventInfo> result = new LinkedList<EventInfo>();
+        String path = (String) checkParameter.getParam("path");
+        String realpath = (String) checkParameter.getParam("realpath");
+        AbstractRequest request = checkParameter.getRequest();
+        try {
+            // 非请求线程中读取文件不做检测
+            if (path != null && realpath != null && request != null) {
+                EventInfo info = checkReadFile(checkParameter, request, path, realpath);
+                if (info != null) {
+                    result.add(info);
+                }
+            }
+        } catch (Exception e) {
+            JSContext.LOGGER.warn("An exception occurred while executing readFile plugin, was:" + e.getMessage());
+        }
+
+        checkJs(checkParameter, result);
+        return result;
+    }
+
+    private EventInfo checkReadFile(CheckParameter checkParameter, AbstractRequest request,
+                                    String path, String realpath) {
+        JsonObject config = Config.getConfig().getAlgorithmConfig();
+        ForcefulBrowsing forcefulBrowsing = getForcefulBrowsing(config);
+
+        // 算法1: 和URL比较，检查是否为成功的目录扫描。仅适用于 java webdav 方式
+        StringBuffer requestUrl = request.getRequestURL();
+        if (requestUrl != null) {
+            String filename = basename(realpath);
+            if (filename.equals(basename(requestUrl.toString()))) {
+                // 尝试下载压缩包、SQL文件，或者访问敏感文件
+                if ((forcefulBrowsing.dotFiles != null && forcefulBrowsing.dotFiles.matcher(filename).find())
+                        || forcefulBrowsing.unwantedFilenames.contains(filename)) {
+                    String method = request.getMethod();
+                    // 如果是HEAD方式下载敏感文件，100% 扫描器攻击
+                    boolean isHead = "head".equalsIgnoreCase(method);
+                    return AttackInfo.createLocalAttackInfo(checkParameter, EventInfo.CHECK_ACTION_INFO,
+                            "尝试下载敏感文件 (" + (method != null ? method.toUpperCase() : "") + " 方式): " + realpath,
+                            isHead ? 100 : 90);
+                }
+            }
+        }
+
+        // 算法2: 文件、目录探针
+        // 如果应用读取了列表里的文件，比如 /root/.bash_history，这通常意味着后门操作
+        if (!isModuleIgnore(config, CONFIG_KEY_READ_FILE_UNWANTED)
+                && forcefulBrowsing.absolutePaths.contains(realpath.toLowerCase())) {
+            return AttackInfo.createLocalAttackInfo(checkParameter,
+                    getActionElement(config, CONFIG_KEY_READ_FILE_UNWANTED),
+                    "WebShell/文件管理器 - 尝试读取系统文件: " + realpath, 90);
+        }
+
+        // 算法3: 检查文件遍历，看是否超出web目录范围
+        if (!isModuleIgnore(config, CONFIG_KEY_READ_FILE_TRAVERSAL)) {
+            String appBasePath = request.getAppBasePath();
+            if (isOutsideWebroot(appBasePath, realpath, path)) {
+                return AttackInfo.createLocalAttackInfo(checkParameter,
+                        getActionElement(config, CONFIG_KEY_READ_FILE_TRAVERSAL),
+                        "目录遍历攻击，跳出web目录范围 (" + appBasePath + ")", 90);
+            }
+        }
+
+        // 算法4: 拦截任意文件下载漏洞，要读取的文件来自用户输入，且没有路径拼接
+        if (!isModuleIgnore(config, CONFIG_KEY_READ_FILE_USER_INPUT) && isFromUserInput(request, path)) {
+            String action = getActionElement(config, CONFIG_KEY_READ_FILE_USER_INPUT);
+            // 1. 使用绝对路径 ?file=/etc/./hosts
+            if (isAbsolutePath(path)) {
+                return AttackInfo.createLocalAttackInfo(checkParameter, action,
+                        "任意文件下载攻击（绝对路径），目标文件: " + realpath, 90);
+            }
+            // 2. 相对路径且包含 /../ ?file=download/../../etc/passwd
+            if (hasTraversal(path)) {
+                return AttackInfo.createLocalAttackInfo(checkParameter, action,
+                        "任意文件下载攻击（相对路径），目标文件: " + realpath, 90);
+            }
+            String pathLowerCase = path.toLowerCase();
+            // 3. 读取 http(s):// 内容 ?file=http://www.baidu.com
+            if ((pathLowerCase.startsWith("http://") || pathLowerCase.startsWith("https://"))
+                    && !isModuleIgnore(config, CONFIG_KEY_READ_FILE_USER_INPUT_HTTP)) {
+                return AttackInfo.createLocalAttackInfo(checkParameter,
+                        getActionElement(config, CONFIG_KEY_READ_FILE_USER_INPUT_HTTP),
+                        "任意文件读取，目标URL: " + path, 90);
+            }
+            // 4. 读取 file:// 内容 ?file=file:///etc/passwd
+            if (pathLowerCase.startsWith("file://")
+                    && !isModuleIgnore(config, CONFIG_KEY_READ_FILE_USER_INPUT_FILE)) {
+                return AttackInfo.createLocalAttackInfo(checkParameter,
+                        getActionElement(config, CONFIG_KEY_READ_FILE_USER_INPUT_FILE),
+                        "任意文件读取，目标文件: " + path, 90);
+            }
+        }
+        return null;
+    }
+}
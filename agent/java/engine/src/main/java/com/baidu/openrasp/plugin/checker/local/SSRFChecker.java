@@ -24,6 +24,7 @@ import com.baidu.openrasp.plugin.checker.js.JsChecker;
 import com.baidu.openrasp.plugin.info.AttackInfo;
 import com.baidu.openrasp.plugin.info.EventInfo;
 import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.baidu.openrasp.request.ParameterIndex;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -32,7 +33,6 @@ import org.mozilla.javascript.NativeArray;
 
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.regex.Pattern;
 
 /**
@@ -55,17 +55,13 @@ public class SSRFChecker extends ConfigurableChecker {
         NativeArray ips = (NativeArray) checkParameter.getParam("ip");
         try {
             JsonObject config = Config.getConfig().getAlgorithmConfig();
-            Map<String, String[]> parameterMap = HookHandler.requestCache.get().getParameterMap();
             if (!isModuleIgnore(config, CONFIG_KEY_SSRF_USER_INPUT)) {
                 if (ips.size() > 0) {
-                    for (Map.Entry<String, String[]> entry : parameterMap.entrySet()) {
-                        String[] v = entry.getValue();
-                        String value = v[0];
-                        String ip = (String) ips.get(0);
-                        if (url.equals(value) && Pattern.matches("^(192|172|10)\\..*", ip)) {
-                            result.add(AttackInfo.createLocalAttackInfo(checkParameter,
-                                    getActionElement(config, CONFIG_KEY_SSRF_USER_INPUT), "SSRF攻击 - 访问内网地址: " + ip));
-                        }
+                    String ip = (String) ips.get(0);
+                    ParameterIndex parameterIndex = HookHandler.requestCache.get().getParameterIndex();
+                    if (parameterIndex.indexOfValue(url) >= 0 && Pattern.matches("^(192|172|10)\\..*", ip)) {
+                        result.add(AttackInfo.createLocalAttackInfo(checkParameter,
+                                getActionElement(config, CONFIG_KEY_SSRF_USER_INPUT), "SSRF攻击 - 访问内网地址: " + ip));
                     }
                 }
             }
@@ -113,9 +109,4 @@ public class SSRFChecker extends ConfigurableChecker {
         return result;
     }
 
-    private boolean isModuleIgnore(JsonObject config, String configKey) {
-        String action = getActionElement(config, configKey);
-        return EventInfo.CHECK_ACTION_IGNORE.equals(action) || action == null;
-    }
-
 }
@@ -25,13 +25,13 @@ import com.baidu.openrasp.plugin.checker.js.JsChecker;
 import com.baidu.openrasp.plugin.info.AttackInfo;
 import com.baidu.openrasp.plugin.info.EventInfo;
 import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.baidu.openrasp.request.ParameterIndex;
 import com.google.gson.JsonObject;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Created by tyy on 17-12-20.
@@ -59,37 +59,30 @@ public class SqlStatementChecker extends ConfigurableChecker {
 
         String message = null;
         String[] tokens = TokenGenerator.tokenize(query, tokenizeErrorListener);
-        Map<String, String[]> parameterMap = HookHandler.requestCache.get().getParameterMap();
+        ParameterIndex parameterIndex = HookHandler.requestCache.get().getParameterIndex();
         try {
             JsonObject config = Config.getConfig().getAlgorithmConfig();
             // 算法1: 匹配用户输入
             // 1. 简单识别逻辑是否发生改变
             // 2. 识别数据库管理器
             String action = getActionElement(config, CONFIG_KEY_SQLI_USER_INPUT);
-            if (!EventInfo.CHECK_ACTION_IGNORE.equals(action) && action != null && parameterMap != null) {
-                for (Map.Entry<String, String[]> entry : parameterMap.entrySet()) {
-                    String[] v = entry.getValue();
-                    String value = v[0];
-                    if (value.length() <= 15) {
-                        continue;
-                    }
-                    if (value.length() == query.length() && value.equals(query)) {
+            if (!EventInfo.CHECK_ACTION_IGNORE.equals(action) && action != null) {
+                for (int index : parameterIndex.findCandidates(query)) {
+                    String value = parameterIndex.getValue(index);
+                    if (parameterIndex.getLength(index) == query.length() && value.equals(query)) {
                         String managerAction = getActionElement(config, CONFIG_KEY_DB_MANAGER);
                         if (!EventInfo.CHECK_ACTION_IGNORE.equals(managerAction) && managerAction != null) {
-                            message = "算法2: WebShell - 数据库管理器 - 攻击参数: " + entry.getKey();
+                            message = "算法2: WebShell - 数据库管理器 - 攻击参数: " + parameterIndex.getName(index);
                             action = managerAction;
                             break;
                         } else {
                             continue;
                         }
                     }
-                    if (!query.contains(value)) {
-                        continue;
-                    }
                     String[] tokens2 = TokenGenerator.tokenize(query.replace(value, ""), tokenizeErrorListener);
                     if (tokens != null) {
                         if (tokens.length - tokens2.length > 2) {
-                            message = "算法1: 数据库查询逻辑发生改变 - 攻击参数: " + entry.getKey();
+                            message = "算法1: 数据库查询逻辑发生改变 - 攻击参数: " + parameterIndex.getName(index);
                             break;
                         }
                     }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.checker.local;
+
+import com.baidu.openrasp.config.Config;
+import com.baidu.openrasp.plugin.checker.CheckParameter;
+import com.baidu.openrasp.plugin.info.EventInfo;
+import com.google.gson.JsonObject;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 检测结果缓存，只记录检测过且没有报警的参数
+ * <p>
+ * 缓存与插件 algorithmConfig 绑定，配置变化或插件重新加载后失效；
+ * 参数可能来自攻击者，超过容量时整体清空
+ */
+public class VerdictCache {
+
+    private static final CopyOnWriteArrayList<VerdictCache> caches = new CopyOnWriteArrayList<VerdictCache>();
+
+    private final int maxSize;
+    private volatile CleanSet cleanSet = null;
+
+    /**
+     * @param maxSize 最多缓存的参数个数
+     */
+    public VerdictCache(int maxSize) {
+        this.maxSize = maxSize;
+        caches.add(this);
+    }
+
+    /**
+     * 清空所有检测结果缓存，插件重新加载时调用
+     */
+    public static void clearAll() {
+        for (VerdictCache cache : caches) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * 参数是否在当前配置下检测过且没有报警
+     *
+     * @param key 检测参数
+     * @return 已知安全时返回 true
+     */
+    public boolean isClean(String key) {
+        CleanSet current = cleanSet;
+        return current != null && current.config == Config.getConfig().getAlgorithmConfig()
+                && current.keys.containsKey(key);
+    }
+
+    /**
+     * 记录检测结果，只有没有报警且 js 插件全部执行完成时才缓存
+     *
+     * @param key            检测参数
+     * @param checkParameter 检测参数
+     * @param result         检测结果
+     */
+    public void record(String key, CheckParameter checkParameter, List<EventInfo> result) {
+        if (!result.isEmpty() || checkParameter.isJsCheckIncomplete()) {
+            return;
+        }
+        JsonObject config = Config.getConfig().getAlgorithmConfig();
+        CleanSet current = cleanSet;
+        if (current == null || current.config != config) {
+            current = new CleanSet(config);
+            cleanSet = current;
+        }
+        if (current.keys.size() >= maxSize) {
+            current.keys.clear();
+        }
+        current.keys.put(key, Boolean.TRUE);
+    }
+
+    public void clear() {
+        cleanSet = null;
+    }
+
+    private static class CleanSet {
+        final JsonObject config;
+        final ConcurrentHashMap<String, Boolean> keys = new ConcurrentHashMap<String, Boolean>();
+
+        CleanSet(JsonObject config) {
+            this.config = config;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.checker.local;
+
+import com.baidu.openrasp.config.Config;
+import com.baidu.openrasp.plugin.checker.CheckParameter;
+import com.baidu.openrasp.plugin.info.AttackInfo;
+import com.baidu.openrasp.plugin.info.EventInfo;
+import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.baidu.openrasp.request.AbstractRequest;
+import com.google.gson.JsonObject;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * WebDAV COPY/MOVE 检测 java 版本
+ */
+public class WebDAVChecker extends AbstractFileChecker {
+
+    private static final String CONFIG_KEY_FILE_UPLOAD_WEBDAV = "fileUpload_webdav";
+
+    @Override
+    public List<EventInfo> checkParam(CheckParameter checkParameter) {
+        List<EventInfo> result = new LinkedList<EventInfo>();
+        String source = (String) checkParameter.getParam("source");
+        String dest = (String) checkParameter.getParam("dest");
+        try {
+            JsonObject config = Config.getConfig().getAlgorithmConfig();
+            // 源文件不是脚本 && 目标文件是脚本，判定为MOVE方式写后门
+            if (!isModuleIgnore(config, CONFIG_KEY_FILE_UPLOAD_WEBDAV)
+                    && isScriptFile(config, dest) && !isScriptFile(config, source)) {
+                AbstractRequest request = checkParameter.getRequest();
+                String method = request != null ? request.getMethod() : null;
+                result.add(AttackInfo.createLocalAttackInfo(checkParameter,
+                        getActionElement(config, CONFIG_KEY_FILE_UPLOAD_WEBDAV),
+                        "尝试通过 " + method + " 方式上传脚本文件: " + dest, 100));
+            }
+        } catch (Exception e) {
+            JSContext.LOGGER.warn("An exception occurred while executing webdav plugin, was:" + e.getMessage());
+        }
+
+        checkJs(checkParameter, result);
+        return result;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.checker.local;
+
+import com.baidu.openrasp.config.Config;
+import com.baidu.openrasp.plugin.checker.CheckParameter;
+import com.baidu.openrasp.plugin.info.AttackInfo;
+import com.baidu.openrasp.plugin.info.EventInfo;
+import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.baidu.openrasp.request.AbstractRequest;
+import com.google.gson.JsonObject;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * 写文件检测 java 版本
+ * <p>
+ * 请求中打开日志、临时文件等操作都会进入该检测点，
+ * 非脚本文件、非 NTFS 流文件直接放行
+ */
+public class WriteFileChecker extends AbstractFileChecker {
+
+    private static final String CONFIG_KEY_WRITE_FILE_NTFS = "writeFile_NTFS";
+    private static final String CONFIG_KEY_WRITE_FILE_PUT_SCRIPT = "writeFile_PUT_script";
+    private static final String CONFIG_KEY_WRITE_FILE_SCRIPT = "writeFile_script";
+
+    @Override
+    public List<EventInfo> checkParam(CheckParameter checkParameter) {
+        List<EventInfo> result = new LinkedList<EventInfo>();
+        String realpath = (String) checkParameter.getParam("realpath");
+        try {
+            if (realpath != null) {
+                EventInfo info = checkWriteFile(checkParameter, realpath);
+                if (info != null) {
+                    result.add(info);
+                }
+            }
+        } catch (Exception e) {
+            JSContext.LOGGER.warn("An exception occurred while executing writeFile plugin, was:" + e.getMessage());
+        }
+
+        checkJs(checkParameter, result);
+        return result;
+    }
+
+    private EventInfo checkWriteFile(CheckParameter checkParameter, String realpath) {
+        JsonObject config = Config.getConfig().getAlgorithmConfig();
+
+        // 写 NTFS 流文件，肯定不正常
+        if (isNtfsStream(realpath)) {
+            if (!isModuleIgnore(config, CONFIG_KEY_WRITE_FILE_NTFS)) {
+                return AttackInfo.createLocalAttackInfo(checkParameter, getActionElement(config, CONFIG_KEY_WRITE_FILE_NTFS),
+                        "尝试利用NTFS流上传后门: " + realpath, 90);
+            }
+            return null;
+        }
+
+        if (!isScriptFile(config, realpath)) {
+            return null;
+        }
+
+        // PUT 上传
+        AbstractRequest request = checkParameter.getRequest();
+        if (request != null && "put".equalsIgnoreCase(request.getMethod())
+                && !isModuleIgnore(config, CONFIG_KEY_WRITE_FILE_PUT_SCRIPT)) {
+            return AttackInfo.createLocalAttackInfo(checkParameter,
+                    getActionElement(config, CONFIG_KEY_WRITE_FILE_PUT_SCRIPT),
+                    "使用 PUT 方式上传脚本文件，路径: " + realpath, 90);
+        }
+
+        // 关于这个算法，请参考这个插件定制文档
+        // https://rasp.baidu.com/doc/dev/official.html#case-3
+        if (!isModuleIgnore(config, CONFIG_KEY_WRITE_FILE_SCRIPT)) {
+            return AttackInfo.createLocalAttackInfo(checkParameter, getActionElement(config, CONFIG_KEY_WRITE_FILE_SCRIPT),
+                    "尝试写入脚本文件，路径: " + realpath, 90);
+        }
+        return null;
+    }
+}
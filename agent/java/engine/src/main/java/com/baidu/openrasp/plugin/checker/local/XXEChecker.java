@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.checker.local;
+
+import com.baidu.openrasp.config.Config;
+import com.baidu.openrasp.plugin.checker.CheckParameter;
+import com.baidu.openrasp.plugin.info.AttackInfo;
+import com.baidu.openrasp.plugin.info.EventInfo;
+import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * XXE 检测 java 版本，检查外部实体使用的协议
+ */
+public class XXEChecker extends ConfigurableChecker {
+
+    private static final String CONFIG_KEY_XXE_PROTOCOL = "xxe_protocol";
+
+    private static volatile ProtocolSet protocolSet = null;
+
+    @Override
+    public List<EventInfo> checkParam(CheckParameter checkParameter) {
+        List<EventInfo> result = new LinkedList<EventInfo>();
+        String entity = (String) checkParameter.getParam("entity");
+        try {
+            if (entity != null) {
+                EventInfo info = checkEntity(checkParameter, entity);
+                if (info != null) {
+                    result.add(info);
+                }
+            }
+        } catch (Exception e) {
+            JSContext.LOGGER.warn("An exception occurred while executing xxe plugin, was:" + e.getMessage());
+        }
+
+        checkJs(checkParameter, result);
+        return result;
+    }
+
+    private EventInfo checkEntity(CheckParameter checkParameter, String entity) {
+        int index = entity.indexOf("://");
+        if (index < 0) {
+            return null;
+        }
+        String protocol = entity.substring(0, index).toLowerCase();
+        JsonObject config = Config.getConfig().getAlgorithmConfig();
+
+        // 拒绝特殊协议
+        if (!isModuleIgnore(config, CONFIG_KEY_XXE_PROTOCOL) && getProtocolSet(config).protocols.contains(protocol)) {
+            return AttackInfo.createLocalAttackInfo(checkParameter, getActionElement(config, CONFIG_KEY_XXE_PROTOCOL),
+                    "SSRF/Blind XXE 攻击 (" + protocol + " 协议)", 100);
+        }
+
+        // file 协议 + 绝对路径, e.g file:///etc/passwd
+        // 相对路径容易误报, e.g file://xwork.dtd
+        int addressStart = index + 3;
+        if ("file".equals(protocol) && entity.length() > addressStart && entity.charAt(addressStart) == '/') {
+            return AttackInfo.createLocalAttackInfo(checkParameter, EventInfo.CHECK_ACTION_INFO,
+                    "尝试读取外部实体 (file 协议)", 90);
+        }
+        return null;
+    }
+
+    private ProtocolSet getProtocolSet(JsonObject config) {
+        ProtocolSet result = protocolSet;
+        if (result == null || result.config != config) {
+            result = new ProtocolSet(config, getJsonObjectAsArray(config, CONFIG_KEY_XXE_PROTOCOL, "protocols"));
+            protocolSet = result;
+        }
+        return result;
+    }
+
+    private static class ProtocolSet {
+        final JsonObject config;
+        final Set<String> protocols = new HashSet<String>();
+
+        ProtocolSet(JsonObject config, JsonArray protocols) {
+            this.config = config;
+            if (protocols != null) {
+                for (JsonElement protocol : protocols) {
+                    this.protocols.add(protocol.getAsString().toLowerCase());
+                }
+            }
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package com.baidu.openrasp.plugin.checker.policy;
 
 import com.baidu.openrasp.plugin.checker.Checker;
+import com.baidu.openrasp.plugin.event.AlarmPipeline;
 import com.baidu.openrasp.plugin.event.CheckEventListener;
 import com.baidu.openrasp.plugin.info.EventInfo;
 import com.baidu.openrasp.plugin.info.SecurityPolicyInfo;
@@ -31,7 +32,7 @@ public class PolicyCheckListener implements CheckEventListener {
     @Override
     public void onCheckUpdate(EventInfo info) {
         if (info instanceof SecurityPolicyInfo) {
-            Checker.POLICY_ALARM_LOGGER.info(info);
+            AlarmPipeline.submit(Checker.POLICY_ALARM_LOGGER, info);
         }
     }
 
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.event;
+
+import com.baidu.openrasp.config.Config;
+import com.baidu.openrasp.plugin.info.EventInfo;
+import com.baidu.openrasp.tool.StripedCounter;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 报警输出队列
+ * <p>
+ * 请求线程只采集报警需要的原始数据（{@link EventInfo#capture()}），然后放入有界无锁队列，
+ * 时间格式化、调用栈转换、JSON 序列化和日志写入都在后台线程中完成。
+ * 队列已满时按照 alarm.queue.overflow 处理，丢弃和同步输出的次数随插件统计信息一起输出
+ */
+public class AlarmPipeline {
+
+    private static final Logger LOGGER = Logger.getLogger(AlarmPipeline.class.getName());
+
+    public static final String OVERFLOW_SYNC = "sync";
+    public static final String OVERFLOW_DROP = "drop";
+    public static final String OVERFLOW_DROP_OLDEST = "drop_oldest";
+
+    /**
+     * 队列为空时后台线程的最长等待时间
+     */
+    private static final long IDLE_WAIT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * 丢弃报警时输出警告的最小间隔
+     */
+    private static final long DROP_WARN_INTERVAL_MILLIS = 60 * 1000;
+
+    private static final ConcurrentLinkedQueue<Alarm> queue = new ConcurrentLinkedQueue<Alarm>();
+    private static final AtomicInteger size = new AtomicInteger(0);
+    private static final StripedCounter submitted = new StripedCounter();
+    private static final StripedCounter dropped = new StripedCounter();
+    private static final StripedCounter overflowed = new StripedCounter();
+    private static volatile Thread worker = null;
+    private static volatile boolean waiting = false;
+    private static volatile boolean running = false;
+    private static long lastDropped = 0;
+    private static long lastDropWarnTime = 0;
+
+    /**
+     * 启动后台输出线程
+     */
+    public static synchronized void init() {
+        if (worker != null) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "openrasp-alarm");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+    }
+
+    /**
+     * 停止后台输出线程，输出队列中剩余的报警
+     */
+    public static synchronized void release() {
+        Thread thread = worker;
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        worker = null;
+        drain();
+    }
+
+    /**
+     * 提交报警，在请求线程中调用
+     *
+     * @param logger 报警日志
+     * @param info   报警信息
+     */
+    public static void submit(Logger logger, EventInfo info) {
+        Thread thread = worker;
+        if (thread == null || !Config.getConfig().getAlarmAsync()) {
+            logger.info(info);
+            return;
+        }
+        info.capture();
+        submitted.increment();
+        int capacity = Config.getConfig().getAlarmQueueSize();
+        if (size.incrementAndGet() > capacity) {
+            String overflow = Config.getConfig().getAlarmQueueOverflow();
+            if (OVERFLOW_DROP_OLDEST.equals(overflow)) {
+                if (queue.poll() != null) {
+                    size.decrementAndGet();
+                    dropped.increment();
+                }
+            } else {
+                size.decrementAndGet();
+                if (OVERFLOW_DROP.equals(overflow)) {
+                    dropped.increment();
+                } else {
+                    overflowed.increment();
+                    logger.info(info);
+                }
+                return;
+            }
+        }
+        queue.offer(new Alarm(logger, info));
+        if (waiting) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * 输出队列统计信息
+     *
+     * @return 统计信息，没有报警时返回空字符串
+     */
+    public static String report() {
+        long total = submitted.sum();
+        if (total == 0) {
+            return "";
+        }
+        return "\nalarm queue: size=" + size.get() + " submitted=" + total + " dropped=" + dropped.sum()
+                + " sync=" + overflowed.sum();
+    }
+
+    private static void loop() {
+        while (running) {
+            if (!drain()) {
+                waiting = true;
+                // 设置等待标记后再检查一次，避免错过提交时的唤醒
+                if (queue.isEmpty() && running) {
+                    LockSupport.parkNanos(IDLE_WAIT_NANOS);
+                }
+                waiting = false;
+            }
+            warnDropped();
+        }
+    }
+
+    /**
+     * 输出队列中的所有报警
+     *
+     * @return 是否输出了报警
+     */
+    private static boolean drain() {
+        boolean written = false;
+        Alarm alarm;
+        while ((alarm = queue.poll()) != null) {
+            size.decrementAndGet();
+            written = true;
+            try {
+                alarm.logger.info(alarm.info);
+            } catch (Throwable t) {
+                LOGGER.warn("write alarm failed: " + t.getMessage(), t);
+            }
+        }
+        return written;
+    }
+
+    private static void warnDropped() {
+        long count = dropped.sum();
+        long now = System.currentTimeMillis();
+        if (count != lastDropped && now - lastDropWarnTime >= DROP_WARN_INTERVAL_MILLIS) {
+            LOGGER.warn((count - lastDropped) + " alarms dropped because the alarm queue is full, "
+                    + "consider increasing " + Config.Item.ALARM_QUEUE_SIZE);
+            lastDropped = count;
+            lastDropWarnTime = now;
+        }
+    }
+
+    private static class Alarm {
+        final Logger logger;
+        final EventInfo info;
+
+        Alarm(Logger logger, EventInfo info) {
+            this.logger = logger;
+            this.info = info;
+        }
+    }
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.info;
+
+import com.baidu.openrasp.tool.OSUtil;
+import org.mozilla.javascript.Undefined;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 报警 JSON 序列化
+ * <p>
+ * 按报警字段顺序直接以 UTF-8 写入可复用的字节缓冲区，不构造中间 Map 和字符串；
+ * 字符串转义规则与 {@link com.baidu.openrasp.tool.JsonStringify} 一致，另外把其他控制字符转义为 \\u00XX。
+ * 每个线程复用一个实例，时间按秒缓存格式化结果
+ */
+public class AlarmJsonWriter {
+
+    /**
+     * 嵌套对象的最大深度，超过后输出 null
+     */
+    public static final int MAX_DEPTH = 32;
+
+    /**
+     * 写入完成后保留的最大缓冲区，超过时释放，避免个别大报警长期占用内存
+     */
+    private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final byte[] NULL = "null".getBytes();
+    private static final byte[] TRUE = "true".getBytes();
+    private static final byte[] FALSE = "false".getBytes();
+
+    private static final ThreadLocal<AlarmJsonWriter> writers = new ThreadLocal<AlarmJsonWriter>() {
+        @Override
+        protected AlarmJsonWriter initialValue() {
+            return new AlarmJsonWriter();
+        }
+    };
+
+    private byte[] buffer = new byte[4096];
+    private int count = 0;
+    private final boolean[] hasElement = new boolean[MAX_DEPTH + 1];
+    private int depth = 0;
+    private boolean afterName = false;
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+    private long cachedSecond = Long.MIN_VALUE;
+    private byte[] cachedDate = null;
+    private String cachedHostName = null;
+    private byte[] cachedHostNameBytes = null;
+
+    private AlarmJsonWriter() {
+    }
+
+    /**
+     * @return 当前线程的 writer，已清空
+     */
+    public static AlarmJsonWriter getWriter() {
+        AlarmJsonWriter writer = writers.get();
+        writer.reset();
+        return writer;
+    }
+
+    public AlarmJsonWriter beginObject() {
+        beforeValue();
+        write((byte) '{');
+        push();
+        return this;
+    }
+
+    public AlarmJsonWriter endObject() {
+        depth--;
+        write((byte) '}');
+        return this;
+    }
+
+    public AlarmJsonWriter beginArray() {
+        beforeValue();
+        write((byte) '[');
+        push();
+        return this;
+    }
+
+    public AlarmJsonWriter endArray() {
+        depth--;
+        write((byte) ']');
+        return this;
+    }
+
+    /**
+     * 写入对象的 key
+     *
+     * @param name key
+     */
+    public AlarmJsonWriter name(String name) {
+        if (hasElement[depth]) {
+            write((byte) ',');
+        }
+        hasElement[depth] = true;
+        writeString(name);
+        write((byte) ':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * 写入 key 和值，值为空时不输出，与 Gson 默认行为一致
+     *
+     * @param name  key
+     * @param value 值
+     */
+    public AlarmJsonWriter field(String name, Object value) {
+        if (value != null && !(value instanceof Undefined)) {
+            name(name).value(value);
+        }
+        return this;
+    }
+
+    public AlarmJsonWriter value(CharSequence value) {
+        beforeValue();
+        if (value == null) {
+            write(NULL);
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    public AlarmJsonWriter value(long value) {
+        beforeValue();
+        writeAscii(Long.toString(value));
+        return this;
+    }
+
+    public AlarmJsonWriter value(boolean value) {
+        beforeValue();
+        write(value ? TRUE : FALSE);
+        return this;
+    }
+
+    /**
+     * 写入任意值，支持字符串、数字、布尔、Map（包括 js 对象）、集合（包括 js 数组）和数组，
+     * 其他类型按 toString 写为字符串
+     *
+     * @param value 值
+     */
+    public AlarmJsonWriter value(Object value) {
+        if (value == null || value instanceof Undefined) {
+            beforeValue();
+            write(NULL);
+        } else if (value instanceof CharSequence) {
+            value((CharSequence) value);
+        } else if (value instanceof Boolean) {
+            value(((Boolean) value).booleanValue());
+        } else if (value instanceof Number) {
+            writeNumber((Number) value);
+        } else if (depth >= MAX_DEPTH && (value instanceof Map || value instanceof Collection
+                || value instanceof Object[])) {
+            beforeValue();
+            write(NULL);
+        } else if (value instanceof Map) {
+            beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                field(String.valueOf(entry.getKey()), entry.getValue());
+            }
+            endObject();
+        } else if (value instanceof Collection) {
+            beginArray();
+            for (Object item : (Collection<?>) value) {
+                value(item);
+            }
+            endArray();
+        } else if (value instanceof Object[]) {
+            beginArray();
+            for (Object item : (Object[]) value) {
+                value(item);
+            }
+            endArray();
+        } else {
+            value(value.toString());
+        }
+        return this;
+    }
+
+    /**
+     * 写入 yyyy-MM-dd'T'HH:mm:ss 格式的时间
+     *
+     * @param millis 时间戳
+     */
+    public AlarmJsonWriter time(long millis) {
+        long second = millis / 1000;
+        if (second != cachedSecond || cachedDate == null) {
+            cachedDate = ('"' + dateFormat.format(millis) + '"').getBytes();
+            cachedSecond = second;
+        }
+        beforeValue();
+        write(cachedDate);
+        return this;
+    }
+
+    /**
+     * 写入服务器主机名字段，主机名获取失败时不输出，与其他空值字段一致
+     *
+     * @param name key
+     */
+    public AlarmJsonWriter hostNameField(String name) {
+        String hostName = OSUtil.getHostName();
+        if (hostName == null) {
+            return this;
+        }
+        name(name);
+        if (!hostName.equals(cachedHostName)) {
+            int start = count;
+            writeString(hostName);
+            cachedHostNameBytes = Arrays.copyOfRange(buffer, start, count);
+            cachedHostName = hostName;
+            count = start;
+        }
+        beforeValue();
+        write(cachedHostNameBytes);
+        return this;
+    }
+
+    /**
+     * @return 已写入的数据
+     */
+    public byte[] toByteArray() {
+        byte[] result = Arrays.copyOf(buffer, count);
+        if (buffer.length > MAX_RETAINED_SIZE) {
+            buffer = new byte[4096];
+        }
+        count = 0;
+        return result;
+    }
+
+    private void reset() {
+        count = 0;
+        depth = 0;
+        afterName = false;
+        hasElement[0] = false;
+    }
+
+    private void push() {
+        depth++;
+        hasElement[depth] = false;
+    }
+
+    private void beforeValue() {
+        if (afterName) {
+            afterName = false;
+        } else {
+            if (hasElement[depth]) {
+                write((byte) ',');
+            }
+            hasElement[depth] = true;
+        }
+    }
+
+    private void writeNumber(Number number) {
+        beforeValue();
+        if (number instanceof Double || number instanceof Float) {
+            double d = number.doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                write(NULL);
+            } else if (d == Math.rint(d) && Math.abs(d) < 1e15) {
+                // js 中的整数是 double，按整数输出
+                writeAscii(Long.toString((long) d));
+            } else {
+                writeAscii(Double.toString(d));
+            }
+        } else {
+            writeAscii(number.toString());
+        }
+    }
+
+    private void writeString(CharSequence s) {
+        int length = s.length();
+        ensureCapacity(length + 2);
+        buffer[count++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    writeCodePoint(Character.toCodePoint(c, s.charAt(++i)));
+                } else if (c >= '\uD800' && c <= '\uDFFF') {
+                    write((byte) '?');
+                } else {
+                    writeCodePoint(c);
+                }
+                continue;
+            }
+            switch (c) {
+                case '"':
+                    writeEscape('"');
+                    break;
+                case '\\':
+                    writeEscape('\\');
+                    break;
+                case '/':
+                    writeEscape('/');
+                    break;
+                case '\b':
+                    writeEscape('b');
+                    break;
+                case '\f':
+                    writeEscape('f');
+                    break;
+                case '\n':
+                    writeEscape('n');
+                    break;
+                case '\r':
+                    writeEscape('r');
+                    break;
+                case '\t':
+                    writeEscape('t');
+                    break;
+                default:
+                    if (c < 0x20) {
+                        ensureCapacity(6);
+                        buffer[count++] = '\\';
+                        buffer[count++] = 'u';
+                        buffer[count++] = '0';
+                        buffer[count++] = '0';
+                        buffer[count++] = HEX[c >> 4];
+                        buffer[count++] = HEX[c & 0xf];
+                    } else {
+                        write((byte) c);
+                    }
+            }
+        }
+        write((byte) '"');
+    }
+
+    private void writeEscape(char c) {
+        ensureCapacity(2);
+        buffer[count++] = '\\';
+        buffer[count++] = (byte) c;
+    }
+
+    private void writeCodePoint(int codePoint) {
+        ensureCapacity(4);
+        if (codePoint < 0x800) {
+            buffer[count++] = (byte) (0xc0 | (codePoint >> 6));
+            buffer[count++] = (byte) (0x80 | (codePoint & 0x3f));
+        } else if (codePoint < 0x10000) {
+            buffer[count++] = (byte) (0xe0 | (codePoint >> 12));
+            buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+            buffer[count++] = (byte) (0x80 | (codePoint & 0x3f));
+        } else {
+            buffer[count++] = (byte) (0xf0 | (codePoint >> 18));
+            buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+            buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+            buffer[count++] = (byte) (0x80 | (codePoint & 0x3f));
+        }
+    }
+
+    private void writeAscii(String s) {
+        int length = s.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buffer[count++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void write(byte b) {
+        ensureCapacity(1);
+        buffer[count++] = b;
+    }
+
+    private void write(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (count + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + extra));
+        }
+    }
+}
@@ -18,11 +18,7 @@ package com.baidu.openrasp.plugin.info;
 
 import com.baidu.openrasp.plugin.checker.CheckParameter;
 import com.baidu.openrasp.request.AbstractRequest;
-import com.baidu.openrasp.tool.OSUtil;
 
-import java.sql.Timestamp;
-import java.text.SimpleDateFormat;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -44,6 +40,20 @@ public class AttackInfo extends EventInfo {
     private String action;
     private int confidence;
 
+    private boolean captured = false;
+    private boolean hasRequest = false;
+    private String requestId;
+    private String attackSource;
+    private String target;
+    private String serverIp;
+    private String serverType;
+    private String serverVersion;
+    private String url;
+    private String body;
+    private String path;
+    private String userAgent;
+    private String referer;
+
     public static AttackInfo createLocalAttackInfo(CheckParameter parameter, String action, String message) {
         return new AttackInfo(parameter, action, message, DEFAULT_LOCAL_PLUGIN_NAME);
     }
@@ -66,69 +76,87 @@ public class AttackInfo extends EventInfo {
     }
 
     /**
-     * 整理攻击请求的信息
+     * 输出攻击请求的信息
      *
-     * @return 攻击信息
+     * @param writer 报警 JSON
      */
     @Override
-    public Map<String, Object> getInfo() {
-        Map<String, Object> info = new HashMap<String, Object>();
-        AbstractRequest request = parameter.getRequest();
-        Timestamp createTime = new Timestamp(parameter.getCreateTime());
-
-        info.put("event_type", getType());
+    protected void writeInfo(AlarmJsonWriter writer) {
+        capture();
+        writer.field("event_type", getType());
         // 攻击时间
-        info.put("event_time", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(createTime));
+        writer.name("event_time").time(parameter.getCreateTime());
         // 服务器host name
-        info.put("server_hostname", OSUtil.getHostName());
+        writer.hostNameField("server_hostname");
         // 攻击类型
-        info.put("attack_type", parameter.getType().toString());
+        writer.field("attack_type", parameter.getType().toString());
         // 攻击参数
-        info.put("attack_params", parameter.getParams());
+        writer.field("attack_params", parameter.getParams());
         // 攻击调用栈
-        StackTraceElement[] trace = filter(new Throwable().getStackTrace());
-        info.put("stack_trace", stringify(trace));
+        StackTraceElement[] trace = getStackTrace();
+        writer.field("stack_trace", stringify(trace));
         // 检测插件
-        info.put("plugin_name", this.pluginName);
+        writer.field("plugin_name", this.pluginName);
         // 插件消息
-        info.put("plugin_message", this.message);
+        writer.field("plugin_message", this.message);
         // 插件置信度
-        info.put("plugin_confidence", this.confidence);
+        writer.name("plugin_confidence").value(this.confidence);
         // 是否拦截
-        info.put("intercept_state", this.action);
+        writer.field("intercept_state", this.action);
 
-        if (request != null) {
+        if (hasRequest) {
             // 请求ID
-            info.put("request_id", request.getRequestId());
+            writer.field("request_id", requestId);
             // 攻击来源IP
-            info.put("attack_source", request.getRemoteAddr());
+            writer.field("attack_source", attackSource);
             // 被攻击目标域名
-            info.put("target", request.getServerName());
+            writer.field("target", target);
             // 被攻击目标IP
-            info.put("server_ip", request.getLocalAddr());
+            writer.field("server_ip", serverIp);
             // 被攻击目标服务器类型和版本
-            Map<String, String> serverInfo = request.getServerContext();
-            info.put("server_type", serverInfo != null ? serverInfo.get("server") : null);
-            info.put("server_version", serverInfo != null ? serverInfo.get("version") : null);
+            writer.field("server_type", serverType);
+            writer.field("server_version", serverVersion);
             // 被攻击URL
-            StringBuffer requestURL = request.getRequestURL();
-            String queryString = request.getQueryString();
-            info.put("url", requestURL == null ? "" : (queryString != null ? requestURL + "?" + queryString : requestURL));
+            writer.field("url", url);
             // 请求体
-            byte[] requestBody = request.getBody();
-            if (requestBody != null) {
-                info.put("body", new String(requestBody));
-            }
+            writer.field("body", body);
             // 被攻击PATH
-            info.put("path", request.getRequestURI());
+            writer.field("path", path);
             // 用户代理
-            info.put("user_agent", request.getHeader("User-Agent"));
+            writer.field("user_agent", userAgent);
             // 攻击的 Referrer 头
-            String referer = request.getHeader("Referer");
-            info.put("referer", referer == null ? "" : referer);
+            writer.field("referer", referer);
         }
+    }
 
-        return info;
+    /**
+     * 采集请求信息，请求结束后请求对象会被容器回收，需要在请求线程中读取
+     */
+    @Override
+    public synchronized void capture() {
+        if (captured) {
+            return;
+        }
+        captured = true;
+        AbstractRequest request = parameter.getRequest();
+        if (request != null) {
+            hasRequest = true;
+            requestId = request.getRequestId();
+            attackSource = request.getRemoteAddr();
+            target = request.getServerName();
+            serverIp = request.getLocalAddr();
+            Map<String, String> serverInfo = request.getServerContext();
+            serverType = serverInfo != null ? serverInfo.get("server") : null;
+            serverVersion = serverInfo != null ? serverInfo.get("version") : null;
+            StringBuffer requestURL = request.getRequestURL();
+            String queryString = request.getQueryString();
+            url = requestURL == null ? "" : (queryString != null ? requestURL + "?" + queryString : requestURL.toString());
+            body = request.getBodyString();
+            path = request.getRequestURI();
+            userAgent = request.getHeader("User-Agent");
+            String refererHeader = request.getHeader("Referer");
+            referer = refererHeader == null ? "" : refererHeader;
+        }
     }
 
     @Override
@@ -17,10 +17,9 @@
 package com.baidu.openrasp.plugin.info;
 
 import com.baidu.openrasp.config.Config;
-import com.google.gson.Gson;
+import com.baidu.openrasp.tool.StackFrames;
 
-import java.util.Arrays;
-import java.util.Map;
+import java.io.UnsupportedEncodingException;
 
 /**
  * 报警事件信息类
@@ -31,13 +30,32 @@ public abstract class EventInfo {
     public static final String CHECK_ACTION_IGNORE = "ignore";
     public static final String CHECK_ACTION_INFO = "log";
 
-    private String json;
+    private byte[] json;
+    private String jsonString;
 
     private boolean isBlock = false;
 
+    /**
+     * 报警调用栈，创建报警时采集，去除插件本身调用栈
+     */
+    private final StackFrames stackFrames = StackFrames.capture("com.baidu.openrasp",
+            Config.getConfig().getLogMaxStackSize());
+
     public abstract String getType();
 
-    public abstract Map<String, Object> getInfo();
+    /**
+     * 按报警格式输出事件信息
+     *
+     * @param writer 报警 JSON，已经开始了最外层对象
+     */
+    protected abstract void writeInfo(AlarmJsonWriter writer);
+
+    /**
+     * 采集依赖请求线程的原始数据，报警交给后台线程输出之前在请求线程中调用，
+     * 之后 {@link #writeInfo} 不再读取请求对象
+     */
+    public void capture() {
+    }
 
     public boolean isBlock() {
         return isBlock;
@@ -47,22 +65,36 @@ public abstract class EventInfo {
         isBlock = block;
     }
 
-    @Override
-    public String toString() {
+    /**
+     * 获取 UTF-8 编码的报警 JSON，第一次调用时序列化，文件和 http 输出直接使用，不再转换为字符串
+     *
+     * @return 报警 JSON
+     */
+    public synchronized byte[] toJsonBytes() {
         if (json == null) {
-            Map<String, Object> info = getInfo();
-            json = new Gson().toJson(info);
+            AlarmJsonWriter writer = AlarmJsonWriter.getWriter();
+            writer.beginObject();
+            writeInfo(writer);
+            writer.endObject();
+            json = writer.toByteArray();
         }
         return json;
     }
 
-    protected StackTraceElement[] filter(StackTraceElement[] trace) {
-        int i = 0;
-        // 去除插件本身调用栈
-        while (trace[i].getClassName().startsWith("com.baidu.openrasp") && i < trace.length) {
-            i++;
+    @Override
+    public synchronized String toString() {
+        if (jsonString == null) {
+            try {
+                jsonString = new String(toJsonBytes(), "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
         }
-        return Arrays.copyOfRange(trace, i, Math.min(i + Config.getConfig().getLogMaxStackSize(), trace.length));
+        return jsonString;
+    }
+
+    protected StackTraceElement[] getStackTrace() {
+        return stackFrames.getElements();
     }
 
     protected String stringify(StackTraceElement[] trace) {
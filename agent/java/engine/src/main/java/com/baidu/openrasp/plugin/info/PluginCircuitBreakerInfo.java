@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.info;
+
+import com.baidu.openrasp.plugin.js.engine.PluginProfile;
+
+/**
+ * 插件熔断事件，插件检测函数耗时或错误率超过阈值被暂停执行时输出
+ */
+public class PluginCircuitBreakerInfo extends EventInfo {
+
+    public static final String TYPE_PLUGIN_CIRCUIT_BREAKER = "plugin_circuit_breaker";
+
+    private String pluginName;
+    private String checkType;
+    private String reason;
+    private long cooldown;
+    private long invocations;
+    private long exceptions;
+    private long timeouts;
+    private long p99Nanos;
+    private long createTime = System.currentTimeMillis();
+
+    public PluginCircuitBreakerInfo(String pluginName, String checkType, String reason, long cooldown,
+                                    PluginProfile profile) {
+        this.pluginName = pluginName;
+        this.checkType = checkType;
+        this.reason = reason;
+        this.cooldown = cooldown;
+        // 熔断时的统计信息，报警在后台线程输出时统计值可能已经变化
+        this.invocations = profile.getInvocations();
+        this.exceptions = profile.getExceptions();
+        this.timeouts = profile.getTimeouts();
+        this.p99Nanos = profile.getPercentileNanos(0.99);
+    }
+
+    @Override
+    public String getType() {
+        return TYPE_PLUGIN_CIRCUIT_BREAKER;
+    }
+
+    @Override
+    protected void writeInfo(AlarmJsonWriter writer) {
+        writer.field("event_type", getType());
+        writer.name("event_time").time(createTime);
+        // 服务器host name
+        writer.hostNameField("server_hostname");
+        // 插件名称
+        writer.field("plugin_name", pluginName);
+        // 检测类型
+        writer.field("attack_type", checkType);
+        // 熔断原因
+        writer.field("message", reason);
+        // 暂停执行的时间（毫秒）
+        writer.name("cooldown").value(cooldown);
+        // 累计统计信息
+        writer.name("invocations").value(invocations);
+        writer.name("exceptions").value(exceptions);
+        writer.name("timeouts").value(timeouts);
+        writer.name("p99_us").value(p99Nanos / 1000);
+    }
+}
@@ -21,8 +21,6 @@ import com.baidu.openrasp.request.HttpServletRequest;
 import com.baidu.openrasp.tool.OSUtil;
 import com.baidu.openrasp.tool.Reflection;
 
-import java.text.SimpleDateFormat;
-import java.util.HashMap;
 import java.util.Map;
 
 public class SecurityPolicyInfo extends EventInfo {
@@ -51,9 +49,12 @@ public class SecurityPolicyInfo extends EventInfo {
 
     public static final String TYPE_SECURITY_POLICY = "security_policy";
 
+    private static volatile String catalinaServerInfo = null;
+
     private Type policy;
     private String message;
     private Map<String,String> params;
+    private long createTime = System.currentTimeMillis();
 
     public SecurityPolicyInfo(Type policy, String message, boolean isBlock, Map<String, String> params) {
         this.policy = policy;
@@ -72,42 +73,44 @@ public class SecurityPolicyInfo extends EventInfo {
     }
 
     @Override
-    public Map<String, Object> getInfo() {
-        Map<String, Object> info = new HashMap<String, Object>();
-
-        info.put("event_type", getType());
-        info.put("event_time", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(System.currentTimeMillis()));
+    protected void writeInfo(AlarmJsonWriter writer) {
+        writer.field("event_type", getType());
+        writer.name("event_time").time(createTime);
         // policy id
-        info.put("policy_id", this.policy.toString());
+        writer.field("policy_id", this.policy.toString());
         // 服务器host name
-        info.put("server_hostname", OSUtil.getHostName());
+        writer.hostNameField("server_hostname");
         // 服务器ip
-        info.put("server_nic", OSUtil.getIpAddress());
+        writer.field("server_nic", OSUtil.getIpAddress());
         // 服务器类型
-        info.put("server_type", getCatalinaServerType());
+        writer.field("server_type", getCatalinaServerType());
         // 服务器版本
-        info.put("server_version", getCatalinaServerVersion());
+        writer.field("server_version", getCatalinaServerVersion());
         // 安全规范检测信息
-        info.put("message", message);
+        writer.field("message", message);
         // 检测参数信息
-        if(params !=null){
-            info.put("params",params);
-        }
+        writer.field("params", params);
         // 攻击调用栈
-        StackTraceElement[] trace = filter(new Throwable().getStackTrace());
-        info.put("stack_trace", stringify(trace));
-        return info;
+        StackTraceElement[] trace = getStackTrace();
+        writer.field("stack_trace", stringify(trace));
     }
 
     public static String getCatalinaServerType() {
-        String serverInfo = (String) Reflection.invokeStaticMethod("org.apache.catalina.util.ServerInfo",
-                "getServerInfo", new Class[]{});
-        return HttpServletRequest.extractType(serverInfo);
+        return HttpServletRequest.extractType(getCatalinaServerInfo());
     }
 
     public static String getCatalinaServerVersion() {
-        String serverInfo = (String) Reflection.invokeStaticMethod("org.apache.catalina.util.ServerInfo",
-                "getServerInfo", new Class[]{});
-        return HttpServletRequest.extractNumber(serverInfo);
+        return HttpServletRequest.extractNumber(getCatalinaServerInfo());
+    }
+
+    /**
+     * tomcat 的服务器信息在进程内不会改变，获取成功后缓存
+     */
+    private static String getCatalinaServerInfo() {
+        if (catalinaServerInfo == null) {
+            catalinaServerInfo = (String) Reflection.invokeStaticMethod("org.apache.catalina.util.ServerInfo",
+                    "getServerInfo", new Class[]{});
+        }
+        return catalinaServerInfo;
     }
 }
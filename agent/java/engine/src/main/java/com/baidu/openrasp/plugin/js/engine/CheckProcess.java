@@ -21,10 +21,12 @@ import org.mozilla.javascript.Function;
 public class CheckProcess {
     private Function function;
     private String pluginName;
+    private PluginProfile profile;
 
-    public CheckProcess(Function function, String pluginName) {
+    public CheckProcess(Function function, String pluginName, PluginProfile profile) {
         this.function = function;
         this.pluginName = pluginName;
+        this.profile = profile;
     }
 
     public Function getFunction() {
@@ -42,4 +44,12 @@ public class CheckProcess {
     public void setPluginName(String pluginName) {
         this.pluginName = pluginName;
     }
+
+    public PluginProfile getProfile() {
+        return profile;
+    }
+
+    public void setProfile(PluginProfile profile) {
+        this.profile = profile;
+    }
 }
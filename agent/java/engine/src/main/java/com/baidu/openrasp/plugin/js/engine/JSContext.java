@@ -35,7 +35,19 @@ public class JSContext extends Context {
 
     private long pluginTime = Long.MIN_VALUE;
 
-    private long timeout = Long.MAX_VALUE;
+    private volatile long timeout = Long.MAX_VALUE;
+
+    /**
+     * {@link JSWatchdog} 标记为已超时的截止时间，与当前截止时间相同时表示本次检测已超时；
+     * 检测线程只比较这两个字段，时钟只由 {@link JSWatchdog} 读取
+     */
+    private volatile long timedOutDeadline = Long.MIN_VALUE;
+
+    private long lastObserveTime = 0;
+
+    private JSContextPool pool = null;
+
+    private int enterDepth = 0;
 
     public Scriptable getScope() {
         return scope;
@@ -69,12 +81,87 @@ public class JSContext extends Context {
         this.timeout = timeout;
     }
 
+    public JSContextPool getPool() {
+        return pool;
+    }
+
+    public void setPool(JSContextPool pool) {
+        this.pool = pool;
+    }
+
+    int incrementEnterDepth() {
+        return ++enterDepth;
+    }
+
+    int decrementEnterDepth() {
+        return --enterDepth;
+    }
+
+    /**
+     * 开始计时，由 {@link JSWatchdog} 在超过截止时间后设置超时标记
+     *
+     * @param timeoutMillis 超时时间（毫秒）
+     */
+    public void startTimeout(long timeoutMillis) {
+        lastObserveTime = System.nanoTime();
+        setInstructionObserverThreshold(JSContextFactory.MIN_INSTRUCTION_THRESHOLD);
+        setTimeout(System.currentTimeMillis() + timeoutMillis);
+    }
+
     public void clearTimeout() {
         timeout = Long.MAX_VALUE;
     }
 
+    /**
+     * 是否已被 {@link JSWatchdog} 标记为超时，只读取标记，不读取时钟，用于指令计数回调等频繁调用的位置
+     *
+     * @return 本次检测是否已超时
+     */
     public boolean isTimeout() {
-        return System.currentTimeMillis() > timeout;
+        return timedOutDeadline == timeout;
+    }
+
+    /**
+     * 是否已超过截止时间，包括 {@link JSWatchdog} 尚未扫描到的超时，在每个插件返回后调用
+     *
+     * @return 本次检测是否已超时
+     */
+    public boolean isOverdue() {
+        long deadline = timeout;
+        return timedOutDeadline == deadline || System.currentTimeMillis() > deadline;
+    }
+
+    /**
+     * 由 {@link JSWatchdog} 调用，标记截止时间为 deadline 的检测已超时
+     * <p>
+     * 标记的是观察到的截止时间，而不是 Context 本身：检查和标记之间本次检测已经结束、
+     * Context 开始下一次检测时，新的截止时间与标记不同，过期的标记不会使下一次检测超时；
+     * 截止时间相同的检测此时也已超时。指令计数阈值只由执行检测的线程自己调整
+     *
+     * @param deadline 观察到的已超时的截止时间
+     */
+    void markTimeout(long deadline) {
+        timedOutDeadline = deadline;
+    }
+
+    /**
+     * 根据两次指令计数回调的间隔调整阈值，使回调间隔保持在目标范围内
+     * 插件执行较快时提高阈值减少回调开销，执行较慢时降低阈值提高超时检测精度
+     */
+    void adjustInstructionObserverThreshold() {
+        long now = System.nanoTime();
+        long interval = now - lastObserveTime;
+        lastObserveTime = now;
+        int threshold = getInstructionObserverThreshold();
+        if (interval < JSContextFactory.OBSERVE_INTERVAL_NANOS / 2) {
+            if (threshold < JSContextFactory.MAX_INSTRUCTION_THRESHOLD) {
+                setInstructionObserverThreshold(Math.min(threshold * 2, JSContextFactory.MAX_INSTRUCTION_THRESHOLD));
+            }
+        } else if (interval > JSContextFactory.OBSERVE_INTERVAL_NANOS * 2) {
+            if (threshold > JSContextFactory.MIN_INSTRUCTION_THRESHOLD) {
+                setInstructionObserverThreshold(Math.max(threshold / 2, JSContextFactory.MIN_INSTRUCTION_THRESHOLD));
+            }
+        }
     }
 
     public List<EventInfo> check(CheckParameter parameter) {
@@ -97,56 +184,108 @@ public class JSContext extends Context {
         String name;
         int confidence;
 
-        setTimeout(System.currentTimeMillis() + Config.getConfig().getPluginTimeout());
-        int size = processList.size();
-        for (int i = 0; i < size; i++) {
-            checkProcess = processList.get(i);
-            function = checkProcess.getFunction();
-            try {
-                tmp = function.call(this, scope, function, functionArgs);
-            } catch (RhinoException e) {
-                LOGGER.info(e.details() + "\n" + e.getScriptStackTrace());
-                if (isTimeout()) {
+        Config config = Config.getConfig();
+        long pluginTimeout = config.getPluginTimeout();
+        long breakerLatency = config.getPluginCircuitBreakerLatency();
+        int breakerErrorRate = config.getPluginCircuitBreakerErrorRate();
+        PluginProfile profile;
+        long startTime;
+        CheckProcess lastProcess = null;
+        startTimeout(pluginTimeout);
+        try {
+            int size = processList.size();
+            for (int i = 0; i < size; i++) {
+                if (lastProcess != null && isOverdue()) {
                     break;
-                } else {
+                }
+                checkProcess = processList.get(i);
+                profile = checkProcess.getProfile();
+                if (profile.isBreakerOpen()) {
+                    parameter.setJsCheckIncomplete(true);
                     continue;
                 }
-            } catch (Exception e) {
-                LOGGER.info(e);
-                continue;
-            }
-            if (tmp == null || !(tmp instanceof NativeObject)) {
-                continue;
-            }
-            result = (ScriptableObject) tmp;
-            tmp = result.get("action");
-            if (!(tmp instanceof CharSequence)) {
-                continue;
-            }
-            action = tmp.toString();
-            if (action == null || "ignore".equals(action)) {
-                continue;
-            }
-            tmp = result.get("message");
-            if (tmp instanceof CharSequence) {
-                message = tmp.toString();
-            } else {
-                message = "";
-            }
-            tmp = result.get("name");
-            if (tmp instanceof CharSequence) {
-                name = tmp.toString();
-            } else {
-                name = checkProcess.getPluginName();
+                lastProcess = checkProcess;
+                function = checkProcess.getFunction();
+                startTime = System.nanoTime();
+                try {
+                    tmp = function.call(this, scope, function, functionArgs);
+                } catch (RhinoException e) {
+                    profile.record(System.nanoTime() - startTime, true, breakerLatency, breakerErrorRate);
+                    parameter.setJsCheckIncomplete(true);
+                    LOGGER.info(e.details() + "\n" + e.getScriptStackTrace());
+                    if (isOverdue()) {
+                        break;
+                    } else {
+                        profile.recordException();
+                        continue;
+                    }
+                } catch (Exception e) {
+                    profile.record(System.nanoTime() - startTime, true, breakerLatency, breakerErrorRate);
+                    parameter.setJsCheckIncomplete(true);
+                    profile.recordException();
+                    LOGGER.info(e);
+                    continue;
+                }
+                profile.record(System.nanoTime() - startTime, false, breakerLatency, breakerErrorRate);
+                if (tmp == null || !(tmp instanceof NativeObject)) {
+                    continue;
+                }
+                result = (ScriptableObject) tmp;
+                tmp = result.get("action");
+                if (!(tmp instanceof CharSequence)) {
+                    continue;
+                }
+                action = tmp.toString();
+                if (action == null || "ignore".equals(action)) {
+                    continue;
+                }
+                tmp = result.get("message");
+                if (tmp instanceof CharSequence) {
+                    message = tmp.toString();
+                } else {
+                    message = "";
+                }
+                tmp = result.get("name");
+                if (tmp instanceof CharSequence) {
+                    name = tmp.toString();
+                } else {
+                    name = checkProcess.getPluginName();
+                }
+                tmp = result.get("confidence");
+                if (tmp instanceof Number) {
+                    confidence = ((Number) tmp).intValue();
+                } else {
+                    confidence = new Integer(0);
+                }
+                profile.recordVerdict();
+                checkResults.add(new AttackInfo(parameter, action, message, name, confidence));
             }
-            tmp = result.get("confidence");
-            if (tmp instanceof Number) {
-                confidence = ((Number) tmp).intValue();
-            } else {
-                confidence = new Integer(0);
+            // 被指令计数回调中断的插件，以及在 java 调用中超时、未被中断而正常返回的插件，
+            // 包括最后一个插件，都在这里按超时处理
+            if (lastProcess != null && isOverdue()) {
+                parameter.setJsCheckIncomplete(true);
+                onTimeout(parameter, lastProcess, pluginTimeout, checkResults);
             }
-            checkResults.add(new AttackInfo(parameter, action, message, name, confidence));
+        } finally {
+            clearTimeout();
         }
         return checkResults;
     }
+
+    /**
+     * 插件执行超时，按照 plugin.timeout.action 中该检测类型的配置处理
+     * ignore 放行，log 和 block 输出一条报警，block 同时拦截请求
+     */
+    private void onTimeout(CheckParameter parameter, CheckProcess checkProcess, long pluginTimeout,
+                           List<EventInfo> checkResults) {
+        JSWatchdog.recordTimeout(parameter.getType());
+        checkProcess.getProfile().recordTimeout();
+        String action = Config.getConfig().getPluginTimeoutAction(parameter.getType().getName());
+        LOGGER.warn("plugin " + checkProcess.getPluginName() + " timeout when checking "
+                + parameter.getType().getName() + ", action: " + action);
+        if (!EventInfo.CHECK_ACTION_IGNORE.equals(action)) {
+            checkResults.add(new AttackInfo(parameter, action,
+                    "插件执行超时 (" + pluginTimeout + "ms)", checkProcess.getPluginName(), 0));
+        }
+    }
 }
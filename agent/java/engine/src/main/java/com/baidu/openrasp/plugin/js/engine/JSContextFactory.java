@@ -17,13 +17,17 @@
 package com.baidu.openrasp.plugin.js.engine;
 
 import com.baidu.openrasp.EngineBoot;
+import com.baidu.openrasp.config.Config;
 import com.baidu.openrasp.plugin.checker.CheckParameter;
+import com.baidu.openrasp.plugin.checker.DataRequirement;
+import com.baidu.openrasp.plugin.checker.local.VerdictCache;
 import com.fuxi.javaagent.rhino.shim.Console;
 import com.fuxi.javaagent.rhino.shim.Shim;
 import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
 import org.mozilla.javascript.*;
 
+import java.io.File;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
@@ -37,18 +41,25 @@ import java.util.List;
  */
 public class JSContextFactory extends ContextFactory {
     private static final Logger LOGGER = Logger.getLogger(JSContextFactory.class.getPackage().getName() + ".log");
+    static final int MIN_INSTRUCTION_THRESHOLD = 10 * 1000;
+    static final int MAX_INSTRUCTION_THRESHOLD = 10 * 1000 * 1000;
+    static final long OBSERVE_INTERVAL_NANOS = 1000 * 1000;
 
     private static JSContextFactory jsContextFactory = null;
 
     private ScriptableObject globalScope = null;
     private ScriptableObject RASP = null;
+    private JSScriptCache scriptCache = null;
+    private volatile JSContextPool contextPool = null;
     private long pluginTime = 0;
+    private volatile boolean[] checkPointTypes = null;
 
     private JSContextFactory() throws Exception {
         ContextFactory.initGlobal(this);
         JSContext cx = (JSContext) JSContext.enter();
         cx.clearTimeout();
         try {
+            scriptCache = new JSScriptCache(new File(Config.getConfig().getScriptCacheDirectory()));
             globalScope = cx.initStandardObjects();
 
             globalScope.defineProperty("global", globalScope, ScriptableObject.READONLY);
@@ -73,19 +84,28 @@ public class JSContextFactory extends ContextFactory {
             name = "error.js";
             is = EngineBoot.class.getResourceAsStream("/environment/" + name);
             script = IOUtils.toString(is, "UTF-8");
-            cx.evaluateString(globalScope, script, name, 1, null);
+            scriptCache.compilePinned(cx, script, name, 1).exec(cx, globalScope);
             name = "checkpoint.js";
             is = EngineBoot.class.getResourceAsStream("/environment/" + name);
             script = IOUtils.toString(is, "UTF-8");
-            cx.evaluateString(globalScope, script, name, 1, null);
+            scriptCache.compilePinned(cx, script, name, 1).exec(cx, globalScope);
             name = "rasp.js";
             is = EngineBoot.class.getResourceAsStream("/environment/" + name);
             script = IOUtils.toString(is, "UTF-8");
-            cx.evaluateString(globalScope, script, name, 1, null);
+            scriptCache.compilePinned(cx, script, name, 1).exec(cx, globalScope);
 
             RASP = (ScriptableObject) ScriptableObject.getProperty(globalScope, "RASP");
             RASP.defineProperty("sql_tokenize", new JSTokenizeSql(), ScriptableObject.READONLY);
             RASP.defineProperty("config_set", new JSRASPConfig(), ScriptableObject.READONLY);
+            RASP.defineProperty("regex_test", new JSRegexFunction(JSRegexFunction.MODE_TEST), ScriptableObject.READONLY);
+            RASP.defineProperty("regex_match", new JSRegexFunction(JSRegexFunction.MODE_MATCH), ScriptableObject.READONLY);
+            RASP.defineProperty("regex_compile", new JSRegexFunction(JSRegexFunction.MODE_COMPILE),
+                    ScriptableObject.READONLY);
+            RASP.defineProperty("dict_register", new JSDictFunction(true), ScriptableObject.READONLY);
+            RASP.defineProperty("dict_match", new JSDictFunction(false), ScriptableObject.READONLY);
+            Scriptable prototype = (Scriptable) RASP.get("prototype", RASP);
+            ScriptableObject.putProperty(prototype, "getCache", new JSPluginCacheFunction(false));
+            ScriptableObject.putProperty(prototype, "setCache", new JSPluginCacheFunction(true));
             RASP.defineProperty("get_jsengine", new BaseFunction() {
                 @Override
                 public Object call(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
@@ -106,10 +126,13 @@ public class JSContextFactory extends ContextFactory {
 
     public static void init() throws Exception {
         jsContextFactory = new JSContextFactory();
+        JSWatchdog.start0();
+        JSProfiler.start();
     }
 
     public static void release() {
         setCheckScriptList(null);
+        JSWatchdog.stop0();
         jsContextFactory = null;
     }
 
@@ -123,11 +146,20 @@ public class JSContextFactory extends ContextFactory {
                 scope.setParentScope(null);
                 Function clean = (Function) jsContextFactory.RASP.get("clean", jsContextFactory.RASP);
                 clean.call(cx, scope, clean, null);
+                JSPluginCache.clearAll();
+                JSRegexCache.clear();
+                JSDictionary.clearAll();
+                VerdictCache.clearAll();
                 if (checkScriptList != null) {
                     for (CheckScript checkScript : checkScriptList) {
-                        cx.evaluateString(scope, "(function(){\n" + checkScript.getContent() + "\n})()", checkScript.getName(), 0, null);
+                        Script script = jsContextFactory.scriptCache.compile(cx,
+                                "(function(){\n" + checkScript.getContent() + "\n})()", checkScript.getName(), 0);
+                        script.exec(cx, scope);
                     }
                 }
+                jsContextFactory.scriptCache.sweep();
+                jsContextFactory.checkPointTypes = jsContextFactory.getCheckPointTypes();
+                DataRequirement.setPluginRequirements(jsContextFactory.getDataRequirements());
             } catch (Exception e) {
                 LOGGER.info(e);
             } finally {
@@ -142,16 +174,57 @@ public class JSContextFactory extends ContextFactory {
      * 当该方法创建新 Context 时，初始化 global scope 并保存在 Context 的 ThreadLocal 中
      * 重复调用该方法不会增加 Context 中的引用计数，也不需要调用 Exit 解除绑定和释放
      * 该方法创建的 Context 与 Thread 同时释放
+     * <p>
+     * 开启 Context 池（plugin.context_pool.size）时从池中借出 Context，最多等待插件超时时间，
+     * 使用完毕后需要调用 {@link #exitContext(JSContext)} 归还；初始化失败时已借出的 Context 会先归还再抛出异常
      *
-     * @return 与当前线程绑定的 Context
+     * @return 与当前线程绑定的 Context，等待 Context 池超时时返回 null
      */
     public static JSContext enterAndInitContext() {
         JSContext cx = (JSContext) JSContext.getCurrentContext();
         if (cx == null) {
-            cx = (JSContext) jsContextFactory.enterContext();
+            JSContextPool pool = jsContextFactory.getContextPool();
+            if (pool != null) {
+                cx = pool.borrow(jsContextFactory, Config.getConfig().getPluginTimeout());
+                if (cx == null) {
+                    return null;
+                }
+                boolean entered = false;
+                try {
+                    jsContextFactory.enterContext(cx);
+                    entered = true;
+                } finally {
+                    if (!entered) {
+                        pool.giveBack(cx);
+                    }
+                }
+            } else {
+                cx = (JSContext) jsContextFactory.enterContext();
+            }
+        }
+        if (cx.getPool() != null) {
+            cx.incrementEnterDepth();
+        }
+        boolean initialized = false;
+        try {
+            initContext(cx);
+            initialized = true;
+        } finally {
+            if (!initialized) {
+                exitContext(cx);
+            }
         }
+        return cx;
+    }
+
+    /**
+     * 插件更新后重新初始化 Context 的 scope 和检测函数，全部完成后才更新 Context 的插件时间
+     *
+     * @param cx 与当前线程绑定的 Context
+     */
+    private static void initContext(JSContext cx) {
         if (cx.getPluginTime() < jsContextFactory.pluginTime) {
-            cx.setPluginTime(System.currentTimeMillis());
+            long pluginTime = System.currentTimeMillis();
             Scriptable scope = cx.newObject(jsContextFactory.globalScope);
             scope.setPrototype(jsContextFactory.globalScope);
             scope.setParentScope(null);
@@ -169,16 +242,143 @@ public class JSContextFactory extends ContextFactory {
                     NativeObject functionObj = (NativeObject) functions.get(j);
                     Function function = (Function) functionObj.get("func");
                     String pluginName = (String) ((NativeObject) functionObj.get("plugin")).get("name");
-                    functionList.add(new CheckProcess(function, pluginName));
+                    functionList.add(new CheckProcess(function, pluginName,
+                            JSProfiler.getProfile(pluginName, CheckParameter.Type.values()[i])));
                 }
                 checkPointList.add(functionList);
             }
 
             cx.setScope(scope);
             cx.setCheckPointList(checkPointList);
+            cx.setPluginTime(pluginTime);
         }
+    }
 
-        return cx;
+    /**
+     * js 插件是否注册了该类型的检测函数，没有注册时不需要进入 js 引擎
+     * 插件尚未加载完成时返回 true
+     *
+     * @param type 检测类型
+     * @return 是否注册了检测函数
+     */
+    public static boolean hasCheckPoint(CheckParameter.Type type) {
+        JSContextFactory factory = jsContextFactory;
+        boolean[] types = factory != null ? factory.checkPointTypes : null;
+        return types == null || types[type.ordinal()];
+    }
+
+    private boolean[] getCheckPointTypes() {
+        NativeObject checkPoints = (NativeObject) RASP.get("checkPoints", RASP);
+        CheckParameter.Type[] types = CheckParameter.Type.values();
+        boolean[] result = new boolean[types.length];
+        for (int i = 0; i < types.length; i++) {
+            Object functions = checkPoints.get(types[i].toString());
+            result[i] = functions instanceof NativeArray && ((NativeArray) functions).getLength() > 0;
+        }
+        return result;
+    }
+
+    /**
+     * 汇总各检测类型下 js 检测函数声明的数据需求，未声明 needs 的检测函数需要全部字段
+     *
+     * @return 按检测类型下标排列的字段掩码
+     */
+    private int[] getDataRequirements() {
+        NativeObject checkPoints = (NativeObject) RASP.get("checkPoints", RASP);
+        CheckParameter.Type[] types = CheckParameter.Type.values();
+        int[] result = new int[types.length];
+        for (int i = 0; i < types.length; i++) {
+            Object functions = checkPoints.get(types[i].toString());
+            if (!(functions instanceof NativeArray)) {
+                continue;
+            }
+            NativeArray array = (NativeArray) functions;
+            for (int j = 0; j < array.getLength(); j++) {
+                Object needs = ((NativeObject) array.get(j)).get("needs");
+                if (!(needs instanceof NativeArray)) {
+                    result[i] = DataRequirement.ALL;
+                    break;
+                }
+                for (Object name : (NativeArray) needs) {
+                    DataRequirement.Field field = DataRequirement.Field.fromName(String.valueOf(name));
+                    if (field != null) {
+                        result[i] |= field.getMask();
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 退出 {@link #enterAndInitContext()} 获取的 Context
+     * 线程绑定的 Context 不做处理，从池中借出的 Context 在最外层退出时解除绑定并归还
+     *
+     * @param cx {@link #enterAndInitContext()} 返回的 Context
+     */
+    public static void exitContext(JSContext cx) {
+        JSContextPool pool = cx.getPool();
+        if (pool != null && cx.decrementEnterDepth() == 0) {
+            JSContext.exit();
+            pool.giveBack(cx);
+        }
+    }
+
+    /**
+     * 创建一个 js 对象，用于构造检测参数
+     * 不需要当前线程绑定 Context
+     *
+     * @return js 对象
+     */
+    public static Scriptable createObject() {
+        NativeObject object = new NativeObject();
+        ScriptRuntime.setBuiltinProtoAndParent(object, jsContextFactory.globalScope, TopLevel.Builtins.Object);
+        return object;
+    }
+
+    /**
+     * 创建一个 js 数组，用于构造检测参数
+     * 不需要当前线程绑定 Context
+     *
+     * @param elements 数组元素
+     * @return js 数组
+     */
+    public static Scriptable createArray(Object[] elements) {
+        NativeArray array = new NativeArray(elements);
+        ScriptRuntime.setBuiltinProtoAndParent(array, jsContextFactory.globalScope, TopLevel.Builtins.Array);
+        return array;
+    }
+
+    /**
+     * 获取 Context 池，池大小配置发生变化时重新创建
+     *
+     * @return Context 池，未开启池模式时返回 null
+     */
+    private JSContextPool getContextPool() {
+        int size = Config.getConfig().getPluginContextPoolSize();
+        if (size <= 0) {
+            return null;
+        }
+        JSContextPool pool = contextPool;
+        if (pool == null || pool.getSize() != size) {
+            synchronized (this) {
+                pool = contextPool;
+                if (pool == null || pool.getSize() != size) {
+                    pool = new JSContextPool(size);
+                    contextPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * 获取当前使用的 Context 池，用于输出统计信息
+     *
+     * @return Context 池，未开启池模式时返回 null
+     */
+    public static JSContextPool getCurrentContextPool() {
+        return jsContextFactory != null ? jsContextFactory.contextPool : null;
     }
 
     /**
@@ -189,8 +389,9 @@ public class JSContextFactory extends ContextFactory {
     @Override
     protected JSContext makeContext() {
         JSContext cx = new JSContext();
-        // 每10 * 1000 * 1000个指令中断一次，用于检测超时
-        cx.setInstructionObserverThreshold(10 * 1000 * 1000);
+        JSWatchdog.register(cx);
+        // 指令计数回调用于检测超时，阈值在检测过程中根据回调间隔自适应调整
+        cx.setInstructionObserverThreshold(MAX_INSTRUCTION_THRESHOLD);
         cx.setLanguageVersion(Context.VERSION_ES6);
         // 使用解释执行
         cx.setOptimizationLevel(9);
@@ -219,8 +420,8 @@ public class JSContextFactory extends ContextFactory {
     }
 
     /**
-     * 每10 * 1000 * 1000个指令触发一次，用于检测超时
-     * 判断超时后抛出异常终止引擎执行
+     * 每执行 MIN_INSTRUCTION_THRESHOLD 到 MAX_INSTRUCTION_THRESHOLD 个指令触发一次，用于检测超时
+     * 读取 {@link JSWatchdog} 设置的超时标记，已超时时抛出异常终止引擎执行
      *
      * @param cx
      * @param instructionCount
@@ -232,5 +433,6 @@ public class JSContextFactory extends ContextFactory {
         if (jscx.isTimeout()) {
             JSContext.reportError("Error: Plugin Execution Timeout");
         }
+        jscx.adjustInstructionObserverThreshold();
     }
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.js.engine;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 有界 JSContext 池
+ * <p>
+ * 检测时从池中借出 Context，检测结束后归还，Context 数量与线程数量无关，
+ * 等待的线程按先来先得的顺序获取 Context，适用于线程数量很多或者使用虚拟线程的场景；
+ * 等待超时后不再等待，由调用方跳过 js 检测，避免 Context 未及时归还时请求线程无限阻塞
+ */
+public class JSContextPool {
+
+    private final int size;
+    private final ArrayBlockingQueue<JSContext> idle;
+    private final AtomicInteger created = new AtomicInteger(0);
+    private final AtomicLong borrowCount = new AtomicLong(0);
+    private final AtomicLong waitCount = new AtomicLong(0);
+    private final AtomicLong totalWaitNanos = new AtomicLong(0);
+    private final AtomicLong maxWaitNanos = new AtomicLong(0);
+    private final AtomicLong timeoutCount = new AtomicLong(0);
+
+    /**
+     * constructor
+     *
+     * @param size 池中 Context 的最大数量
+     */
+    public JSContextPool(int size) {
+        this.size = size;
+        this.idle = new ArrayBlockingQueue<JSContext>(size, true);
+    }
+
+    /**
+     * 借出 Context，池中没有空闲 Context 且数量已达上限时等待
+     *
+     * @param factory       用于创建 Context 的工厂
+     * @param timeoutMillis 最长等待时间（毫秒）
+     * @return 借出的 Context，尚未与当前线程绑定；等待超时或被中断时返回 null
+     */
+    public JSContext borrow(JSContextFactory factory, long timeoutMillis) {
+        JSContext cx = idle.poll();
+        if (cx == null) {
+            cx = tryCreate(factory);
+        }
+        if (cx == null) {
+            long start = System.nanoTime();
+            try {
+                cx = idle.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            recordWait(System.nanoTime() - start);
+            if (cx == null) {
+                timeoutCount.incrementAndGet();
+                return null;
+            }
+        }
+        borrowCount.incrementAndGet();
+        return cx;
+    }
+
+    /**
+     * 归还 Context
+     *
+     * @param cx 借出的 Context
+     */
+    public void giveBack(JSContext cx) {
+        idle.offer(cx);
+    }
+
+    private JSContext tryCreate(JSContextFactory factory) {
+        while (true) {
+            int count = created.get();
+            if (count >= size) {
+                return null;
+            }
+            if (created.compareAndSet(count, count + 1)) {
+                JSContext cx = factory.makeContext();
+                cx.setPool(this);
+                return cx;
+            }
+        }
+    }
+
+    private void recordWait(long nanos) {
+        waitCount.incrementAndGet();
+        totalWaitNanos.addAndGet(nanos);
+        long max = maxWaitNanos.get();
+        while (nanos > max && !maxWaitNanos.compareAndSet(max, nanos)) {
+            max = maxWaitNanos.get();
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCreatedCount() {
+        return created.get();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.get();
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + size + " created=" + created.get() + " borrow=" + borrowCount.get()
+                + " wait=" + waitCount.get() + " wait_total_ms=" + totalWaitNanos.get() / 1000000
+                + " wait_max_ms=" + maxWaitNanos.get() / 1000000 + " timeout=" + timeoutCount.get();
+    }
+}
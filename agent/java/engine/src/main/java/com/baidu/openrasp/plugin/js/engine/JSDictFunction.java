@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.js.engine;
+
+import org.mozilla.javascript.BaseFunction;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 关键字词典函数，将注册到 JS 中 RASP 对象上
+ * <p>
+ * RASP.dict_register(name, keywords[, options]) 注册词典，options 支持 ignore_case 和 whole_word，返回是否成功
+ * RASP.dict_match(name, text[, first]) 返回文本中出现的关键字数组，first 为 true 时只返回第一个，
+ * 没有匹配或词典不存在时返回 null
+ */
+public class JSDictFunction extends BaseFunction {
+    private final boolean isRegister;
+
+    /**
+     * constructor
+     *
+     * @param isRegister true 为 dict_register，false 为 dict_match
+     */
+    public JSDictFunction(boolean isRegister) {
+        this.isRegister = isRegister;
+    }
+
+    /**
+     * @param cx
+     * @param scope
+     * @param thisObj
+     * @param args
+     * @return
+     * @see BaseFunction#call(Context, Scriptable, Scriptable, Object[])
+     */
+    @Override
+    public Object call(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        if (args.length < 2 || !(args[0] instanceof CharSequence)) {
+            return isRegister ? Boolean.FALSE : null;
+        }
+        String name = args[0].toString();
+        if (isRegister) {
+            if (!(args[1] instanceof NativeArray)) {
+                return Boolean.FALSE;
+            }
+            NativeArray array = (NativeArray) args[1];
+            List<String> keywords = new ArrayList<String>((int) array.getLength());
+            for (int i = 0; i < array.getLength(); i++) {
+                Object keyword = array.get(i, array);
+                if (keyword instanceof CharSequence) {
+                    keywords.add(keyword.toString());
+                }
+            }
+            Scriptable options = args.length > 2 && args[2] instanceof Scriptable ? (Scriptable) args[2] : null;
+            return JSDictionary.register(name, keywords, getOption(options, "ignore_case"),
+                    getOption(options, "whole_word"));
+        }
+        JSDictionary dictionary = JSDictionary.getDictionary(name);
+        if (dictionary == null || args[1] == null || args[1] == Context.getUndefinedValue()) {
+            return null;
+        }
+        String text = Context.toString(args[1]);
+        if (args.length > 2 && Context.toBoolean(args[2])) {
+            String keyword = dictionary.find(text);
+            return keyword != null ? cx.newArray(scope, new Object[]{keyword}) : null;
+        }
+        List<String> keywords = dictionary.findAll(text);
+        return keywords.isEmpty() ? null : cx.newArray(scope, keywords.toArray());
+    }
+
+    private static boolean getOption(Scriptable options, String name) {
+        if (options == null) {
+            return false;
+        }
+        Object value = ScriptableObject.getProperty(options, name);
+        return value != Scriptable.NOT_FOUND && Context.toBoolean(value);
+    }
+
+    /**
+     * 提供获取该对象默认值的方法
+     * console.log(thisObj) 即会输出此方法返回的值
+     *
+     * @param hint
+     * @return
+     * @see Scriptable#getDefaultValue(Class)
+     */
+    @Override
+    public Object getDefaultValue(Class<?> hint) {
+        return isRegister ? "[Function: dict_register]" : "[Function: dict_match]";
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.js.engine;
+
+import com.baidu.openrasp.tool.KeywordMatcher;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 插件注册的关键字词典，为 RASP.dict_register/dict_match 提供存储
+ * <p>
+ * 词典在插件加载时注册，编译为 {@link KeywordMatcher}，匹配耗时与词典大小无关；
+ * 所有插件共享同一个命名空间，插件重新加载时清空
+ */
+public class JSDictionary {
+    private static final int MAX_COUNT = 256;
+
+    private static final ConcurrentHashMap<String, JSDictionary> dictionaries = new ConcurrentHashMap<String, JSDictionary>();
+
+    private final KeywordMatcher matcher;
+    private final boolean wholeWord;
+
+    private JSDictionary(Collection<String> keywords, boolean ignoreCase, boolean wholeWord) {
+        this.matcher = new KeywordMatcher(keywords, ignoreCase);
+        this.wholeWord = wholeWord;
+    }
+
+    /**
+     * 注册词典，同名词典会被替换
+     *
+     * @param name       词典名称
+     * @param keywords   关键字列表
+     * @param ignoreCase 是否忽略大小写
+     * @param wholeWord  是否只匹配完整的单词
+     * @return 词典数量超过上限时返回 false
+     */
+    public static boolean register(String name, Collection<String> keywords, boolean ignoreCase, boolean wholeWord) {
+        if (dictionaries.size() >= MAX_COUNT && !dictionaries.containsKey(name)) {
+            return false;
+        }
+        dictionaries.put(name, new JSDictionary(keywords, ignoreCase, wholeWord));
+        return true;
+    }
+
+    /**
+     * 获取词典
+     *
+     * @param name 词典名称
+     * @return 词典，未注册时返回 null
+     */
+    public static JSDictionary getDictionary(String name) {
+        return dictionaries.get(name);
+    }
+
+    /**
+     * 清空所有词典，插件重新加载时调用
+     */
+    public static void clearAll() {
+        dictionaries.clear();
+    }
+
+    /**
+     * 查找文本中出现的所有关键字
+     *
+     * @param text 待匹配文本
+     * @return 去重后的关键字列表，按出现顺序排列
+     */
+    public List<String> findAll(CharSequence text) {
+        return matcher.findAll(text, wholeWord);
+    }
+
+    /**
+     * 查找文本中第一个出现的关键字
+     *
+     * @param text 待匹配文本
+     * @return 关键字，没有匹配时返回 null
+     */
+    public String find(CharSequence text) {
+        return matcher.find(text, wholeWord);
+    }
+
+    public int size() {
+        return matcher.size();
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.js.engine;
+
+import com.baidu.openrasp.config.Config;
+import com.baidu.openrasp.tool.StripedCounter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 插件缓存，为 RASP.prototype.getCache/setCache 提供存储
+ * <p>
+ * 每个插件使用独立的命名空间，所有线程共享，
+ * 按 key 的哈希分段加锁，每段按访问顺序淘汰，容量和过期时间由配置决定
+ */
+public class JSPluginCache {
+    private static final int SEGMENT_COUNT = 16;
+
+    private static final ConcurrentHashMap<String, JSPluginCache> caches = new ConcurrentHashMap<String, JSPluginCache>();
+
+    private final String namespace;
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private final StripedCounter hits = new StripedCounter();
+    private final StripedCounter misses = new StripedCounter();
+    private final StripedCounter evictions = new StripedCounter();
+
+    private JSPluginCache(String namespace) {
+        this.namespace = namespace;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * 获取插件的缓存，不存在时创建
+     *
+     * @param namespace 插件名称
+     * @return 插件缓存
+     */
+    public static JSPluginCache getCache(String namespace) {
+        JSPluginCache cache = caches.get(namespace);
+        if (cache == null) {
+            cache = new JSPluginCache(namespace);
+            JSPluginCache old = caches.putIfAbsent(namespace, cache);
+            if (old != null) {
+                cache = old;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * 清空所有插件的缓存，插件重新加载时调用
+     */
+    public static void clearAll() {
+        caches.clear();
+    }
+
+    /**
+     * 输出所有插件缓存的统计信息
+     *
+     * @return 统计信息
+     */
+    public static String report() {
+        StringBuilder builder = new StringBuilder();
+        for (JSPluginCache cache : caches.values()) {
+            builder.append("\n").append(cache);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 读取缓存
+     *
+     * @param key 缓存 key
+     * @return 缓存的值，不存在或已过期时返回 null
+     */
+    public Object get(String key) {
+        Segment segment = segmentFor(key);
+        CacheEntry entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+            if (entry != null && entry.expireTime < System.currentTimeMillis()) {
+                segment.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * 写入缓存
+     *
+     * @param key   缓存 key
+     * @param value 缓存的值，只支持字符串和数字
+     * @param ttl   过期时间（毫秒），小于等于 0 时使用 plugin.cache.ttl.millis
+     */
+    public void put(String key, Object value, long ttl) {
+        Config config = Config.getConfig();
+        int maxSize = config.getPluginCacheMaxSize();
+        if (maxSize <= 0) {
+            return;
+        }
+        if (ttl <= 0) {
+            ttl = config.getPluginCacheTtl();
+        }
+        int capacity = (maxSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT;
+        long now = System.currentTimeMillis();
+        // 过期时间溢出时（e.g. ttl 为 Infinity）视为永不过期
+        long expireTime = ttl > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + ttl;
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.capacity = capacity;
+            segment.put(key, new CacheEntry(value, expireTime));
+        }
+    }
+
+    /**
+     * 删除缓存
+     *
+     * @param key 缓存 key
+     */
+    public void remove(String key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private Segment segmentFor(String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[hash & (SEGMENT_COUNT - 1)];
+    }
+
+    @Override
+    public String toString() {
+        long hit = getHitCount();
+        long miss = getMissCount();
+        long total = hit + miss;
+        return "cache=" + namespace + " size=" + size() + " hit=" + hit + " miss=" + miss
+                + " hit_rate=" + (total > 0 ? hit * 100 / total : 0) + "% evictions=" + getEvictionCount();
+    }
+
+    private static class CacheEntry {
+        final Object value;
+        final long expireTime;
+
+        CacheEntry(Object value, long expireTime) {
+            this.value = value;
+            this.expireTime = expireTime;
+        }
+    }
+
+    private class Segment extends LinkedHashMap<String, CacheEntry> {
+        int capacity = 1;
+
+        Segment() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.js.engine;
+
+import org.mozilla.javascript.BaseFunction;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+/**
+ * 插件缓存读写函数，替换 rasp.js 中 RASP.prototype.getCache/setCache 的空实现
+ * <p>
+ * plugin.getCache(key) 返回缓存的字符串或数字，不存在时返回 undefined
+ * plugin.setCache(key, value[, ttl]) 写入缓存，value 为 undefined 或 null 时删除，返回是否成功
+ */
+public class JSPluginCacheFunction extends BaseFunction {
+    private final boolean isSetter;
+
+    /**
+     * constructor
+     *
+     * @param isSetter true 为 setCache，false 为 getCache
+     */
+    public JSPluginCacheFunction(boolean isSetter) {
+        this.isSetter = isSetter;
+    }
+
+    /**
+     * @param cx
+     * @param scope
+     * @param thisObj 调用函数的插件对象，其 name 属性作为缓存命名空间
+     * @param args
+     * @return
+     * @see BaseFunction#call(Context, Scriptable, Scriptable, Object[])
+     */
+    @Override
+    public Object call(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        if (thisObj == null || args.length < 1 || args[0] == null || args[0] == Context.getUndefinedValue()) {
+            return isSetter ? Boolean.FALSE : Context.getUndefinedValue();
+        }
+        Object namespace = ScriptableObject.getProperty(thisObj, "name");
+        if (!(namespace instanceof CharSequence)) {
+            return isSetter ? Boolean.FALSE : Context.getUndefinedValue();
+        }
+        JSPluginCache cache = JSPluginCache.getCache(namespace.toString());
+        String key = Context.toString(args[0]);
+        if (!isSetter) {
+            Object value = cache.get(key);
+            return value != null ? value : Context.getUndefinedValue();
+        }
+        Object value = args.length > 1 ? args[1] : null;
+        if (value == null || value == Context.getUndefinedValue()) {
+            cache.remove(key);
+            return Boolean.TRUE;
+        }
+        if (value instanceof CharSequence) {
+            value = value.toString();
+        } else if (!(value instanceof Number)) {
+            return Boolean.FALSE;
+        }
+        long ttl = args.length > 2 && args[2] instanceof Number ? ((Number) args[2]).longValue() : 0;
+        cache.put(key, value, ttl);
+        return Boolean.TRUE;
+    }
+
+    /**
+     * 提供获取该对象默认值的方法
+     * console.log(thisObj) 即会输出此方法返回的值
+     *
+     * @param hint
+     * @return
+     * @see Scriptable#getDefaultValue(Class)
+     */
+    @Override
+    public Object getDefaultValue(Class<?> hint) {
+        return isSetter ? "[Function: setCache]" : "[Function: getCache]";
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.js.engine;
+
+import com.baidu.openrasp.config.Config;
+import com.baidu.openrasp.plugin.checker.Allowlist;
+import com.baidu.openrasp.plugin.checker.CheckParameter;
+import com.baidu.openrasp.plugin.event.AlarmPipeline;
+import com.baidu.openrasp.tool.CanonicalPathCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 插件执行统计
+ * <p>
+ * 以（插件名称，检测点）为单位保存 {@link PluginProfile}，
+ * 并按照 plugin.profiler.report_interval 定期把统计信息输出到插件日志
+ */
+public class JSProfiler {
+    private static final long REPORT_TICK_MILLIS = 1000;
+
+    private static final ConcurrentHashMap<String, PluginProfile> profiles = new ConcurrentHashMap<String, PluginProfile>();
+    private static Timer timer = null;
+    private static long lastReportTime = System.currentTimeMillis();
+
+    /**
+     * 获取插件在检测点上的统计，不存在时创建
+     *
+     * @param pluginName 插件名称
+     * @param type       检测类型
+     * @return 统计对象
+     */
+    public static PluginProfile getProfile(String pluginName, CheckParameter.Type type) {
+        String key = pluginName + '\0' + type.getName();
+        PluginProfile profile = profiles.get(key);
+        if (profile == null) {
+            profile = new PluginProfile(pluginName, type);
+            PluginProfile old = profiles.putIfAbsent(key, profile);
+            if (old != null) {
+                profile = old;
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * 获取所有统计对象
+     *
+     * @return 统计对象列表
+     */
+    public static List<PluginProfile> getProfiles() {
+        return new ArrayList<PluginProfile>(profiles.values());
+    }
+
+    /**
+     * 启动定期输出统计信息的定时器
+     */
+    public static synchronized void start() {
+        if (timer == null) {
+            timer = new Timer("openrasp-plugin-profiler", true);
+            timer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    long interval = Config.getConfig().getPluginProfilerReportInterval();
+                    long now = System.currentTimeMillis();
+                    if (interval > 0 && now - lastReportTime >= interval * 1000) {
+                        lastReportTime = now;
+                        report();
+                    }
+                }
+            }, REPORT_TICK_MILLIS, REPORT_TICK_MILLIS);
+        }
+    }
+
+    /**
+     * 输出插件执行统计、各检测类型超时次数、插件缓存命中率、正则耗时和 Context 池的使用情况
+     */
+    public static void report() {
+        try {
+            StringBuilder builder = new StringBuilder("plugin profile:");
+            for (PluginProfile profile : profiles.values()) {
+                if (profile.getInvocations() > 0 || profile.getSkipped() > 0) {
+                    builder.append("\n").append(profile);
+                }
+            }
+            builder.append("\ntimeouts:");
+            for (CheckParameter.Type type : CheckParameter.Type.values()) {
+                long count = JSWatchdog.getTimeoutCount(type);
+                if (count > 0) {
+                    builder.append(" ").append(type.getName()).append("=").append(count);
+                }
+            }
+            builder.append(JSPluginCache.report());
+            builder.append(JSRegexCache.report());
+            builder.append(Allowlist.report());
+            builder.append(CanonicalPathCache.report());
+            builder.append(AlarmPipeline.report());
+            JSContextPool pool = JSContextFactory.getCurrentContextPool();
+            if (pool != null) {
+                builder.append("\ncontext pool: ").append(pool);
+            }
+            JSContext.LOGGER.info(builder.toString());
+        } catch (Throwable t) {
+            JSContext.LOGGER.warn("output plugin profile failed: " + t.getMessage());
+        }
+    }
+}
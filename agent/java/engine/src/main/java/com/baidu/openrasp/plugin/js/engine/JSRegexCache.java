@@ -0,0 +1,299 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.js.engine;
+
+import com.baidu.openrasp.config.Config;
+import com.baidu.openrasp.tool.LinearRegex;
+import com.baidu.openrasp.tool.StripedCounter;
+import org.mozilla.javascript.Context;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * RASP.regex_test/regex_match 使用的正则编译缓存
+ * <p>
+ * 默认使用 {@link LinearRegex} 编译，匹配耗时与输入长度成线性关系；正则使用了线性引擎不支持的语法，
+ * 或 plugin.regex.engine 配置为 java 时使用 java.util.regex，此时匹配过程会检查插件是否超时。
+ * 每个正则分别统计调用次数和耗时，随插件统计信息一起输出
+ */
+public class JSRegexCache {
+    private static final int MAX_SIZE = 1000;
+    private static final int REPORT_SIZE = 10;
+
+    private static final ConcurrentHashMap<String, CompiledRegex> regexes = new ConcurrentHashMap<String, CompiledRegex>();
+
+    /**
+     * 获取编译后的正则，不存在时编译并缓存
+     *
+     * @param pattern 正则表达式
+     * @param flags   js 正则的 flags，支持 i、m、s，g 会被忽略
+     * @return 编译后的正则
+     * @throws java.util.regex.PatternSyntaxException 正则语法错误
+     * @throws IllegalArgumentException               flags 不合法
+     */
+    public static CompiledRegex getRegex(String pattern, String flags) {
+        String engine = Config.getConfig().getPluginRegexEngine();
+        String key = engine + '\0' + flags + '\0' + pattern;
+        CompiledRegex regex = regexes.get(key);
+        if (regex == null) {
+            regex = new CompiledRegex(pattern, flags, "java".equals(engine));
+            // 正则可能由请求参数拼接而来，超过容量时整体清空
+            if (regexes.size() >= MAX_SIZE) {
+                regexes.clear();
+            }
+            CompiledRegex old = regexes.putIfAbsent(key, regex);
+            if (old != null) {
+                regex = old;
+            }
+        }
+        return regex;
+    }
+
+    /**
+     * 清空缓存，插件重新加载时调用
+     */
+    public static void clear() {
+        regexes.clear();
+    }
+
+    /**
+     * 输出累计耗时最多的正则
+     *
+     * @return 统计信息
+     */
+    public static String report() {
+        List<CompiledRegex> list = new ArrayList<CompiledRegex>(regexes.values());
+        if (list.isEmpty()) {
+            return "";
+        }
+        Collections.sort(list, new Comparator<CompiledRegex>() {
+            @Override
+            public int compare(CompiledRegex o1, CompiledRegex o2) {
+                long t1 = o1.getTotalNanos();
+                long t2 = o2.getTotalNanos();
+                return t1 < t2 ? 1 : (t1 == t2 ? 0 : -1);
+            }
+        });
+        StringBuilder builder = new StringBuilder("\nregex:");
+        for (int i = 0; i < list.size() && i < REPORT_SIZE; i++) {
+            if (list.get(i).getCalls() > 0) {
+                builder.append("\n").append(list.get(i));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static int parseFlags(String flags) {
+        int result = 0;
+        for (int i = 0; i < flags.length(); i++) {
+            char c = flags.charAt(i);
+            if (c == 'i') {
+                result |= LinearRegex.CASE_INSENSITIVE;
+            } else if (c == 'm') {
+                result |= LinearRegex.MULTILINE;
+            } else if (c == 's') {
+                result |= LinearRegex.DOTALL;
+            } else if (c != 'g') {
+                throw new IllegalArgumentException("invalid regex flag: " + c);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 编译后的正则及其统计信息
+     */
+    public static class CompiledRegex {
+        private final String pattern;
+        private final String flags;
+        private final LinearRegex linearRegex;
+        private final Pattern javaPattern;
+        private final StripedCounter calls = new StripedCounter();
+        private final StripedCounter totalNanos = new StripedCounter();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        CompiledRegex(String pattern, String flags, boolean useJava) {
+            this.pattern = pattern;
+            this.flags = flags;
+            int linearFlags = parseFlags(flags);
+            LinearRegex linear = null;
+            if (!useJava) {
+                try {
+                    linear = LinearRegex.compile(pattern, linearFlags);
+                } catch (UnsupportedOperationException e) {
+                    JSContext.LOGGER.warn("regex is not supported by linear engine, fallback to java.util.regex: "
+                            + e.getMessage());
+                }
+            }
+            this.linearRegex = linear;
+            if (linear == null) {
+                int javaFlags = 0;
+                if ((linearFlags & LinearRegex.CASE_INSENSITIVE) != 0) {
+                    javaFlags |= Pattern.CASE_INSENSITIVE;
+                }
+                if ((linearFlags & LinearRegex.MULTILINE) != 0) {
+                    javaFlags |= Pattern.MULTILINE;
+                }
+                if ((linearFlags & LinearRegex.DOTALL) != 0) {
+                    javaFlags |= Pattern.DOTALL;
+                }
+                this.javaPattern = Pattern.compile(pattern, javaFlags);
+            } else {
+                this.javaPattern = null;
+            }
+        }
+
+        /**
+         * 输入中是否存在匹配
+         */
+        public boolean test(String input) {
+            long start = System.nanoTime();
+            try {
+                if (linearRegex != null) {
+                    return linearRegex.test(input);
+                }
+                return javaPattern.matcher(new TimeoutCharSequence(input)).find();
+            } finally {
+                record(System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * 查找第一个匹配
+         *
+         * @return 下标 0 为整个匹配，之后为各个分组，未参与匹配的分组为 null；没有匹配时返回 null
+         */
+        public String[] match(String input) {
+            long start = System.nanoTime();
+            try {
+                if (linearRegex != null) {
+                    return linearRegex.match(input);
+                }
+                Matcher matcher = javaPattern.matcher(new TimeoutCharSequence(input));
+                if (!matcher.find()) {
+                    return null;
+                }
+                String[] result = new String[matcher.groupCount() + 1];
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = matcher.group(i);
+                }
+                return result;
+            } finally {
+                record(System.nanoTime() - start);
+            }
+        }
+
+        public boolean isLinear() {
+            return linearRegex != null;
+        }
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        private void record(long nanos) {
+            calls.increment();
+            totalNanos.add(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        @Override
+        public String toString() {
+            long count = getCalls();
+            long total = getTotalNanos();
+            return "regex=/" + pattern + "/" + flags + " engine=" + (isLinear() ? "linear" : "java")
+                    + " calls=" + count + " total=" + total / 1000 + "us avg="
+                    + (count > 0 ? total / count / 1000 : 0) + "us max=" + getMaxNanos() / 1000 + "us";
+        }
+    }
+
+    /**
+     * 回溯引擎读取输入时检查插件是否已经超时，超时后抛出异常终止匹配
+     */
+    private static class TimeoutCharSequence implements CharSequence {
+        private static final int CHECK_INTERVAL = 1024;
+
+        private final CharSequence input;
+        private final JSContext context;
+        private int reads = 0;
+
+        TimeoutCharSequence(CharSequence input) {
+            this(input, currentContext());
+        }
+
+        private TimeoutCharSequence(CharSequence input, JSContext context) {
+            this.input = input;
+            this.context = context;
+        }
+
+        private static JSContext currentContext() {
+            Context cx = Context.getCurrentContext();
+            return cx instanceof JSContext ? (JSContext) cx : null;
+        }
+
+        @Override
+        public int length() {
+            return input.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (context != null && ++reads % CHECK_INTERVAL == 0 && context.isTimeout()) {
+                throw new RegexTimeoutException();
+            }
+            return input.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new TimeoutCharSequence(input.subSequence(start, end), context);
+        }
+
+        @Override
+        public String toString() {
+            return input.toString();
+        }
+    }
+
+    /**
+     * 正则匹配超时
+     */
+    public static class RegexTimeoutException extends RuntimeException {
+
+        RegexTimeoutException() {
+            super("regex match timeout");
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.js.engine;
+
+import org.mozilla.javascript.BaseFunction;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Java 实现的正则匹配函数，将注册到 JS 中 RASP 对象上
+ * <p>
+ * RASP.regex_test(pattern, input[, flags]) 返回是否匹配
+ * RASP.regex_match(pattern, input[, flags]) 返回与 String.prototype.match 相同格式的数组，没有匹配时返回 null
+ * RASP.regex_compile(pattern[, flags]) 预先编译正则，插件加载时调用，语法错误在加载阶段即可发现
+ */
+public class JSRegexFunction extends BaseFunction {
+    public static final int MODE_TEST = 0;
+    public static final int MODE_MATCH = 1;
+    public static final int MODE_COMPILE = 2;
+
+    private final int mode;
+
+    /**
+     * constructor
+     *
+     * @param mode {@link #MODE_TEST}、{@link #MODE_MATCH} 或 {@link #MODE_COMPILE}
+     */
+    public JSRegexFunction(int mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * @param cx
+     * @param scope
+     * @param thisObj
+     * @param args
+     * @return
+     * @see BaseFunction#call(Context, Scriptable, Scriptable, Object[])
+     */
+    @Override
+    public Object call(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        int flagsIndex = mode == MODE_COMPILE ? 1 : 2;
+        if (args.length < flagsIndex || !(args[0] instanceof CharSequence)) {
+            return mode == MODE_MATCH ? null : Boolean.FALSE;
+        }
+        String flags = args.length > flagsIndex && args[flagsIndex] instanceof CharSequence
+                ? args[flagsIndex].toString() : "";
+        JSRegexCache.CompiledRegex regex;
+        try {
+            regex = JSRegexCache.getRegex(args[0].toString(), flags);
+        } catch (RuntimeException e) {
+            throw Context.reportRuntimeError("invalid regex /" + args[0] + "/" + flags + ": " + e.getMessage());
+        }
+        if (mode == MODE_COMPILE) {
+            return Boolean.TRUE;
+        }
+        if (args[1] == null || args[1] == Context.getUndefinedValue()) {
+            return mode == MODE_MATCH ? null : Boolean.FALSE;
+        }
+        String input = Context.toString(args[1]);
+        if (mode == MODE_TEST) {
+            return regex.test(input);
+        }
+        String[] groups = regex.match(input);
+        if (groups == null) {
+            return null;
+        }
+        Scriptable array = cx.newArray(scope, groups.length);
+        for (int i = 0; i < groups.length; i++) {
+            array.put(i, array, groups[i] != null ? groups[i] : Context.getUndefinedValue());
+        }
+        return array;
+    }
+
+    /**
+     * 提供获取该对象默认值的方法
+     * console.log(thisObj) 即会输出此方法返回的值
+     *
+     * @param hint
+     * @return
+     * @see Scriptable#getDefaultValue(Class)
+     */
+    @Override
+    public Object getDefaultValue(Class<?> hint) {
+        switch (mode) {
+            case MODE_TEST:
+                return "[Function: regex_test]";
+            case MODE_MATCH:
+                return "[Function: regex_match]";
+            default:
+                return "[Function: regex_compile]";
+        }
+    }
+}
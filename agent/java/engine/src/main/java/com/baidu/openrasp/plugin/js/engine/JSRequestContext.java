@@ -23,9 +23,7 @@ import com.baidu.openrasp.request.HttpServletRequest;
 import org.mozilla.javascript.*;
 import org.mozilla.javascript.annotations.JSConstructor;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 public class JSRequestContext extends ScriptableObject {
@@ -104,22 +102,13 @@ public class JSRequestContext extends ScriptableObject {
     }
 
     public Object jsGet_body() {
-        ByteArrayOutputStream body = javaContext.getBodyStream();
+        ByteBuffer body = javaContext.getBodyBuffer();
         if (body == null) {
             return Context.getUndefinedValue();
         }
-        final Scriptable buffer = cx.newObject(scope, "Uint8Array");
-        try {
-            body.writeTo(new OutputStream() {
-                int count = 0;
-
-                @Override
-                public void write(int b) throws IOException {
-                    buffer.put(count++, buffer, b);
-                }
-            });
-        } catch (Exception e) {
-            return e;
+        Scriptable buffer = cx.newObject(scope, "Uint8Array");
+        for (int i = 0; body.hasRemaining(); i++) {
+            buffer.put(i, buffer, body.get() & 0xff);
         }
         return buffer;
     }
@@ -184,7 +173,8 @@ public class JSRequestContext extends ScriptableObject {
                 if (args.length < 1 || !(args[0] instanceof String)) {
                     throw Context.reportRuntimeError("Error: Invalid Arguments");
                 }
-                return ((HttpServletRequest) javaContext).getSessionAttribute((String) args[0]).toString();
+                Object value = ((HttpServletRequest) javaContext).getSessionAttribute((String) args[0]);
+                return value != null ? value.toString() : null;
             }
 
             @Override
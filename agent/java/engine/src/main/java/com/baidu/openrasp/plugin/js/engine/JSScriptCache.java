@@ -0,0 +1,268 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.js.engine;
+
+import org.apache.log4j.Logger;
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.GeneratedClassLoader;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.optimizer.ClassCompiler;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 插件脚本编译缓存
+ * <p>
+ * 脚本以内容哈希为键缓存编译后的 {@link Script} 对象，
+ * 同时把 Rhino 生成的字节码保存在 RASP 目录下，内容未变化的脚本在重启和重新加载时不再解析和编译
+ */
+public class JSScriptCache {
+    private static final Logger LOGGER = Logger.getLogger(JSScriptCache.class.getPackage().getName() + ".log");
+    private static final String CLASS_NAME_PREFIX = "com.baidu.openrasp.plugin.js.compiled.Script_";
+    private static final String CACHE_FILE_SUFFIX = ".jsc";
+    private static final int CACHE_FILE_MAGIC = 0x4a534331;
+
+    private final File cacheDirectory;
+    private final ConcurrentHashMap<String, Script> scripts = new ConcurrentHashMap<String, Script>();
+    private final Set<String> touched = new HashSet<String>();
+    private final Set<String> pinned = new HashSet<String>();
+
+    /**
+     * constructor
+     *
+     * @param cacheDirectory 字节码缓存目录，为 null 时只使用内存缓存
+     */
+    public JSScriptCache(File cacheDirectory) {
+        if (cacheDirectory != null && !cacheDirectory.isDirectory() && !cacheDirectory.mkdirs()) {
+            LOGGER.warn("unable to create script cache directory: " + cacheDirectory.getAbsolutePath());
+            cacheDirectory = null;
+        }
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * 获取编译后的脚本，依次查找内存缓存、磁盘缓存，都不存在时编译并写入缓存
+     *
+     * @param cx     当前线程的 Context
+     * @param source 脚本内容
+     * @param name   脚本名称
+     * @param lineno 起始行号
+     * @return 编译后的脚本
+     */
+    public synchronized Script compile(Context cx, String source, String name, int lineno) {
+        String key = getKey(cx, source, name, lineno);
+        touched.add(key);
+        return getScript(cx, key, source, name, lineno);
+    }
+
+    /**
+     * 获取编译后的环境脚本，环境脚本在整个进程生命周期内使用，不会被 {@link #sweep()} 清理
+     *
+     * @param cx     当前线程的 Context
+     * @param source 脚本内容
+     * @param name   脚本名称
+     * @param lineno 起始行号
+     * @return 编译后的脚本
+     */
+    public synchronized Script compilePinned(Context cx, String source, String name, int lineno) {
+        String key = getKey(cx, source, name, lineno);
+        pinned.add(key);
+        return getScript(cx, key, source, name, lineno);
+    }
+
+    private Script getScript(Context cx, String key, String source, String name, int lineno) {
+        Script script = scripts.get(key);
+        if (script == null) {
+            script = loadFromDisk(cx, key);
+        }
+        if (script == null) {
+            script = compileToClass(cx, key, source, name, lineno);
+        }
+        if (script == null) {
+            script = cx.compileString(source, name, lineno, null);
+        }
+        scripts.put(key, script);
+        return script;
+    }
+
+    /**
+     * 清理上次清理之后未被使用的脚本，包括内存和磁盘缓存
+     * <p>
+     * 由 {@link #compilePinned(Context, String, String, int)} 编译的环境脚本不会被清理
+     */
+    public synchronized void sweep() {
+        Iterator<String> iterator = scripts.keySet().iterator();
+        while (iterator.hasNext()) {
+            String key = iterator.next();
+            if (!touched.contains(key) && !pinned.contains(key)) {
+                iterator.remove();
+            }
+        }
+        if (cacheDirectory != null) {
+            File[] files = cacheDirectory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    String fileName = file.getName();
+                    if (fileName.endsWith(CACHE_FILE_SUFFIX)) {
+                        String key = fileName.substring(0, fileName.length() - CACHE_FILE_SUFFIX.length());
+                        if (!touched.contains(key) && !pinned.contains(key)) {
+                            file.delete();
+                        }
+                    }
+                }
+            }
+        }
+        touched.clear();
+    }
+
+    private Script loadFromDisk(Context cx, String key) {
+        if (cacheDirectory == null) {
+            return null;
+        }
+        File file = new File(cacheDirectory, key + CACHE_FILE_SUFFIX);
+        if (!file.isFile()) {
+            return null;
+        }
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (input.readInt() != CACHE_FILE_MAGIC) {
+                throw new IOException("bad magic number");
+            }
+            int count = input.readInt();
+            Object[] classFiles = new Object[count * 2];
+            for (int i = 0; i < count; i++) {
+                classFiles[i * 2] = input.readUTF();
+                byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+                classFiles[i * 2 + 1] = bytes;
+            }
+            return defineScript(cx, classFiles);
+        } catch (Throwable t) {
+            LOGGER.info("discard script cache " + file.getName() + " because: " + t.getMessage());
+            file.delete();
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    private Script compileToClass(Context cx, String key, String source, String name, int lineno) {
+        Object[] classFiles;
+        Script script;
+        try {
+            CompilerEnvirons compilerEnv = new CompilerEnvirons();
+            compilerEnv.initFromContext(cx);
+            ClassCompiler compiler = new ClassCompiler(compilerEnv);
+            classFiles = compiler.compileToClassFiles(source, name, lineno, CLASS_NAME_PREFIX + key);
+            script = defineScript(cx, classFiles);
+        } catch (Throwable t) {
+            // 交由 compileString 编译并报告语法错误
+            LOGGER.debug("compile " + name + " to class failed because: " + t.getMessage());
+            return null;
+        }
+        if (cacheDirectory != null) {
+            saveToDisk(key, classFiles);
+        }
+        return script;
+    }
+
+    private void saveToDisk(String key, Object[] classFiles) {
+        File file = new File(cacheDirectory, key + CACHE_FILE_SUFFIX);
+        File tmpFile = new File(cacheDirectory, key + CACHE_FILE_SUFFIX + ".tmp");
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            output.writeInt(CACHE_FILE_MAGIC);
+            output.writeInt(classFiles.length / 2);
+            for (int i = 0; i < classFiles.length; i += 2) {
+                byte[] bytes = (byte[]) classFiles[i + 1];
+                output.writeUTF((String) classFiles[i]);
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+            output.close();
+            output = null;
+            if (!tmpFile.renameTo(file)) {
+                file.delete();
+                if (!tmpFile.renameTo(file)) {
+                    throw new IOException("rename " + tmpFile.getName() + " failed");
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.info("save script cache " + file.getName() + " failed because: " + e.getMessage());
+            tmpFile.delete();
+        } finally {
+            closeQuietly(output);
+        }
+    }
+
+    /**
+     * 加载 Rhino 生成的类，第一个类为脚本主类
+     */
+    private Script defineScript(Context cx, Object[] classFiles) throws Exception {
+        GeneratedClassLoader loader = cx.createClassLoader(JSScriptCache.class.getClassLoader());
+        Class<?> mainClass = null;
+        for (int i = 0; i < classFiles.length; i += 2) {
+            Class<?> clazz = loader.defineClass((String) classFiles[i], (byte[]) classFiles[i + 1]);
+            loader.linkClass(clazz);
+            if (mainClass == null) {
+                mainClass = clazz;
+            }
+        }
+        if (mainClass == null) {
+            throw new IOException("empty class file list");
+        }
+        return (Script) mainClass.newInstance();
+    }
+
+    private static String getKey(Context cx, String source, String name, int lineno) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            // 引擎版本和编译参数变化时字节码不可复用
+            String header = cx.getImplementationVersion() + '\0' + cx.getOptimizationLevel() + '\0'
+                    + cx.getLanguageVersion() + '\0' + name + '\0' + lineno + '\0';
+            digest.update(header.getBytes("UTF-8"));
+            digest.update(source.getBytes("UTF-8"));
+            byte[] hash = digest.digest();
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16));
+                key.append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
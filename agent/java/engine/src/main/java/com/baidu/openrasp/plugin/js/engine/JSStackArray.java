@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.js.engine;
+
+import com.baidu.openrasp.tool.StackFrames;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import java.lang.reflect.Method;
+
+/**
+ * 检测参数中延迟生成的调用栈数组
+ * <p>
+ * 以只读 getter 属性的形式放入检测参数，插件第一次读取时才把栈帧转换为字符串数组，
+ * 插件不读取调用栈时不产生转换开销
+ */
+public class JSStackArray {
+
+    private static final Method GETTER;
+
+    static {
+        try {
+            GETTER = JSStackArray.class.getMethod("get", ScriptableObject.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final StackFrames frames;
+    private Scriptable array = null;
+
+    private JSStackArray(StackFrames frames) {
+        this.frames = frames;
+    }
+
+    /**
+     * 在检测参数中放入调用栈属性
+     *
+     * @param params 由 {@link JSContextFactory#createObject()} 创建的检测参数
+     * @param name   属性名
+     * @param frames 调用栈
+     */
+    public static void put(Scriptable params, String name, StackFrames frames) {
+        ((ScriptableObject) params).defineProperty(name, new JSStackArray(frames), GETTER, null,
+                ScriptableObject.READONLY);
+    }
+
+    /**
+     * 属性 getter，由 rhino 调用
+     *
+     * @param owner 检测参数
+     * @return 调用栈数组，元素为 类名.方法名
+     */
+    public synchronized Object get(ScriptableObject owner) {
+        if (array == null) {
+            array = JSContextFactory.createArray(frames.getNames());
+        }
+        return array;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.js.engine;
+
+import com.baidu.openrasp.config.Config;
+import com.baidu.openrasp.plugin.checker.CheckParameter;
+import org.apache.log4j.Logger;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 插件执行超时监控线程
+ * <p>
+ * 所有线程共享一个守护线程，定期扫描所有 Context，为已超过截止时间的 Context 设置超时标记，
+ * 检测线程的指令计数回调只读取该标记，不读取时钟。Context 在创建时登记一次，
+ * 以弱引用保存，线程结束后随 Context 一起回收；检测过程中不需要登记和注销
+ */
+public class JSWatchdog extends Thread {
+    private static final Logger LOGGER = Logger.getLogger(JSWatchdog.class.getPackage().getName() + ".log");
+    private static final long MIN_SCAN_INTERVAL_MILLIS = 1;
+    private static final long MAX_SCAN_INTERVAL_MILLIS = 10;
+
+    private static final Set<JSContext> contexts = Collections.newSetFromMap(new WeakHashMap<JSContext, Boolean>());
+    private static final AtomicLongArray timeoutCounts = new AtomicLongArray(CheckParameter.Type.values().length);
+    private static JSWatchdog watchdog = null;
+
+    private volatile boolean running = true;
+
+    private JSWatchdog() {
+        super("openrasp-plugin-watchdog");
+        setDaemon(true);
+    }
+
+    /**
+     * 启动监控线程
+     */
+    public static synchronized void start0() {
+        if (watchdog == null) {
+            JSWatchdog thread = new JSWatchdog();
+            thread.start();
+            watchdog = thread;
+        }
+    }
+
+    /**
+     * 停止监控线程
+     */
+    public static synchronized void stop0() {
+        JSWatchdog thread = watchdog;
+        if (thread != null) {
+            thread.running = false;
+            thread.interrupt();
+            watchdog = null;
+        }
+    }
+
+    /**
+     * 登记需要监控的 Context，在创建 Context 时调用一次
+     *
+     * @param cx 新创建的 Context
+     */
+    public static void register(JSContext cx) {
+        synchronized (contexts) {
+            contexts.add(cx);
+        }
+    }
+
+    /**
+     * 记录一次插件执行超时
+     *
+     * @param type 超时的检测类型
+     */
+    public static void recordTimeout(CheckParameter.Type type) {
+        timeoutCounts.incrementAndGet(type.ordinal());
+    }
+
+    /**
+     * 获取某一检测类型的插件执行超时次数
+     *
+     * @param type 检测类型
+     * @return 超时次数
+     */
+    public static long getTimeoutCount(CheckParameter.Type type) {
+        return timeoutCounts.get(type.ordinal());
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                long interval = Config.getConfig().getPluginTimeout() / 10;
+                interval = Math.max(MIN_SCAN_INTERVAL_MILLIS, Math.min(MAX_SCAN_INTERVAL_MILLIS, interval));
+                Thread.sleep(interval);
+                long now = System.currentTimeMillis();
+                synchronized (contexts) {
+                    for (JSContext cx : contexts) {
+                        long deadline = cx.getTimeout();
+                        if (deadline != Long.MAX_VALUE && now > deadline) {
+                            cx.markTimeout(deadline);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                // stop0 中断等待
+            } catch (Throwable t) {
+                LOGGER.warn("plugin watchdog error: " + t.getMessage());
+            }
+        }
+    }
+}
@@ -18,6 +18,7 @@ package com.baidu.openrasp.plugin.js.engine;
 
 import com.baidu.openrasp.HookHandler;
 import com.baidu.openrasp.config.Config;
+import com.baidu.openrasp.plugin.rule.RuleEngine;
 import com.baidu.openrasp.tool.filemonitor.FileScanListener;
 import com.baidu.openrasp.tool.filemonitor.FileScanMonitor;
 import org.apache.commons.io.filefilter.FileFilterUtils;
@@ -85,21 +86,21 @@ public class JsPluginManager {
                 new FileScanListener() {
                     @Override
                     public void onFileCreate(File file) {
-                        if (file.getName().endsWith(".js")) {
+                        if (isPluginFile(file)) {
                             updatePluginAsync();
                         }
                     }
 
                     @Override
                     public void onFileChange(File file) {
-                        if (file.getName().endsWith(".js")) {
+                        if (isPluginFile(file)) {
                             updatePluginAsync();
                         }
                     }
 
                     @Override
                     public void onFileDelete(File file) {
-                        if (file.getName().endsWith(".js")) {
+                        if (isPluginFile(file)) {
                             updatePluginAsync();
                         }
                     }
@@ -139,10 +140,20 @@ public class JsPluginManager {
         }
 
         JSContextFactory.setCheckScriptList(scripts);
+        RuleEngine.load(pluginDir.listFiles((FileFilter) FileFilterUtils.and(
+                FileFilterUtils.sizeFileFilter(10 * 1024 * 1024, false),
+                FileFilterUtils.suffixFileFilter(RuleEngine.RULE_FILE_SUFFIX))));
 
         HookHandler.enableHook.set(oldValue);
     }
 
+    /**
+     * 是否为插件文件，包括 js 插件和声明式规则文件
+     */
+    private static boolean isPluginFile(File file) {
+        return file.getName().endsWith(".js") || file.getName().endsWith(RuleEngine.RULE_FILE_SUFFIX);
+    }
+
     /**
      * 异步更新插件引擎
      * <p>
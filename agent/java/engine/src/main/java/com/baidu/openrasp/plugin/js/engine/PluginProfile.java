@@ -0,0 +1,229 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.js.engine;
+
+import com.baidu.openrasp.config.Config;
+import com.baidu.openrasp.plugin.checker.CheckParameter;
+import com.baidu.openrasp.plugin.checker.Checker;
+import com.baidu.openrasp.plugin.event.AlarmPipeline;
+import com.baidu.openrasp.plugin.info.PluginCircuitBreakerInfo;
+import com.baidu.openrasp.tool.StripedCounter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 单个插件在单个检测点上的执行统计，以及熔断状态
+ * <p>
+ * 计数使用分段计数器，耗时分布使用对数分桶（每个 2 的幂次分 4 个桶，误差约 25%）
+ */
+public class PluginProfile {
+    /**
+     * 熔断判断的统计窗口大小（调用次数）
+     */
+    private static final int BREAKER_WINDOW = 100;
+    private static final int HISTOGRAM_BUCKETS = 252;
+
+    private final String pluginName;
+    private final CheckParameter.Type type;
+
+    private final StripedCounter invocations = new StripedCounter();
+    private final StripedCounter totalNanos = new StripedCounter();
+    private final StripedCounter exceptions = new StripedCounter();
+    private final StripedCounter timeouts = new StripedCounter();
+    private final StripedCounter verdicts = new StripedCounter();
+    private final StripedCounter skipped = new StripedCounter();
+    private final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+    private final AtomicLong windowCalls = new AtomicLong(0);
+    private final AtomicLong windowNanos = new AtomicLong(0);
+    private final AtomicLong windowErrors = new AtomicLong(0);
+    private volatile long breakerOpenUntil = 0;
+
+    public PluginProfile(String pluginName, CheckParameter.Type type) {
+        this.pluginName = pluginName;
+        this.type = type;
+    }
+
+    /**
+     * 是否处于熔断状态，熔断期间跳过该插件的检测函数
+     * 冷却时间结束后自动恢复
+     *
+     * @return true 代表跳过本次执行
+     */
+    public boolean isBreakerOpen() {
+        long openUntil = breakerOpenUntil;
+        if (openUntil == 0) {
+            return false;
+        }
+        if (System.currentTimeMillis() < openUntil) {
+            skipped.increment();
+            return true;
+        }
+        breakerOpenUntil = 0;
+        JSContext.LOGGER.info("plugin " + pluginName + " resumed checking " + type.getName());
+        return false;
+    }
+
+    /**
+     * 记录一次检测函数的执行
+     *
+     * @param nanos            执行耗时
+     * @param error            是否抛出异常或超时
+     * @param breakerLatency   熔断的平均耗时阈值（毫秒），0 代表不按耗时熔断
+     * @param breakerErrorRate 熔断的错误率阈值（百分比），0 代表不按错误率熔断
+     */
+    public void record(long nanos, boolean error, long breakerLatency, int breakerErrorRate) {
+        invocations.increment();
+        totalNanos.add(nanos);
+        histogram.incrementAndGet(bucketIndex(nanos));
+        if (breakerLatency > 0 || breakerErrorRate > 0) {
+            updateBreaker(nanos, error, breakerLatency, breakerErrorRate);
+        }
+    }
+
+    public void recordException() {
+        exceptions.increment();
+    }
+
+    public void recordTimeout() {
+        timeouts.increment();
+    }
+
+    public void recordVerdict() {
+        verdicts.increment();
+    }
+
+    private void updateBreaker(long nanos, boolean error, long breakerLatency, int breakerErrorRate) {
+        windowNanos.addAndGet(nanos);
+        if (error) {
+            windowErrors.incrementAndGet();
+        }
+        if (windowCalls.incrementAndGet() != BREAKER_WINDOW) {
+            return;
+        }
+        // 窗口重置与其他线程的累加之间存在竞争，统计值为近似值
+        long calls = BREAKER_WINDOW;
+        long nanosInWindow = windowNanos.getAndSet(0);
+        long errorsInWindow = windowErrors.getAndSet(0);
+        windowCalls.set(0);
+        long averageNanos = nanosInWindow / calls;
+        String reason = null;
+        if (breakerLatency > 0 && averageNanos > breakerLatency * 1000000) {
+            reason = "average latency " + averageNanos / 1000 + "us exceeds " + breakerLatency + "ms";
+        } else if (breakerErrorRate > 0 && errorsInWindow * 100 > breakerErrorRate * calls) {
+            reason = "error rate " + errorsInWindow * 100 / calls + "% exceeds " + breakerErrorRate + "%";
+        }
+        if (reason != null) {
+            long cooldown = Config.getConfig().getPluginCircuitBreakerCooldown();
+            breakerOpenUntil = System.currentTimeMillis() + cooldown;
+            AlarmPipeline.submit(Checker.POLICY_ALARM_LOGGER,
+                    new PluginCircuitBreakerInfo(pluginName, type.getName(), reason, cooldown, this));
+        }
+    }
+
+    public String getPluginName() {
+        return pluginName;
+    }
+
+    public CheckParameter.Type getType() {
+        return type;
+    }
+
+    public long getInvocations() {
+        return invocations.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getExceptions() {
+        return exceptions.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getVerdicts() {
+        return verdicts.sum();
+    }
+
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    public boolean isBreakerOpenNow() {
+        return System.currentTimeMillis() < breakerOpenUntil;
+    }
+
+    /**
+     * 获取耗时分位数，返回所在分桶的上界
+     *
+     * @param percentile 分位，如 0.99
+     * @return 耗时（纳秒）
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] counts = new long[HISTOGRAM_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            counts[i] = histogram.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * percentile);
+        long count = 0;
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            count += counts[i];
+            if (count >= target) {
+                return bucketUpperBound(i);
+            }
+        }
+        return bucketUpperBound(HISTOGRAM_BUCKETS - 1);
+    }
+
+    private static int bucketIndex(long nanos) {
+        if (nanos < 4) {
+            return nanos < 0 ? 0 : (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        return ((exponent - 1) << 2) + (int) ((nanos >>> (exponent - 2)) & 3);
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < 4) {
+            return index;
+        }
+        int shift = (index >> 2) - 1;
+        long sub = index & 3;
+        return ((5 + sub) << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        long calls = getInvocations();
+        long total = getTotalNanos();
+        return "plugin=" + pluginName + " type=" + type.getName() + " calls=" + calls
+                + " total_ms=" + total / 1000000 + " avg_us=" + (calls > 0 ? total / calls / 1000 : 0)
+                + " p99_us=" + getPercentileNanos(0.99) / 1000 + " exceptions=" + getExceptions()
+                + " timeouts=" + getTimeouts() + " verdicts=" + getVerdicts() + " skipped=" + getSkipped()
+                + " breaker=" + (isBreakerOpenNow() ? "open" : "closed");
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.rule;
+
+import com.baidu.openrasp.request.AbstractRequest;
+import com.baidu.openrasp.tool.KeywordMatcher;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 请求体分段检测
+ * <p>
+ * 服务器每次读取请求体时把读到的数据输入规则中的 body 条件，自动机状态保存在游标中，关键字可以跨越读取边界，
+ * 不需要缓存整个请求体，每个请求只占用固定大小的内存；条件匹配时保存匹配位置之前的一段数据用于报警
+ */
+public class BodyInspector {
+
+    /**
+     * 报警中保存的匹配位置之前的数据长度
+     */
+    public static final int WINDOW_SIZE = 256;
+
+    private final RuleCondition[] conditions;
+    private final KeywordMatcher.Cursor[] cursors;
+    private final String[] matches;
+    private final String[] windows;
+    private final byte[] window = new byte[WINDOW_SIZE];
+    private final List<Rule> firedRules = new ArrayList<Rule>(1);
+    private long offset = 0;
+    private int pending;
+    private boolean ignoreCase = false;
+
+    private BodyInspector(RuleCondition[] conditions) {
+        this.conditions = conditions;
+        this.cursors = new KeywordMatcher.Cursor[conditions.length];
+        this.matches = new String[conditions.length];
+        this.windows = new String[conditions.length];
+        this.pending = conditions.length;
+        for (int i = 0; i < conditions.length; i++) {
+            cursors[i] = conditions[i].newBodyCursor();
+            ignoreCase |= conditions[i].isIgnoreCase();
+        }
+    }
+
+    /**
+     * 获取请求的分段检测状态，第一次读取请求体时创建
+     *
+     * @param request 请求
+     * @return 分段检测状态，没有请求体条件时返回 null
+     */
+    public static BodyInspector getOrCreate(AbstractRequest request) {
+        BodyInspector inspector = request.getBodyInspector();
+        if (inspector == null && RuleEngine.hasBodyConditions()) {
+            inspector = new BodyInspector(RuleEngine.getBodyConditions());
+            request.setBodyInspector(inspector);
+        }
+        return inspector;
+    }
+
+    static BodyInspector getInspector(AbstractRequest request) {
+        return request != null ? request.getBodyInspector() : null;
+    }
+
+    /**
+     * 输入一个字节
+     *
+     * @param b 读取到的字节
+     * @return 本次新匹配的第一个条件的关键字，没有时返回 null
+     */
+    public String inspect(int b) {
+        return pending > 0 ? update((byte) b, null) : null;
+    }
+
+    /**
+     * 输入一段数据
+     *
+     * @param bytes  字节数组
+     * @param offset 起始偏移量
+     * @param len    长度
+     * @return 本次新匹配的第一个条件的关键字，没有时返回 null
+     */
+    public String inspect(byte[] bytes, int offset, int len) {
+        String matched = null;
+        int end = offset + len;
+        for (int i = offset; i < end && pending > 0; i++) {
+            matched = update(bytes[i], matched);
+        }
+        return matched;
+    }
+
+    /**
+     * @return 所有条件都已经匹配，之后读取的数据不需要再检测
+     */
+    public boolean isDone() {
+        return pending == 0;
+    }
+
+    /**
+     * @return 已经检测的字节数
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * 获取关键字所在条件匹配时保存的数据
+     *
+     * @param keyword {@link #inspect} 返回的关键字
+     * @return 匹配位置及之前最多 {@link #WINDOW_SIZE} 字节，按 UTF-8 解码
+     */
+    public String getWindow(String keyword) {
+        for (int i = 0; i < conditions.length; i++) {
+            if (keyword.equals(matches[i])) {
+                return windows[i];
+            }
+        }
+        return null;
+    }
+
+    String getMatch(RuleCondition condition) {
+        for (int i = 0; i < conditions.length; i++) {
+            if (conditions[i] == condition) {
+                return matches[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 记录规则已经报警
+     *
+     * @return 规则之前没有报警时返回 true
+     */
+    boolean markFired(Rule rule) {
+        if (firedRules.contains(rule)) {
+            return false;
+        }
+        firedRules.add(rule);
+        return true;
+    }
+
+    private String update(byte b, String matched) {
+        window[(int) (offset % WINDOW_SIZE)] = b;
+        offset++;
+        char c = (char) (b & 0xff);
+        char lower = ignoreCase && c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        for (int i = 0; i < cursors.length; i++) {
+            if (matches[i] != null) {
+                continue;
+            }
+            String keyword = cursors[i].next(conditions[i].isIgnoreCase() ? lower : c);
+            if (keyword != null) {
+                matches[i] = conditions[i].getBodyKeyword(keyword);
+                windows[i] = snapshot();
+                pending--;
+                if (matched == null) {
+                    matched = matches[i];
+                }
+            }
+        }
+        return matched;
+    }
+
+    private String snapshot() {
+        int length = (int) Math.min(offset, WINDOW_SIZE);
+        byte[] bytes = new byte[length];
+        int start = (int) ((offset - length) % WINDOW_SIZE);
+        int first = Math.min(length, WINDOW_SIZE - start);
+        System.arraycopy(window, start, bytes, 0, first);
+        System.arraycopy(window, 0, bytes, first, length - first);
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
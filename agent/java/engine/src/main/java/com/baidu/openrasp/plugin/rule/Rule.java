@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.rule;
+
+import com.baidu.openrasp.plugin.checker.CheckParameter;
+import com.baidu.openrasp.plugin.info.AttackInfo;
+import com.baidu.openrasp.plugin.info.EventInfo;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一条声明式规则，所有条件都匹配时产生报警
+ * <p>
+ * 格式示例：
+ * <pre>
+ * {
+ *     "id": "scanner-ua",
+ *     "type": ["request"],
+ *     "action": "block",
+ *     "message": "已知的扫描器探测行为: {match}",
+ *     "confidence": 90,
+ *     "conditions": [
+ *         {"field": "header.user-agent", "operator": "contains_any", "value": ["sqlmap", "nikto"], "ignore_case": true}
+ *     ]
+ * }
+ * </pre>
+ * message 中的 {match} 会被替换为第一个条件匹配到的内容
+ */
+class Rule {
+
+    private static final String MATCH_PLACEHOLDER = "{match}";
+
+    private final String pluginName;
+    private final String id;
+    private final List<CheckParameter.Type> types = new ArrayList<CheckParameter.Type>();
+    private final String action;
+    private final String message;
+    private final int confidence;
+    private final RuleCondition[] conditions;
+    private final boolean hasBodyCondition;
+
+    /**
+     * @param pluginName 规则文件名，作为报警中的插件名称
+     * @param json       规则配置
+     * @throws IllegalArgumentException 配置不合法
+     */
+    Rule(String pluginName, JsonObject json) {
+        this.pluginName = pluginName;
+        this.id = json.has("id") ? json.get("id").getAsString() : "";
+        JsonElement type = json.get("type");
+        if (type != null && type.isJsonArray()) {
+            for (JsonElement element : (JsonArray) type) {
+                types.add(parseType(element.getAsString()));
+            }
+        } else if (type != null && type.isJsonPrimitive()) {
+            types.add(parseType(type.getAsString()));
+        }
+        if (types.isEmpty()) {
+            throw new IllegalArgumentException("rule " + id + " must have type");
+        }
+        this.action = json.has("action") ? json.get("action").getAsString() : EventInfo.CHECK_ACTION_INFO;
+        if (!EventInfo.CHECK_ACTION_BLOCK.equals(action) && !EventInfo.CHECK_ACTION_INFO.equals(action)
+                && !EventInfo.CHECK_ACTION_IGNORE.equals(action)) {
+            throw new IllegalArgumentException("rule " + id + " has invalid action: " + action);
+        }
+        this.message = json.has("message") ? json.get("message").getAsString() : id;
+        this.confidence = json.has("confidence") ? json.get("confidence").getAsInt() : 90;
+        JsonElement conditionArray = json.get("conditions");
+        if (conditionArray == null || !conditionArray.isJsonArray() || ((JsonArray) conditionArray).size() == 0) {
+            throw new IllegalArgumentException("rule " + id + " must have conditions");
+        }
+        JsonArray array = (JsonArray) conditionArray;
+        this.conditions = new RuleCondition[array.size()];
+        boolean body = false;
+        for (int i = 0; i < conditions.length; i++) {
+            conditions[i] = new RuleCondition(array.get(i).getAsJsonObject());
+            body |= conditions[i].isBodyCondition();
+        }
+        this.hasBodyCondition = body;
+    }
+
+    List<CheckParameter.Type> getTypes() {
+        return types;
+    }
+
+    /**
+     * @return 所有条件引用的需要按需采集的字段掩码
+     */
+    int getRequirements() {
+        int result = 0;
+        for (RuleCondition condition : conditions) {
+            result |= condition.getRequirements();
+        }
+        return result;
+    }
+
+    /**
+     * @return 所有请求体条件
+     */
+    List<RuleCondition> getBodyConditions() {
+        List<RuleCondition> result = new ArrayList<RuleCondition>();
+        for (RuleCondition condition : conditions) {
+            if (condition.isBodyCondition()) {
+                result.add(condition);
+            }
+        }
+        return result;
+    }
+
+    boolean isIgnore() {
+        return EventInfo.CHECK_ACTION_IGNORE.equals(action);
+    }
+
+    /**
+     * @param parameter 检测参数
+     * @return 报警信息，不匹配时返回 null
+     */
+    EventInfo check(CheckParameter parameter) {
+        String matched = null;
+        for (RuleCondition condition : conditions) {
+            String result = condition.match(parameter);
+            if (result == null) {
+                return null;
+            }
+            if (matched == null) {
+                matched = result;
+            }
+        }
+        // 请求体分段匹配时会多次检测，同一个请求只报警一次
+        if (hasBodyCondition && !BodyInspector.getInspector(parameter.getRequest()).markFired(this)) {
+            return null;
+        }
+        return new AttackInfo(parameter, action, message.replace(MATCH_PLACEHOLDER, matched), pluginName, confidence);
+    }
+
+    private CheckParameter.Type parseType(String name) {
+        for (CheckParameter.Type type : CheckParameter.Type.values()) {
+            if (type.getName().equals(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("rule " + id + " has unknown type: " + name);
+    }
+}
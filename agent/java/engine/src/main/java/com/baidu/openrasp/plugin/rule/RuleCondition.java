@@ -0,0 +1,502 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.rule;
+
+import com.baidu.openrasp.TokenGenerator;
+import com.baidu.openrasp.plugin.antlrlistener.TokenizeErrorListener;
+import com.baidu.openrasp.plugin.checker.CheckParameter;
+import com.baidu.openrasp.plugin.checker.DataRequirement;
+import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.baidu.openrasp.request.AbstractRequest;
+import com.baidu.openrasp.request.ParameterIndex;
+import com.baidu.openrasp.tool.KeywordMatcher;
+import com.baidu.openrasp.tool.LinearRegex;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.mozilla.javascript.NativeArray;
+
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 规则中的一个匹配条件，由字段选择器和操作符组成，构造时完成编译
+ * <p>
+ * 字段选择器：
+ * header.名称、parameter.名称、parameter（所有参数值，包括请求体参数）、path、url、method、query_string、remote_addr、
+ * param.名称（检测点参数）、sql_tokens（SQL 语句分词结果）、file_path（检测点参数中的 realpath 或 path）、
+ * body（已读取的请求体，只支持 contains_any，由 {@link BodyInspector} 在读取请求体时分段匹配，匹配到新的关键字时触发 requestBody 检测）
+ * <p>
+ * 操作符：equals、prefix、suffix、contains_any、regex、cidr、exists，
+ * 字段有多个值时任意一个值满足即认为匹配，not 为 true 时取反
+ * <p>
+ * regex 与 js 插件中的正则语法相同，使用 {@link LinearRegex} 编译，匹配耗时与输入长度成线性关系；
+ * 只有使用了线性引擎不支持的语法时才使用 java.util.regex
+ */
+class RuleCondition {
+
+    private static final TokenizeErrorListener tokenizeErrorListener = new TokenizeErrorListener();
+
+    private enum Field {
+        HEADER, PARAMETER, ALL_PARAMETERS, PATH, URL, METHOD, QUERY_STRING, REMOTE_ADDR, PARAM, SQL_TOKENS, FILE_PATH,
+        BODY
+    }
+
+    private enum Operator {
+        EQUALS, PREFIX, SUFFIX, CONTAINS_ANY, REGEX, CIDR, EXISTS
+    }
+
+    private final Field field;
+    private final String key;
+    private final Operator operator;
+    private final boolean ignoreCase;
+    /**
+     * 忽略大小写时是否把规则值和输入转换为小写，正则按忽略大小写编译，保持原样
+     */
+    private final boolean lowerCase;
+    private final boolean not;
+    private final String[] values;
+    private final Set<String> valueSet;
+    private final KeywordMatcher keywordMatcher;
+    private final LinearRegex linearRegex;
+    private final Pattern pattern;
+    private final Cidr[] cidrs;
+    private final KeywordMatcher bodyMatcher;
+    private final Map<String, String> bodyKeywords;
+
+    /**
+     * @param json 条件配置，e.g {"field": "header.user-agent", "operator": "contains_any", "value": ["sqlmap"]}
+     * @throws IllegalArgumentException 配置不合法
+     */
+    RuleCondition(JsonObject json) {
+        String fieldName = getString(json, "field");
+        String operatorName = getString(json, "operator");
+        if (fieldName == null || operatorName == null) {
+            throw new IllegalArgumentException("condition must have field and operator");
+        }
+        int dot = fieldName.indexOf('.');
+        String fieldType = dot < 0 ? fieldName : fieldName.substring(0, dot);
+        this.key = dot < 0 ? null : fieldName.substring(dot + 1);
+        this.field = parseField(fieldType, key);
+        try {
+            this.operator = Operator.valueOf(operatorName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown operator: " + operatorName);
+        }
+        this.ignoreCase = getBoolean(json, "ignore_case");
+        this.lowerCase = ignoreCase && operator != Operator.REGEX;
+        this.not = getBoolean(json, "not");
+
+        List<String> list = new ArrayList<String>();
+        JsonElement value = json.get("value");
+        if (value != null && value.isJsonArray()) {
+            for (JsonElement element : (JsonArray) value) {
+                list.add(lowerCase ? element.getAsString().toLowerCase() : element.getAsString());
+            }
+        } else if (value != null && value.isJsonPrimitive()) {
+            list.add(lowerCase ? value.getAsString().toLowerCase() : value.getAsString());
+        }
+        if (operator != Operator.EXISTS && list.isEmpty()) {
+            throw new IllegalArgumentException("operator " + operatorName + " requires value");
+        }
+        this.values = list.toArray(new String[list.size()]);
+        this.valueSet = operator == Operator.EQUALS ? new HashSet<String>(list) : null;
+        this.keywordMatcher = operator == Operator.CONTAINS_ANY ? new KeywordMatcher(list) : null;
+        if (operator == Operator.REGEX) {
+            String regex = joinPatterns(list);
+            LinearRegex linear = null;
+            try {
+                linear = LinearRegex.compile(regex, ignoreCase ? LinearRegex.CASE_INSENSITIVE : 0);
+            } catch (UnsupportedOperationException e) {
+                JSContext.LOGGER.warn("regex is not supported by linear engine, fallback to java.util.regex: "
+                        + e.getMessage());
+            }
+            this.linearRegex = linear;
+            this.pattern = linear == null ? Pattern.compile(regex,
+                    ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0) : null;
+        } else {
+            this.linearRegex = null;
+            this.pattern = null;
+        }
+        this.cidrs = operator == Operator.CIDR ? compileCidrs(list) : null;
+        if (field == Field.BODY) {
+            if (operator != Operator.CONTAINS_ANY || not) {
+                throw new IllegalArgumentException("field body only supports operator contains_any");
+            }
+            // 请求体按字节匹配，关键字转换为 UTF-8 字节序列，每个字节对应一个字符
+            this.bodyKeywords = new HashMap<String, String>();
+            for (String keyword : list) {
+                bodyKeywords.put(toByteString(keyword), keyword);
+            }
+            this.bodyMatcher = new KeywordMatcher(bodyKeywords.keySet());
+        } else {
+            this.bodyMatcher = null;
+            this.bodyKeywords = null;
+        }
+    }
+
+    /**
+     * @return 是否为请求体条件，请求体条件在读取请求体时匹配
+     */
+    boolean isBodyCondition() {
+        return field == Field.BODY;
+    }
+
+    /**
+     * @return 是否忽略大小写，请求体条件忽略大小写时输入的字节需要先转换为小写
+     */
+    boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    /**
+     * @return 请求体分段匹配的游标
+     */
+    KeywordMatcher.Cursor newBodyCursor() {
+        return bodyMatcher.newCursor();
+    }
+
+    /**
+     * @param byteString 游标返回的字节序列形式的关键字
+     * @return 规则中配置的关键字
+     */
+    String getBodyKeyword(String byteString) {
+        return bodyKeywords.get(byteString);
+    }
+
+    /**
+     * @return 条件引用的需要按需采集的字段掩码
+     */
+    int getRequirements() {
+        if (field == Field.FILE_PATH) {
+            return DataRequirement.Field.REALPATH.getMask();
+        }
+        if (field == Field.PARAM) {
+            DataRequirement.Field required = DataRequirement.Field.fromName(key);
+            return required != null ? required.getMask() : 0;
+        }
+        return 0;
+    }
+
+    /**
+     * 执行匹配
+     *
+     * @param parameter 检测参数
+     * @return 匹配到的内容（contains_any 为命中的关键字，其他为字段值），不匹配时返回 null
+     */
+    String match(CheckParameter parameter) {
+        if (field == Field.BODY) {
+            BodyInspector inspector = BodyInspector.getInspector(parameter.getRequest());
+            return inspector != null ? inspector.getMatch(this) : null;
+        }
+        String matched = null;
+        String first = null;
+        // 所有参数的小写形式已经在参数索引中计算好
+        boolean toLowerCase = lowerCase && field != Field.ALL_PARAMETERS;
+        for (String input : select(parameter)) {
+            if (input != null) {
+                if (first == null) {
+                    first = input;
+                }
+                matched = matchValue(toLowerCase ? input.toLowerCase() : input);
+                if (matched != null) {
+                    break;
+                }
+            }
+        }
+        if (not) {
+            // 取反时返回字段的原始值
+            return matched != null ? null : first != null ? first : "";
+        }
+        return matched;
+    }
+
+    private String matchValue(String input) {
+        switch (operator) {
+            case EQUALS:
+                return valueSet.contains(input) ? input : null;
+            case PREFIX:
+                for (String value : values) {
+                    if (input.startsWith(value)) {
+                        return input;
+                    }
+                }
+                return null;
+            case SUFFIX:
+                for (String value : values) {
+                    if (input.endsWith(value)) {
+                        return input;
+                    }
+                }
+                return null;
+            case CONTAINS_ANY:
+                return keywordMatcher.find(input);
+            case REGEX:
+                boolean found = linearRegex != null ? linearRegex.test(input) : pattern.matcher(input).find();
+                return found ? input : null;
+            case CIDR:
+                byte[] address = parseAddress(input);
+                if (address != null) {
+                    for (Cidr cidr : cidrs) {
+                        if (cidr.contains(address)) {
+                            return input;
+                        }
+                    }
+                }
+                return null;
+            case EXISTS:
+                return input.length() > 0 ? input : null;
+            default:
+                return null;
+        }
+    }
+
+    private List<String> select(CheckParameter parameter) {
+        AbstractRequest request = parameter.getRequest();
+        switch (field) {
+            case HEADER:
+                return request != null ? single(request.getHeader(key)) : Collections.<String>emptyList();
+            case PARAMETER:
+                if (request != null) {
+                    Map<String, String[]> parameterMap = request.getParameterMap();
+                    String[] values = parameterMap != null ? parameterMap.get(key) : null;
+                    if (values != null) {
+                        List<String> result = new ArrayList<String>(values.length);
+                        Collections.addAll(result, values);
+                        return result;
+                    }
+                }
+                return Collections.emptyList();
+            case ALL_PARAMETERS:
+                if (request != null) {
+                    ParameterIndex parameterIndex = request.getParameterIndex();
+                    return lowerCase ? parameterIndex.getLowerCaseValues() : parameterIndex.getValues();
+                }
+                return Collections.emptyList();
+            case PATH:
+                return request != null ? single(request.getRequestURI()) : Collections.<String>emptyList();
+            case URL:
+                StringBuffer url = request != null ? request.getRequestURL() : null;
+                return url != null ? single(url.toString()) : Collections.<String>emptyList();
+            case METHOD:
+                return request != null ? single(request.getMethod()) : Collections.<String>emptyList();
+            case QUERY_STRING:
+                return request != null ? single(request.getQueryString()) : Collections.<String>emptyList();
+            case REMOTE_ADDR:
+                return request != null ? single(request.getRemoteAddr()) : Collections.<String>emptyList();
+            case PARAM:
+                return toStrings(parameter.getParam(key));
+            case SQL_TOKENS:
+                Object query = parameter.getParam("query");
+                if (query instanceof String) {
+                    String[] tokens = TokenGenerator.tokenize((String) query, tokenizeErrorListener);
+                    if (tokens != null) {
+                        List<String> result = new ArrayList<String>(tokens.length);
+                        Collections.addAll(result, tokens);
+                        return result;
+                    }
+                }
+                return Collections.emptyList();
+            case FILE_PATH:
+                Object path = parameter.getParam("realpath");
+                return toStrings(path != null ? path : parameter.getParam("path"));
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    private static List<String> single(String value) {
+        return value != null ? Collections.singletonList(value) : Collections.<String>emptyList();
+    }
+
+    private static List<String> toStrings(Object value) {
+        if (value instanceof NativeArray) {
+            NativeArray array = (NativeArray) value;
+            List<String> result = new ArrayList<String>((int) array.getLength());
+            for (int i = 0; i < array.getLength(); i++) {
+                Object element = array.get(i);
+                if (element instanceof CharSequence || element instanceof Number) {
+                    result.add(element.toString());
+                }
+            }
+            return result;
+        }
+        if (value instanceof CharSequence || value instanceof Number) {
+            return Collections.singletonList(value.toString());
+        }
+        return Collections.emptyList();
+    }
+
+    private static Field parseField(String fieldType, String key) {
+        if ("header".equals(fieldType) && key != null) {
+            return Field.HEADER;
+        } else if ("parameter".equals(fieldType)) {
+            return key != null ? Field.PARAMETER : Field.ALL_PARAMETERS;
+        } else if ("param".equals(fieldType) && key != null) {
+            return Field.PARAM;
+        } else if ("path".equals(fieldType)) {
+            return Field.PATH;
+        } else if ("url".equals(fieldType)) {
+            return Field.URL;
+        } else if ("method".equals(fieldType)) {
+            return Field.METHOD;
+        } else if ("query_string".equals(fieldType)) {
+            return Field.QUERY_STRING;
+        } else if ("remote_addr".equals(fieldType)) {
+            return Field.REMOTE_ADDR;
+        } else if ("sql_tokens".equals(fieldType)) {
+            return Field.SQL_TOKENS;
+        } else if ("file_path".equals(fieldType)) {
+            return Field.FILE_PATH;
+        } else if ("body".equals(fieldType)) {
+            return Field.BODY;
+        }
+        throw new IllegalArgumentException("unknown field: " + fieldType + (key != null ? "." + key : ""));
+    }
+
+    private static String joinPatterns(List<String> list) {
+        StringBuilder regex = new StringBuilder();
+        for (String value : list) {
+            if (regex.length() > 0) {
+                regex.append('|');
+            }
+            regex.append("(?:").append(value).append(')');
+        }
+        return regex.toString();
+    }
+
+    private static Cidr[] compileCidrs(List<String> list) {
+        Cidr[] result = new Cidr[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            String value = list.get(i);
+            int slash = value.indexOf('/');
+            byte[] address = parseAddress(slash < 0 ? value : value.substring(0, slash));
+            if (address == null) {
+                throw new IllegalArgumentException("invalid cidr: " + value);
+            }
+            int prefix = slash < 0 ? address.length * 8 : Integer.parseInt(value.substring(slash + 1));
+            if (prefix < 0 || prefix > address.length * 8) {
+                throw new IllegalArgumentException("invalid cidr: " + value);
+            }
+            result[i] = new Cidr(address, prefix);
+        }
+        return result;
+    }
+
+    /**
+     * 解析 ip 字面量，避免触发域名解析：
+     * IPv4 只接受 4 段十进制的点分形式，由本方法直接解析；
+     * IPv6 必须包含 ':'，加上方括号交给 InetAddress 解析，格式错误时抛出异常，不会作为域名查询
+     */
+    private static byte[] parseAddress(String value) {
+        if (value.indexOf(':') < 0) {
+            return parseIPv4(value);
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f') && !(c >= 'A' && c <= 'F')
+                    && c != '.' && c != ':') {
+                return null;
+            }
+        }
+        try {
+            return InetAddress.getByName("[" + value + "]").getAddress();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static byte[] parseIPv4(String value) {
+        byte[] address = new byte[4];
+        int length = value.length();
+        int part = 0;
+        int i = 0;
+        while (part < 4) {
+            int start = i;
+            int number = 0;
+            while (i < length && i - start < 3 && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+                number = number * 10 + (value.charAt(i) - '0');
+                i++;
+            }
+            if (i == start || number > 255) {
+                return null;
+            }
+            address[part++] = (byte) number;
+            if (part < 4) {
+                if (i >= length || value.charAt(i) != '.') {
+                    return null;
+                }
+                i++;
+            }
+        }
+        return i == length ? address : null;
+    }
+
+    private static String toByteString(String keyword) {
+        try {
+            return new String(keyword.getBytes("UTF-8"), "ISO-8859-1");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String getString(JsonObject json, String key) {
+        JsonElement element = json.get(key);
+        return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+    }
+
+    private static boolean getBoolean(JsonObject json, String key) {
+        JsonElement element = json.get(key);
+        return element != null && element.isJsonPrimitive() && element.getAsBoolean();
+    }
+
+    private static class Cidr {
+        final byte[] network;
+        final int prefix;
+
+        Cidr(byte[] network, int prefix) {
+            this.network = network;
+            this.prefix = prefix;
+        }
+
+        boolean contains(byte[] address) {
+            if (address.length != network.length) {
+                return false;
+            }
+            int bytes = prefix / 8;
+            for (int i = 0; i < bytes; i++) {
+                if (address[i] != network[i]) {
+                    return false;
+                }
+            }
+            int bits = prefix % 8;
+            if (bits == 0) {
+                return true;
+            }
+            int mask = (0xff << (8 - bits)) & 0xff;
+            return (address[bytes] & mask) == (network[bytes] & mask);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.rule;
+
+import com.baidu.openrasp.plugin.checker.CheckParameter;
+import com.baidu.openrasp.plugin.checker.DataRequirement;
+import com.baidu.openrasp.plugin.info.EventInfo;
+import com.baidu.openrasp.plugin.js.engine.JSContext;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * 声明式规则引擎
+ * <p>
+ * 规则文件与 js 插件放在同一目录，以 .rule.json 结尾，随插件一起热更新；
+ * 规则按检测类型分组，在 js 插件之前执行，匹配时直接产生报警，不需要进入 js 引擎
+ */
+public class RuleEngine {
+
+    public static final String RULE_FILE_SUFFIX = ".rule.json";
+
+    private static volatile Rule[][] rules = new Rule[CheckParameter.Type.values().length][0];
+    private static volatile RuleCondition[] bodyConditions = new RuleCondition[0];
+
+    /**
+     * 加载规则文件，替换已有的全部规则
+     * 单条规则不合法时跳过该规则，不影响其他规则
+     *
+     * @param files 规则文件
+     */
+    public static void load(File[] files) {
+        List<List<Rule>> typeRules = new ArrayList<List<Rule>>(CheckParameter.Type.values().length);
+        for (int i = 0; i < CheckParameter.Type.values().length; i++) {
+            typeRules.add(new ArrayList<Rule>());
+        }
+        int[] requirements = new int[CheckParameter.Type.values().length];
+        List<RuleCondition> bodyConditionList = new ArrayList<RuleCondition>();
+        int count = 0;
+        if (files != null) {
+            for (File file : files) {
+                for (Rule rule : loadFile(file)) {
+                    if (rule.isIgnore()) {
+                        continue;
+                    }
+                    for (CheckParameter.Type type : rule.getTypes()) {
+                        typeRules.get(type.ordinal()).add(rule);
+                        requirements[type.ordinal()] |= rule.getRequirements();
+                    }
+                    bodyConditionList.addAll(rule.getBodyConditions());
+                    count++;
+                }
+            }
+        }
+        Rule[][] result = new Rule[typeRules.size()][];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = typeRules.get(i).toArray(new Rule[typeRules.get(i).size()]);
+        }
+        rules = result;
+        bodyConditions = bodyConditionList.toArray(new RuleCondition[bodyConditionList.size()]);
+        DataRequirement.setRuleRequirements(requirements);
+        if (files != null && files.length > 0) {
+            JSContext.LOGGER.info("loaded " + count + " rules from " + files.length + " rule files");
+        }
+    }
+
+    /**
+     * 是否有该检测类型的规则
+     *
+     * @param type 检测类型
+     * @return 存在规则时返回 true
+     */
+    public static boolean hasRules(CheckParameter.Type type) {
+        return rules[type.ordinal()].length > 0;
+    }
+
+    /**
+     * 是否有需要在读取请求体时匹配的条件
+     *
+     * @return 存在请求体条件时返回 true
+     */
+    public static boolean hasBodyConditions() {
+        return bodyConditions.length > 0;
+    }
+
+    static RuleCondition[] getBodyConditions() {
+        return bodyConditions;
+    }
+
+    /**
+     * 执行检测类型下的所有规则
+     *
+     * @param parameter 检测参数
+     * @return 报警列表，没有规则时返回 null
+     */
+    public static List<EventInfo> check(CheckParameter parameter) {
+        Rule[] typeRules = rules[parameter.getType().ordinal()];
+        if (typeRules.length == 0) {
+            return null;
+        }
+        List<EventInfo> result = new LinkedList<EventInfo>();
+        for (Rule rule : typeRules) {
+            try {
+                EventInfo info = rule.check(parameter);
+                if (info != null) {
+                    result.add(info);
+                }
+            } catch (Exception e) {
+                JSContext.LOGGER.warn("An exception occurred while executing rule, was:" + e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    private static List<Rule> loadFile(File file) {
+        List<Rule> result = new LinkedList<Rule>();
+        String name = file.getName();
+        name = name.substring(0, name.length() - RULE_FILE_SUFFIX.length());
+        JsonElement root;
+        try {
+            root = new JsonParser().parse(FileUtils.readFileToString(file, "UTF-8"));
+        } catch (Exception e) {
+            JSContext.LOGGER.warn("failed to parse rule file " + file.getName() + ": " + e.getMessage());
+            return result;
+        }
+        JsonArray array = null;
+        if (root.isJsonArray()) {
+            array = root.getAsJsonArray();
+        } else if (root.isJsonObject()) {
+            JsonObject object = root.getAsJsonObject();
+            if (object.has("name")) {
+                name = object.get("name").getAsString();
+            }
+            JsonElement rules = object.get("rules");
+            array = rules != null && rules.isJsonArray() ? rules.getAsJsonArray() : null;
+        }
+        if (array == null) {
+            JSContext.LOGGER.warn("rule file " + file.getName() + " does not contain any rules");
+            return result;
+        }
+        for (JsonElement element : array) {
+            try {
+                result.add(new Rule(name, element.getAsJsonObject()));
+            } catch (Exception e) {
+                JSContext.LOGGER.warn("invalid rule in " + file.getName() + ": " + e.getMessage());
+            }
+        }
+        return result;
+    }
+}
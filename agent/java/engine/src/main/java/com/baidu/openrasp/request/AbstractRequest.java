@@ -18,13 +18,16 @@ package com.baidu.openrasp.request;
 
 import com.baidu.openrasp.HookHandler;
 import com.baidu.openrasp.config.Config;
+import com.baidu.openrasp.plugin.checker.VerdictMemo;
+import com.baidu.openrasp.plugin.rule.BodyInspector;
 import com.baidu.openrasp.tool.Reflection;
 import org.apache.commons.lang3.StringUtils;
 
-import java.io.ByteArrayOutputStream;
 import java.io.CharArrayReader;
 import java.io.CharArrayWriter;
+import java.nio.ByteBuffer;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
 
@@ -38,7 +41,15 @@ public abstract class AbstractRequest {
     protected static final Class[] STRING_CLASS = new Class[]{String.class};
     protected Object request;
     protected Object inputStream = null;
-    protected ByteArrayOutputStream bodyOutputStream = null;
+    protected BodyBuffer bodyBuffer = null;
+    protected Boolean bodyCaptureEnabled = null;
+    protected BodyInspector bodyInspector = null;
+    protected Map<String, String[]> bodyParameterMap = null;
+    protected int bodyParameterLength = -1;
+    protected ParameterIndex parameterIndex = null;
+    protected boolean parameterIndexCanGetParameter = false;
+    protected int parameterIndexBodyLength = -1;
+    protected VerdictMemo verdictMemo = null;
     protected CharArrayWriter bodyCharWriter = null;
     protected int maxBodySize = 4096;
     protected String requestId;
@@ -233,21 +244,120 @@ public abstract class AbstractRequest {
     public abstract String getAppBasePath();
 
     /**
-     * 返回HTTP request body
+     * 返回HTTP request body 的副本
      *
      * @return request body, can be null
      */
     public byte[] getBody() {
-        return bodyOutputStream != null ? bodyOutputStream.toByteArray() : null;
+        BodyBuffer buffer = getOwnedBodyBuffer();
+        return buffer != null ? buffer.toByteArray() : null;
     }
 
     /**
-     * 返回HTTP request body stream
+     * 返回HTTP request body 的只读视图，不复制数据，只能在当前请求的线程中使用
      *
      * @return request body, can be null
      */
-    public ByteArrayOutputStream getBodyStream() {
-        return bodyOutputStream;
+    public ByteBuffer getBodyBuffer() {
+        BodyBuffer buffer = getOwnedBodyBuffer();
+        return buffer != null ? buffer.view() : null;
+    }
+
+    /**
+     * 返回按默认编码解码的HTTP request body
+     *
+     * @return request body, can be null
+     */
+    public String getBodyString() {
+        BodyBuffer buffer = getOwnedBodyBuffer();
+        return buffer != null ? buffer.toString() : null;
+    }
+
+    /**
+     * 获取请求体中解析出的参数，请求体继续读取后重新解析，否则使用上次的解析结果
+     *
+     * @return 请求体参数，没有时返回空 map
+     * @see BodyParameterParser
+     */
+    public Map<String, String[]> getBodyParameterMap() {
+        ByteBuffer body = getBodyBuffer();
+        int length = body != null ? body.remaining() : 0;
+        if (bodyParameterMap == null || length != bodyParameterLength) {
+            bodyParameterMap = BodyParameterParser.parse(getHeader("Content-Type"), body,
+                    Config.getConfig().getRequestParamEncoding());
+            bodyParameterLength = length;
+        }
+        return bodyParameterMap;
+    }
+
+    /**
+     * 获取用户输入，包括请求参数和请求体中解析出的参数，请求参数中已有的参数名以请求参数为准
+     *
+     * @return 用户输入，可能为 null
+     */
+    public Map<String, String[]> getUserInputMap() {
+        Map<String, String[]> parameterMap = getParameterMap();
+        Map<String, String[]> bodyMap = getBodyParameterMap();
+        if (bodyMap.isEmpty()) {
+            return parameterMap;
+        }
+        if (parameterMap == null || parameterMap.isEmpty()) {
+            return bodyMap;
+        }
+        Map<String, String[]> result = new LinkedHashMap<String, String[]>(bodyMap);
+        result.putAll(parameterMap);
+        return result;
+    }
+
+    /**
+     * 获取用户输入的索引，请求参数变为可获取或者请求体继续读取后重新构造，否则使用上次的结果
+     *
+     * @return 用户输入索引
+     */
+    public ParameterIndex getParameterIndex() {
+        BodyBuffer buffer = getOwnedBodyBuffer();
+        int bodyLength = buffer != null ? buffer.length() : 0;
+        if (parameterIndex == null || parameterIndexCanGetParameter != canGetParameter
+                || parameterIndexBodyLength != bodyLength) {
+            Map<String, String[]> userInputMap = getUserInputMap();
+            parameterIndex = userInputMap != null && !userInputMap.isEmpty()
+                    ? new ParameterIndex(userInputMap) : ParameterIndex.EMPTY;
+            parameterIndexCanGetParameter = canGetParameter;
+            parameterIndexBodyLength = bodyLength;
+        }
+        return parameterIndex;
+    }
+
+    /**
+     * 获取请求内的检测结果记录，用户输入索引重建后之前的记录失效
+     *
+     * @return 检测结果记录
+     */
+    public VerdictMemo getVerdictMemo() {
+        if (verdictMemo == null) {
+            verdictMemo = new VerdictMemo();
+        }
+        verdictMemo.bind(getParameterIndex());
+        return verdictMemo;
+    }
+
+    /**
+     * 清空请求内的检测结果记录
+     */
+    public void clearVerdictMemo() {
+        if (verdictMemo != null) {
+            verdictMemo.clear();
+        }
+    }
+
+    /**
+     * 请求结束时清除当前线程缓冲区中保存的请求体
+     */
+    public void releaseBodyBuffer() {
+        if (bodyBuffer != null) {
+            BodyBuffer.release(this);
+            bodyBuffer = null;
+        }
     }
 
     /**
@@ -268,19 +378,31 @@ public abstract class AbstractRequest {
         this.inputStream = inputStream;
     }
 
+    /**
+     * 是否保存当前请求的请求体，只保存 body.content_types 中配置的类型，没有 Content-Type 的请求也会保存
+     *
+     * @return 是否保存
+     */
+    public boolean isBodyCaptureEnabled() {
+        if (bodyCaptureEnabled == null) {
+            bodyCaptureEnabled = maxBodySize > 0 && isBodyContentTypeAllowed(getHeader("Content-Type"));
+        }
+        return bodyCaptureEnabled;
+    }
+
     /**
      * 添加HTTP request body
      *
      * @param b 要添加的字节
      */
     public void appendBody(int b) {
-        if (bodyOutputStream == null) {
-            bodyOutputStream = new ByteArrayOutputStream();
-        }
-
-        if (bodyOutputStream.size() < maxBodySize) {
-            bodyOutputStream.write(b);
+        if (bodyBuffer == null) {
+            if (!isBodyCaptureEnabled()) {
+                return;
+            }
+            bodyBuffer = BodyBuffer.acquire(this, maxBodySize);
         }
+        bodyBuffer.append(b);
     }
 
     /**
@@ -300,14 +422,48 @@ public abstract class AbstractRequest {
      * @param len    要添加的长度
      */
     public void appendBody(byte[] bytes, int offset, int len) {
-        if (bodyOutputStream == null) {
-            bodyOutputStream = new ByteArrayOutputStream();
+        if (bodyBuffer == null) {
+            if (!isBodyCaptureEnabled()) {
+                return;
+            }
+            bodyBuffer = BodyBuffer.acquire(this, maxBodySize);
         }
+        bodyBuffer.append(bytes, offset, len);
+    }
 
-        len = Math.min(len, maxBodySize - bodyOutputStream.size());
-        if (len > 0) {
-            bodyOutputStream.write(bytes, offset, len);
+    /**
+     * 获取请求体分段检测状态
+     *
+     * @return 分段检测状态，尚未读取请求体或没有请求体规则时为 null
+     */
+    public BodyInspector getBodyInspector() {
+        return bodyInspector;
+    }
+
+    /**
+     * 设置请求体分段检测状态
+     *
+     * @param bodyInspector 分段检测状态
+     */
+    public void setBodyInspector(BodyInspector bodyInspector) {
+        this.bodyInspector = bodyInspector;
+    }
+
+    private BodyBuffer getOwnedBodyBuffer() {
+        return bodyBuffer != null && bodyBuffer.isOwnedBy(this) ? bodyBuffer : null;
+    }
+
+    private static boolean isBodyContentTypeAllowed(String contentType) {
+        if (contentType == null) {
+            return true;
         }
+        contentType = contentType.trim().toLowerCase();
+        for (String prefix : Config.getConfig().getBodyContentTypes()) {
+            if ("*".equals(prefix) || (prefix.length() > 0 && contentType.startsWith(prefix))) {
+                return true;
+            }
+        }
+        return false;
     }
 
     protected boolean setCharacterEncodingFromConfig() {
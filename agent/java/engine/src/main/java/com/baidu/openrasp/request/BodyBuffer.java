@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.request;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 请求体缓存，每个线程复用一个缓冲区，按实际请求体大小增长，最大为 body.maxbytes
+ * <p>
+ * 同一线程同一时刻只处理一个请求，新请求开始保存请求体时取得缓冲区的所有权，
+ * 之前的请求再读取时得到 null，不会读到其他请求的数据。请求结束时清除已保存的内容，
+ * 超过 {@link #MAX_RETAINED_SIZE} 的缓冲区同时释放
+ */
+public class BodyBuffer {
+
+    /**
+     * 请求结束后保留的最大缓冲区，超过时释放，避免个别大请求体长期占用内存
+     */
+    private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+    private static final int INITIAL_SIZE = 1024;
+
+    private static final ThreadLocal<BodyBuffer> buffers = new ThreadLocal<BodyBuffer>() {
+        @Override
+        protected BodyBuffer initialValue() {
+            return new BodyBuffer();
+        }
+    };
+
+    private byte[] bytes = new byte[0];
+    private int length = 0;
+    private int capacity = 0;
+    private Object owner = null;
+
+    private BodyBuffer() {
+    }
+
+    /**
+     * 取得当前线程的缓冲区并清空
+     *
+     * @param owner    所属请求
+     * @param capacity 最大保存长度，即 body.maxbytes
+     * @return 缓冲区
+     */
+    static BodyBuffer acquire(Object owner, int capacity) {
+        BodyBuffer buffer = buffers.get();
+        buffer.wipe();
+        if (buffer.bytes.length > capacity) {
+            buffer.bytes = new byte[0];
+        }
+        buffer.capacity = capacity;
+        buffer.owner = owner;
+        return buffer;
+    }
+
+    /**
+     * 请求结束时调用，清除当前线程缓冲区中该请求的请求体
+     *
+     * @param owner 所属请求
+     */
+    static void release(Object owner) {
+        BodyBuffer buffer = buffers.get();
+        if (buffer.owner == owner) {
+            buffer.wipe();
+            buffer.owner = null;
+        }
+    }
+
+    boolean isOwnedBy(Object owner) {
+        return this.owner == owner;
+    }
+
+    void append(int b) {
+        if (ensureCapacity(1) > 0) {
+            bytes[length++] = (byte) b;
+        }
+    }
+
+    void append(byte[] src, int offset, int len) {
+        len = ensureCapacity(len);
+        if (len > 0) {
+            System.arraycopy(src, offset, bytes, length, len);
+            length += len;
+        }
+    }
+
+    int length() {
+        return length;
+    }
+
+    /**
+     * @return 只读视图，不复制数据
+     */
+    ByteBuffer view() {
+        return ByteBuffer.wrap(bytes, 0, length).asReadOnlyBuffer();
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, 0, length);
+    }
+
+    byte[] toByteArray() {
+        byte[] result = new byte[length];
+        System.arraycopy(bytes, 0, result, 0, length);
+        return result;
+    }
+
+    /**
+     * 按需扩容，不超过最大保存长度
+     *
+     * @param len 要追加的长度
+     * @return 实际可以追加的长度
+     */
+    private int ensureCapacity(int len) {
+        len = Math.min(len, capacity - length);
+        if (len > 0 && length + len > bytes.length) {
+            int size = Math.max(Math.max(bytes.length * 2, INITIAL_SIZE), length + len);
+            bytes = Arrays.copyOf(bytes, Math.min(size, capacity));
+        }
+        return len;
+    }
+
+    /**
+     * 清除已保存的内容，请求体中可能包含密码等敏感信息
+     */
+    private void wipe() {
+        if (bytes.length > MAX_RETAINED_SIZE) {
+            bytes = new byte[0];
+        } else {
+            Arrays.fill(bytes, 0, length, (byte) 0);
+        }
+        length = 0;
+    }
+}
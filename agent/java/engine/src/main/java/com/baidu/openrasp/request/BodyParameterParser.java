@@ -0,0 +1,347 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.request;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 请求体参数解析
+ * <p>
+ * 把 JSON 和 application/x-www-form-urlencoded 请求体中的叶子节点值解析为与 getParameterMap 相同格式的参数，
+ * 供用户输入匹配算法使用。JSON 边扫描边输出，不构造对象树，参数名为节点路径，如 user.name、items[0]；
+ * 嵌套深度和参数个数有上限，请求体被 body.maxbytes 截断或格式错误时保留已经解析出的参数
+ */
+public class BodyParameterParser {
+
+    public static final int MAX_DEPTH = 32;
+    public static final int MAX_VALUES = 1000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final CharSequence input;
+    private final Map<String, String[]> result;
+    private final StringBuilder path = new StringBuilder();
+    private final StringBuilder value = new StringBuilder();
+    private int position = 0;
+    private int count = 0;
+
+    private BodyParameterParser(CharSequence input, Map<String, String[]> result) {
+        this.input = input;
+        this.result = result;
+    }
+
+    /**
+     * 根据 Content-Type 解析请求体
+     *
+     * @param contentType 请求的 Content-Type
+     * @param body        请求体
+     * @param encoding    urlencoded 请求体的编码，为空时使用 UTF-8
+     * @return 解析出的参数，不支持的类型返回空 map
+     */
+    public static Map<String, String[]> parse(String contentType, ByteBuffer body, String encoding) {
+        if (contentType == null || body == null || !body.hasRemaining()) {
+            return Collections.emptyMap();
+        }
+        contentType = contentType.toLowerCase();
+        Map<String, String[]> result = new LinkedHashMap<String, String[]>();
+        if (contentType.contains("json")) {
+            new BodyParameterParser(UTF_8.decode(body), result).parseJson();
+        } else if (contentType.startsWith("application/x-www-form-urlencoded")) {
+            // 按字节读取，每个字符对应一个原始字节，解码 %XX 后再统一按请求编码转换
+            CharBuffer chars = Charset.forName("ISO-8859-1").decode(body);
+            new BodyParameterParser(chars, result).parseUrlEncoded(getCharset(encoding));
+        }
+        return result;
+    }
+
+    private void parseJson() {
+        try {
+            skipWhitespace();
+            parseJsonValue(0);
+        } catch (StopException e) {
+            // 输入被截断、格式错误或达到上限
+        }
+    }
+
+    private void parseJsonValue(int depth) {
+        if (depth > MAX_DEPTH) {
+            throw StopException.INSTANCE;
+        }
+        char c = peek();
+        if (c == '{') {
+            position++;
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return;
+            }
+            while (true) {
+                skipWhitespace();
+                expect('"');
+                parseJsonString();
+                int length = path.length();
+                if (length > 0) {
+                    path.append('.');
+                }
+                path.append(value);
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                parseJsonValue(depth + 1);
+                path.setLength(length);
+                skipWhitespace();
+                c = next();
+                if (c == '}') {
+                    return;
+                } else if (c != ',') {
+                    throw StopException.INSTANCE;
+                }
+            }
+        } else if (c == '[') {
+            position++;
+            skipWhitespace();
+            if (peek() == ']') {
+                position++;
+                return;
+            }
+            for (int index = 0; ; index++) {
+                skipWhitespace();
+                int length = path.length();
+                path.append('[').append(index).append(']');
+                parseJsonValue(depth + 1);
+                path.setLength(length);
+                skipWhitespace();
+                c = next();
+                if (c == ']') {
+                    return;
+                } else if (c != ',') {
+                    throw StopException.INSTANCE;
+                }
+            }
+        } else if (c == '"') {
+            position++;
+            try {
+                parseJsonString();
+            } catch (StopException e) {
+                // 请求体被截断时保留截断前的部分，仍然可以用于匹配
+                if (position >= input.length() && value.length() > 0) {
+                    add(path.toString(), value.toString());
+                }
+                throw e;
+            }
+            add(path.toString(), value.toString());
+        } else if (c == '-' || (c >= '0' && c <= '9')) {
+            int start = position;
+            while (position < input.length() && isNumberChar(input.charAt(position))) {
+                position++;
+            }
+            add(path.toString(), input.subSequence(start, position).toString());
+        } else {
+            // true、false、null 不是有意义的用户输入
+            while (position < input.length() && Character.isLetter(input.charAt(position))) {
+                position++;
+            }
+        }
+    }
+
+    /**
+     * 解析字符串内容到 value，调用时已经读取了开始的引号
+     */
+    private void parseJsonString() {
+        value.setLength(0);
+        while (true) {
+            char c = next();
+            if (c == '"') {
+                return;
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            c = next();
+            switch (c) {
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    if (position + 4 > input.length()) {
+                        throw StopException.INSTANCE;
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(input.subSequence(position, position + 4).toString(), 16));
+                    } catch (NumberFormatException e) {
+                        throw StopException.INSTANCE;
+                    }
+                    position += 4;
+                    break;
+                default:
+                    value.append(c);
+            }
+        }
+    }
+
+    private void parseUrlEncoded(Charset charset) {
+        try {
+            int length = input.length();
+            int start = 0;
+            while (start < length) {
+                int end = start;
+                int equal = -1;
+                while (end < length && input.charAt(end) != '&') {
+                    if (equal < 0 && input.charAt(end) == '=') {
+                        equal = end;
+                    }
+                    end++;
+                }
+                if (end > start) {
+                    String key = decode(input.subSequence(start, equal < 0 ? end : equal), charset);
+                    String item = equal < 0 ? "" : decode(input.subSequence(equal + 1, end), charset);
+                    add(key, item);
+                }
+                start = end + 1;
+            }
+        } catch (StopException e) {
+            // 达到上限
+        }
+    }
+
+    private static Charset getCharset(String encoding) {
+        if (encoding != null && encoding.length() > 0) {
+            try {
+                return Charset.forName(encoding);
+            } catch (Exception e) {
+                // 不支持的编码使用 UTF-8
+            }
+        }
+        return UTF_8;
+    }
+
+    /**
+     * 解码 urlencoded 文本，text 中每个字符是一个原始字节，
+     * 未编码的非 ASCII 字节和 %XX 一起按请求编码转换，不合法的 %XX 保持原样
+     */
+    private static String decode(CharSequence text, Charset charset) {
+        int length = text.length();
+        boolean plain = true;
+        for (int i = 0; i < length && plain; i++) {
+            char c = text.charAt(i);
+            plain = c != '%' && c != '+' && c < 0x80;
+        }
+        if (plain) {
+            return text.toString();
+        }
+        byte[] bytes = new byte[length];
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '+') {
+                bytes[count++] = ' ';
+            } else if (c == '%' && i + 2 < length && hexValue(text.charAt(i + 1)) >= 0
+                    && hexValue(text.charAt(i + 2)) >= 0) {
+                bytes[count++] = (byte) (hexValue(text.charAt(i + 1)) * 16 + hexValue(text.charAt(i + 2)));
+                i += 2;
+            } else {
+                bytes[count++] = (byte) c;
+            }
+        }
+        return new String(bytes, 0, count, charset);
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private void add(String key, String item) {
+        if (++count > MAX_VALUES) {
+            throw StopException.INSTANCE;
+        }
+        String[] values = result.get(key);
+        if (values == null) {
+            result.put(key, new String[]{item});
+        } else {
+            values = Arrays.copyOf(values, values.length + 1);
+            values[values.length - 1] = item;
+            result.put(key, values);
+        }
+    }
+
+    private static boolean isNumberChar(char c) {
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E';
+    }
+
+    private void skipWhitespace() {
+        while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+            position++;
+        }
+    }
+
+    private char peek() {
+        if (position >= input.length()) {
+            throw StopException.INSTANCE;
+        }
+        return input.charAt(position);
+    }
+
+    private char next() {
+        char c = peek();
+        position++;
+        return c;
+    }
+
+    private void expect(char c) {
+        if (next() != c) {
+            throw StopException.INSTANCE;
+        }
+    }
+
+    /**
+     * 结束解析，不需要调用栈
+     */
+    private static class StopException extends RuntimeException {
+        static final StopException INSTANCE = new StopException();
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
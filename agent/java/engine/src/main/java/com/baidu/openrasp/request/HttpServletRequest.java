@@ -18,9 +18,11 @@ package com.baidu.openrasp.request;
 
 import com.baidu.openrasp.tool.Reflection;
 
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -32,6 +34,15 @@ import java.util.regex.Pattern;
 public final class HttpServletRequest extends AbstractRequest {
     private static final Map<String, String[]> EMPTY_PARAM = new HashMap<String, String[]>();
     private static final Pattern PATTERN = Pattern.compile("\\d+(\\.\\d+)*");
+    private static final String OS = getOs(System.getProperty("os.name"));
+    private static final Map<Object, ServletContextInfo> servletContextInfos =
+            Collections.synchronizedMap(new WeakHashMap<Object, ServletContextInfo>());
+    private static final Map<Class, Boolean> servletContextMethods =
+            Collections.synchronizedMap(new WeakHashMap<Class, Boolean>());
+    // 无法获取 servletContext 时使用最近一次获取到的服务器信息
+    private static volatile Map<String, String> lastServerContext = null;
+
+    private ServletContextInfo servletContextInfo = null;
 
     /**
      * 请求实体
@@ -218,16 +229,8 @@ public final class HttpServletRequest extends AbstractRequest {
      */
     @Override
     public Map<String, String> getServerContext() {
-        Object servletContext = getServletContextObject();
-        String serverInfo = Reflection.invokeStringMethod(servletContext, "getServerInfo", EMPTY_CLASS);
-
-        Map<String, String> ret = new HashMap<String, String>();
-        // TODO more reliable
-        ret.put("server", extractType(serverInfo));
-        ret.put("version", extractNumber(serverInfo));
-        ret.put("os", getOs(System.getProperty("os.name")));
-        ret.put("language", "java");
-        return ret;
+        ServletContextInfo info = getServletContextInfo();
+        return info != null ? info.serverContext : lastServerContext;
     }
 
     public static String getOs(String os) {
@@ -275,25 +278,28 @@ public final class HttpServletRequest extends AbstractRequest {
     }
 
     /**
-     * 增加session条目
+     * 增加session条目，session 不存在时创建
      *
      * @param key   键
      * @param value 值
      */
     public void setSessionAttribute(String key, String value) {
-        Object session = getSessionObject();
+        Object session = Reflection.invokeMethod(request, "getSession", new Class[]{boolean.class}, true);
         Reflection.invokeMethod(session, "setAttribute", new Class[]{String.class, Object.class}, key, value);
     }
 
     /**
-     * 获取指定键对应session
+     * 获取指定键对应session，不会创建session
      *
      * @param key 键
+     * @return session 不存在或没有该键时返回 null
      */
     public Object getSessionAttribute(String key) {
         Object session = getSessionObject();
-        Object value = Reflection.invokeMethod(session, "getAttribute", new Class[]{String.class}, key);
-        return value;
+        if (session == null) {
+            return null;
+        }
+        return Reflection.invokeMethod(session, "getAttribute", new Class[]{String.class}, key);
     }
 
     /**
@@ -303,43 +309,113 @@ public final class HttpServletRequest extends AbstractRequest {
      */
     @Override
     public String getAppBasePath() {
-        try {
-            Object servletContext = getServletContextObject();
-            Object realPath = Reflection.invokeMethod(servletContext, "getRealPath", new Class[]{String.class}, "/");
-            if (realPath instanceof String) {
-                String separator = System.getProperty("file.separator");
-                String rp = (String) realPath;
-                if (rp.endsWith(separator)) {
-                    rp = rp.substring(0, rp.length() - 1);
-                }
-                int index = rp.lastIndexOf(separator);
-                return rp.substring(0, index);
-            } else {
-                return "";
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            return "";
-        }
+        ServletContextInfo info = getServletContextInfo();
+        return info != null ? info.appBasePath : "";
     }
 
     //--------------------------------私有方法-------------------------------------
 
     /**
-     * 反射获取session object
+     * 反射获取已经存在的session object，不创建session
      *
-     * @return
+     * @return session，不存在时返回 null
      */
     private Object getSessionObject() {
-        return Reflection.invokeMethod(request, "getSession", new Class[]{boolean.class}, true);
+        return Reflection.invokeMethod(request, "getSession", new Class[]{boolean.class}, false);
+    }
+
+    /**
+     * 获取应用的服务器信息和部署路径，每个请求只反射获取一次 servletContext，
+     * 信息按 servletContext 缓存，应用重新部署后 servletContext 改变，缓存随之更新
+     *
+     * @return 应用信息，无法获取 servletContext 时返回 null
+     */
+    private ServletContextInfo getServletContextInfo() {
+        if (servletContextInfo == null) {
+            Object servletContext = getServletContextObject();
+            if (servletContext == null) {
+                return null;
+            }
+            ServletContextInfo info = servletContextInfos.get(servletContext);
+            if (info == null) {
+                info = new ServletContextInfo(servletContext);
+                servletContextInfos.put(servletContext, info);
+                lastServerContext = info.serverContext;
+            }
+            servletContextInfo = info;
+        }
+        return servletContextInfo;
     }
 
     /**
-     * 反射获取servletContext object
+     * 反射获取servletContext object，Servlet 3.0 以上直接从请求获取，否则从已有的session获取
      *
-     * @return
+     * @return servletContext，无法获取时返回 null
      */
     private Object getServletContextObject() {
+        if (hasServletContextMethod(request.getClass())) {
+            Object servletContext = Reflection.invokeMethod(request, "getServletContext", EMPTY_CLASS);
+            if (servletContext != null) {
+                return servletContext;
+            }
+        }
         return Reflection.invokeMethod(getSessionObject(), "getServletContext", EMPTY_CLASS);
     }
+
+    /**
+     * 请求类是否有 getServletContext 方法，Servlet 3.0 以下没有该方法，按请求类缓存查找结果
+     */
+    private static boolean hasServletContextMethod(Class requestClass) {
+        Boolean supported = servletContextMethods.get(requestClass);
+        if (supported == null) {
+            try {
+                requestClass.getMethod("getServletContext", EMPTY_CLASS);
+                supported = true;
+            } catch (NoSuchMethodException e) {
+                supported = false;
+            }
+            servletContextMethods.put(requestClass, supported);
+        }
+        return supported;
+    }
+
+    /**
+     * 同一个应用的服务器信息和部署路径
+     */
+    private static class ServletContextInfo {
+        final Map<String, String> serverContext;
+        final String appBasePath;
+
+        ServletContextInfo(Object servletContext) {
+            String serverInfo = Reflection.invokeStringMethod(servletContext, "getServerInfo", EMPTY_CLASS);
+            Map<String, String> context = new HashMap<String, String>();
+            // TODO more reliable
+            context.put("server", extractType(serverInfo));
+            context.put("version", extractNumber(serverInfo));
+            context.put("os", OS);
+            context.put("language", "java");
+            this.serverContext = Collections.unmodifiableMap(context);
+            this.appBasePath = resolveAppBasePath(servletContext);
+        }
+
+        private static String resolveAppBasePath(Object servletContext) {
+            try {
+                Object realPath = Reflection.invokeMethod(servletContext, "getRealPath", new Class[]{String.class}, "/");
+                if (realPath instanceof String) {
+                    String separator = System.getProperty("file.separator");
+                    String rp = (String) realPath;
+                    if (rp.endsWith(separator)) {
+                        rp = rp.substring(0, rp.length() - 1);
+                    }
+                    int index = rp.lastIndexOf(separator);
+                    return rp.substring(0, index);
+                } else {
+                    return "";
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                return "";
+            }
+        }
+    }
 }
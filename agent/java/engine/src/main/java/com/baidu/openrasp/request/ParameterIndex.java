@@ -0,0 +1,167 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.request;
+
+import com.baidu.openrasp.tool.KeywordMatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 请求参数索引，每个请求构造一次，供该请求中的所有检测共用
+ * <p>
+ * 包含请求参数和请求体参数的所有值、值的小写形式，以及由长度不小于 {@link #MIN_CANDIDATE_LENGTH}
+ * 的值构成的多关键字自动机，一次扫描即可找出 SQL 语句等检测参数中包含的所有用户输入
+ */
+public class ParameterIndex {
+
+    /**
+     * 参与用户输入匹配的最小长度，过短的值容易误报
+     */
+    public static final int MIN_CANDIDATE_LENGTH = 16;
+
+    static final ParameterIndex EMPTY = new ParameterIndex(null);
+
+    private final String[] names;
+    private final String[] values;
+    private final int[] lengths;
+    private final String[] lowerCaseValues;
+    private final int[] candidates;
+    private final KeywordMatcher candidateMatcher;
+    private final Map<String, Integer> valueIndex;
+
+    /**
+     * @param parameterMap 用户输入，参数的每个值都会被索引
+     */
+    ParameterIndex(Map<String, String[]> parameterMap) {
+        List<String> nameList = new ArrayList<String>();
+        List<String> valueList = new ArrayList<String>();
+        if (parameterMap != null) {
+            for (Map.Entry<String, String[]> entry : parameterMap.entrySet()) {
+                if (entry.getValue() != null) {
+                    for (String value : entry.getValue()) {
+                        if (value != null) {
+                            nameList.add(entry.getKey());
+                            valueList.add(value);
+                        }
+                    }
+                }
+            }
+        }
+        int size = valueList.size();
+        this.names = nameList.toArray(new String[size]);
+        this.values = valueList.toArray(new String[size]);
+        this.lengths = new int[size];
+        this.lowerCaseValues = new String[size];
+        this.valueIndex = new HashMap<String, Integer>(size * 2);
+        int[] candidateIndexes = new int[size];
+        Set<String> candidateValues = new HashSet<String>();
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            lengths[i] = values[i].length();
+            lowerCaseValues[i] = values[i].toLowerCase();
+            if (!valueIndex.containsKey(values[i])) {
+                valueIndex.put(values[i], i);
+            }
+            if (lengths[i] >= MIN_CANDIDATE_LENGTH) {
+                candidateIndexes[count++] = i;
+                candidateValues.add(values[i]);
+            }
+        }
+        this.candidates = Arrays.copyOf(candidateIndexes, count);
+        this.candidateMatcher = count > 0 ? new KeywordMatcher(candidateValues) : null;
+    }
+
+    /**
+     * @return 值的个数
+     */
+    public int size() {
+        return values.length;
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public String getValue(int index) {
+        return values[index];
+    }
+
+    public int getLength(int index) {
+        return lengths[index];
+    }
+
+    public String getLowerCaseValue(int index) {
+        return lowerCaseValues[index];
+    }
+
+    /**
+     * @return 所有值，按参数顺序排列
+     */
+    public List<String> getValues() {
+        return Collections.unmodifiableList(Arrays.asList(values));
+    }
+
+    /**
+     * @return 所有值的小写形式，按参数顺序排列
+     */
+    public List<String> getLowerCaseValues() {
+        return Collections.unmodifiableList(Arrays.asList(lowerCaseValues));
+    }
+
+    /**
+     * 查找与文本完全相同的值
+     *
+     * @param text 文本
+     * @return 第一个相同的值的下标，没有时返回 -1
+     */
+    public int indexOfValue(String text) {
+        Integer index = valueIndex.get(text);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * 查找文本中包含的候选值
+     *
+     * @param text 文本，如 SQL 语句
+     * @return 被包含的候选值的下标，按参数顺序排列
+     */
+    public int[] findCandidates(String text) {
+        if (candidateMatcher == null || text == null) {
+            return new int[0];
+        }
+        List<String> found = candidateMatcher.findAll(text);
+        if (found.isEmpty()) {
+            return new int[0];
+        }
+        Set<String> foundSet = new HashSet<String>(found);
+        int[] result = new int[candidates.length];
+        int count = 0;
+        for (int index : candidates) {
+            if (foundSet.contains(values[index])) {
+                result[count++] = index;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.tool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 文件真实路径缓存
+ * <p>
+ * 文件 hook 点每次都要把路径还原为真实路径，getCanonicalPath 需要逐级解析符号链接，开销较大。
+ * 以绝对路径为 key 缓存还原结果，缓存很快过期，避免符号链接变化后长时间使用旧路径；
+ * 监听的文件夹发生变化时由 {@link com.baidu.openrasp.tool.filemonitor.FileEventListener} 主动失效
+ */
+public class CanonicalPathCache {
+
+    /**
+     * 缓存有效期
+     */
+    public static final long TTL_MILLIS = 2000;
+
+    /**
+     * 缓存的最大路径数，路径可能由请求参数拼接而来，超过容量时整体清空
+     */
+    public static final int MAX_SIZE = 4096;
+
+    private static final ConcurrentHashMap<String, Entry> paths = new ConcurrentHashMap<String, Entry>();
+    private static final StripedCounter hits = new StripedCounter();
+    private static final StripedCounter misses = new StripedCounter();
+
+    /**
+     * 获取真实路径
+     *
+     * @param absolutePath 绝对路径，作为缓存 key
+     * @param file         需要还原的文件，可能与绝对路径不同，如去掉了 windows 的 ::$DATA 后缀
+     * @return 真实路径，还原失败时返回绝对路径
+     */
+    public static String getCanonicalPath(String absolutePath, File file) {
+        long now = System.currentTimeMillis();
+        Entry entry = paths.get(absolutePath);
+        if (entry != null && now - entry.time < TTL_MILLIS) {
+            hits.increment();
+            return entry.path;
+        }
+        misses.increment();
+        String canonicalPath;
+        try {
+            canonicalPath = file.getCanonicalPath();
+        } catch (IOException e) {
+            // 还原失败不缓存，下次重新尝试
+            return absolutePath;
+        }
+        if (entry == null && paths.size() >= MAX_SIZE) {
+            paths.clear();
+        }
+        paths.put(absolutePath, new Entry(canonicalPath, now));
+        return canonicalPath;
+    }
+
+    /**
+     * 使路径及其子路径的缓存失效
+     *
+     * @param path 发生变化的文件或文件夹的绝对路径
+     */
+    public static void invalidate(String path) {
+        paths.remove(path);
+        String prefix = path.endsWith(File.separator) ? path : path + File.separator;
+        Iterator<String> iterator = paths.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().startsWith(prefix)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public static void clear() {
+        paths.clear();
+    }
+
+    /**
+     * 输出缓存大小和命中率
+     *
+     * @return 统计信息
+     */
+    public static String report() {
+        long hit = hits.sum();
+        long miss = misses.sum();
+        long total = hit + miss;
+        if (total == 0) {
+            return "";
+        }
+        return "\ncanonical path cache: size=" + paths.size() + " hit=" + hit + " miss=" + miss
+                + " hit_rate=" + hit * 100 / total + "%";
+    }
+
+    private static class Entry {
+        final String path;
+        final long time;
+
+        Entry(String path, long time) {
+            this.path = path;
+            this.time = time;
+        }
+    }
+}
@@ -42,6 +42,7 @@ public class FileUtil {
 
     /**
      * 还原文件真实路径,避免绕过
+     * 结果由 {@link CanonicalPathCache} 缓存
      *
      * @param file 文件
      * @return 真实文件路径su
@@ -54,11 +55,7 @@ public class FileUtil {
                 file = new File(absPath.substring(0, index));
             }
         }
-        try {
-            return file.getCanonicalPath();
-        } catch (IOException e) {
-            return absPath;
-        }
+        return CanonicalPathCache.getCanonicalPath(absPath, file);
     }
 
     /**
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.tool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 多关键字匹配自动机（Aho-Corasick），构造完成后只读，可以被多个线程共享
+ * <p>
+ * 一次扫描即可找出文本中包含的所有关键字，耗时与关键字个数无关
+ */
+public class KeywordMatcher {
+
+    private final Node root = new Node();
+    private final boolean ignoreCase;
+    private final int size;
+
+    /**
+     * @param keywords 关键字列表，空字符串会被忽略
+     */
+    public KeywordMatcher(Collection<String> keywords) {
+        this(keywords, false);
+    }
+
+    /**
+     * @param keywords   关键字列表，空字符串会被忽略
+     * @param ignoreCase 是否忽略大小写，返回的关键字保持原样
+     */
+    public KeywordMatcher(Collection<String> keywords, boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+        int count = 0;
+        for (String keyword : keywords) {
+            if (keyword != null && keyword.length() > 0) {
+                add(keyword);
+                count++;
+            }
+        }
+        this.size = count;
+        build();
+    }
+
+    /**
+     * @return 关键字个数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 查找文本中第一个出现的关键字
+     *
+     * @param text 待匹配文本
+     * @return 最先结束的关键字，没有匹配时返回 null
+     */
+    public String find(CharSequence text) {
+        return find(text, false);
+    }
+
+    /**
+     * 查找文本中第一个出现的关键字
+     *
+     * @param text      待匹配文本
+     * @param wholeWord 是否要求关键字前后不是字母、数字或下划线
+     * @return 最先结束的关键字，没有匹配时返回 null
+     */
+    public String find(CharSequence text, boolean wholeWord) {
+        Node node = root;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            node = next(node, text.charAt(i));
+            Node output = node.keyword != null ? node : node.output;
+            while (output != null) {
+                if (!wholeWord || isWholeWord(text, i + 1 - output.depth, i + 1)) {
+                    return output.keyword;
+                }
+                output = output.output;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 查找文本中出现的所有关键字
+     *
+     * @param text 待匹配文本
+     * @return 去重后的关键字列表，按出现顺序排列
+     */
+    public List<String> findAll(CharSequence text) {
+        return findAll(text, false);
+    }
+
+    /**
+     * 查找文本中出现的所有关键字
+     *
+     * @param text      待匹配文本
+     * @param wholeWord 是否要求关键字前后不是字母、数字或下划线
+     * @return 去重后的关键字列表，按出现顺序排列
+     */
+    public List<String> findAll(CharSequence text, boolean wholeWord) {
+        Set<String> result = new LinkedHashSet<String>();
+        Node node = root;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            node = next(node, text.charAt(i));
+            Node output = node.keyword != null ? node : node.output;
+            while (output != null) {
+                if (!wholeWord || isWholeWord(text, i + 1 - output.depth, i + 1)) {
+                    result.add(output.keyword);
+                }
+                output = output.output;
+            }
+        }
+        return new ArrayList<String>(result);
+    }
+
+    /**
+     * 创建分段匹配的游标，文本分多次输入时在游标中保存自动机状态，关键字可以跨越分段边界
+     *
+     * @return 游标，只能在一个线程中使用
+     */
+    public Cursor newCursor() {
+        return new Cursor();
+    }
+
+    /**
+     * 分段匹配的游标
+     */
+    public class Cursor {
+        private Node node = root;
+
+        /**
+         * 输入一个字符
+         *
+         * @param c 字符
+         * @return 在该字符处结束的最长关键字，没有时返回 null
+         */
+        public String next(char c) {
+            node = KeywordMatcher.this.next(node, c);
+            Node output = node.keyword != null ? node : node.output;
+            return output != null ? output.keyword : null;
+        }
+
+        /**
+         * 回到初始状态
+         */
+        public void reset() {
+            node = root;
+        }
+    }
+
+    private static boolean isWholeWord(CharSequence text, int start, int end) {
+        return (start == 0 || !isWordChar(text.charAt(start - 1)))
+                && (end == text.length() || !isWordChar(text.charAt(end)));
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private char fold(char c) {
+        return ignoreCase ? Character.toLowerCase(c) : c;
+    }
+
+    private Node next(Node node, char c) {
+        c = fold(c);
+        Node child = node.get(c);
+        while (child == null && node != root) {
+            node = node.fail;
+            child = node.get(c);
+        }
+        return child != null ? child : root;
+    }
+
+    private void add(String keyword) {
+        Node node = root;
+        for (int i = 0; i < keyword.length(); i++) {
+            char c = fold(keyword.charAt(i));
+            Node child = node.get(c);
+            if (child == null) {
+                child = new Node();
+                child.depth = i + 1;
+                node.put(c, child);
+            }
+            node = child;
+        }
+        node.keyword = keyword;
+    }
+
+    /**
+     * 按层次遍历构造失败指针，output 指向失败链上最近的关键字结尾节点
+     */
+    private void build() {
+        LinkedList<Node> queue = new LinkedList<Node>();
+        root.fail = root;
+        for (int i = 0; i < root.count; i++) {
+            root.children[i].fail = root;
+            queue.add(root.children[i]);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.removeFirst();
+            for (int i = 0; i < node.count; i++) {
+                char c = node.keys[i];
+                Node child = node.children[i];
+                Node fail = node.fail;
+                Node target = fail.get(c);
+                while (target == null && fail != root) {
+                    fail = fail.fail;
+                    target = fail.get(c);
+                }
+                child.fail = target != null ? target : root;
+                child.output = child.fail.keyword != null ? child.fail : child.fail.output;
+                queue.add(child);
+            }
+        }
+    }
+
+    private static class Node {
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+        int count = 0;
+        Node fail;
+        Node output;
+        String keyword;
+        int depth;
+
+        Node get(char c) {
+            int index = Arrays.binarySearch(keys, 0, count, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        void put(char c, Node child) {
+            int index = -(Arrays.binarySearch(keys, 0, count, c) + 1);
+            if (count == keys.length) {
+                int capacity = count == 0 ? 2 : count * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(keys, index, keys, index + 1, count - index);
+            System.arraycopy(children, index, children, index + 1, count - index);
+            keys[index] = c;
+            children[index] = child;
+            count++;
+        }
+    }
+}
@@ -0,0 +1,882 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.tool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 线性时间的正则表达式引擎（Thompson NFA / Pike VM），语法兼容 js 正则的常用子集
+ * <p>
+ * 匹配耗时与 输入长度 * 正则长度 成正比，不会出现回溯引擎的指数级耗时；
+ * 支持分组、非捕获分组、选择、贪婪和非贪婪量词、字符类、\d \w \s \b 以及 ^ $ 锚点，
+ * 不支持反向引用和零宽断言，遇到时抛出 {@link UnsupportedOperationException}，由调用方决定是否改用 java.util.regex
+ * <p>
+ * 编译结果只读，可以被多个线程共享
+ */
+public class LinearRegex {
+
+    public static final int CASE_INSENSITIVE = 1;
+    public static final int MULTILINE = 2;
+    public static final int DOTALL = 4;
+
+    private static final int MAX_PROGRAM_SIZE = 20000;
+
+    private static final int OP_CHAR = 0;
+    private static final int OP_ANY = 1;
+    private static final int OP_CLASS = 2;
+    private static final int OP_SPLIT = 3;
+    private static final int OP_JMP = 4;
+    private static final int OP_SAVE = 5;
+    private static final int OP_BOL = 6;
+    private static final int OP_EOL = 7;
+    private static final int OP_WORD_BOUNDARY = 8;
+    private static final int OP_NOT_WORD_BOUNDARY = 9;
+    private static final int OP_MATCH = 10;
+
+    private static final char[] DIGIT = {'0', '9'};
+    private static final char[] WORD = {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+    private static final char[] SPACE = {'\t', '\r', ' ', ' ', '\u00a0', '\u00a0', '\u1680', '\u1680',
+            '\u2000', '\u200a', '\u2028', '\u2029', '\u202f', '\u202f', '\u205f', '\u205f',
+            '\u3000', '\u3000', '\ufeff', '\ufeff'};
+
+    private final String pattern;
+    private final int flags;
+    private final int groupCount;
+    private final int[] ops;
+    private final int[] args1;
+    private final int[] args2;
+    private final char[][] classes;
+    private final boolean[] negated;
+
+    private LinearRegex(String pattern, int flags, int groupCount, Program program) {
+        this.pattern = pattern;
+        this.flags = flags;
+        this.groupCount = groupCount;
+        int size = program.size;
+        this.ops = Arrays.copyOf(program.ops, size);
+        this.args1 = Arrays.copyOf(program.args1, size);
+        this.args2 = Arrays.copyOf(program.args2, size);
+        this.classes = Arrays.copyOf(program.classes, size);
+        this.negated = Arrays.copyOf(program.negated, size);
+    }
+
+    /**
+     * 编译正则
+     *
+     * @param pattern 正则表达式，js 语法
+     * @param flags   {@link #CASE_INSENSITIVE}、{@link #MULTILINE}、{@link #DOTALL} 的组合
+     * @return 编译结果
+     * @throws PatternSyntaxException        语法错误
+     * @throws UnsupportedOperationException 使用了线性引擎不支持的语法
+     */
+    public static LinearRegex compile(String pattern, int flags) {
+        Parser parser = new Parser(pattern);
+        Node node = parser.parse();
+        Program program = new Program(pattern, (flags & CASE_INSENSITIVE) != 0);
+        program.emit(OP_SAVE, 0, 0);
+        node.emit(program);
+        program.emit(OP_SAVE, 1, 0);
+        program.emit(OP_MATCH, 0, 0);
+        return new LinearRegex(pattern, flags, parser.groupCount, program);
+    }
+
+    public String pattern() {
+        return pattern;
+    }
+
+    public int flags() {
+        return flags;
+    }
+
+    public int groupCount() {
+        return groupCount;
+    }
+
+    /**
+     * 输入中是否存在匹配
+     */
+    public boolean test(CharSequence input) {
+        return run(input, false) != null;
+    }
+
+    /**
+     * 查找第一个匹配，语义与 js 中的 String.prototype.match（非全局）一致
+     *
+     * @param input 输入
+     * @return 下标 0 为整个匹配，之后为各个分组，未参与匹配的分组为 null；没有匹配时返回 null
+     */
+    public String[] match(CharSequence input) {
+        int[] caps = run(input, true);
+        if (caps == null) {
+            return null;
+        }
+        String[] result = new String[groupCount + 1];
+        for (int i = 0; i <= groupCount; i++) {
+            int start = caps[i * 2];
+            int end = caps[i * 2 + 1];
+            result[i] = start >= 0 && end >= start ? input.subSequence(start, end).toString() : null;
+        }
+        return result;
+    }
+
+    private static final int[] FOUND = new int[0];
+
+    private int[] run(CharSequence input, boolean wantCaps) {
+        int size = ops.length;
+        int capCount = wantCaps ? (groupCount + 1) * 2 : 0;
+        ThreadList clist = new ThreadList(size);
+        ThreadList nlist = new ThreadList(size);
+        int[] stackPcs = new int[size * 2 + 2];
+        int[][] stackCaps = new int[size * 2 + 2][];
+        int[] matched = null;
+        int length = input.length();
+        for (int sp = 0; ; sp++) {
+            if (matched == null) {
+                int[] caps = null;
+                if (wantCaps) {
+                    caps = new int[capCount];
+                    Arrays.fill(caps, -1);
+                }
+                addThread(clist, 0, sp, caps, input, stackPcs, stackCaps);
+            }
+            if (clist.size == 0 && matched != null) {
+                break;
+            }
+            int c = sp < length ? input.charAt(sp) : -1;
+            for (int i = 0; i < clist.size; i++) {
+                int pc = clist.pcs[i];
+                int[] caps = clist.caps[i];
+                switch (ops[pc]) {
+                    case OP_MATCH:
+                        if (!wantCaps) {
+                            return FOUND;
+                        }
+                        matched = caps;
+                        // 优先级更低的线程不再需要
+                        i = clist.size;
+                        break;
+                    case OP_CHAR:
+                        if (c == args1[pc]) {
+                            addThread(nlist, pc + 1, sp + 1, caps, input, stackPcs, stackCaps);
+                        }
+                        break;
+                    case OP_ANY:
+                        if (c >= 0 && ((flags & DOTALL) != 0 || !isLineTerminator(c))) {
+                            addThread(nlist, pc + 1, sp + 1, caps, input, stackPcs, stackCaps);
+                        }
+                        break;
+                    case OP_CLASS:
+                        if (c >= 0 && matchClass(pc, (char) c)) {
+                            addThread(nlist, pc + 1, sp + 1, caps, input, stackPcs, stackCaps);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            ThreadList tmp = clist;
+            clist = nlist;
+            nlist = tmp;
+            nlist.clear();
+            if (sp >= length) {
+                break;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * 沿着空转移把线程加入列表，按深度优先顺序保证线程优先级
+     */
+    private void addThread(ThreadList list, int startPc, int sp, int[] startCaps, CharSequence input,
+                           int[] stackPcs, int[][] stackCaps) {
+        int top = 0;
+        stackPcs[top] = startPc;
+        stackCaps[top++] = startCaps;
+        while (top > 0) {
+            int pc = stackPcs[--top];
+            int[] caps = stackCaps[top];
+            stackCaps[top] = null;
+            if (!list.visit(pc)) {
+                continue;
+            }
+            switch (ops[pc]) {
+                case OP_JMP:
+                    stackPcs[top] = args1[pc];
+                    stackCaps[top++] = caps;
+                    break;
+                case OP_SPLIT:
+                    stackPcs[top] = args2[pc];
+                    stackCaps[top++] = caps;
+                    stackPcs[top] = args1[pc];
+                    stackCaps[top++] = caps;
+                    break;
+                case OP_SAVE:
+                    if (caps != null) {
+                        caps = caps.clone();
+                        caps[args1[pc]] = sp;
+                    }
+                    stackPcs[top] = pc + 1;
+                    stackCaps[top++] = caps;
+                    break;
+                case OP_BOL:
+                case OP_EOL:
+                case OP_WORD_BOUNDARY:
+                case OP_NOT_WORD_BOUNDARY:
+                    if (checkAssertion(ops[pc], sp, input)) {
+                        stackPcs[top] = pc + 1;
+                        stackCaps[top++] = caps;
+                    }
+                    break;
+                default:
+                    list.add(pc, caps);
+                    break;
+            }
+        }
+    }
+
+    private boolean checkAssertion(int op, int sp, CharSequence input) {
+        int length = input.length();
+        switch (op) {
+            case OP_BOL:
+                return sp == 0 || ((flags & MULTILINE) != 0 && isLineTerminator(input.charAt(sp - 1)));
+            case OP_EOL:
+                return sp == length || ((flags & MULTILINE) != 0 && isLineTerminator(input.charAt(sp)));
+            case OP_WORD_BOUNDARY:
+            case OP_NOT_WORD_BOUNDARY:
+                boolean before = sp > 0 && isWordChar(input.charAt(sp - 1));
+                boolean after = sp < length && isWordChar(input.charAt(sp));
+                return (before != after) == (op == OP_WORD_BOUNDARY);
+            default:
+                return false;
+        }
+    }
+
+    private boolean matchClass(int pc, char c) {
+        boolean result = inRanges(classes[pc], c);
+        if (!result && (flags & CASE_INSENSITIVE) != 0) {
+            result = inRanges(classes[pc], Character.toLowerCase(c)) || inRanges(classes[pc], Character.toUpperCase(c));
+        }
+        return result != negated[pc];
+    }
+
+    private static boolean inRanges(char[] ranges, char c) {
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (c >= ranges[i] && c <= ranges[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLineTerminator(int c) {
+        return c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+
+    /**
+     * 当前步骤的线程列表，visit 标记用于空转移去重
+     */
+    private static class ThreadList {
+        final int[] pcs;
+        final int[][] caps;
+        final int[] marks;
+        int generation = 1;
+        int size = 0;
+
+        ThreadList(int programSize) {
+            pcs = new int[programSize];
+            caps = new int[programSize][];
+            marks = new int[programSize];
+        }
+
+        boolean visit(int pc) {
+            if (marks[pc] == generation) {
+                return false;
+            }
+            marks[pc] = generation;
+            return true;
+        }
+
+        void add(int pc, int[] threadCaps) {
+            pcs[size] = pc;
+            caps[size++] = threadCaps;
+        }
+
+        void clear() {
+            Arrays.fill(caps, 0, size, null);
+            size = 0;
+            generation++;
+        }
+    }
+
+    private static class Program {
+        final String pattern;
+        final boolean ignoreCase;
+        int[] ops = new int[16];
+        int[] args1 = new int[16];
+        int[] args2 = new int[16];
+        char[][] classes = new char[16][];
+        boolean[] negated = new boolean[16];
+        int size = 0;
+
+        Program(String pattern, boolean ignoreCase) {
+            this.pattern = pattern;
+            this.ignoreCase = ignoreCase;
+        }
+
+        int emit(int op, int arg1, int arg2) {
+            if (size == ops.length) {
+                if (size >= MAX_PROGRAM_SIZE) {
+                    throw new UnsupportedOperationException("regex is too large: " + pattern);
+                }
+                int capacity = size * 2;
+                ops = Arrays.copyOf(ops, capacity);
+                args1 = Arrays.copyOf(args1, capacity);
+                args2 = Arrays.copyOf(args2, capacity);
+                classes = Arrays.copyOf(classes, capacity);
+                negated = Arrays.copyOf(negated, capacity);
+            }
+            ops[size] = op;
+            args1[size] = arg1;
+            args2[size] = arg2;
+            return size++;
+        }
+
+        void emitClass(char[] ranges, boolean negate) {
+            int pc = emit(OP_CLASS, 0, 0);
+            classes[pc] = ranges;
+            negated[pc] = negate;
+        }
+    }
+
+    private static abstract class Node {
+        abstract void emit(Program program);
+    }
+
+    private static class CharNode extends Node {
+        final char c;
+
+        CharNode(char c) {
+            this.c = c;
+        }
+
+        @Override
+        void emit(Program program) {
+            if (program.ignoreCase && Character.toLowerCase(c) != Character.toUpperCase(c)) {
+                program.emitClass(new char[]{c, c}, false);
+            } else {
+                program.emit(OP_CHAR, c, 0);
+            }
+        }
+    }
+
+    private static class ClassNode extends Node {
+        final char[] ranges;
+        final boolean negate;
+
+        ClassNode(char[] ranges, boolean negate) {
+            this.ranges = ranges;
+            this.negate = negate;
+        }
+
+        @Override
+        void emit(Program program) {
+            program.emitClass(ranges, negate);
+        }
+    }
+
+    private static class OpNode extends Node {
+        final int op;
+
+        OpNode(int op) {
+            this.op = op;
+        }
+
+        @Override
+        void emit(Program program) {
+            program.emit(op, 0, 0);
+        }
+    }
+
+    /**
+     * 零宽断言，不能直接被量词修饰
+     */
+    private static class AssertNode extends OpNode {
+
+        AssertNode(int op) {
+            super(op);
+        }
+    }
+
+    private static class ConcatNode extends Node {
+        final List<Node> nodes;
+
+        ConcatNode(List<Node> nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        void emit(Program program) {
+            for (Node node : nodes) {
+                node.emit(program);
+            }
+        }
+    }
+
+    private static class AlternateNode extends Node {
+        final List<Node> nodes;
+
+        AlternateNode(List<Node> nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        void emit(Program program) {
+            int[] jumps = new int[nodes.size() - 1];
+            for (int i = 0; i < nodes.size() - 1; i++) {
+                int split = program.emit(OP_SPLIT, program.size + 1, 0);
+                nodes.get(i).emit(program);
+                jumps[i] = program.emit(OP_JMP, 0, 0);
+                program.args2[split] = program.size;
+            }
+            nodes.get(nodes.size() - 1).emit(program);
+            for (int jump : jumps) {
+                program.args1[jump] = program.size;
+            }
+        }
+    }
+
+    private static class GroupNode extends Node {
+        final int index;
+        final Node node;
+
+        GroupNode(int index, Node node) {
+            this.index = index;
+            this.node = node;
+        }
+
+        @Override
+        void emit(Program program) {
+            program.emit(OP_SAVE, index * 2, 0);
+            node.emit(program);
+            program.emit(OP_SAVE, index * 2 + 1, 0);
+        }
+    }
+
+    private static class RepeatNode extends Node {
+        final Node node;
+        final int min;
+        final int max;
+        final boolean greedy;
+
+        RepeatNode(Node node, int min, int max, boolean greedy) {
+            this.node = node;
+            this.min = min;
+            this.max = max;
+            this.greedy = greedy;
+        }
+
+        @Override
+        void emit(Program program) {
+            for (int i = 0; i < min; i++) {
+                node.emit(program);
+            }
+            if (max < 0) {
+                int split = program.emit(OP_SPLIT, 0, 0);
+                int body = program.size;
+                node.emit(program);
+                program.emit(OP_JMP, split, 0);
+                setSplit(program, split, body, program.size);
+                return;
+            }
+            int optional = max - min;
+            int[] splits = new int[optional];
+            for (int i = 0; i < optional; i++) {
+                splits[i] = program.emit(OP_SPLIT, 0, 0);
+                node.emit(program);
+            }
+            for (int split : splits) {
+                setSplit(program, split, split + 1, program.size);
+            }
+        }
+
+        private void setSplit(Program program, int split, int body, int next) {
+            program.args1[split] = greedy ? body : next;
+            program.args2[split] = greedy ? next : body;
+        }
+    }
+
+    private static class Parser {
+        final String pattern;
+        int pos = 0;
+        int groupCount = 0;
+
+        Parser(String pattern) {
+            this.pattern = pattern;
+        }
+
+        Node parse() {
+            Node node = parseAlternate();
+            if (pos < pattern.length()) {
+                throw error("unmatched ')'");
+            }
+            return node;
+        }
+
+        private Node parseAlternate() {
+            List<Node> nodes = new ArrayList<Node>();
+            nodes.add(parseConcat());
+            while (pos < pattern.length() && pattern.charAt(pos) == '|') {
+                pos++;
+                nodes.add(parseConcat());
+            }
+            return nodes.size() == 1 ? nodes.get(0) : new AlternateNode(nodes);
+        }
+
+        private Node parseConcat() {
+            List<Node> nodes = new ArrayList<Node>();
+            while (pos < pattern.length()) {
+                char c = pattern.charAt(pos);
+                if (c == '|' || c == ')') {
+                    break;
+                }
+                Node atom = parseAtom();
+                nodes.add(parseQuantifier(atom));
+            }
+            return nodes.size() == 1 ? nodes.get(0) : new ConcatNode(nodes);
+        }
+
+        private Node parseQuantifier(Node atom) {
+            if (pos >= pattern.length()) {
+                return atom;
+            }
+            int min;
+            int max;
+            char c = pattern.charAt(pos);
+            if (c == '*') {
+                min = 0;
+                max = -1;
+                pos++;
+            } else if (c == '+') {
+                min = 1;
+                max = -1;
+                pos++;
+            } else if (c == '?') {
+                min = 0;
+                max = 1;
+                pos++;
+            } else if (c == '{' && isBraceQuantifier(pos)) {
+                int close = pattern.indexOf('}', pos);
+                String body = pattern.substring(pos + 1, close);
+                int comma = body.indexOf(',');
+                try {
+                    if (comma < 0) {
+                        min = max = Integer.parseInt(body);
+                    } else {
+                        min = Integer.parseInt(body.substring(0, comma));
+                        max = comma == body.length() - 1 ? -1 : Integer.parseInt(body.substring(comma + 1));
+                    }
+                } catch (NumberFormatException e) {
+                    throw new UnsupportedOperationException("repeat count is too large: " + body);
+                }
+                if (max >= 0 && max < min) {
+                    throw error("numbers out of order in {} quantifier");
+                }
+                pos = close + 1;
+            } else {
+                return atom;
+            }
+            boolean greedy = true;
+            if (pos < pattern.length() && pattern.charAt(pos) == '?') {
+                greedy = false;
+                pos++;
+            }
+            if (atom instanceof AssertNode) {
+                throw error("nothing to repeat");
+            }
+            return new RepeatNode(atom, min, max, greedy);
+        }
+
+        private boolean isBraceQuantifier(int start) {
+            int i = start + 1;
+            int digits = 0;
+            while (i < pattern.length() && Character.isDigit(pattern.charAt(i))) {
+                i++;
+                digits++;
+            }
+            if (digits == 0) {
+                return false;
+            }
+            if (i < pattern.length() && pattern.charAt(i) == ',') {
+                i++;
+                while (i < pattern.length() && Character.isDigit(pattern.charAt(i))) {
+                    i++;
+                }
+            }
+            return i < pattern.length() && pattern.charAt(i) == '}';
+        }
+
+        private Node parseAtom() {
+            char c = pattern.charAt(pos++);
+            switch (c) {
+                case '(':
+                    return parseGroup();
+                case '[':
+                    return parseClass();
+                case '.':
+                    return new OpNode(OP_ANY);
+                case '^':
+                    return new AssertNode(OP_BOL);
+                case '$':
+                    return new AssertNode(OP_EOL);
+                case '\\':
+                    return parseEscape();
+                case '*':
+                case '+':
+                case '?':
+                    throw error("nothing to repeat");
+                case '{':
+                    if (isBraceQuantifier(pos - 1)) {
+                        throw error("nothing to repeat");
+                    }
+                    return new CharNode(c);
+                default:
+                    return new CharNode(c);
+            }
+        }
+
+        private Node parseGroup() {
+            int index = -1;
+            if (pattern.startsWith("?:", pos)) {
+                pos += 2;
+            } else if (pos < pattern.length() && pattern.charAt(pos) == '?') {
+                throw new UnsupportedOperationException("lookaround is not supported: " + pattern);
+            } else {
+                index = ++groupCount;
+            }
+            Node node = parseAlternate();
+            if (pos >= pattern.length() || pattern.charAt(pos) != ')') {
+                throw error("unterminated group");
+            }
+            pos++;
+            return index > 0 ? new GroupNode(index, node) : new ConcatNode(Collections.singletonList(node));
+        }
+
+        private Node parseEscape() {
+            if (pos >= pattern.length()) {
+                throw error("\\ at end of pattern");
+            }
+            char c = pattern.charAt(pos++);
+            switch (c) {
+                case 'b':
+                    return new AssertNode(OP_WORD_BOUNDARY);
+                case 'B':
+                    return new AssertNode(OP_NOT_WORD_BOUNDARY);
+                case 'd':
+                    return new ClassNode(DIGIT, false);
+                case 'D':
+                    return new ClassNode(DIGIT, true);
+                case 'w':
+                    return new ClassNode(WORD, false);
+                case 'W':
+                    return new ClassNode(WORD, true);
+                case 's':
+                    return new ClassNode(SPACE, false);
+                case 'S':
+                    return new ClassNode(SPACE, true);
+                case 'k':
+                    throw new UnsupportedOperationException("backreference is not supported: " + pattern);
+                default:
+                    if (c >= '1' && c <= '9') {
+                        throw new UnsupportedOperationException("backreference is not supported: " + pattern);
+                    }
+                    return new CharNode(escapeChar(c));
+            }
+        }
+
+        /**
+         * 字符转义，\b 在字符类中表示退格
+         */
+        private char escapeChar(char c) {
+            switch (c) {
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 't':
+                    return '\t';
+                case 'f':
+                    return '\f';
+                case 'v':
+                    return '\u000b';
+                case '0':
+                    return '\0';
+                case 'x':
+                    return parseHex('x', 2);
+                case 'u':
+                    return parseHex('u', 4);
+                case 'c':
+                    if (pos < pattern.length() && isAsciiLetter(pattern.charAt(pos))) {
+                        return (char) (pattern.charAt(pos++) % 32);
+                    }
+                    // 与 js 一致，\c 后面不是字母时匹配 \ 本身，c 作为普通字符继续解析
+                    pos--;
+                    return '\\';
+                default:
+                    return c;
+            }
+        }
+
+        /**
+         * 解析十六进制转义，后面不是合法的十六进制数字时与 js 一致，按普通字符 x 或 u 处理
+         */
+        private char parseHex(char letter, int digits) {
+            if (pos + digits > pattern.length()) {
+                return letter;
+            }
+            int value = 0;
+            for (int i = 0; i < digits; i++) {
+                char c = pattern.charAt(pos + i);
+                int digit = c < 0x80 ? Character.digit(c, 16) : -1;
+                if (digit < 0) {
+                    return letter;
+                }
+                value = value * 16 + digit;
+            }
+            pos += digits;
+            return (char) value;
+        }
+
+        private boolean isAsciiLetter(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+
+        private Node parseClass() {
+            boolean negate = false;
+            if (pos < pattern.length() && pattern.charAt(pos) == '^') {
+                negate = true;
+                pos++;
+            }
+            StringBuilder ranges = new StringBuilder();
+            while (true) {
+                if (pos >= pattern.length()) {
+                    throw error("unterminated character class");
+                }
+                char c = pattern.charAt(pos++);
+                if (c == ']') {
+                    break;
+                }
+                char start;
+                if (c == '\\') {
+                    char[] escaped = parseClassEscape();
+                    if (escaped != null) {
+                        ranges.append(escaped);
+                        continue;
+                    }
+                    start = pattern.charAt(pos - 1) == 'b' ? '\b' : escapeChar(pattern.charAt(pos - 1));
+                } else {
+                    start = c;
+                }
+                char end = start;
+                if (pos + 1 < pattern.length() && pattern.charAt(pos) == '-' && pattern.charAt(pos + 1) != ']') {
+                    int save = pos;
+                    pos++;
+                    char next = pattern.charAt(pos++);
+                    if (next == '\\') {
+                        if (parseClassEscape() != null) {
+                            // [a-\d] 中的 - 当作普通字符
+                            pos = save;
+                            ranges.append(start).append(start);
+                            continue;
+                        }
+                        end = pattern.charAt(pos - 1) == 'b' ? '\b' : escapeChar(pattern.charAt(pos - 1));
+                    } else {
+                        end = next;
+                    }
+                    if (end < start) {
+                        throw error("range out of order in character class");
+                    }
+                }
+                ranges.append(start).append(end);
+            }
+            char[] result = new char[ranges.length()];
+            ranges.getChars(0, ranges.length(), result, 0);
+            return new ClassNode(result, negate);
+        }
+
+        /**
+         * 解析字符类中的 \d \w \s 等，返回对应的范围；普通转义字符返回 null，此时 pos 指向转义字符之后
+         */
+        private char[] parseClassEscape() {
+            if (pos >= pattern.length()) {
+                throw error("\\ at end of pattern");
+            }
+            char c = pattern.charAt(pos++);
+            switch (c) {
+                case 'd':
+                    return DIGIT;
+                case 'D':
+                    return complement(DIGIT);
+                case 'w':
+                    return WORD;
+                case 'W':
+                    return complement(WORD);
+                case 's':
+                    return SPACE;
+                case 'S':
+                    return complement(SPACE);
+                default:
+                    if (c >= '1' && c <= '9') {
+                        throw new UnsupportedOperationException("backreference is not supported: " + pattern);
+                    }
+                    return null;
+            }
+        }
+
+        private static char[] complement(char[] ranges) {
+            StringBuilder result = new StringBuilder();
+            int next = 0;
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (ranges[i] > next) {
+                    result.append((char) next).append((char) (ranges[i] - 1));
+                }
+                next = ranges[i + 1] + 1;
+            }
+            if (next <= Character.MAX_VALUE) {
+                result.append((char) next).append(Character.MAX_VALUE);
+            }
+            return result.toString().toCharArray();
+        }
+
+        private PatternSyntaxException error(String message) {
+            return new PatternSyntaxException(message, pattern, pos);
+        }
+    }
+}
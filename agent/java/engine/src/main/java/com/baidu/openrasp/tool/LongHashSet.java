@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.tool;
+
+/**
+ * long 类型的开放寻址哈希集合，每个元素只占用 8 字节
+ * <p>
+ * 0 作为空槽标记，不能作为元素；构造完成后只读时可以被多个线程共享，写入需要调用方自行同步
+ */
+public class LongHashSet {
+    private long[] slots;
+    private int size = 0;
+
+    public LongHashSet() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize 预计的元素个数
+     */
+    public LongHashSet(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2 && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        slots = new long[capacity];
+    }
+
+    /**
+     * 添加元素
+     *
+     * @param value 元素，不能为 0
+     * @return 元素原来不存在时返回 true
+     */
+    public boolean add(long value) {
+        if (value == 0) {
+            throw new IllegalArgumentException("0 can not be added to LongHashSet");
+        }
+        if ((size + 1) * 2 > slots.length) {
+            resize(slots.length * 2);
+        }
+        if (insert(slots, value)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    public boolean contains(long value) {
+        long[] current = slots;
+        int mask = current.length - 1;
+        int index = mix(value) & mask;
+        while (true) {
+            long slot = current[index];
+            if (slot == value) {
+                return value != 0;
+            }
+            if (slot == 0) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 所有元素，顺序不确定
+     */
+    public long[] toArray() {
+        long[] result = new long[size];
+        int count = 0;
+        for (long slot : slots) {
+            if (slot != 0) {
+                result[count++] = slot;
+            }
+        }
+        return result;
+    }
+
+    private void resize(int capacity) {
+        long[] resized = new long[capacity];
+        for (long slot : slots) {
+            if (slot != 0) {
+                insert(resized, slot);
+            }
+        }
+        slots = resized;
+    }
+
+    private static boolean insert(long[] target, long value) {
+        int mask = target.length - 1;
+        int index = mix(value) & mask;
+        while (target[index] != 0) {
+            if (target[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        target[index] = value;
+        return true;
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -26,18 +26,50 @@ import java.util.LinkedList;
 
 public class OSUtil {
 
-    private static InetAddress inetAddress;
+    /**
+     * 网卡信息的刷新间隔
+     */
+    private static final long NIC_REFRESH_INTERVAL_MILLIS = 60 * 1000;
 
+    private static volatile String hostName;
+    private static volatile LinkedList<NicModel> ipList;
+    private static volatile long ipListTime = 0;
+
+    /**
+     * 获取本机主机名，第一次调用时解析并缓存
+     *
+     * @return 主机名，解析失败时返回 null
+     */
     public static String getHostName() {
-        return inetAddress == null ? null : inetAddress.getHostName();
+        if (hostName == null) {
+            try {
+                hostName = InetAddress.getLocalHost().getHostName();
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        return hostName;
     }
 
+    /**
+     * 获取本机网卡的 ipv4 地址，结果缓存一段时间，网卡变化后最多 {@link #NIC_REFRESH_INTERVAL_MILLIS} 毫秒更新
+     *
+     * @return 网卡列表，调用方不能修改
+     */
     public static LinkedList<NicModel> getIpAddress() {
+        LinkedList<NicModel> cached = ipList;
+        long now = System.currentTimeMillis();
+        if (cached == null || now - ipListTime > NIC_REFRESH_INTERVAL_MILLIS) {
+            cached = loadIpAddress();
+            ipList = cached;
+            ipListTime = now;
+        }
+        return cached;
+    }
+
+    private static LinkedList<NicModel> loadIpAddress() {
         LinkedList<NicModel> ipList = new LinkedList<NicModel>();
         try {
-            if (inetAddress == null) {
-                inetAddress = InetAddress.getLocalHost();
-            }
             Enumeration allNetInterfaces = null;
             allNetInterfaces = NetworkInterface.getNetworkInterfaces();
 
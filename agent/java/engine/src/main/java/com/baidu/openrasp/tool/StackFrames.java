@@ -0,0 +1,245 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.tool;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Iterator;
+
+/**
+ * 限定深度的调用栈
+ * <p>
+ * Java 9 及以上使用 StackWalker 逐帧遍历，只取需要的帧，不会生成整个调用栈；
+ * Java 6 - 8 使用 Throwable.getStackTrace。为了兼容 Java 6 编译，StackWalker 通过反射调用。
+ * 采集时只保存栈帧对象，读取时才转换为 StackTraceElement 和字符串
+ */
+public class StackFrames {
+
+    private static final Object WALKER;
+    private static final Method WALK;
+    private static final Method ITERATOR;
+    private static final Method GET_CLASS_NAME;
+    private static final Method GET_METHOD_NAME;
+    private static final Method TO_STACK_TRACE_ELEMENT;
+    private static final Constructor<?> FUNCTION_CONSTRUCTOR;
+
+    static {
+        Object walker = null;
+        Method walk = null;
+        Method iterator = null;
+        Method getClassName = null;
+        Method getMethodName = null;
+        Method toStackTraceElement = null;
+        Constructor<?> functionConstructor = null;
+        try {
+            Class<?> walkerClass = Class.forName("java.lang.StackWalker");
+            Class<?> frameClass = Class.forName("java.lang.StackWalker$StackFrame");
+            Class<?> functionClass = Class.forName("java.util.function.Function");
+            Class optionClass = Class.forName("java.lang.StackWalker$Option");
+            // 默认不显示反射调用的帧，需要与 Throwable.getStackTrace 一样保留 Method.invoke 等帧
+            walker = walkerClass.getMethod("getInstance", optionClass)
+                    .invoke(null, Enum.valueOf(optionClass, "SHOW_REFLECT_FRAMES"));
+            walk = walkerClass.getMethod("walk", functionClass);
+            iterator = Class.forName("java.util.stream.BaseStream").getMethod("iterator");
+            getClassName = frameClass.getMethod("getClassName");
+            getMethodName = frameClass.getMethod("getMethodName");
+            toStackTraceElement = frameClass.getMethod("toStackTraceElement");
+            functionConstructor = Proxy.getProxyClass(StackFrames.class.getClassLoader(), functionClass)
+                    .getConstructor(InvocationHandler.class);
+        } catch (Throwable t) {
+            // Java 8 及以下
+            walker = null;
+        }
+        WALKER = walker;
+        WALK = walk;
+        ITERATOR = iterator;
+        GET_CLASS_NAME = getClassName;
+        GET_METHOD_NAME = getMethodName;
+        TO_STACK_TRACE_ELEMENT = toStackTraceElement;
+        FUNCTION_CONSTRUCTOR = functionConstructor;
+    }
+
+    private final Object[] frames;
+    private StackTraceElement[] elements;
+    private String[] names;
+
+    private StackFrames(Object[] frames) {
+        this.frames = frames;
+    }
+
+    /**
+     * 采集当前线程的调用栈
+     *
+     * @param skip  跳过的帧数，为 0 时第一帧是调用本方法的方法
+     * @param limit 最多保存的帧数
+     * @return 调用栈
+     */
+    public static StackFrames capture(int skip, int limit) {
+        return walk(skip + 1, null, limit);
+    }
+
+    /**
+     * 采集当前线程的调用栈，跳过栈顶类名以指定前缀开头的帧，如 RASP 自身的帧
+     *
+     * @param skipPrefix 需要跳过的栈顶帧的类名前缀
+     * @param limit      最多保存的帧数
+     * @return 调用栈
+     */
+    public static StackFrames capture(String skipPrefix, int limit) {
+        return walk(1, skipPrefix, limit);
+    }
+
+    /**
+     * @return 帧数
+     */
+    public int size() {
+        return frames.length;
+    }
+
+    /**
+     * @return 每一帧的 类名.方法名
+     */
+    public synchronized String[] getNames() {
+        if (names == null) {
+            StackTraceElement[] trace = getElements();
+            String[] result = new String[trace.length];
+            for (int i = 0; i < trace.length; i++) {
+                result[i] = trace[i].getClassName() + "." + trace[i].getMethodName();
+            }
+            names = result;
+        }
+        return names;
+    }
+
+    /**
+     * @return 每一帧的 StackTraceElement
+     */
+    public synchronized StackTraceElement[] getElements() {
+        if (elements == null) {
+            StackTraceElement[] result = new StackTraceElement[frames.length];
+            for (int i = 0; i < frames.length; i++) {
+                result[i] = toElement(frames[i]);
+            }
+            elements = result;
+        }
+        return elements;
+    }
+
+    /**
+     * 采集调用栈，本方法自身的帧总是被跳过
+     */
+    private static StackFrames walk(int skip, String skipPrefix, int limit) {
+        if (limit <= 0) {
+            return new StackFrames(new Object[0]);
+        }
+        if (WALKER != null) {
+            try {
+                WalkFunction function = new WalkFunction(skip, skipPrefix, limit);
+                WALK.invoke(WALKER, FUNCTION_CONSTRUCTOR.newInstance(function));
+                return new StackFrames(function.getFrames());
+            } catch (Throwable t) {
+                // 反射调用失败时使用 Throwable
+            }
+        }
+        StackTraceElement[] trace = new Throwable().getStackTrace();
+        int start = Math.min(skip + 1, trace.length);
+        if (skipPrefix != null) {
+            while (start < trace.length && trace[start].getClassName().startsWith(skipPrefix)) {
+                start++;
+            }
+        }
+        int end = (int) Math.min((long) start + limit, trace.length);
+        Object[] frames = new Object[end - start];
+        System.arraycopy(trace, start, frames, 0, frames.length);
+        return new StackFrames(frames);
+    }
+
+    private static StackTraceElement toElement(Object frame) {
+        if (frame instanceof StackTraceElement) {
+            return (StackTraceElement) frame;
+        }
+        try {
+            return (StackTraceElement) TO_STACK_TRACE_ELEMENT.invoke(frame);
+        } catch (Exception e) {
+            return new StackTraceElement(String.valueOf(frame), "", null, -1);
+        }
+    }
+
+    /**
+     * 传给 StackWalker.walk 的 Function，逐帧读取，取够之后不再继续遍历
+     */
+    private static class WalkFunction implements InvocationHandler {
+        private final int skip;
+        private final String skipPrefix;
+        private final Object[] buffer;
+        private int count = 0;
+
+        WalkFunction(int skip, String skipPrefix, int limit) {
+            this.skip = skip;
+            this.skipPrefix = skipPrefix;
+            this.buffer = new Object[limit];
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!"apply".equals(method.getName())) {
+                if ("equals".equals(method.getName())) {
+                    return proxy == args[0];
+                } else if ("hashCode".equals(method.getName())) {
+                    return System.identityHashCode(proxy);
+                }
+                return "StackFrames$WalkFunction";
+            }
+            Iterator<?> iterator = (Iterator<?>) ITERATOR.invoke(args[0]);
+            // apply 由 StackWalker 直接调用，不在遍历的栈中；walk 是通过反射调用的，
+            // 栈顶是反射实现的帧，先跳过到 StackFrames.walk 为止，再跳过指定的帧数
+            while (iterator.hasNext()) {
+                Object frame = iterator.next();
+                if (StackFrames.class.getName().equals(GET_CLASS_NAME.invoke(frame))
+                        && "walk".equals(GET_METHOD_NAME.invoke(frame))) {
+                    break;
+                }
+            }
+            for (int i = 0; i < skip && iterator.hasNext(); i++) {
+                iterator.next();
+            }
+            boolean skipping = skipPrefix != null;
+            while (count < buffer.length && iterator.hasNext()) {
+                Object frame = iterator.next();
+                if (skipping) {
+                    if (((String) GET_CLASS_NAME.invoke(frame)).startsWith(skipPrefix)) {
+                        continue;
+                    }
+                    skipping = false;
+                }
+                buffer[count++] = frame;
+            }
+            return null;
+        }
+
+        Object[] getFrames() {
+            if (count == buffer.length) {
+                return buffer;
+            }
+            Object[] frames = new Object[count];
+            System.arraycopy(buffer, 0, frames, 0, count);
+            return frames;
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.baidu.openrasp.tool;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -58,21 +59,20 @@ public class StackTrace {
      * @return 原始栈
      */
     public static List<String> getStackTraceArray(int startIndex, int depth) {
+        // 第 0 帧为本方法
+        StackFrames frames = StackFrames.capture(startIndex, depth + 1);
+        return new LinkedList<String>(Arrays.asList(frames.getNames()));
+    }
 
-        LinkedList<String> stackTrace = new LinkedList<String>();
-        Throwable throwable = new Throwable();
-        StackTraceElement[] stackTraceElements = throwable.getStackTrace();
-
-        if (stackTraceElements != null) {
-            for (int i = startIndex; i < stackTraceElements.length; i++) {
-                if (i > startIndex + depth) {
-                    break;
-                }
-                stackTrace.add(stackTraceElements[i].getClassName() + "." + stackTraceElements[i].getMethodName());
-            }
-        }
-
-        return stackTrace;
+    /**
+     * 获取原始栈，只采集需要的帧，读取时才转换为字符串
+     *
+     * @param startIndex 起始帧，第 0 帧为本方法
+     * @param depth      起始帧之后的最大帧数
+     * @return 原始栈
+     */
+    public static StackFrames getStackFrames(int startIndex, int depth) {
+        return StackFrames.capture(startIndex, depth + 1);
     }
 
 }
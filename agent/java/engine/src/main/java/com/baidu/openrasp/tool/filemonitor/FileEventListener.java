@@ -17,14 +17,18 @@
 package com.baidu.openrasp.tool.filemonitor;
 
 
+import com.baidu.openrasp.tool.CanonicalPathCache;
 import com.fuxi.javaagent.contentobjects.jnotify.JNotifyListener;
 import org.apache.commons.io.monitor.FileAlterationObserver;
 
+import java.io.File;
+
 /**
  * Created by tyy on 6/7/17.
  * 可用于监听某一个文件夹事件的监听器
  * 使用系统事件作为驱动，实时性高
  * 将事件传递给观察者，由观察者扫描该文件夹来进一步确定事件事件具体类型
+ * 同时使发生变化的路径的真实路径缓存失效
  */
 public class FileEventListener implements JNotifyListener {
 
@@ -45,6 +49,8 @@ public class FileEventListener implements JNotifyListener {
     @Override
     public void fileRenamed(int wd, String rootPath, String oldName,
                             String newName) {
+        invalidate(rootPath, oldName);
+        invalidate(rootPath, newName);
         observer.checkAndNotify();
     }
 
@@ -53,6 +59,7 @@ public class FileEventListener implements JNotifyListener {
      */
     @Override
     public void fileModified(int wd, String rootPath, String name) {
+        invalidate(rootPath, name);
         observer.checkAndNotify();
     }
 
@@ -61,6 +68,7 @@ public class FileEventListener implements JNotifyListener {
      */
     @Override
     public void fileDeleted(int wd, String rootPath, String name) {
+        invalidate(rootPath, name);
         observer.checkAndNotify();
     }
 
@@ -69,7 +77,14 @@ public class FileEventListener implements JNotifyListener {
      */
     @Override
     public void fileCreated(int wd, String rootPath, String name) {
+        invalidate(rootPath, name);
         observer.checkAndNotify();
     }
 
+    private static void invalidate(String rootPath, String name) {
+        if (rootPath != null && name != null) {
+            CanonicalPathCache.invalidate(new File(rootPath, name).getAbsolutePath());
+        }
+    }
+
 }
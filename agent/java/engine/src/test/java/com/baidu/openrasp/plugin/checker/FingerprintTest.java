@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.checker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link Fingerprint#normalizeSql(String, StringBuilder)} 的 SQL 归一化
+ */
+public class FingerprintTest {
+
+    /**
+     * SQL 语句和归一化结果
+     */
+    private static final String[][] CASES = {
+            {"select * from t where id = 1", "select * from t where id = ?"},
+            {"select * from t where id = 12.5", "select * from t where id = ?"},
+            {"select * from t where id=-1", "select * from t where id=-?"},
+            {"select * from t limit 10,20", "select * from t limit ?,?"},
+            // 标识符中的数字不替换，十六进制常量保持不变
+            {"select a1 = 2 from t2", "select a1 = ? from t2"},
+            {"select $1, c_2 from t", "select $1, c_2 from t"},
+            {"select 0x1F, 0X2a", "select 0x1F, 0X2a"},
+            // 字符串常量，包括转义和两个连续引号
+            {"select 'abc', \"def\"", "select ?, ?"},
+            {"select 'a''b' , 'c'", "select ? , ?"},
+            {"select 'a\\'b', 1", "select ?, ?"},
+            {"select 'it''s 1' from t where x='2'", "select ? from t where x=?"},
+            {"select 'unterminated", "select ?"},
+            {"select 'a\\", "select ?"},
+            {"select ''", "select ?"},
+            // 空白合并，首尾空白去掉
+            {"  select\t\t*\r\n from  t  ", "select * from t"},
+            {"\n", ""},
+            {"", ""},
+            // 注释保持不变
+            {"select 1 -- id = 2\nfrom t", "select ? -- id = 2 from t"},
+            {"select 1 # id = 2\r\nfrom t", "select ? # id = 2 from t"},
+            {"select 1 /* id  =  2 */ from t", "select ? /* id  =  2 */ from t"},
+            {"select /*!50000 1 */ union", "select /*!50000 1 */ union"},
+            {"select 1 /* unterminated 2", "select ? /* unterminated 2"},
+            {"select '/* 1 */'", "select ?"},
+            {"select 1--2", "select ?--2"},
+            // 只有常量不同的语句归一化结果相同
+            {"SELECT name FROM user WHERE id = 42 AND pwd = 'secret'", "SELECT name FROM user WHERE id = ? AND pwd = ?"},
+            {"SELECT name FROM user WHERE id = 7 AND pwd = 'x'", "SELECT name FROM user WHERE id = ? AND pwd = ?"},
+    };
+
+    @Test
+    public void testNormalizeSql() {
+        for (String[] c : CASES) {
+            StringBuilder out = new StringBuilder();
+            Fingerprint.normalizeSql(c[0], out);
+            assertEquals(c[0], c[1], out.toString());
+        }
+    }
+
+    @Test
+    public void testNormalizeSqlAppends() {
+        StringBuilder out = new StringBuilder("sql\0");
+        Fingerprint.normalizeSql(" select 1", out);
+        assertEquals("sql\0select ?", out.toString());
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.info;
+
+import com.baidu.openrasp.tool.OSUtil;
+import org.junit.Test;
+import org.mozilla.javascript.Undefined;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link AlarmJsonWriter} 的字符串转义和各类型值的输出
+ */
+public class AlarmJsonWriterTest {
+
+    /**
+     * 字符串和期望输出的 JSON
+     */
+    private static final String[][] STRING_CASES = {
+            {"", "\"\""},
+            {"abc 123", "\"abc 123\""},
+            {"a\"b", "\"a\\\"b\""},
+            {"a\\b", "\"a\\\\b\""},
+            {"</script>", "\"<\\/script>\""},
+            {"\b\f\n\r\t", "\"\\b\\f\\n\\r\\t\""},
+            {"\u0000\u0001\u001f\u007f", "\"\\u0000\\u0001\\u001f\u007f\""},
+            {"\u001b[31m", "\"\\u001b[31m\""},
+            {"中文é", "\"中文é\""},
+            {"\ud83d\ude00", "\"\ud83d\ude00\""},
+            // 不成对的代理字符输出为 ?
+            {"a\ud83db", "\"a?b\""},
+            {"a\ude00", "\"a?\""},
+            {"\ude00\ud83d", "\"??\""},
+    };
+
+    /**
+     * 值和期望输出的 JSON
+     */
+    private static final Object[][] VALUE_CASES = {
+            {null, "null"},
+            {Undefined.instance, "null"},
+            {true, "true"},
+            {false, "false"},
+            {42, "42"},
+            {-7L, "-7"},
+            {3.0, "3"},
+            {-0.5, "-0.5"},
+            {1e20, "1.0E20"},
+            {2.5f, "2.5"},
+            {Double.NaN, "null"},
+            {Double.POSITIVE_INFINITY, "null"},
+            {new StringBuilder("sb"), "\"sb\""},
+            {Arrays.asList("a", 1, null), "[\"a\",1,null]"},
+            {new Object[]{"x", new Object[]{}}, "[\"x\",[]]"},
+            {new ArrayList<Object>(), "[]"},
+            {new LinkedHashMap<String, Object>(), "{}"},
+            {Thread.State.NEW, "\"NEW\""},
+    };
+
+    @Test
+    public void testEscape() throws Exception {
+        for (String[] c : STRING_CASES) {
+            byte[] json = AlarmJsonWriter.getWriter().value(c[0]).toByteArray();
+            assertArrayEquals(c[1], c[1].getBytes("UTF-8"), json);
+        }
+    }
+
+    @Test
+    public void testSurrogatePairIsFourBytes() {
+        byte[] json = AlarmJsonWriter.getWriter().value("\ud83d\ude00").toByteArray();
+        assertArrayEquals(new byte[]{'"', (byte) 0xf0, (byte) 0x9f, (byte) 0x98, (byte) 0x80, '"'}, json);
+    }
+
+    @Test
+    public void testValue() throws Exception {
+        for (Object[] c : VALUE_CASES) {
+            assertEquals(String.valueOf(c[0]), c[1], toString(AlarmJsonWriter.getWriter().value(c[0])));
+        }
+    }
+
+    @Test
+    public void testObject() throws Exception {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("a", 1);
+        map.put("skip", null);
+        map.put("u", Undefined.instance);
+        map.put("b", Arrays.asList("x", "y"));
+        Map<String, Object> nested = new LinkedHashMap<String, Object>();
+        nested.put("k\"", "v");
+        map.put("c", nested);
+        AlarmJsonWriter writer = AlarmJsonWriter.getWriter()
+                .beginObject()
+                .field("name", "n")
+                .field("empty", null)
+                .field("undefined", Undefined.instance)
+                .name("count").value(2L)
+                .name("ok").value(true)
+                .field("map", map)
+                .name("list").beginArray().value("a").value(1L).endArray()
+                .endObject();
+        assertEquals("{\"name\":\"n\",\"count\":2,\"ok\":true,"
+                + "\"map\":{\"a\":1,\"b\":[\"x\",\"y\"],\"c\":{\"k\\\"\":\"v\"}},\"list\":[\"a\",1]}", toString(writer));
+    }
+
+    @Test
+    public void testMaxDepth() throws Exception {
+        List<Object> root = new ArrayList<Object>();
+        List<Object> current = root;
+        for (int i = 0; i < AlarmJsonWriter.MAX_DEPTH + 5; i++) {
+            List<Object> child = new ArrayList<Object>();
+            current.add(child);
+            current = child;
+        }
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < AlarmJsonWriter.MAX_DEPTH; i++) {
+            expected.append('[');
+        }
+        expected.append("null");
+        for (int i = 0; i < AlarmJsonWriter.MAX_DEPTH; i++) {
+            expected.append(']');
+        }
+        assertEquals(expected.toString(), toString(AlarmJsonWriter.getWriter().value(root)));
+    }
+
+    @Test
+    public void testHostNameField() throws Exception {
+        String hostName = OSUtil.getHostName();
+        String json = toString(AlarmJsonWriter.getWriter().beginObject().hostNameField("server_hostname")
+                .field("a", 1).endObject());
+        if (hostName == null) {
+            assertEquals("{\"a\":1}", json);
+        } else {
+            assertEquals("{\"server_hostname\":" + toString(AlarmJsonWriter.getWriter().value(hostName))
+                    + ",\"a\":1}", json);
+        }
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        assertEquals("[1]", toString(AlarmJsonWriter.getWriter().beginArray().value(1L).endArray()));
+        assertEquals("\"x\"", toString(AlarmJsonWriter.getWriter().value("x")));
+        char[] chars = new char[100000];
+        Arrays.fill(chars, 'a');
+        String large = new String(chars);
+        assertEquals("\"" + large + "\"", toString(AlarmJsonWriter.getWriter().value(large)));
+        assertEquals("2", toString(AlarmJsonWriter.getWriter().value(2L)));
+    }
+
+    private static String toString(AlarmJsonWriter writer) throws Exception {
+        return new String(writer.toByteArray(), "UTF-8");
+    }
+}
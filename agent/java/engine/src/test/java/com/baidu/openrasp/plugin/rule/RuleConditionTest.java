@@ -0,0 +1,269 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.plugin.rule;
+
+import com.baidu.openrasp.plugin.checker.CheckParameter;
+import com.baidu.openrasp.plugin.checker.DataRequirement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+import org.mozilla.javascript.NativeArray;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link RuleCondition} 的运算符、忽略大小写、取反、字段选择和 cidr 匹配
+ * <p>
+ * 没有 web 容器时请求为 null，header、parameter 等请求字段只覆盖没有请求时的行为
+ */
+public class RuleConditionTest {
+
+    /**
+     * 条件配置（单引号会替换为双引号）、检测参数（key 和 value 交替）、match 的结果
+     */
+    private static final Object[][] MATCH_CASES = {
+            // 运算符
+            {"{'field':'param.query','operator':'equals','value':['a','b']}", params("query", "b"), "b"},
+            {"{'field':'param.query','operator':'equals','value':['a','b']}", params("query", "ab"), null},
+            {"{'field':'param.query','operator':'equals','value':'abc'}", params("query", "abc"), "abc"},
+            {"{'field':'param.path','operator':'prefix','value':['/admin']}", params("path", "/admin/x"), "/admin/x"},
+            {"{'field':'param.path','operator':'prefix','value':['/admin']}", params("path", "/x/admin"), null},
+            {"{'field':'param.path','operator':'suffix','value':['.jsp','.jspx']}", params("path", "a.jspx"), "a.jspx"},
+            {"{'field':'param.path','operator':'suffix','value':['.jsp']}", params("path", "a.jsp.bak"), null},
+            {"{'field':'param.query','operator':'contains_any','value':['select','union']}",
+                    params("query", "1 union select 2"), "union"},
+            {"{'field':'param.query','operator':'contains_any','value':['union']}", params("query", "1 unio"), null},
+            {"{'field':'param.query','operator':'regex','value':['^[0-9]+$','^abc']}", params("query", "abcd"), "abcd"},
+            {"{'field':'param.query','operator':'regex','value':['^[0-9]+$','^abc']}", params("query", "x1"), null},
+            {"{'field':'param.query','operator':'exists'}", params("query", "x"), "x"},
+            {"{'field':'param.query','operator':'exists'}", params("query", ""), null},
+            {"{'field':'param.query','operator':'exists'}", params(), null},
+            // 忽略大小写，regex 以外的运算符把输入转换为小写后匹配
+            {"{'field':'param.query','operator':'equals','value':['Admin'],'ignore_case':true}",
+                    params("query", "ADMIN"), "admin"},
+            {"{'field':'param.query','operator':'equals','value':['Admin']}", params("query", "ADMIN"), null},
+            {"{'field':'param.path','operator':'prefix','value':['/Admin'],'ignore_case':true}",
+                    params("path", "/ADMIN/x"), "/admin/x"},
+            {"{'field':'param.path','operator':'prefix','value':['/Admin']}", params("path", "/ADMIN/x"), null},
+            {"{'field':'param.path','operator':'suffix','value':['.JSP'],'ignore_case':true}",
+                    params("path", "A.jsp"), "a.jsp"},
+            {"{'field':'param.path','operator':'suffix','value':['.JSP']}", params("path", "A.jsp"), null},
+            {"{'field':'param.query','operator':'contains_any','value':['Union'],'ignore_case':true}",
+                    params("query", "1 UNION 2"), "union"},
+            {"{'field':'param.query','operator':'contains_any','value':['Union']}", params("query", "1 UNION 2"), null},
+            {"{'field':'param.query','operator':'regex','value':['^sel[a-z]+t$'],'ignore_case':true}",
+                    params("query", "SELECT"), "SELECT"},
+            {"{'field':'param.query','operator':'regex','value':['^sel[a-z]+t$']}", params("query", "SELECT"), null},
+            {"{'field':'param.query','operator':'regex','value':['[A-Z]'],'ignore_case':true}",
+                    params("query", "abc"), "abc"},
+            {"{'field':'param.ip','operator':'cidr','value':['2001:DB8::/32'],'ignore_case':true}",
+                    params("ip", "2001:db8::1"), "2001:db8::1"},
+            // 取反时返回字段的原始值，字段没有值时返回空字符串
+            {"{'field':'param.ua','operator':'contains_any','value':['sqlmap'],'not':true}",
+                    params("ua", "curl/7"), "curl/7"},
+            {"{'field':'param.ua','operator':'contains_any','value':['sqlmap'],'not':true}",
+                    params("ua", "sqlmap/1.0"), null},
+            {"{'field':'param.ua','operator':'contains_any','value':['sqlmap'],'ignore_case':true,'not':true}",
+                    params("ua", "SQLMap/1.0"), null},
+            {"{'field':'param.ua','operator':'equals','value':['x'],'ignore_case':true,'not':true}",
+                    params("ua", "ABC"), "ABC"},
+            {"{'field':'param.ua','operator':'contains_any','value':['sqlmap'],'not':true}", params(), ""},
+            {"{'field':'param.ua','operator':'exists','not':true}", params("ua", ""), ""},
+            {"{'field':'param.ua','operator':'exists','not':true}", params("ua", "x"), null},
+            // file_path 优先使用 realpath
+            {"{'field':'file_path','operator':'equals','value':['/etc/passwd']}",
+                    params("path", "../../etc/passwd", "realpath", "/etc/passwd"), "/etc/passwd"},
+            {"{'field':'file_path','operator':'equals','value':['/etc/passwd']}",
+                    params("path", "/etc/passwd"), "/etc/passwd"},
+            {"{'field':'file_path','operator':'equals','value':['/etc/passwd']}",
+                    params("path", "/etc/passwd", "realpath", "/tmp/x"), null},
+            // 参数值为数字或数组时逐个匹配字符串和数字，其他类型跳过
+            {"{'field':'param.port','operator':'equals','value':['42']}", params("port", 42), "42"},
+            {"{'field':'param.port','operator':'exists'}", params("port", true), null},
+            {"{'field':'param.command','operator':'equals','value':['1']}",
+                    params("command", new NativeArray(new Object[]{"ls", 1, true})), "1"},
+            {"{'field':'param.command','operator':'equals','value':['true']}",
+                    params("command", new NativeArray(new Object[]{"ls", 1, true})), null},
+            {"{'field':'param.command','operator':'exists','not':true}",
+                    params("command", new NativeArray(new Object[]{true})), ""},
+            // 没有请求时请求字段没有值
+            {"{'field':'header.user-agent','operator':'exists'}", params(), null},
+            {"{'field':'header.user-agent','operator':'exists','not':true}", params(), ""},
+            {"{'field':'parameter.id','operator':'exists'}", params(), null},
+            {"{'field':'parameter','operator':'contains_any','value':['x']}", params(), null},
+            {"{'field':'path','operator':'exists'}", params(), null},
+            {"{'field':'url','operator':'exists'}", params(), null},
+            {"{'field':'method','operator':'exists'}", params(), null},
+            {"{'field':'query_string','operator':'exists'}", params(), null},
+            {"{'field':'remote_addr','operator':'exists'}", params(), null},
+    };
+
+    /**
+     * cidr 配置、输入的 ip、是否匹配
+     */
+    private static final Object[][] CIDR_CASES = {
+            // IPv4
+            {"10.0.0.0/8", "10.1.2.3", true},
+            {"10.0.0.0/8", "11.0.0.1", false},
+            {"10.0.0.0/9", "10.127.255.255", true},
+            {"10.0.0.0/9", "10.128.0.1", false},
+            {"172.16.0.0/12", "172.31.255.255", true},
+            {"172.16.0.0/12", "172.32.0.0", false},
+            {"192.168.1.0/24", "192.168.1.255", true},
+            {"1.2.3.4", "1.2.3.4", true},
+            {"1.2.3.4", "1.2.3.5", false},
+            {"0.0.0.0/0", "255.255.255.255", true},
+            // IPv6
+            {"2001:db8::/32", "2001:db8::1", true},
+            {"2001:db8::/32", "2001:db9::1", false},
+            {"::1/128", "::1", true},
+            {"::1", "0:0:0:0:0:0:0:1", true},
+            {"fe80::/10", "febf::1", true},
+            {"fe80::/10", "fec0::1", false},
+            {"::/0", "ffff::1", true},
+            // IPv4 和 IPv6 互不匹配，IPv4 映射地址按 IPv4 处理
+            {"0.0.0.0/0", "::1", false},
+            {"::/0", "1.2.3.4", false},
+            {"1.2.3.0/24", "::ffff:1.2.3.4", true},
+            // 不是 ip 字面量时不匹配，也不会触发域名解析
+            {"0.0.0.0/0", "localhost", false},
+            {"0.0.0.0/0", "", false},
+            {"0.0.0.0/0", "1.2.3", false},
+            {"0.0.0.0/0", "1.2.3.4.5", false},
+            {"0.0.0.0/0", "256.1.1.1", false},
+            {"0.0.0.0/0", "1.2.3.1000", false},
+            {"0.0.0.0/0", " 1.2.3.4", false},
+            {"::/0", "[::1]", false},
+            {"::/0", "example.com:80", false},
+            {"::/0", "abc:def", false},
+            {"::/0", "1:2:3:4:5:6:7:8:9", false},
+    };
+
+    /**
+     * 不合法的条件配置
+     */
+    private static final String[] INVALID_CASES = {
+            "{'operator':'equals','value':['a']}",
+            "{'field':'param.query','value':['a']}",
+            "{'field':'cookie.id','operator':'equals','value':['a']}",
+            "{'field':'header','operator':'equals','value':['a']}",
+            "{'field':'param','operator':'equals','value':['a']}",
+            "{'field':'param.query','operator':'like','value':['a']}",
+            "{'field':'param.query','operator':'equals'}",
+            "{'field':'param.query','operator':'equals','value':[]}",
+            "{'field':'param.query','operator':'regex','value':['(a']}",
+            "{'field':'body','operator':'equals','value':['a']}",
+            "{'field':'body','operator':'contains_any','value':['a'],'not':true}",
+            // cidr 的地址和前缀长度
+            "{'field':'remote_addr','operator':'cidr','value':['10.0.0.0/33']}",
+            "{'field':'remote_addr','operator':'cidr','value':['10.0.0.0/-1']}",
+            "{'field':'remote_addr','operator':'cidr','value':['10.0.0.0/x']}",
+            "{'field':'remote_addr','operator':'cidr','value':['::1/129']}",
+            "{'field':'remote_addr','operator':'cidr','value':['localhost/8']}",
+            "{'field':'remote_addr','operator':'cidr','value':['10.0.0/8']}",
+    };
+
+    @Test
+    public void testMatch() {
+        for (Object[] c : MATCH_CASES) {
+            String config = (String) c[0];
+            @SuppressWarnings("unchecked")
+            Map<String, Object> params = (Map<String, Object>) c[1];
+            assertEquals(config + " " + params, c[2], condition(config).match(check(params)));
+        }
+    }
+
+    @Test
+    public void testCidr() {
+        for (Object[] c : CIDR_CASES) {
+            RuleCondition condition = condition("{'field':'param.ip','operator':'cidr','value':['" + c[0] + "']}");
+            String ip = (String) c[1];
+            assertEquals(c[0] + " " + ip, (Boolean) c[2] ? ip : null, condition.match(check(params("ip", ip))));
+        }
+        RuleCondition multiple = condition("{'field':'param.ip','operator':'cidr','value':['10.0.0.0/8','::1']}");
+        assertEquals("::1", multiple.match(check(params("ip", "::1"))));
+        assertEquals("10.0.0.1", multiple.match(check(params("ip", "10.0.0.1"))));
+        assertNull(multiple.match(check(params("ip", "127.0.0.1"))));
+    }
+
+    @Test
+    public void testInvalid() {
+        for (String config : INVALID_CASES) {
+            try {
+                condition(config);
+                fail(config);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testRegexFallback() {
+        // 零宽断言和反向引用交给 java.util.regex
+        RuleCondition lookahead = condition("{'field':'param.query','operator':'regex','value':['a(?=b)']}");
+        assertEquals("xab", lookahead.match(check(params("query", "xab"))));
+        assertNull(lookahead.match(check(params("query", "xac"))));
+        RuleCondition backreference = condition(
+                "{'field':'param.query','operator':'regex','value':['(A)\\\\1'],'ignore_case':true}");
+        assertEquals("xaA", backreference.match(check(params("query", "xaA"))));
+        assertNull(backreference.match(check(params("query", "xab"))));
+    }
+
+    @Test
+    public void testRegexLinear() {
+        // 线性引擎不会因为回溯而超时
+        char[] chars = new char[100000];
+        Arrays.fill(chars, 'a');
+        RuleCondition condition = condition("{'field':'param.query','operator':'regex','value':['^(a|aa)*c$']}");
+        assertNull(condition.match(check(params("query", new String(chars)))));
+        assertEquals("aaac", condition.match(check(params("query", "aaac"))));
+    }
+
+    @Test
+    public void testRequirements() {
+        assertEquals(DataRequirement.Field.REALPATH.getMask(),
+                condition("{'field':'file_path','operator':'exists'}").getRequirements());
+        assertEquals(DataRequirement.Field.STACK.getMask(),
+                condition("{'field':'param.stack','operator':'contains_any','value':['x']}").getRequirements());
+        assertEquals(0, condition("{'field':'param.query','operator':'exists'}").getRequirements());
+        assertEquals(0, condition("{'field':'header.host','operator':'exists'}").getRequirements());
+    }
+
+    private static RuleCondition condition(String config) {
+        JsonObject json = new JsonParser().parse(config.replace('\'', '"')).getAsJsonObject();
+        return new RuleCondition(json);
+    }
+
+    private static CheckParameter check(Map<String, Object> params) {
+        return new CheckParameter(CheckParameter.Type.SQL, params);
+    }
+
+    private static Map<String, Object> params(Object... keyValues) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            params.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return params;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.request;
+
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link BodyParameterParser} 的 JSON 和 urlencoded 请求体解析
+ */
+public class BodyParameterParserTest {
+
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final String FORM = "application/x-www-form-urlencoded";
+
+    /**
+     * Content-Type、请求体、urlencoded 编码、期望的参数（key 和 value 交替，同一个 key 可以出现多次）
+     */
+    private static final Object[][] CASES = {
+            // JSON 叶子节点路径
+            {JSON, "{\"a\":\"1\"}", null, new String[]{"a", "1"}},
+            {JSON, "{\"user\":{\"name\":\"x\",\"age\":18}}", null, new String[]{"user.name", "x", "user.age", "18"}},
+            {JSON, "{\"items\":[\"a\",{\"b\":\"c\"},[\"d\"]]}", null,
+                    new String[]{"items[0]", "a", "items[1].b", "c", "items[2][0]", "d"}},
+            {JSON, "[\"a\",\"b\"]", null, new String[]{"[0]", "a", "[1]", "b"}},
+            {JSON, "\"top\"", null, new String[]{"", "top"}},
+            // 数字保留原文，true、false、null 跳过
+            {JSON, "{\"n\":-1.5e3,\"t\":true,\"f\":false,\"z\":null,\"s\":\"x\"}", null,
+                    new String[]{"n", "-1.5e3", "s", "x"}},
+            // 字符串转义
+            {JSON, "{\"s\":\"a\\\"b\\\\c\\/d\\n\\u0041\"}", null, new String[]{"s", "a\"b\\c/d\nA"}},
+            {JSON, "{\"中\":\"文\"}", null, new String[]{"中", "文"}},
+            {JSON, " \r\n{ \"a\" : [ 1 , 2 ] } ", null, new String[]{"a[0]", "1", "a[1]", "2"}},
+            {JSON, "{}", null, new String[]{}},
+            {JSON, "[]", null, new String[]{}},
+            // 截断和格式错误时保留已经解析出的参数，截断的字符串保留已读取的部分
+            {JSON, "{\"a\":\"1\",\"b\":\"select * fr", null, new String[]{"a", "1", "b", "select * fr"}},
+            {JSON, "{\"a\":\"1\",\"b\":", null, new String[]{"a", "1"}},
+            {JSON, "{\"a\":\"1\"} garbage", null, new String[]{"a", "1"}},
+            {JSON, "{\"a\":\"1\" \"b\":\"2\"}", null, new String[]{"a", "1"}},
+            {JSON, "{\"a\":\"\\u00zz\"}", null, new String[]{}},
+            {JSON, "not json", null, new String[]{}},
+            {"text/json", "{\"a\":\"1\"}", null, new String[]{"a", "1"}},
+            // urlencoded
+            {FORM, "a=1&b=2", null, new String[]{"a", "1", "b", "2"}},
+            {FORM, "a=1&a=2", null, new String[]{"a", "1", "a", "2"}},
+            {FORM, "a&b=&=c&&", null, new String[]{"a", "", "b", "", "", "c"}},
+            {FORM, "q=1+2%3D3&k%20y=%27or%27", null, new String[]{"q", "1 2=3", "k y", "'or'"}},
+            {FORM, "x=a=b", null, new String[]{"x", "a=b"}},
+            // 不合法的 %XX 保持原样
+            {FORM, "p=100%&q=%zz%4", null, new String[]{"p", "100%", "q", "%zz%4"}},
+            // 编码后的和未编码的非 ASCII 字节都按请求编码转换
+            {FORM, "n=%E4%B8%AD文", null, new String[]{"n", "中文"}},
+            {FORM, "n=文", null, new String[]{"n", "文"}},
+            {FORM, "n=%D6%D0", "GBK", new String[]{"n", "中"}},
+            {FORM, "n=%E4%B8%AD", "no-such-charset", new String[]{"n", "中"}},
+            {FORM + "; charset=UTF-8", "a=1", null, new String[]{"a", "1"}},
+            // 不支持的类型
+            {"multipart/form-data; boundary=x", "a=1", null, new String[]{}},
+            {"text/plain", "a=1", null, new String[]{}},
+    };
+
+    @Test
+    public void testParse() throws Exception {
+        for (Object[] c : CASES) {
+            String contentType = (String) c[0];
+            String body = (String) c[1];
+            String encoding = (String) c[2];
+            String[] expected = (String[]) c[3];
+            Map<String, String[]> result = BodyParameterParser.parse(contentType, encode(body, encoding), encoding);
+            String message = contentType + " " + body;
+            assertEquals(message, expected.length / 2, count(result));
+            for (int i = 0; i < expected.length; i += 2) {
+                String[] values = result.get(expected[i]);
+                assertTrue(message + ": missing " + expected[i], values != null);
+                int index = 0;
+                for (int j = 0; j < i; j += 2) {
+                    if (expected[j].equals(expected[i])) {
+                        index++;
+                    }
+                }
+                assertEquals(message, expected[i + 1], values[index]);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyBody() {
+        assertEquals(0, BodyParameterParser.parse(JSON, ByteBuffer.allocate(0), null).size());
+        assertEquals(0, BodyParameterParser.parse(JSON, null, null).size());
+        assertEquals(0, BodyParameterParser.parse(null, ByteBuffer.wrap(new byte[]{'a'}), null).size());
+    }
+
+    @Test
+    public void testMaxDepth() throws Exception {
+        StringBuilder deep = new StringBuilder("{\"a\":\"1\",\"b\":");
+        for (int i = 0; i < BodyParameterParser.MAX_DEPTH + 8; i++) {
+            deep.append('[');
+        }
+        deep.append("\"x\"");
+        Map<String, String[]> result = BodyParameterParser.parse(JSON, encode(deep.toString(), null), null);
+        assertEquals(1, result.size());
+        assertArrayEquals(new String[]{"1"}, result.get("a"));
+    }
+
+    @Test
+    public void testMaxValues() throws Exception {
+        StringBuilder form = new StringBuilder();
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < BodyParameterParser.MAX_VALUES + 10; i++) {
+            form.append("a=").append(i).append('&');
+            json.append(i).append(',');
+        }
+        json.append("0]");
+        assertEquals(BodyParameterParser.MAX_VALUES,
+                BodyParameterParser.parse(FORM, encode(form.toString(), null), null).get("a").length);
+        assertEquals(BodyParameterParser.MAX_VALUES,
+                BodyParameterParser.parse(JSON, encode(json.toString(), null), null).size());
+    }
+
+    private static ByteBuffer encode(String body, String encoding) throws UnsupportedEncodingException {
+        boolean supported = encoding != null && Charset.isSupported(encoding);
+        return ByteBuffer.wrap(body.getBytes(supported ? encoding : "UTF-8"));
+    }
+
+    private static int count(Map<String, String[]> result) {
+        int count = 0;
+        for (String[] values : result.values()) {
+            count += values.length;
+        }
+        return count;
+    }
+}
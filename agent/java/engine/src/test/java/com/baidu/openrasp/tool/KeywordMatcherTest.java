@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.tool;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * {@link KeywordMatcher} 的整体匹配和分段匹配
+ */
+public class KeywordMatcherTest {
+
+    private static final List<String> KEYWORDS = Arrays.asList("he", "she", "his", "hers", "union", "select", "");
+
+    /**
+     * 文本、是否全词匹配、find 的结果、findAll 的结果
+     */
+    private static final Object[][] FIND_CASES = {
+            {"ushers", false, "she", new String[]{"she", "he", "hers"}},
+            {"ahishers", false, "his", new String[]{"his", "she", "he", "hers"}},
+            {"nothing here", false, "he", new String[]{"he"}},
+            {"xyz", false, null, new String[]{}},
+            {"", false, null, new String[]{}},
+            {"he he he", false, "he", new String[]{"he"}},
+            {"1 union select 2", false, "union", new String[]{"union", "select"}},
+            // 全词匹配
+            {"ushers", true, null, new String[]{}},
+            {"he said", true, "he", new String[]{"he"}},
+            {"she_x she", true, "she", new String[]{"she"}},
+            {"1 union/**/select 2", true, "union", new String[]{"union", "select"}},
+            {"reunion selection", true, null, new String[]{}},
+            {"(hers)", true, "hers", new String[]{"hers"}},
+    };
+
+    /**
+     * 分段输入的文本，每个字符处 Cursor.next 返回的最长关键字，没有时为 null
+     */
+    private static final Object[][] CURSOR_CASES = {
+            {new String[]{"us", "hers"}, new String[]{null, null, null, "she", null, "hers"}},
+            {new String[]{"se", "le", "ct"}, new String[]{null, null, null, null, null, "select"}},
+            {new String[]{"h", "i", "s"}, new String[]{null, null, "his"}},
+            {new String[]{"x", "", "he"}, new String[]{null, null, "he"}},
+    };
+
+    @Test
+    public void testFind() {
+        KeywordMatcher matcher = new KeywordMatcher(KEYWORDS);
+        assertEquals(6, matcher.size());
+        for (Object[] c : FIND_CASES) {
+            String text = (String) c[0];
+            boolean wholeWord = (Boolean) c[1];
+            String message = text + " " + wholeWord;
+            assertEquals(message, c[2], matcher.find(text, wholeWord));
+            assertArrayEquals(message, (String[]) c[3], matcher.findAll(text, wholeWord).toArray());
+        }
+    }
+
+    @Test
+    public void testIgnoreCase() {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("Union", "SELECT"), true);
+        assertEquals("Union", matcher.find("1 UNION sElEcT 2"));
+        assertArrayEquals(new String[]{"Union", "SELECT"}, matcher.findAll("1 UNION sElEcT 2").toArray());
+        assertNull(new KeywordMatcher(Arrays.asList("Union")).find("1 UNION 2"));
+    }
+
+    @Test
+    public void testCursor() {
+        KeywordMatcher matcher = new KeywordMatcher(KEYWORDS);
+        for (Object[] c : CURSOR_CASES) {
+            String[] segments = (String[]) c[0];
+            KeywordMatcher.Cursor cursor = matcher.newCursor();
+            List<String> result = new ArrayList<String>();
+            for (String segment : segments) {
+                for (int i = 0; i < segment.length(); i++) {
+                    result.add(cursor.next(segment.charAt(i)));
+                }
+            }
+            assertArrayEquals(Arrays.toString(segments), (String[]) c[1], result.toArray());
+        }
+    }
+
+    @Test
+    public void testCursorReset() {
+        KeywordMatcher matcher = new KeywordMatcher(KEYWORDS, true);
+        KeywordMatcher.Cursor cursor = matcher.newCursor();
+        cursor.next('S');
+        cursor.next('H');
+        cursor.reset();
+        assertNull(cursor.next('E'));
+        cursor.reset();
+        cursor.next('s');
+        cursor.next('H');
+        assertEquals("she", cursor.next('E'));
+    }
+}
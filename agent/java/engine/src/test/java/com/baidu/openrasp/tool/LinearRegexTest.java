@@ -0,0 +1,205 @@
+/*
+ * Copyright 2017-2018 Baidu Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.openrasp.tool;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link LinearRegex} 的匹配结果应与 js 的 String.prototype.match（非全局）一致
+ */
+public class LinearRegexTest {
+
+    private static final int I = LinearRegex.CASE_INSENSITIVE;
+    private static final int M = LinearRegex.MULTILINE;
+    private static final int S = LinearRegex.DOTALL;
+
+    /**
+     * 正则、flags、输入、期望的匹配结果（整个匹配和各个分组，没有匹配时为 null）
+     */
+    private static final Object[][] MATCH_CASES = {
+            // 字面量和最左匹配
+            {"abc", 0, "xxabcxx", new String[]{"abc"}},
+            {"abc", 0, "xxabxx", null},
+            {"b+", 0, "abbbcbb", new String[]{"bbb"}},
+            {"", 0, "abc", new String[]{""}},
+            // 选择按从左到右的优先级
+            {"a|ab", 0, "ab", new String[]{"a"}},
+            {"ab|a", 0, "ab", new String[]{"ab"}},
+            {"(a|ab)(c|bcd)(d*)", 0, "abcd", new String[]{"abcd", "a", "bcd", ""}},
+            // 贪婪与非贪婪
+            {"a*", 0, "aaa", new String[]{"aaa"}},
+            {"a*?", 0, "aaa", new String[]{""}},
+            {"a+?", 0, "aaa", new String[]{"a"}},
+            {"a??b", 0, "ab", new String[]{"ab"}},
+            {"(a+)(a*)", 0, "aaa", new String[]{"aaa", "aaa", ""}},
+            {"(a+?)(a*)", 0, "aaa", new String[]{"aaa", "a", "aa"}},
+            {"<.*>", 0, "<a><b>", new String[]{"<a><b>"}},
+            {"<.*?>", 0, "<a><b>", new String[]{"<a>"}},
+            // 分组
+            {"(a)|(b)", 0, "b", new String[]{"b", null, "b"}},
+            {"(?:ab)+", 0, "ababx", new String[]{"abab"}},
+            {"(a)*", 0, "aa", new String[]{"aa", "a"}},
+            {"x(a|b)*y", 0, "xabby", new String[]{"xabby", "b"}},
+            {"(a|b)*c", 0, "abac", new String[]{"abac", "a"}},
+            {"(\\d+)-(\\d+)", 0, "tel 010-1234", new String[]{"010-1234", "010", "1234"}},
+            {"((a)b)?c", 0, "c", new String[]{"c", null, null}},
+            // 空循环不会死循环，分组保留最后一次非空匹配
+            {"(a*)*b", 0, "aab", new String[]{"aab", "aa"}},
+            {"(a*)+b", 0, "b", new String[]{"b", ""}},
+            // 锚点
+            {"^abc$", 0, "abc", new String[]{"abc"}},
+            {"^abc$", 0, "abc\n", null},
+            {"^b$", 0, "a\nb\nc", null},
+            {"^b$", M, "a\nb\nc", new String[]{"b"}},
+            {"^b", M, "a\r\nb", new String[]{"b"}},
+            {"a$", M, "a b", new String[]{"a"}},
+            {"\\bfoo\\b", 0, "a foo b", new String[]{"foo"}},
+            {"\\bfoo\\b", 0, "xfoox", null},
+            {"\\Boo\\B", 0, "foox", new String[]{"oo"}},
+            // . 默认不匹配换行
+            {"a.c", 0, "a\nc", null},
+            {"a.c", 0, "a c", null},
+            {"a.c", S, "a\nc", new String[]{"a\nc"}},
+            {"a.c", 0, "aéc", new String[]{"aéc"}},
+            // 字符类
+            {"[a-c]+", 0, "xxabcabd", new String[]{"abcab"}},
+            {"[^a-c]+", 0, "abcxyz", new String[]{"xyz"}},
+            {"[\\d.]+", 0, "v1.2.3a", new String[]{"1.2.3"}},
+            {"[a-]+", 0, "a-a-b", new String[]{"a-a-"}},
+            {"[-a]+", 0, "-a-b", new String[]{"-a-"}},
+            {"[\\w-]+", 0, "ab-c d", new String[]{"ab-c"}},
+            {"[a-\\d]+", 0, "a-1b", new String[]{"a-1"}},
+            {"[\\b]", 0, "a\bb", new String[]{"\b"}},
+            {"[\\]]+", 0, "a]]b", new String[]{"]]"}},
+            {"[\\D]+", 0, "12ab34", new String[]{"ab"}},
+            {"[\\S]+", 0, "  ab  ", new String[]{"ab"}},
+            {"[^\\s]+", 0, "　ab　", new String[]{"ab"}},
+            {"\\W+", 0, "ab-+cd", new String[]{"-+"}},
+            {"\\s+", 0, "a\t\u000b\f\r\n ﻿b", new String[]{"\t\u000b\f\r\n ﻿"}},
+            // 转义
+            {"\\x41\\u0042", 0, "xABx", new String[]{"AB"}},
+            {"\\t\\n", 0, "a\t\nb", new String[]{"\t\n"}},
+            {"a\\.b", 0, "axb a.b", new String[]{"a.b"}},
+            {"\\cJ", 0, "a\nb", new String[]{"\n"}},
+            {"\\c1", 0, "a\\c1b", new String[]{"\\c1"}},
+            {"\\xZ1", 0, "axZ1", new String[]{"xZ1"}},
+            {"\\u12", 0, "u12", new String[]{"u12"}},
+            {"\\/", 0, "a/b", new String[]{"/"}},
+            // 忽略大小写，包括字符类和取反的字符类
+            {"abc", I, "xABCx", new String[]{"ABC"}},
+            {"[a-z]+", I, "ABC1", new String[]{"ABC"}},
+            {"[A-Z]+", I, "abc1", new String[]{"abc"}},
+            {"[^a-z]+", I, "ABC1", new String[]{"1"}},
+            {"[^A]", I, "aA", null},
+            {"\\u00e9", I, "É", new String[]{"É"}},
+            {"a\\d", I, "A1", new String[]{"A1"}},
+            // {n,m} 量词
+            {"a{2}", 0, "aaa", new String[]{"aa"}},
+            {"a{2}", 0, "a", null},
+            {"a{2,}", 0, "aaaa", new String[]{"aaaa"}},
+            {"a{1,3}", 0, "aaaa", new String[]{"aaa"}},
+            {"a{1,3}?", 0, "aaaa", new String[]{"a"}},
+            {"a{0}b", 0, "ab", new String[]{"b"}},
+            {"(ab){2}", 0, "ababab", new String[]{"abab", "ab"}},
+            {"(a|b){2,3}c", 0, "abbac", new String[]{"bbac", "a"}},
+            // 不是量词的 { 按普通字符处理
+            {"a{,2}", 0, "a{,2}", new String[]{"a{,2}"}},
+            {"a{x}", 0, "a{x}", new String[]{"a{x}"}},
+            {"x{", 0, "x{", new String[]{"x{"}},
+            {"a{1", 0, "a{1", new String[]{"a{1"}},
+    };
+
+    private static final String[] SYNTAX_ERRORS = {
+            "(", "a)", "[a", "*a", "a**", "+", "?", "{2}", "^*", "\\b+", "\\", "[z-a]", "a{2,1}", "[\\"
+    };
+
+    private static final String[] UNSUPPORTED = {
+            "(?=a)", "(?!a)", "(?<=a)", "(?<!a)", "(a)\\1", "[\\1]", "\\k<name>", "a{99999999999}"
+    };
+
+    @Test
+    public void testMatch() {
+        for (Object[] c : MATCH_CASES) {
+            String pattern = (String) c[0];
+            int flags = (Integer) c[1];
+            String input = (String) c[2];
+            String[] expected = (String[]) c[3];
+            LinearRegex regex = LinearRegex.compile(pattern, flags);
+            String message = "/" + pattern + "/" + flags + " on " + Arrays.toString(new String[]{input});
+            assertArrayEquals(message, expected, regex.match(input));
+            assertEquals(message, expected != null, regex.test(input));
+        }
+    }
+
+    @Test
+    public void testGroupCount() {
+        assertEquals(0, LinearRegex.compile("(?:a)b", 0).groupCount());
+        assertEquals(3, LinearRegex.compile("(a)((b)|c)", 0).groupCount());
+    }
+
+    @Test
+    public void testSyntaxError() {
+        for (String pattern : SYNTAX_ERRORS) {
+            try {
+                LinearRegex.compile(pattern, 0);
+                fail("expected syntax error: " + pattern);
+            } catch (PatternSyntaxException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testUnsupportedFallsBack() {
+        for (String pattern : UNSUPPORTED) {
+            try {
+                LinearRegex.compile(pattern, 0);
+                fail("expected unsupported: " + pattern);
+            } catch (UnsupportedOperationException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testProgramSizeLimit() {
+        try {
+            LinearRegex.compile("(a{1000}){1000}", 0);
+            fail("expected unsupported");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNoCatastrophicBacktracking() {
+        char[] chars = new char[20000];
+        Arrays.fill(chars, 'a');
+        String input = new String(chars);
+        assertNull(LinearRegex.compile("(a|aa)*c", 0).match(input));
+        assertNull(LinearRegex.compile("^(a*)*b", 0).match(input));
+        assertEquals(input, LinearRegex.compile("^(a+)+$", 0).match(input)[0]);
+    }
+}
@@ -23,7 +23,7 @@ var RASP = function () {
 
     _createClass(RASP, [{
         key: 'register',
-        value: function register(checkPoint, checkProcess) {
+        value: function register(checkPoint, checkProcess, options) {
             if (typeof checkPoint !== 'string' || checkPoint.length == 0) {
                 throw new TypeError('Check point name must be a string');
             }
@@ -34,9 +34,13 @@ var RASP = function () {
             if (typeof checkProcess !== 'function') {
                 throw new TypeError('Check process must be a function');
             }
+            // options.needs 声明检测函数使用的数据，如 ['stack', 'realpath', 'connection_id', 'body']
+            // 未声明时 hook 点会采集全部数据，空数组表示只使用请求信息，不采集调用栈和请求 body
+            var needs = options && Array.isArray(options.needs) ? options.needs : undefined;
             RASP.checkPoints[checkPoint].push({
                 func: checkProcess,
-                plugin: this
+                plugin: this,
+                needs: needs
             });
         }
     }, {
@@ -53,7 +53,7 @@ const RASP = class {
             });
     }
 
-    register(checkPoint, checkProcess) {
+    register(checkPoint, checkProcess, options) {
         if (typeof(checkPoint) !== 'string' || checkPoint.length == 0) {
             throw new TypeError('Check point name must be a string');
         }
@@ -64,9 +64,13 @@ const RASP = class {
         if (typeof(checkProcess) !== 'function') {
             throw new TypeError('Check process must be a function');
         }
+        // options.needs 声明检测函数使用的数据，如 ['stack', 'realpath', 'connection_id', 'body']
+        // 未声明时 hook 点会采集全部数据，空数组表示只使用请求信息，不采集调用栈和请求 body
+        let needs = options && Array.isArray(options.needs) ? options.needs : undefined;
         RASP.checkPoints[checkPoint].push({
             func: checkProcess,
-            plugin: this
+            plugin: this,
+            needs: needs
         });
     }
 
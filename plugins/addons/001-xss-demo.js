@@ -41,6 +41,8 @@ plugin.register('request', function(params, context) {
     }
 
     return clean    
+}, {
+    needs: []
 })
 
 plugin.log('001-xss-demo 加载完成')
@@ -5,28 +5,38 @@ var clean  = {
   confidence: 0
 }
 
+// 已知的扫描器 UA
+var scannerUA    = [
+  "attack", "scan", "vulnerability", "injection", "xss",
+  "exploit", "grabber", "cgichk", "bsqlbf", "sqlmap", 
+  "nessus", "arachni", "metis", "sql power injector", 
+  "bilbo", "absinthe", "black widow", "n-stealth", "brutus", 
+  "webtrends security analyzer", "netsparker", "jaascois", "pmafind", 
+  ".nasl", "nsauditor", "paros", "dirbuster", "pangolin", "nmap nse", 
+  "sqlninja", "nikto", "webinspect", "blackwidow", "grendel-scan", 
+  "havij", "w3af", "hydra"]
+
+// java 下使用原生词典匹配，一次扫描即可完成，耗时与 UA 个数无关
+var nativeDict   = typeof RASP.dict_register === 'function' && RASP.dict_register('scanner_ua', scannerUA)
+
 plugin.register('request', function(params, context) {
   // 已知的扫描器识别
   var foundScanner = false
-  var scannerUA    = [
-    "attack", "scan", "vulnerability", "injection", "xss",
-    "exploit", "grabber", "cgichk", "bsqlbf", "sqlmap", 
-    "nessus", "arachni", "metis", "sql power injector", 
-    "bilbo", "absinthe", "black widow", "n-stealth", "brutus", 
-    "webtrends security analyzer", "netsparker", "jaascois", "pmafind", 
-    ".nasl", "nsauditor", "paros", "dirbuster", "pangolin", "nmap nse", 
-    "sqlninja", "nikto", "webinspect", "blackwidow", "grendel-scan", 
-    "havij", "w3af", "hydra"]
   var headers      = context.header
 
   if (headers['acunetix-product'] || headers['x-wipp']) {
-    foundScanner = true
+    foundScanner = headers['acunetix-product'] ? 'acunetix' : 'x-wipp'
   } else {
     var ua = headers['user-agent']
-    if (ua) {
+    if (ua && nativeDict) {
+      var matched = RASP.dict_match('scanner_ua', ua, true)
+      if (matched) {
+        foundScanner = matched[0]
+      }
+    } else if (ua) {
       for (var i = 0; i < scannerUA.length; i++) {
         if (ua.indexOf(scannerUA[i].toLowerCase()) != -1) {
-          foundScanner = true
+          foundScanner = scannerUA[i]
           break
         }
       }
@@ -36,11 +46,13 @@ plugin.register('request', function(params, context) {
   if (foundScanner) {
     return {
       action: 'block',
-      message: '已知的扫描器探测行为: ' + scannerUA[i],
+      message: '已知的扫描器探测行为: ' + foundScanner,
       confidence: 90
     }
   }
   return clean
+}, {
+  needs: []
 })
 
 plugin.log('002-detect-scanner 加载完成')
@@ -25,6 +25,8 @@ plugin.register('request', function(params, context) {
   }
 
   return clean
+}, {
+  needs: []
 })
 
 plugin.log('003-unusual-request 加载完成')
@@ -171,7 +171,8 @@ var algorithmConfig = {
 
     // 文件包含 - 包含 http:// 内容
     include_http: {
-        action: 'block'
+        action:    'block',
+        protocols: ['http']
     },
     // 文件包含 - 包含目录
     include_dir: {
@@ -188,7 +189,8 @@ var algorithmConfig = {
 
     // XXE - 使用 gopher/ftp/dict/.. 等不常见协议访问外部实体
     xxe_protocol: {
-        action: 'block'
+        action:    'block',
+        protocols: ['gopher', 'ftp', 'dict', 'expect']
     },
 
     // 文件上传 - COPY/MOVE 方式，仅适合 tomcat
@@ -201,8 +203,26 @@ var algorithmConfig = {
     },
 
     // OGNL 代码执行漏洞
+    // payloads 为常见 struts payload 语句特征
     ognl_exec: {
-        action: 'block'
+        action:   'block',
+        payloads: [
+            'ognl.OgnlContext',
+            'ognl.TypeConverter',
+            'ognl.MemberAccess',
+            '_memberAccess',
+            'ognl.ClassResolver',
+            'java.lang.Runtime',
+            'java.lang.Class',
+            'java.lang.ClassLoader',
+            'java.lang.System',
+            'java.lang.ProcessBuilder',
+            'java.lang.Object',
+            'java.lang.Shutdown',
+            'java.io.File',
+            'javax.script.ScriptEngineManager',
+            'com.opensymphony.xwork2.ActionContext'
+        ]
     },
 
     // 命令执行 - 反射，或者 eval 方式
@@ -215,8 +235,19 @@ var algorithmConfig = {
     },
 
     // transformer 反序列化攻击
+    // clazz 为禁止反序列化的类名，以 . 结尾表示整个包
     transformer_deser: {
-        action: 'block'
+        action: 'block',
+        clazz: [
+            'org.apache.commons.collections.functors.InvokerTransformer',
+            'org.apache.commons.collections.functors.InstantiateTransformer',
+            'org.apache.commons.collections4.functors.InvokerTransformer',
+            'org.apache.commons.collections4.functors.InstantiateTransformer',
+            'org.codehaus.groovy.runtime.ConvertedClosure',
+            'org.codehaus.groovy.runtime.MethodClosure',
+            'org.springframework.beans.factory.ObjectFactory',
+            'xalan.internal.xsltc.trax.TemplatesImpl'
+        ]
     }
 }
 
@@ -279,7 +310,8 @@ var forcefulBrowsing = {
 }
 
 // 如果你配置了非常规的扩展名映射，比如让 .abc 当做PHP脚本执行，那你可能需要增加更多扩展名
-var scriptFileRegex = /\.(aspx?|jspx?|php[345]?|phtml)\.?$/i
+var scriptFileExtensions = ['asp', 'aspx', 'jsp', 'jspx', 'php', 'php3', 'php4', 'php5', 'phtml']
+var scriptFileRegex      = new RegExp('\\.(' + scriptFileExtensions.join('|') + ')\\.?$', 'i')
 
 // 其他的 stream 都没啥用
 var ntfsRegex       = /::\$(DATA|INDEX)$/i
@@ -421,8 +453,15 @@ function is_from_userinput(parameter, target) {
 // 开始
 
 if (RASP.get_jsengine() !== 'v8') {
-    // 在java语言下面，为了提高性能，SQLi/SSRF检测逻辑改为java实现
+    // 在java语言下面，为了提高性能，SQLi/SSRF/readFile/directory/include/writeFile/webdav检测逻辑改为java实现
     // 所以，我们需要把一部分配置传递给java
+    algorithmConfig.forcefulBrowsing = {
+        dotFiles:          forcefulBrowsing.dotFiles.source,
+        unwantedFilenames: forcefulBrowsing.unwantedFilenames,
+        unwantedDirectory: forcefulBrowsing.unwantedDirectory,
+        absolutePaths:     forcefulBrowsing.absolutePaths
+    }
+    algorithmConfig.scriptFileExtensions = scriptFileExtensions
     RASP.config_set('algorithm.config', JSON.stringify(algorithmConfig))
 } else {
     // 对于PHP + V8，性能还不错，我们保留JS检测逻辑
@@ -743,322 +782,329 @@ if (RASP.get_jsengine() !== 'v8') {
 
 }
 
-// 主要用于识别webshell里的文件管理器
-// 通常程序不会主动列目录或者查看敏感目录，e.g /home /etc /var/log 等等
-// 
-// 若有特例可调整
-// 可结合业务定制: e.g 不能超出应用根目录
-plugin.register('directory', function (params, context) {
-    var path        = params.path
-    var realpath    = params.realpath
-    var appBasePath = context.appBasePath
-    var server      = context.server
-
-    // 算法1 - 读取敏感目录
-    if (algorithmConfig.directory_unwanted.action != 'ignore') 
-    {
-        for (var i = 0; i < forcefulBrowsing.unwantedDirectory.length; i ++) {
-            if (realpath == forcefulBrowsing.unwantedDirectory[i]) {
-                return {
-                    action:     algorithmConfig.directory_unwanted.action,
-                    message:    'WebShell文件管理器 - 读取敏感目录',
-                    confidence: 100
+// java 下 directory/readFile 检测逻辑由 java 实现
+if (RASP.get_jsengine() === 'v8') {
+
+    // 主要用于识别webshell里的文件管理器
+    // 通常程序不会主动列目录或者查看敏感目录，e.g /home /etc /var/log 等等
+    // 
+    // 若有特例可调整
+    // 可结合业务定制: e.g 不能超出应用根目录
+    plugin.register('directory', function (params, context) {
+        var path        = params.path
+        var realpath    = params.realpath
+        var appBasePath = context.appBasePath
+        var server      = context.server
+
+        // 算法1 - 读取敏感目录
+        if (algorithmConfig.directory_unwanted.action != 'ignore') 
+        {
+            for (var i = 0; i < forcefulBrowsing.unwantedDirectory.length; i ++) {
+                if (realpath == forcefulBrowsing.unwantedDirectory[i]) {
+                    return {
+                        action:     algorithmConfig.directory_unwanted.action,
+                        message:    'WebShell文件管理器 - 读取敏感目录',
+                        confidence: 100
+                    }
                 }
             }
         }
-    }
 
-    // 算法2 - 使用至少2个/../，且跳出web目录
-    if (algorithmConfig.directory_outsideWebroot.action != 'ignore')
-    {
-        if (hasTraversal(path) && realpath.indexOf(appBasePath) == -1)
+        // 算法2 - 使用至少2个/../，且跳出web目录
+        if (algorithmConfig.directory_outsideWebroot.action != 'ignore')
         {
-            return {
-                action:     algorithmConfig.directory_outsideWebroot.action,
-                message:    '尝试列出Web目录以外的目录',
-                confidence: 90
+            if (hasTraversal(path) && realpath.indexOf(appBasePath) == -1)
+            {
+                return {
+                    action:     algorithmConfig.directory_outsideWebroot.action,
+                    message:    '尝试列出Web目录以外的目录',
+                    confidence: 90
+                }
             }
         }
-    }
-
-    if (algorithmConfig.directory_reflect.action != 'ignore') 
-    {
 
-        // 目前，只有 PHP 支持通过堆栈方式，拦截列目录功能
-        if (server.language == 'php' && validate_stack_php(params.stack)) 
+        if (algorithmConfig.directory_reflect.action != 'ignore') 
         {
-            return {
-                action:     algorithmConfig.directory_reflect.action,
-                message:    '发现 Webshell，或者其他eval类型的后门',
-                confidence: 90
-            }            
+
+            // 目前，只有 PHP 支持通过堆栈方式，拦截列目录功能
+            if (server.language == 'php' && validate_stack_php(params.stack)) 
+            {
+                return {
+                    action:     algorithmConfig.directory_reflect.action,
+                    message:    '发现 Webshell，或者其他eval类型的后门',
+                    confidence: 90
+                }            
+            }
         }
-    }
 
-    return clean
-})
+        return clean
+    })
 
 
-plugin.register('readFile', function (params, context) {
-    var server = context.server
+    plugin.register('readFile', function (params, context) {
+        var server = context.server
 
-    //
-    //【近期调整】
-    // 算法1: 和URL比较，检查是否为成功的目录扫描。仅适用于 java webdav 方式 
-    // 
-    // 注意: 此方法受到 readfile.extension.regex 和资源文件大小的限制
-    // https://rasp.baidu.com/doc/setup/others.html#java-common
-    // 
-    if (1 && server.language == 'java') {
-        var filename_1 = basename(context.url)
-        var filename_2 = basename(params.realpath)
-
-        if (filename_1 == filename_2) {
-            var matched = false
-
-            // 尝试下载压缩包、SQL文件等等
-            if (forcefulBrowsing.dotFiles.test(filename_1)) {
-                matched = true
-            } else {
-                // 尝试访问敏感文件
-                for (var i = 0; i < forcefulBrowsing.unwantedFilenames; i ++) {
-                    if (forcefulBrowsing.unwantedFilenames[i] == filename_1) {
-                        matched = true
-                    }
-                }
-            }
+        //
+        //【近期调整】
+        // 算法1: 和URL比较，检查是否为成功的目录扫描。仅适用于 java webdav 方式 
+        // 
+        // 注意: 此方法受到 readfile.extension.regex 和资源文件大小的限制
+        // https://rasp.baidu.com/doc/setup/others.html#java-common
+        // 
+        if (1 && server.language == 'java') {
+            var filename_1 = basename(context.url)
+            var filename_2 = basename(params.realpath)
 
-            if (matched) {
-                return {
-                    action:     'log',
-                    message:    '尝试下载敏感文件 (' + context.method.toUpperCase() + ' 方式): ' + params.realpath,
+            if (filename_1 == filename_2) {
+                var matched = false
 
-                    // 如果是HEAD方式下载敏感文件，100% 扫描器攻击
-                    confidence: context.method == 'head' ? 100 : 90
+                // 尝试下载压缩包、SQL文件等等
+                if (forcefulBrowsing.dotFiles.test(filename_1)) {
+                    matched = true
+                } else {
+                    // 尝试访问敏感文件
+                    for (var i = 0; i < forcefulBrowsing.unwantedFilenames; i ++) {
+                        if (forcefulBrowsing.unwantedFilenames[i] == filename_1) {
+                            matched = true
+                        }
+                    }
                 }
-            }
-        }
-    }
 
-    //
-    // 算法2: 文件、目录探针
-    // 如果应用读取了列表里的文件，比如 /root/.bash_history，这通常意味着后门操作
-    // 
-    if (algorithmConfig.readFile_unwanted.action != 'ignore')
-    {
-        var realpath_lc = params.realpath.toLowerCase()
+                if (matched) {
+                    return {
+                        action:     'log',
+                        message:    '尝试下载敏感文件 (' + context.method.toUpperCase() + ' 方式): ' + params.realpath,
 
-        for (var j = 0; j < forcefulBrowsing.absolutePaths.length; j ++) {
-            if (forcefulBrowsing.absolutePaths[j] == realpath_lc) {
-                return {
-                    action:     algorithmConfig.readFile_unwanted.action,
-                    message:    'WebShell/文件管理器 - 尝试读取系统文件: ' + params.realpath,
-                    confidence: 90
+                        // 如果是HEAD方式下载敏感文件，100% 扫描器攻击
+                        confidence: context.method == 'head' ? 100 : 90
+                    }
                 }
             }
         }
-    }
 
-    //
-    // 算法3: 检查文件遍历，看是否超出web目录范围
-    // e.g 使用 ../../../etc/passwd 跨目录读取文件
-    // 
-    if (algorithmConfig.readFile_traversal.action != 'ignore') 
-    {
-        var path        = params.path
-        var appBasePath = context.appBasePath
+        //
+        // 算法2: 文件、目录探针
+        // 如果应用读取了列表里的文件，比如 /root/.bash_history，这通常意味着后门操作
+        // 
+        if (algorithmConfig.readFile_unwanted.action != 'ignore')
+        {
+            var realpath_lc = params.realpath.toLowerCase()
 
-        if (is_outside_webroot(appBasePath, params.realpath, path)) {
-            return {
-                action:     algorithmConfig.readFile_traversal.action,
-                message:    '目录遍历攻击，跳出web目录范围 (' + appBasePath + ')',
-                confidence: 90
+            for (var j = 0; j < forcefulBrowsing.absolutePaths.length; j ++) {
+                if (forcefulBrowsing.absolutePaths[j] == realpath_lc) {
+                    return {
+                        action:     algorithmConfig.readFile_unwanted.action,
+                        message:    'WebShell/文件管理器 - 尝试读取系统文件: ' + params.realpath,
+                        confidence: 90
+                    }
+                }
             }
         }
-    }
 
-    //
-    // 算法4: 拦截任意文件下载漏洞，要读取的文件来自用户输入，且没有路径拼接
-    //
-    // 不影响正常操作，e.g
-    // ?path=download/1.jpg
-    // 
-    if (algorithmConfig.readFile_userinput.action != 'ignore')
-    {
-        if (is_from_userinput(context.parameter, params.path))
+        //
+        // 算法3: 检查文件遍历，看是否超出web目录范围
+        // e.g 使用 ../../../etc/passwd 跨目录读取文件
+        // 
+        if (algorithmConfig.readFile_traversal.action != 'ignore') 
         {
-            var path_lc = params.path.toLowerCase()
+            var path        = params.path
+            var appBasePath = context.appBasePath
 
-            // 1. 使用绝对路径
-            // ?file=/etc/./hosts
-            if (is_absolute_path(params.path, context.server.os))
-            {
+            if (is_outside_webroot(appBasePath, params.realpath, path)) {
                 return {
-                    action:     algorithmConfig.readFile_userinput.action,
-                    message:    '任意文件下载攻击（绝对路径），目标文件: ' + params.realpath,
+                    action:     algorithmConfig.readFile_traversal.action,
+                    message:    '目录遍历攻击，跳出web目录范围 (' + appBasePath + ')',
                     confidence: 90
-                }   
+                }
             }
+        }
 
-            // 2. 相对路径且包含 /../ 
-            // ?file=download/../../etc/passwd
-            if (hasTraversal(params.path))
+        //
+        // 算法4: 拦截任意文件下载漏洞，要读取的文件来自用户输入，且没有路径拼接
+        //
+        // 不影响正常操作，e.g
+        // ?path=download/1.jpg
+        // 
+        if (algorithmConfig.readFile_userinput.action != 'ignore')
+        {
+            if (is_from_userinput(context.parameter, params.path))
             {
-                return {
-                    action:     algorithmConfig.readFile_userinput.action,
-                    message:    '任意文件下载攻击（相对路径），目标文件: ' + params.realpath,
-                    confidence: 90
-                }                   
-            }
+                var path_lc = params.path.toLowerCase()
 
-            // 3. 读取 http(s):// 内容
-            // ?file=http://www.baidu.com
-            if (path_lc.startsWith('http://') || path_lc.startsWith('https://'))
-            {
-                if (algorithmConfig.readFile_userinput_http.action != 'ignore')
+                // 1. 使用绝对路径
+                // ?file=/etc/./hosts
+                if (is_absolute_path(params.path, context.server.os))
                 {
                     return {
-                        action:     algorithmConfig.readFile_userinput_http.action,
-                        message:    '任意文件读取，目标URL: ' + params.path,
+                        action:     algorithmConfig.readFile_userinput.action,
+                        message:    '任意文件下载攻击（绝对路径），目标文件: ' + params.realpath,
                         confidence: 90
-                    }
+                    }   
                 }
-            }
 
-            // 4. 读取 file:// 内容
-            // ?file=file:///etc/passwd
-            if (path_lc.startsWith('file://'))
-            {
-                if (algorithmConfig.readFile_userinput_file.action != 'ignore')
+                // 2. 相对路径且包含 /../ 
+                // ?file=download/../../etc/passwd
+                if (hasTraversal(params.path))
                 {
                     return {
-                        action:     algorithmConfig.readFile_userinput_file.action,
-                        message:    '任意文件读取，目标文件: ' + params.path,
+                        action:     algorithmConfig.readFile_userinput.action,
+                        message:    '任意文件下载攻击（相对路径），目标文件: ' + params.realpath,
                         confidence: 90
-                    } 
+                    }                   
                 }
-            }            
-        }
-    }
-
-    return clean
-})
 
-plugin.register('include', function (params, context) {
-    var url = params.url
-
-    // 如果没有协议
-    // ?file=../../../../../var/log/httpd/error.log
-    if (url.indexOf('://') == -1) {
-        var realpath    = params.realpath
-        var appBasePath = context.appBasePath
+                // 3. 读取 http(s):// 内容
+                // ?file=http://www.baidu.com
+                if (path_lc.startsWith('http://') || path_lc.startsWith('https://'))
+                {
+                    if (algorithmConfig.readFile_userinput_http.action != 'ignore')
+                    {
+                        return {
+                            action:     algorithmConfig.readFile_userinput_http.action,
+                            message:    '任意文件读取，目标URL: ' + params.path,
+                            confidence: 90
+                        }
+                    }
+                }
 
-        // 是否跳出 web 目录？
-        if (algorithmConfig.include_outsideWebroot.action != 'ignore' &&
-            is_outside_webroot(appBasePath, realpath, url)) 
-        {
-            return {
-                action:     algorithmConfig.include_outsideWebroot.action,
-                message:    '任意文件包含攻击，包含web目录范围之外的文件 (' + appBasePath + ')',
-                confidence: 100
+                // 4. 读取 file:// 内容
+                // ?file=file:///etc/passwd
+                if (path_lc.startsWith('file://'))
+                {
+                    if (algorithmConfig.readFile_userinput_file.action != 'ignore')
+                    {
+                        return {
+                            action:     algorithmConfig.readFile_userinput_file.action,
+                            message:    '任意文件读取，目标文件: ' + params.path,
+                            confidence: 90
+                        } 
+                    }
+                }            
             }
         }
 
         return clean
-    }
-
-    // 如果有协议
-    // include ('http://xxxxx')
-    var items = url.split('://')
+    })
+}
 
-    // http 方式 SSRF/RFI
-    if (items[0].toLowerCase() == 'http') 
-    {
-        if (algorithmConfig.include_http.action != 'ignore')
-        {
-            return {
-                action:     algorithmConfig.include_http.action,
-                message:    'SSRF漏洞: ' + params.function + ' 方式',
-                confidence: 70
-            }  
-        }        
-    }
+// java 下 include/writeFile 检测逻辑由 java 实现
+if (RASP.get_jsengine() === 'v8') {
+    plugin.register('include', function (params, context) {
+        var url = params.url
 
-    // file 协议
-    if (items[0].toLowerCase() == 'file') {
-        var basename = items[1].split('/').pop()
+        // 如果没有协议
+        // ?file=../../../../../var/log/httpd/error.log
+        if (url.indexOf('://') == -1) {
+            var realpath    = params.realpath
+            var appBasePath = context.appBasePath
 
-        // 是否为目录？
-        if (items[1].endsWith('/')) {
-            // 部分应用，如果直接包含目录，会把这个目录内容列出来
-            if (algorithmConfig.include_dir.action != 'ignore') {
+            // 是否跳出 web 目录？
+            if (algorithmConfig.include_outsideWebroot.action != 'ignore' &&
+                is_outside_webroot(appBasePath, realpath, url)) 
+            {
                 return {
-                    action:     algorithmConfig.include_dir.action,
-                    message:    '敏感目录访问: ' + params.function + ' 方式',
+                    action:     algorithmConfig.include_outsideWebroot.action,
+                    message:    '任意文件包含攻击，包含web目录范围之外的文件 (' + appBasePath + ')',
                     confidence: 100
                 }
             }
+
+            return clean
         }
 
-        // 是否为敏感文件？
-        if (algorithmConfig.include_unwanted.action != 'ignore') {
-            for (var i = 0; i < forcefulBrowsing.unwantedFilenames.length; i ++) {
-                if (basename == forcefulBrowsing.unwantedFilenames[i]) {
+        // 如果有协议
+        // include ('http://xxxxx')
+        var items = url.split('://')
+
+        // http 方式 SSRF/RFI
+        if (algorithmConfig.include_http.protocols.indexOf(items[0].toLowerCase()) != -1) 
+        {
+            if (algorithmConfig.include_http.action != 'ignore')
+            {
+                return {
+                    action:     algorithmConfig.include_http.action,
+                    message:    'SSRF漏洞: ' + params.function + ' 方式',
+                    confidence: 70
+                }  
+            }        
+        }
+
+        // file 协议
+        if (items[0].toLowerCase() == 'file') {
+            var basename = items[1].split('/').pop()
+
+            // 是否为目录？
+            if (items[1].endsWith('/')) {
+                // 部分应用，如果直接包含目录，会把这个目录内容列出来
+                if (algorithmConfig.include_dir.action != 'ignore') {
                     return {
-                        action:     algorithmConfig.include_unwanted.action,
-                        message:    '敏感文件下载: ' + params.function + ' 方式',
+                        action:     algorithmConfig.include_dir.action,
+                        message:    '敏感目录访问: ' + params.function + ' 方式',
                         confidence: 100
                     }
                 }
             }
+
+            // 是否为敏感文件？
+            if (algorithmConfig.include_unwanted.action != 'ignore') {
+                for (var i = 0; i < forcefulBrowsing.unwantedFilenames.length; i ++) {
+                    if (basename == forcefulBrowsing.unwantedFilenames[i]) {
+                        return {
+                            action:     algorithmConfig.include_unwanted.action,
+                            message:    '敏感文件下载: ' + params.function + ' 方式',
+                            confidence: 100
+                        }
+                    }
+                }
+            }
         }
-    }
 
-    return clean
-})
+        return clean
+    })
 
 
-plugin.register('writeFile', function (params, context) {
+    plugin.register('writeFile', function (params, context) {
 
-    // 写 NTFS 流文件，肯定不正常
-    if (algorithmConfig.writeFile_NTFS.action != 'ignore') 
-    {
-        if (ntfsRegex.test(params.realpath)) {
-            return {
-                action:     algorithmConfig.writeFile_NTFS.action,
-                message:    '尝试利用NTFS流上传后门: ' + params.realpath,
-                confidence: 90
+        // 写 NTFS 流文件，肯定不正常
+        if (algorithmConfig.writeFile_NTFS.action != 'ignore') 
+        {
+            if (ntfsRegex.test(params.realpath)) {
+                return {
+                    action:     algorithmConfig.writeFile_NTFS.action,
+                    message:    '尝试利用NTFS流上传后门: ' + params.realpath,
+                    confidence: 90
+                }
             }
         }
-    }
 
-    // PUT 上传
-    if (context.method == 'put' &&
-        algorithmConfig.writeFile_PUT_script.action != 'ignore') 
-    {
-        if (scriptFileRegex.test(params.realpath)) {
-            return {
-                action:     algorithmConfig.writeFile_PUT_script.action,
-                message:    '使用 PUT 方式上传脚本文件，路径: ' + params.realpath,
-                confidence: 90
-            }
-        }        
-    }
+        // PUT 上传
+        if (context.method == 'put' &&
+            algorithmConfig.writeFile_PUT_script.action != 'ignore') 
+        {
+            if (scriptFileRegex.test(params.realpath)) {
+                return {
+                    action:     algorithmConfig.writeFile_PUT_script.action,
+                    message:    '使用 PUT 方式上传脚本文件，路径: ' + params.realpath,
+                    confidence: 90
+                }
+            }        
+        }
 
-    // 关于这个算法，请参考这个插件定制文档
-    // https://rasp.baidu.com/doc/dev/official.html#case-3    
-    if (algorithmConfig.writeFile_script.action != 'ignore') 
-    {
-        if (scriptFileRegex.test(params.realpath)) {
-            return {
-                action:     algorithmConfig.writeFile_script.action,
-                message:    '尝试写入脚本文件，路径: ' + params.realpath,
-                confidence: 90
+        // 关于这个算法，请参考这个插件定制文档
+        // https://rasp.baidu.com/doc/dev/official.html#case-3    
+        if (algorithmConfig.writeFile_script.action != 'ignore') 
+        {
+            if (scriptFileRegex.test(params.realpath)) {
+                return {
+                    action:     algorithmConfig.writeFile_script.action,
+                    message:    '尝试写入脚本文件，路径: ' + params.realpath,
+                    confidence: 90
+                }
             }
         }
-    }
-    return clean
-})
+        return clean
+    })
+}
 
 
 if (algorithmConfig.fileUpload_multipart.action != 'ignore') 
@@ -1082,11 +1128,14 @@ if (algorithmConfig.fileUpload_multipart.action != 'ignore')
         }
 
         return clean
+    }, {
+        needs: []
     })
 }
 
 
-if (algorithmConfig.fileUpload_webdav.action != 'ignore')
+// java 下 webdav 检测逻辑由 java 实现
+if (RASP.get_jsengine() === 'v8' && algorithmConfig.fileUpload_webdav.action != 'ignore')
 {
     plugin.register('webdav', function (params, context) {
         
@@ -1119,195 +1168,180 @@ if (algorithmConfig.rename_webshell.action != 'ignore')
         }
 
         return clean
+    }, {
+        needs: []
     })
 }
 
 
-plugin.register('command', function (params, context) {
-    var server  = context.server
-    var message = undefined
-
-    // 算法1: 根据堆栈，检查是否为反序列化攻击。
-    // 理论上，此算法不存在误报
-
-    if (algorithmConfig.command_reflect.action != 'ignore') {
-        // Java 检测逻辑
-        if (server.language == 'java') {
-            var userCode = false
-            var known    = {
-                'java.lang.reflect.Method.invoke':                                              '尝试通过反射执行命令',
-                'ognl.OgnlRuntime.invokeMethod':                                                '尝试通过 OGNL 代码执行命令',
-                'com.thoughtworks.xstream.XStream.unmarshal':                                   '尝试通过 xstream 反序列化执行命令',
-                'org.apache.commons.collections4.functors.InvokerTransformer.transform':        '尝试通过 transformer 反序列化执行命令',
-                'org.jolokia.jsr160.Jsr160RequestDispatcher.dispatchRequest':                   '尝试通过 JNDI 注入方式执行命令',
-                'com.alibaba.fastjson.parser.deserializer.JavaBeanDeserializer.deserialze':     '尝试通过 fastjson 反序列化方式执行命令',
-                'org.springframework.expression.spel.support.ReflectiveMethodExecutor.execute': '尝试通过 Spring SpEL 表达式执行命令',
-                'freemarker.template.utility.Execute.exec':                                     '尝试通过 FreeMarker 模板执行命令'
-            }
+// java 下 command 检测逻辑由 java 实现
+if (RASP.get_jsengine() === 'v8') {
+
+    plugin.register('command', function (params, context) {
+        var server  = context.server
+        var message = undefined
+
+        // 算法1: 根据堆栈，检查是否为反序列化攻击。
+        // 理论上，此算法不存在误报
+
+        if (algorithmConfig.command_reflect.action != 'ignore') {
+            // Java 检测逻辑
+            if (server.language == 'java') {
+                var userCode = false
+                var known    = {
+                    'java.lang.reflect.Method.invoke':                                              '尝试通过反射执行命令',
+                    'ognl.OgnlRuntime.invokeMethod':                                                '尝试通过 OGNL 代码执行命令',
+                    'com.thoughtworks.xstream.XStream.unmarshal':                                   '尝试通过 xstream 反序列化执行命令',
+                    'org.apache.commons.collections4.functors.InvokerTransformer.transform':        '尝试通过 transformer 反序列化执行命令',
+                    'org.jolokia.jsr160.Jsr160RequestDispatcher.dispatchRequest':                   '尝试通过 JNDI 注入方式执行命令',
+                    'com.alibaba.fastjson.parser.deserializer.JavaBeanDeserializer.deserialze':     '尝试通过 fastjson 反序列化方式执行命令',
+                    'org.springframework.expression.spel.support.ReflectiveMethodExecutor.execute': '尝试通过 Spring SpEL 表达式执行命令',
+                    'freemarker.template.utility.Execute.exec':                                     '尝试通过 FreeMarker 模板执行命令'
+                }
             
-            for (var i = 2; i < params.stack.length; i ++) {
-                var method = params.stack[i]
+                for (var i = 2; i < params.stack.length; i ++) {
+                    var method = params.stack[i]
 
-                if (method.startsWith('ysoserial.Pwner')) {
-                    message = 'YsoSerial 漏洞利用工具 - 反序列化攻击'
-                    break
-                }
+                    if (method.startsWith('ysoserial.Pwner')) {
+                        message = 'YsoSerial 漏洞利用工具 - 反序列化攻击'
+                        break
+                    }
 
-                if (method == 'org.codehaus.groovy.runtime.ProcessGroovyMethods.execute') {
-                    message = '尝试通过 Groovy 脚本执行命令'
-                    break
-                }
+                    if (method == 'org.codehaus.groovy.runtime.ProcessGroovyMethods.execute') {
+                        message = '尝试通过 Groovy 脚本执行命令'
+                        break
+                    }
 
-                // 仅当命令本身来自反射调用才拦截
-                // 如果某个类是反射调用，这个类再主动执行命令，则忽略
-                if (! method.startsWith('java.') && ! method.startsWith('sun.') && !method.startsWith('com.sun.')) {
-                    userCode = true
-                }
+                    // 仅当命令本身来自反射调用才拦截
+                    // 如果某个类是反射调用，这个类再主动执行命令，则忽略
+                    if (! method.startsWith('java.') && ! method.startsWith('sun.') && !method.startsWith('com.sun.')) {
+                        userCode = true
+                    }
 
-                if (known[method]) {
-                    // 同上，如果反射调用和命令执行之间，包含用户代码，则不认为是反射调用
-                    if (userCode && method == 'java.lang.reflect.Method.invoke') {
-                        continue
+                    if (known[method]) {
+                        // 同上，如果反射调用和命令执行之间，包含用户代码，则不认为是反射调用
+                        if (userCode && method == 'java.lang.reflect.Method.invoke') {
+                            continue
+                        }
+
+                        message = known[method]
+                        // break
                     }
+                }
+            }
+
+            // PHP 检测逻辑
+            else if (server.language == 'php' && validate_stack_php(params.stack)) 
+            {
+                message = '发现 Webshell，或者基于 eval/assert/create_function/preg_replace/.. 等类型的代码执行漏洞'
+            }
 
-                    message = known[method]
-                    // break
+            if (message) 
+            {
+                return {
+                    action:     algorithmConfig.command_reflect.action,
+                    message:    message,
+                    confidence: 100
                 }
             }
         }
 
-        // PHP 检测逻辑
-        else if (server.language == 'php' && validate_stack_php(params.stack)) 
-        {
-            message = '发现 Webshell，或者基于 eval/assert/create_function/preg_replace/.. 等类型的代码执行漏洞'
+        // 算法2: 默认禁止命令执行
+        // 如有需要可改成 log 或者 ignore
+        // 或者根据URL来决定是否允许执行命令
+
+        // 从 v0.31 开始，当命令执行来自非HTTP请求的，我们也会检测反序列化攻击
+        // 但是不应该拦截正常的命令执行，所以这里加一个 context.url 检查
+        if (! context.url) {
+            return clean
         }
 
-        if (message) 
-        {
+        if (algorithmConfig.command_other.action == 'ignore') {
+            return clean
+        } else {
             return {
-                action:     algorithmConfig.command_reflect.action,
-                message:    message,
-                confidence: 100
-            }
+                action:     algorithmConfig.command_other.action,
+                message:    '尝试执行命令',
+                confidence: 90
+            } 
         }
-    }
 
-    // 算法2: 默认禁止命令执行
-    // 如有需要可改成 log 或者 ignore
-    // 或者根据URL来决定是否允许执行命令
-
-    // 从 v0.31 开始，当命令执行来自非HTTP请求的，我们也会检测反序列化攻击
-    // 但是不应该拦截正常的命令执行，所以这里加一个 context.url 检查
-    if (! context.url) {
-        return clean
-    }
-
-    if (algorithmConfig.command_other.action == 'ignore') {
-        return clean
-    } else {
-        return {
-            action:     algorithmConfig.command_other.action,
-            message:    '尝试执行命令',
-            confidence: 90
-        } 
-    }
+    })
 
-})
+}
 
 
 // 注意: 由于libxml2无法挂钩，所以PHP暂时不支持XXE检测
-plugin.register('xxe', function (params, context) {
-    var items = params.entity.split('://')
-
-    if (items.length >= 2) {
-        var protocol = items[0]
-        var address  = items[1]
-
-        // 拒绝特殊协议
-        if (algorithmConfig.xxe_protocol.action != 'ignore') {
-            if (protocol === 'gopher' || protocol === 'ftp' || protocol === 'dict' || protocol === 'expect') {
-                return {
-                    action:     algorithmConfig.xxe_protocol.action,
-                    message:    'SSRF/Blind XXE 攻击 (' + protocol + ' 协议)',
-                    confidence: 100
+// java 下 xxe/ognl 检测逻辑由 java 实现
+if (RASP.get_jsengine() === 'v8') {
+    plugin.register('xxe', function (params, context) {
+        var items = params.entity.split('://')
+
+        if (items.length >= 2) {
+            var protocol = items[0].toLowerCase()
+            var address  = items[1]
+
+            // 拒绝特殊协议
+            if (algorithmConfig.xxe_protocol.action != 'ignore') {
+                if (algorithmConfig.xxe_protocol.protocols.indexOf(protocol) != -1) {
+                    return {
+                        action:     algorithmConfig.xxe_protocol.action,
+                        message:    'SSRF/Blind XXE 攻击 (' + protocol + ' 协议)',
+                        confidence: 100
+                    }
                 }
             }
-        }
-
-        // file 协议 + 绝对路径, e.g
-        // file:///etc/passwd
-        //
-        // 相对路径容易误报, e.g
-        // file://xwork.dtd
-        if (address.length > 0 && protocol === 'file' && address[0] == '/') {
-            return {
-                action:     'log',
-                message:    '尝试读取外部实体 (file 协议)',
-                confidence: 90
-            }
-        }
-    }
-    return clean
-})
 
-if (algorithmConfig.ognl_exec.action != 'ignore') 
-{
-    // 默认情况下，当OGNL表达式长度超过30才会进入检测点，此长度可配置
-    plugin.register('ognl', function (params, context) {
-        // 常见 struts payload 语句特征
-        var ognlPayloads = [
-            'ognl.OgnlContext',
-            'ognl.TypeConverter',
-            'ognl.MemberAccess',
-            '_memberAccess',
-            'ognl.ClassResolver',
-            'java.lang.Runtime',
-            'java.lang.Class',
-            'java.lang.ClassLoader',
-            'java.lang.System',
-            'java.lang.ProcessBuilder',
-            'java.lang.Object', 
-            'java.lang.Shutdown',
-            'java.io.File',
-            'javax.script.ScriptEngineManager',
-            'com.opensymphony.xwork2.ActionContext'
-        ]
-
-        var ognlExpression = params.expression
-        for (var index in ognlPayloads) 
-        {
-            if (ognlExpression.indexOf(ognlPayloads[index]) > -1) 
-            {
+            // file 协议 + 绝对路径, e.g
+            // file:///etc/passwd
+            //
+            // 相对路径容易误报, e.g
+            // file://xwork.dtd
+            if (address.length > 0 && protocol === 'file' && address[0] == '/') {
                 return {
-                    action:     algorithmConfig.ognl_exec.action,
-                    message:    '尝试ognl远程命令执行',
-                    confidence: 100
+                    action:     'log',
+                    message:    '尝试读取外部实体 (file 协议)',
+                    confidence: 90
                 }
             }
-
         }
         return clean
     })
+
+    if (algorithmConfig.ognl_exec.action != 'ignore') 
+    {
+        // 默认情况下，当OGNL表达式长度超过30才会进入检测点，此长度可配置
+        plugin.register('ognl', function (params, context) {
+            var ognlPayloads   = algorithmConfig.ognl_exec.payloads
+            var ognlExpression = params.expression
+            for (var index in ognlPayloads) 
+            {
+                if (ognlExpression.indexOf(ognlPayloads[index]) > -1) 
+                {
+                    return {
+                        action:     algorithmConfig.ognl_exec.action,
+                        message:    '尝试ognl远程命令执行',
+                        confidence: 100
+                    }
+                }
+
+            }
+            return clean
+        })
+    }
 }
 
 
 // [[ 近期调整~ ]]
-if (algorithmConfig.transformer_deser.action != 'ignore') {
+// java 下 deserialization 检测逻辑由 java 实现
+if (RASP.get_jsengine() === 'v8' && algorithmConfig.transformer_deser.action != 'ignore') {
     plugin.register('deserialization', function (params, context) {
-        var deserializationInvalidClazz = [
-            'org.apache.commons.collections.functors.InvokerTransformer',
-            'org.apache.commons.collections.functors.InstantiateTransformer',
-            'org.apache.commons.collections4.functors.InvokerTransformer',
-            'org.apache.commons.collections4.functors.InstantiateTransformer',
-            'org.codehaus.groovy.runtime.ConvertedClosure',
-            'org.codehaus.groovy.runtime.MethodClosure',
-            'org.springframework.beans.factory.ObjectFactory',
-            'xalan.internal.xsltc.trax.TemplatesImpl'
-        ]
+        var deserializationInvalidClazz = algorithmConfig.transformer_deser.clazz
 
         var clazz = params.clazz
         for (var index in deserializationInvalidClazz) {
-            if (clazz === deserializationInvalidClazz[index]) {
+            var invalidClazz = deserializationInvalidClazz[index]
+            if (clazz === invalidClazz || (invalidClazz.endsWith('.') && clazz.startsWith(invalidClazz))) {
                 return {
                     action:     algorithmConfig.transformer_deser.action,
                     message:    '尝试反序列化攻击',